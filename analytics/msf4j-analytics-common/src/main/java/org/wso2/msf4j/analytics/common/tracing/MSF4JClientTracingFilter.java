@@ -18,6 +18,7 @@ package org.wso2.msf4j.analytics.common.tracing;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 import javax.ws.rs.client.ClientRequestContext;
 import javax.ws.rs.client.ClientRequestFilter;
 import javax.ws.rs.client.ClientResponseContext;
@@ -30,10 +31,13 @@ import javax.ws.rs.client.ClientResponseFilter;
 public class MSF4JClientTracingFilter implements ClientRequestFilter, ClientResponseFilter {
 
     private static final String TRACE_EVENT_ATTRIBUTE = "trace-event-attribute";
+    private static final String START_TIME_ATTRIBUTE = "trace-start-time-attribute";
     private TraceEvent parentEvent;
+    private Boolean parentSampled;
     private String instanceId;
     private String instanceName;
     private String dasUrl;
+    private TraceSampler sampler;
 
     /**
      * Constructor of the MSF4JClientTracingFilter.
@@ -62,13 +66,29 @@ public class MSF4JClientTracingFilter implements ClientRequestFilter, ClientResp
      * @param dasUrl      URL of the receiver of DAS server
      */
     public MSF4JClientTracingFilter(String clientName, TraceEvent parentEvent, String dasUrl) {
+        this(clientName, parentEvent, dasUrl, TraceSampler.always());
+    }
+
+    /**
+     * Constructor of the MSF4JClientTracingFilter.
+     *
+     * @param clientName  Name of the client
+     * @param parentEvent TraceEvent of the caller
+     * @param dasUrl      URL of the receiver of DAS server
+     * @param sampler     Sampler deciding which of the requests starting a trace are traced
+     */
+    public MSF4JClientTracingFilter(String clientName, TraceEvent parentEvent, String dasUrl,
+                                    TraceSampler sampler) {
         this.instanceName = clientName;
         this.instanceId = TracingUtil.generateUniqueId();
         this.dasUrl = dasUrl;
+        this.sampler = sampler;
         if (parentEvent != null) {
             this.parentEvent = parentEvent;
         } else {
             this.parentEvent = TracingEventTracker.getTraceEvent();
+            // Follow the decision of the service calling this client, if it was not sampled
+            this.parentSampled = TracingEventTracker.getSampled();
         }
     }
 
@@ -78,7 +98,26 @@ public class MSF4JClientTracingFilter implements ClientRequestFilter, ClientResp
      */
     @Override
     public void filter(ClientRequestContext requestContext) throws IOException {
-        long time = new Date().getTime();
+        boolean sampled = parentEvent != null || (parentSampled != null ? parentSampled : sampler.sample(null));
+        if (!sampled) {
+            requestContext.getHeaders().putSingle(TracingConstants.TRACE_SAMPLED_HEADER,
+                    TracingConstants.NOT_SAMPLED);
+            // Calls of a service which was not sampled follow its decision, rather than being sampled late
+            if (parentSampled == null && sampler.isLateSamplingEnabled()) {
+                requestContext.setProperty(START_TIME_ATTRIBUTE, System.nanoTime());
+            }
+            return;
+        }
+        TraceEvent clientTraceEvent = createStartEvent(requestContext, new Date().getTime());
+        requestContext.setProperty(TRACE_EVENT_ATTRIBUTE, clientTraceEvent);
+        requestContext.getHeaders().putSingle(TracingConstants.TRACE_ID_HEADER, clientTraceEvent.getTraceId());
+        requestContext.getHeaders().putSingle(TracingConstants.TRACE_ORIGIN_ID_HEADER,
+                clientTraceEvent.getOriginId());
+        requestContext.getHeaders().putSingle(TracingConstants.TRACE_SAMPLED_HEADER, TracingConstants.SAMPLED);
+        TracingUtil.pushToDAS(clientTraceEvent, dasUrl);
+    }
+
+    private TraceEvent createStartEvent(ClientRequestContext requestContext, long time) {
         String clientTraceId;
         String traceOriginId;
         String traceParentId = null;
@@ -101,10 +140,7 @@ public class MSF4JClientTracingFilter implements ClientRequestFilter, ClientResp
         clientTraceEvent.setParentId(traceParentId);
         clientTraceEvent.setHttpMethod(requestContext.getMethod());
         clientTraceEvent.setUrl(requestContext.getUri().toString());
-        requestContext.setProperty(TRACE_EVENT_ATTRIBUTE, clientTraceEvent);
-        requestContext.getHeaders().putSingle(TracingConstants.TRACE_ID_HEADER, clientTraceId);
-        requestContext.getHeaders().putSingle(TracingConstants.TRACE_ORIGIN_ID_HEADER, traceOriginId);
-        TracingUtil.pushToDAS(clientTraceEvent, dasUrl);
+        return clientTraceEvent;
     }
 
     /**
@@ -115,6 +151,15 @@ public class MSF4JClientTracingFilter implements ClientRequestFilter, ClientResp
     public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) throws IOException {
         long time = new Date().getTime();
         TraceEvent traceEvent = (TraceEvent) requestContext.getProperty(TRACE_EVENT_ATTRIBUTE);
+        Object startTime = requestContext.getProperty(START_TIME_ATTRIBUTE);
+        if (traceEvent == null && startTime != null) {
+            // Record the failed or slow calls which were not sampled, now that they have completed
+            long responseTime = System.nanoTime() - (Long) startTime;
+            if (sampler.sampleCompleted(responseContext.getStatus(), responseTime)) {
+                traceEvent = createStartEvent(requestContext, time - TimeUnit.NANOSECONDS.toMillis(responseTime));
+                TracingUtil.pushToDAS(traceEvent, dasUrl);
+            }
+        }
         if (traceEvent != null) {
             TraceEvent endTraceEvent = new TraceEvent(
                     TracingConstants.CLIENT_TRACE_END,
@@ -0,0 +1,316 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+*  Unless required by applicable law or agreed to in writing,
+*  software distributed under the License is distributed on an
+*  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+*  KIND, either express or implied.  See the License for the
+*  specific language governing permissions and limitations
+*  under the License.
+*/
+
+package org.wso2.msf4j.analytics.common.tracing;
+
+import org.wso2.msf4j.Deadline;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Snapshot of the per request state kept in thread locals, which is the trace event and the sampling decision of
+ * {@link TracingEventTracker} and the {@link Deadline} of the request, to carry it over to the threads which do part
+ * of the work of the request.
+ * <p>
+ * Tasks handed to an executor should be wrapped with one of the <tt>wrap</tt> methods, or submitted to an executor
+ * wrapped with {@link #wrap(Executor)}, on the thread serving the request. Functions passed to the
+ * {@link java.util.concurrent.CompletableFuture} stages should be wrapped when the stage is created, since a stage
+ * runs on whichever thread completes the previous one:
+ * <pre>
+ *     CompletableFuture.supplyAsync(TraceContext.wrapSupplier(() -&gt; customerClient.getCustomer(id)), executor)
+ *             .thenApplyAsync(TraceContext.wrapFunction(customer -&gt; invoiceClient.getInvoices(customer)), executor);
+ * </pre>
+ * A task is run with the captured state and the previous state of the thread is restored afterwards. Tasks
+ * submitted while there is no state to carry over are not wrapped, so that they cost nothing.
+ */
+public final class TraceContext {
+
+    private static final TraceContext EMPTY = new TraceContext(null, null, Deadline.NONE);
+
+    private final TraceEvent traceEvent;
+    private final Boolean sampled;
+    private final Deadline deadline;
+
+    private TraceContext(TraceEvent traceEvent, Boolean sampled, Deadline deadline) {
+        this.traceEvent = traceEvent;
+        this.sampled = sampled;
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return state of the current thread
+     */
+    public static TraceContext current() {
+        TraceEvent traceEvent = TracingEventTracker.getTraceEvent();
+        Boolean sampled = TracingEventTracker.getSampled();
+        Deadline deadline = Deadline.current();
+        if (traceEvent == null && sampled == null && !deadline.isBounded()) {
+            return EMPTY;
+        }
+        return new TraceContext(traceEvent, sampled, deadline);
+    }
+
+    /**
+     * @return true if there is no state to carry over
+     */
+    public boolean isEmpty() {
+        return this == EMPTY;
+    }
+
+    public TraceEvent getTraceEvent() {
+        return traceEvent;
+    }
+
+    /**
+     * Make this the state of the current thread.
+     *
+     * @return previous state of the thread, to be restored with {@link #detach(TraceContext)}
+     */
+    public TraceContext attach() {
+        TraceContext previous = current();
+        set(this);
+        return previous;
+    }
+
+    /**
+     * Restore the state the current thread had before {@link #attach()}.
+     *
+     * @param previous state returned by {@link #attach()}
+     */
+    public void detach(TraceContext previous) {
+        set(previous);
+    }
+
+    private static void set(TraceContext context) {
+        TracingEventTracker.restore(context.traceEvent, context.sampled);
+        Deadline.detach(context.deadline.isBounded() ? context.deadline : null);
+    }
+
+    /**
+     * @param task task to be run on another thread
+     * @return task which runs with the state of the current thread
+     */
+    public static Runnable wrap(Runnable task) {
+        TraceContext context = current();
+        if (context.isEmpty()) {
+            return task;
+        }
+        return () -> {
+            TraceContext previous = context.attach();
+            try {
+                task.run();
+            } finally {
+                context.detach(previous);
+            }
+        };
+    }
+
+    /**
+     * @param task task to be run on another thread
+     * @param <V>  type of the result of the task
+     * @return task which runs with the state of the current thread
+     */
+    public static <V> Callable<V> wrap(Callable<V> task) {
+        TraceContext context = current();
+        if (context.isEmpty()) {
+            return task;
+        }
+        return () -> {
+            TraceContext previous = context.attach();
+            try {
+                return task.call();
+            } finally {
+                context.detach(previous);
+            }
+        };
+    }
+
+    /**
+     * @param supplier supplier to be run on another thread
+     * @param <T>      type of the result of the supplier
+     * @return supplier which runs with the state of the current thread
+     */
+    public static <T> Supplier<T> wrapSupplier(Supplier<T> supplier) {
+        TraceContext context = current();
+        if (context.isEmpty()) {
+            return supplier;
+        }
+        return () -> {
+            TraceContext previous = context.attach();
+            try {
+                return supplier.get();
+            } finally {
+                context.detach(previous);
+            }
+        };
+    }
+
+    /**
+     * @param function function to be run on another thread
+     * @param <T>      type of the argument of the function
+     * @param <R>      type of the result of the function
+     * @return function which runs with the state of the current thread
+     */
+    public static <T, R> Function<T, R> wrapFunction(Function<T, R> function) {
+        TraceContext context = current();
+        if (context.isEmpty()) {
+            return function;
+        }
+        return argument -> {
+            TraceContext previous = context.attach();
+            try {
+                return function.apply(argument);
+            } finally {
+                context.detach(previous);
+            }
+        };
+    }
+
+    /**
+     * @param consumer consumer to be run on another thread
+     * @param <T>      type of the argument of the consumer
+     * @return consumer which runs with the state of the current thread
+     */
+    public static <T> Consumer<T> wrapConsumer(Consumer<T> consumer) {
+        TraceContext context = current();
+        if (context.isEmpty()) {
+            return consumer;
+        }
+        return argument -> {
+            TraceContext previous = context.attach();
+            try {
+                consumer.accept(argument);
+            } finally {
+                context.detach(previous);
+            }
+        };
+    }
+
+    /**
+     * @param function function to be run on another thread, such as the handler of a stage
+     * @param <T>      type of the first argument of the function
+     * @param <U>      type of the second argument of the function
+     * @param <R>      type of the result of the function
+     * @return function which runs with the state of the current thread
+     */
+    public static <T, U, R> BiFunction<T, U, R> wrapBiFunction(BiFunction<T, U, R> function) {
+        TraceContext context = current();
+        if (context.isEmpty()) {
+            return function;
+        }
+        return (first, second) -> {
+            TraceContext previous = context.attach();
+            try {
+                return function.apply(first, second);
+            } finally {
+                context.detach(previous);
+            }
+        };
+    }
+
+    /**
+     * @param consumer consumer to be run on another thread, such as the action of a completed stage
+     * @param <T>      type of the first argument of the consumer
+     * @param <U>      type of the second argument of the consumer
+     * @return consumer which runs with the state of the current thread
+     */
+    public static <T, U> BiConsumer<T, U> wrapBiConsumer(BiConsumer<T, U> consumer) {
+        TraceContext context = current();
+        if (context.isEmpty()) {
+            return consumer;
+        }
+        return (first, second) -> {
+            TraceContext previous = context.attach();
+            try {
+                consumer.accept(first, second);
+            } finally {
+                context.detach(previous);
+            }
+        };
+    }
+
+    /**
+     * @param executor executor to run the tasks
+     * @return executor which runs each task with the state of the thread which submitted it
+     */
+    public static Executor wrap(Executor executor) {
+        return task -> executor.execute(wrap(task));
+    }
+
+    /**
+     * @param executorService executor service to run the tasks
+     * @return executor service which runs each task with the state of the thread which submitted it
+     */
+    public static ExecutorService wrap(ExecutorService executorService) {
+        return new ContextExecutorService(executorService);
+    }
+
+    /**
+     * Executor service which wraps the tasks as they are submitted. The tasks of <tt>submit</tt> and
+     * <tt>invokeAll</tt> are handed to {@link #execute(Runnable)} by {@link AbstractExecutorService} on the
+     * submitting thread.
+     */
+    private static final class ContextExecutorService extends AbstractExecutorService {
+
+        private final ExecutorService delegate;
+
+        private ContextExecutorService(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(wrap(command));
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+*  Unless required by applicable law or agreed to in writing,
+*  software distributed under the License is distributed on an
+*  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+*  KIND, either express or implied.  See the License for the
+*  specific language governing permissions and limitations
+*  under the License.
+*/
+
+package org.wso2.msf4j.analytics.common.tracing;
+
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exports trace events to DAS in the background.
+ * <p>
+ * Events are queued and sent by a single thread in batches, as a JSON array of up to {@link #getMaxBatchSize()}
+ * events, once the batch is full or {@link #getFlushInterval()} milliseconds after its first event. The connection
+ * to DAS is kept alive between the batches. Events which do not fit in the queue are dropped, so that tracing never
+ * holds up the requests.
+ */
+public class TraceEventExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(TraceEventExporter.class);
+
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 10000;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+    private static final int TIMEOUT = 5000;
+    private static final long SHUTDOWN_TIMEOUT = 10000;
+
+    private static final Map<String, TraceEventExporter> exporters = new ConcurrentHashMap<>();
+    private static final Gson gson = new Gson();
+
+    private final URL dasUrl;
+    private final BlockingQueue<TraceEvent> queue;
+    private final int maxBatchSize;
+    private final long flushInterval;
+    private final Thread exporterThread;
+    private final LongAdder exported = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile boolean running = true;
+
+    /**
+     * @param dasUrl        URL of the DAS HTTP receiver
+     * @param maxQueueSize  maximum number of events waiting to be sent
+     * @param maxBatchSize  maximum number of events sent in one request
+     * @param flushInterval maximum time in milliseconds an event waits for its batch to fill up
+     * @throws IOException if the URL is not valid
+     */
+    public TraceEventExporter(String dasUrl, int maxQueueSize, int maxBatchSize, long flushInterval)
+            throws IOException {
+        if (maxQueueSize <= 0 || maxBatchSize <= 0 || flushInterval < 0) {
+            throw new IllegalArgumentException("Invalid exporter configuration, queue size: " + maxQueueSize +
+                    " batch size: " + maxBatchSize + " flush interval: " + flushInterval);
+        }
+        this.dasUrl = new URL(dasUrl);
+        this.queue = new ArrayBlockingQueue<>(maxQueueSize);
+        this.maxBatchSize = maxBatchSize;
+        this.flushInterval = flushInterval;
+        exporterThread = new Thread(this::run, "TraceEventExporter");
+        exporterThread.setDaemon(true);
+        exporterThread.start();
+    }
+
+    /**
+     * Get the shared exporter of a DAS receiver, which is shut down with the JVM.
+     *
+     * @param dasUrl URL of the DAS HTTP receiver
+     * @return exporter of the receiver
+     */
+    public static TraceEventExporter forUrl(String dasUrl) {
+        return exporters.computeIfAbsent(dasUrl, url -> {
+            try {
+                TraceEventExporter exporter = new TraceEventExporter(url, DEFAULT_MAX_QUEUE_SIZE,
+                        DEFAULT_MAX_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL);
+                Runtime.getRuntime().addShutdownHook(new Thread(exporter::shutdown));
+                return exporter;
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Invalid DAS URL " + url, e);
+            }
+        });
+    }
+
+    /**
+     * Queue an event to be sent to DAS.
+     *
+     * @param traceEvent event to be sent
+     * @return false if the event was dropped since the queue is full or the exporter has been shut down
+     */
+    public boolean export(TraceEvent traceEvent) {
+        if (running && queue.offer(traceEvent)) {
+            return true;
+        }
+        dropped.increment();
+        if (log.isDebugEnabled()) {
+            log.debug("Dropped trace event " + traceEvent);
+        }
+        return false;
+    }
+
+    /**
+     * Stop accepting events and wait for the queued events to be sent.
+     */
+    public void shutdown() {
+        running = false;
+        exporterThread.interrupt();
+        try {
+            exporterThread.join(SHUTDOWN_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * @return number of events waiting to be sent
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return number of events accepted by DAS
+     */
+    public long getExportedCount() {
+        return exported.sum();
+    }
+
+    /**
+     * @return number of events dropped since the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return number of events which could not be sent or were rejected by DAS
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    private void run() {
+        List<TraceEvent> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                // Shutting down, send what has been collected and whatever is left in the queue
+                queue.drainTo(batch, maxBatchSize - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                send(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<TraceEvent> batch) throws InterruptedException {
+        if (!running) {
+            queue.drainTo(batch, maxBatchSize);
+            return;
+        }
+        TraceEvent first = queue.take();
+        batch.add(first);
+        long flushAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        while (batch.size() < maxBatchSize) {
+            if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = flushAt - System.nanoTime();
+            TraceEvent next = (remaining > 0) ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void send(List<TraceEvent> batch) {
+        if (log.isDebugEnabled()) {
+            log.debug("Publishing " + batch.size() + " trace events");
+        }
+        byte[] payload = gson.toJson(batch).getBytes(StandardCharsets.UTF_8);
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) dasUrl.openConnection();
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(payload.length);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(payload);
+            }
+            int status = connection.getResponseCode();
+            // The response has to be read fully for the connection to be reused
+            consume(status < HttpURLConnection.HTTP_BAD_REQUEST ?
+                    connection.getInputStream() : connection.getErrorStream());
+            if (status == HttpURLConnection.HTTP_OK) {
+                exported.add(batch.size());
+            } else {
+                failed.add(batch.size());
+                log.error("Error while publishing " + batch.size() + " trace events, DAS responded with " + status);
+            }
+        } catch (IOException e) {
+            failed.add(batch.size());
+            log.error("Error while publishing " + batch.size() + " trace events to " + dasUrl, e);
+            if (connection != null) {
+                try {
+                    consume(connection.getErrorStream());
+                } catch (IOException ignored) {
+                    connection.disconnect();
+                }
+            }
+        }
+    }
+
+    private static void consume(InputStream inputStream) throws IOException {
+        if (inputStream == null) {
+            return;
+        }
+        try (InputStream in = inputStream) {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) != -1) {
+                // Discard the response body
+            }
+        }
+    }
+}
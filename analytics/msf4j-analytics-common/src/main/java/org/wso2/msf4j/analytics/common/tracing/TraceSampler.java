@@ -0,0 +1,172 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+*  Unless required by applicable law or agreed to in writing,
+*  software distributed under the License is distributed on an
+*  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+*  KIND, either express or implied.  See the License for the
+*  specific language governing permissions and limitations
+*  under the License.
+*/
+
+package org.wso2.msf4j.analytics.common.tracing;
+
+import org.wso2.msf4j.ratelimit.RateLimiter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which requests are traced.
+ * <p>
+ * The decision is made once, by the first traced service or client a request passes through, and is passed on
+ * to the downstream services in the {@link TracingConstants#TRACE_SAMPLED_HEADER} header, so that a trace is either
+ * recorded in full or not at all. A new trace is sampled with the configured probability, as long as the rate
+ * limit allows it. Requests starting a trace which were not sampled can still be traced once they turn out to fail
+ * or to be slow, in which case the start and end events are recorded together after the response. Requests whose
+ * caller decided not to sample them are never traced, since the rest of the trace is not recorded.
+ */
+public class TraceSampler {
+
+    private static final String RATE_LIMIT_KEY = "traces";
+
+    private final double probability;
+    private final RateLimiter rateLimiter;
+    private volatile boolean sampleErrors;
+    private volatile long slowThreshold;
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder notSampled = new LongAdder();
+
+    /**
+     * @param probability        probability of sampling a new trace, between 0 and 1
+     * @param maxTracesPerSecond maximum number of new traces sampled per second, or 0 for no limit
+     */
+    public TraceSampler(double probability, int maxTracesPerSecond) {
+        if (probability < 0 || probability > 1 || maxTracesPerSecond < 0) {
+            throw new IllegalArgumentException("Invalid sampling configuration, probability: " + probability +
+                    " max traces per second: " + maxTracesPerSecond);
+        }
+        this.probability = probability;
+        this.rateLimiter = (maxTracesPerSecond > 0) ? new RateLimiter(maxTracesPerSecond, 1, TimeUnit.SECONDS, 0) :
+                null;
+    }
+
+    /**
+     * @return sampler which traces every request
+     */
+    public static TraceSampler always() {
+        return new TraceSampler(1, 0);
+    }
+
+    /**
+     * @param probability probability of sampling a new trace, between 0 and 1
+     * @return sampler which traces the given fraction of the requests
+     */
+    public static TraceSampler probabilistic(double probability) {
+        return new TraceSampler(probability, 0);
+    }
+
+    /**
+     * @param maxTracesPerSecond maximum number of new traces sampled per second
+     * @return sampler which traces up to the given number of requests per second
+     */
+    public static TraceSampler rateLimited(int maxTracesPerSecond) {
+        if (maxTracesPerSecond <= 0) {
+            throw new IllegalArgumentException("Max traces per second should be a positive value");
+        }
+        return new TraceSampler(1, maxTracesPerSecond);
+    }
+
+    /**
+     * Also trace the requests which were not sampled but failed with a <tt>5xx</tt> status.
+     *
+     * @return this sampler
+     */
+    public TraceSampler sampleErrors() {
+        this.sampleErrors = true;
+        return this;
+    }
+
+    /**
+     * Also trace the requests which were not sampled but took longer than the given time.
+     *
+     * @param threshold response time above which the requests are traced
+     * @param unit      time unit of the threshold
+     * @return this sampler
+     */
+    public TraceSampler sampleSlowerThan(long threshold, TimeUnit unit) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Slow request threshold should be a positive value");
+        }
+        this.slowThreshold = unit.toNanos(threshold);
+        return this;
+    }
+
+    /**
+     * Decide whether to trace a request.
+     *
+     * @param sampledHeader value of the {@link TracingConstants#TRACE_SAMPLED_HEADER} header sent by the caller,
+     *                      or null if the caller did not make a decision
+     * @return true if the request should be traced
+     */
+    public boolean sample(String sampledHeader) {
+        boolean decision;
+        if (sampledHeader != null) {
+            decision = !TracingConstants.NOT_SAMPLED.equals(sampledHeader);
+        } else {
+            decision = (probability >= 1 || ThreadLocalRandom.current().nextDouble() < probability) &&
+                    (rateLimiter == null || rateLimiter.tryAcquire(RATE_LIMIT_KEY) == 0);
+        }
+        if (decision) {
+            sampled.increment();
+        } else {
+            notSampled.increment();
+        }
+        return decision;
+    }
+
+    /**
+     * @return true if requests which were not sampled may still be traced once they complete
+     */
+    public boolean isLateSamplingEnabled() {
+        return sampleErrors || slowThreshold > 0;
+    }
+
+    /**
+     * Decide whether to trace a completed request which was not sampled.
+     *
+     * @param statusCode   status code of the response
+     * @param responseTime response time in nanoseconds
+     * @return true if the request failed or was slow, and such requests should be traced
+     */
+    public boolean sampleCompleted(int statusCode, long responseTime) {
+        boolean decision = (sampleErrors && statusCode >= 500) || (slowThreshold > 0 && responseTime > slowThreshold);
+        if (decision) {
+            sampled.increment();
+            notSampled.decrement();
+        }
+        return decision;
+    }
+
+    /**
+     * @return number of requests traced
+     */
+    public long getSampledCount() {
+        return sampled.sum();
+    }
+
+    /**
+     * @return number of requests not traced
+     */
+    public long getNotSampledCount() {
+        return notSampled.sum();
+    }
+}
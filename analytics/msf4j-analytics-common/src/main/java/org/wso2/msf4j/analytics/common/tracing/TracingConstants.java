@@ -29,6 +29,9 @@ public class TracingConstants {
     public static final String SERVER_TRACE_END = "STE";
     public static final String TRACE_ID_HEADER = "X-msf4j-trace-id";
     public static final String TRACE_ORIGIN_ID_HEADER = "X-msf4j-trace-origin-id";
+    public static final String TRACE_SAMPLED_HEADER = "X-msf4j-trace-sampled";
+    public static final String SAMPLED = "1";
+    public static final String NOT_SAMPLED = "0";
     public static final String DAS_RECEIVER_URL = "http://localhost:9763/endpoints/msf4jtracereceiver";
 
 }
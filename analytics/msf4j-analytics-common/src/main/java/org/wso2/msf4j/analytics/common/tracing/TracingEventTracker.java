@@ -27,6 +27,7 @@ package org.wso2.msf4j.analytics.common.tracing;
 public class TracingEventTracker {
 
     private static final ThreadLocal<TraceEvent> traceEventThreadLocal = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> sampledThreadLocal = new ThreadLocal<>();
 
     public static void setTraceEvent(TraceEvent traceEvent) {
         traceEventThreadLocal.set(traceEvent);
@@ -36,4 +37,42 @@ public class TracingEventTracker {
         return traceEventThreadLocal.get();
     }
 
+    /**
+     * Record the sampling decision of the request served by the current thread, so that the clients called
+     * while serving it follow the decision.
+     *
+     * @param sampled true if the request is traced
+     */
+    public static void setSampled(Boolean sampled) {
+        sampledThreadLocal.set(sampled);
+    }
+
+    /**
+     * @return sampling decision of the request served by the current thread, or null if there is none
+     */
+    public static Boolean getSampled() {
+        return sampledThreadLocal.get();
+    }
+
+    static void restore(TraceEvent traceEvent, Boolean sampled) {
+        if (traceEvent != null) {
+            traceEventThreadLocal.set(traceEvent);
+        } else {
+            traceEventThreadLocal.remove();
+        }
+        if (sampled != null) {
+            sampledThreadLocal.set(sampled);
+        } else {
+            sampledThreadLocal.remove();
+        }
+    }
+
+    /**
+     * Forget the trace event and the sampling decision of the request served by the current thread.
+     */
+    public static void clear() {
+        traceEventThreadLocal.remove();
+        sampledThreadLocal.remove();
+    }
+
 }
@@ -18,24 +18,13 @@
 
 package org.wso2.msf4j.analytics.common.tracing;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import java.util.Random;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.client.Entity;
-import javax.ws.rs.core.Response;
 
 /**
  * Utility methods of for MSF4J tracing.
  */
 public class TracingUtil {
 
-    private static final Logger log = LoggerFactory.getLogger(TracingUtil.class);
-    private static final ExecutorService executorService = Executors.newSingleThreadExecutor();
     private static final Random random = new Random();
 
     /**
@@ -48,17 +37,11 @@ public class TracingUtil {
     }
 
     /**
-     * Publish trace event to DAS in the background.
+     * Publish trace event to DAS in the background. Events to the same DAS receiver are sent in batches
+     * by a shared {@link TraceEventExporter}.
      */
     public static void pushToDAS(TraceEvent traceEvent, String dasUrl) {
-        Future<?> future = executorService.submit(() -> {
-            log.debug("Publishing trace event " + traceEvent);
-            if (ClientBuilder.newClient().target(dasUrl)
-                    .request().post(Entity.json(traceEvent)).getStatus() != Response.Status.OK.getStatusCode()) {
-                log.error("Error while publishing trace event " + traceEvent);
-            }
-        });
-        future.isDone(); // Added to avoid findbugs warning
+        TraceEventExporter.forUrl(dasUrl).export(traceEvent);
     }
 
 }
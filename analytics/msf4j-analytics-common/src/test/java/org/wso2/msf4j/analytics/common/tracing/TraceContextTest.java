@@ -0,0 +1,131 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+*  Unless required by applicable law or agreed to in writing,
+*  software distributed under the License is distributed on an
+*  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+*  KIND, either express or implied.  See the License for the
+*  specific language governing permissions and limitations
+*  under the License.
+*/
+
+package org.wso2.msf4j.analytics.common.tracing;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.msf4j.Deadline;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests carrying the {@link TraceContext} over to the threads of an executor.
+ */
+public class TraceContextTest {
+
+    @Test
+    public void testExecutor() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            TraceEvent traceEvent = startRequest();
+            Executor executor = TraceContext.wrap((Executor) executorService);
+            CompletableFuture<TraceEvent> seen = new CompletableFuture<>();
+            executor.execute(() -> seen.complete(TracingEventTracker.getTraceEvent()));
+            Assert.assertSame(seen.get(5, TimeUnit.SECONDS), traceEvent);
+            Assert.assertNull(executorService.submit(TracingEventTracker::getTraceEvent).get(5, TimeUnit.SECONDS));
+        } finally {
+            endRequest();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExecutorService() throws Exception {
+        ExecutorService executorService = TraceContext.wrap(Executors.newSingleThreadExecutor());
+        try {
+            TraceEvent traceEvent = startRequest();
+            Deadline deadline = Deadline.current();
+            Future<TraceEvent> seen = executorService.submit(TracingEventTracker::getTraceEvent);
+            Future<Deadline> seenDeadline = executorService.submit(Deadline::current);
+            Future<Boolean> seenSampled = executorService.submit(TracingEventTracker::getSampled);
+            Assert.assertSame(seen.get(5, TimeUnit.SECONDS), traceEvent);
+            Assert.assertSame(seenDeadline.get(5, TimeUnit.SECONDS), deadline);
+            Assert.assertEquals(seenSampled.get(5, TimeUnit.SECONDS), Boolean.TRUE);
+        } finally {
+            endRequest();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCompletionStages() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            TraceEvent traceEvent = startRequest();
+            CompletableFuture<TraceEvent> seen = CompletableFuture
+                    .supplyAsync(TraceContext.wrapSupplier(TracingEventTracker::getTraceEvent), executorService)
+                    .thenApplyAsync(TraceContext.wrapFunction(first -> {
+                        Assert.assertSame(first, TracingEventTracker.getTraceEvent());
+                        return TracingEventTracker.getTraceEvent();
+                    }), executorService);
+            Assert.assertSame(seen.get(5, TimeUnit.SECONDS), traceEvent);
+        } finally {
+            endRequest();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPreviousContextIsRestored() {
+        TraceEvent traceEvent = startRequest();
+        TraceEvent[] seen = new TraceEvent[1];
+        Runnable task = TraceContext.wrap(() -> {
+            seen[0] = TracingEventTracker.getTraceEvent();
+        });
+        endRequest();
+
+        TraceEvent other = startRequest();
+        try {
+            task.run();
+            Assert.assertSame(seen[0], traceEvent);
+            Assert.assertSame(TracingEventTracker.getTraceEvent(), other);
+        } finally {
+            endRequest();
+        }
+        task.run();
+        Assert.assertNull(TracingEventTracker.getTraceEvent());
+        Assert.assertNull(TracingEventTracker.getSampled());
+        Assert.assertFalse(Deadline.current().isBounded());
+    }
+
+    @Test
+    public void testNothingToCarryOver() {
+        Runnable task = () -> { };
+        Assert.assertTrue(TraceContext.current().isEmpty());
+        Assert.assertSame(TraceContext.wrap(task), task);
+    }
+
+    private static TraceEvent startRequest() {
+        TraceEvent traceEvent = new TraceEvent(TracingConstants.SERVER_TRACE_START, "trace", "origin", 0);
+        TracingEventTracker.setTraceEvent(traceEvent);
+        TracingEventTracker.setSampled(true);
+        Deadline.attach(Deadline.after(1, TimeUnit.MINUTES));
+        return traceEvent;
+    }
+
+    private static void endRequest() {
+        TracingEventTracker.clear();
+        Deadline.detach(null);
+    }
+}
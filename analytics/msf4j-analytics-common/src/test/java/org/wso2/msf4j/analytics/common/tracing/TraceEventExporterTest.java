@@ -0,0 +1,164 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+*  Unless required by applicable law or agreed to in writing,
+*  software distributed under the License is distributed on an
+*  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+*  KIND, either express or implied.  See the License for the
+*  specific language governing permissions and limitations
+*  under the License.
+*/
+
+package org.wso2.msf4j.analytics.common.tracing;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the batching, queuing and shutdown of {@link TraceEventExporter} against a local stand-in for the DAS
+ * receiver.
+ */
+public class TraceEventExporterTest {
+
+    private final Gson gson = new Gson();
+    private final BlockingQueue<TraceEvent[]> batches = new LinkedBlockingQueue<>();
+    private HttpServer receiver;
+    private volatile int status = 200;
+    private volatile CountDownLatch received = new CountDownLatch(0);
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    private String startReceiver() throws IOException {
+        receiver = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        receiver.createContext("/tracing", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1024];
+                int length;
+                while ((length = in.read(buffer)) != -1) {
+                    body.write(buffer, 0, length);
+                }
+                batches.add(gson.fromJson(new String(body.toByteArray(), StandardCharsets.UTF_8),
+                        TraceEvent[].class));
+            }
+            received.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        receiver.start();
+        return "http://localhost:" + receiver.getAddress().getPort() + "/tracing";
+    }
+
+    @AfterMethod
+    public void stopReceiver() {
+        if (receiver != null) {
+            receiver.stop(0);
+        }
+        batches.clear();
+    }
+
+    private static TraceEvent event(int i) {
+        return new TraceEvent(TracingConstants.SERVER_TRACE_START, "trace-" + i, "origin", i);
+    }
+
+    private List<String> nextBatch() throws InterruptedException {
+        TraceEvent[] batch = batches.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(batch, "No batch received");
+        List<String> traceIds = new ArrayList<>();
+        for (TraceEvent traceEvent : batch) {
+            traceIds.add(traceEvent.getTraceId());
+        }
+        return traceIds;
+    }
+
+    @Test
+    public void testBatchBySize() throws Exception {
+        TraceEventExporter exporter = new TraceEventExporter(startReceiver(), 100, 5, TimeUnit.MINUTES.toMillis(1));
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(exporter.export(event(i)));
+        }
+        Assert.assertEquals(nextBatch().size(), 5);
+        Assert.assertEquals(nextBatch().size(), 5);
+        exporter.shutdown();
+        Assert.assertEquals(exporter.getExportedCount(), 10);
+        Assert.assertEquals(exporter.getFailedCount(), 0);
+    }
+
+    @Test
+    public void testBatchByTime() throws Exception {
+        TraceEventExporter exporter = new TraceEventExporter(startReceiver(), 100, 100, 100);
+        for (int i = 0; i < 3; i++) {
+            exporter.export(event(i));
+        }
+        List<String> batch = nextBatch();
+        Assert.assertEquals(batch.get(0), "trace-0");
+        Assert.assertEquals(batch.size(), 3);
+        exporter.shutdown();
+    }
+
+    @Test
+    public void testShutdownSendsQueuedEvents() throws Exception {
+        TraceEventExporter exporter = new TraceEventExporter(startReceiver(), 100, 100, TimeUnit.MINUTES.toMillis(1));
+        exporter.export(event(0));
+        exporter.export(event(1));
+        exporter.shutdown();
+        Assert.assertEquals(nextBatch().size(), 2);
+        Assert.assertEquals(exporter.getExportedCount(), 2);
+        Assert.assertFalse(exporter.export(event(2)));
+    }
+
+    @Test
+    public void testBoundedQueue() throws Exception {
+        received = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        TraceEventExporter exporter = new TraceEventExporter(startReceiver(), 2, 100, 0);
+        exporter.export(event(0));
+        // The first event is held up in the receiver while the others fill the queue
+        Assert.assertTrue(received.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(exporter.export(event(1)));
+        Assert.assertTrue(exporter.export(event(2)));
+        Assert.assertFalse(exporter.export(event(3)));
+        Assert.assertEquals(exporter.getQueueSize(), 2);
+        Assert.assertEquals(exporter.getDroppedCount(), 1);
+        release.countDown();
+        exporter.shutdown();
+        Assert.assertEquals(exporter.getExportedCount(), 3);
+    }
+
+    @Test
+    public void testRejectedBatch() throws Exception {
+        status = 500;
+        TraceEventExporter exporter = new TraceEventExporter(startReceiver(), 100, 100, 0);
+        exporter.export(event(0));
+        nextBatch();
+        exporter.shutdown();
+        Assert.assertEquals(exporter.getExportedCount(), 0);
+        Assert.assertEquals(exporter.getFailedCount(), 1);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+*  Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+*  WSO2 Inc. licenses this file to you under the Apache License,
+*  Version 2.0 (the "License"); you may not use this file except
+*  in compliance with the License.
+*  You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+*  Unless required by applicable law or agreed to in writing,
+*  software distributed under the License is distributed on an
+*  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+*  KIND, either express or implied.  See the License for the
+*  specific language governing permissions and limitations
+*  under the License.
+*/
+
+package org.wso2.msf4j.analytics.common.tracing;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the sampling decisions of {@link TraceSampler}.
+ */
+public class TraceSamplerTest {
+
+    @Test
+    public void testAlways() {
+        TraceSampler sampler = TraceSampler.always();
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(sampler.sample(null));
+        }
+        Assert.assertEquals(sampler.getSampledCount(), 100);
+        Assert.assertFalse(sampler.isLateSamplingEnabled());
+    }
+
+    @Test
+    public void testCallerDecisionIsFollowed() {
+        TraceSampler never = TraceSampler.probabilistic(0);
+        Assert.assertFalse(never.sample(null));
+        Assert.assertTrue(never.sample(TracingConstants.SAMPLED));
+        Assert.assertFalse(TraceSampler.always().sample(TracingConstants.NOT_SAMPLED));
+    }
+
+    @Test
+    public void testProbabilistic() {
+        TraceSampler sampler = TraceSampler.probabilistic(0.25);
+        int sampled = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (sampler.sample(null)) {
+                sampled++;
+            }
+        }
+        Assert.assertTrue(sampled > 2000 && sampled < 3000, "Sampled " + sampled + " of 10000");
+        Assert.assertEquals(sampler.getSampledCount() + sampler.getNotSampledCount(), 10000);
+    }
+
+    @Test
+    public void testRateLimited() {
+        TraceSampler sampler = TraceSampler.rateLimited(5);
+        int sampled = 0;
+        for (int i = 0; i < 100; i++) {
+            if (sampler.sample(null)) {
+                sampled++;
+            }
+        }
+        // A second worth of traces can be sampled at once, the rest have to wait for the next second
+        Assert.assertEquals(sampled, 5);
+    }
+
+    @Test
+    public void testLateSampling() {
+        TraceSampler sampler = TraceSampler.probabilistic(0).sampleErrors()
+                .sampleSlowerThan(500, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(sampler.isLateSamplingEnabled());
+        Assert.assertFalse(sampler.sample(null));
+        Assert.assertFalse(sampler.sampleCompleted(200, TimeUnit.MILLISECONDS.toNanos(100)));
+        Assert.assertFalse(sampler.sampleCompleted(404, TimeUnit.MILLISECONDS.toNanos(100)));
+        Assert.assertTrue(sampler.sampleCompleted(503, TimeUnit.MILLISECONDS.toNanos(100)));
+        Assert.assertTrue(sampler.sampleCompleted(200, TimeUnit.SECONDS.toNanos(1)));
+    }
+}
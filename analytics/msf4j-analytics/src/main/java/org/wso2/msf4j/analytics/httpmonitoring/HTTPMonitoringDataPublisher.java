@@ -27,6 +27,7 @@ import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.exception.TransportException;
 import org.wso2.carbon.databridge.commons.utils.DataBridgeCommonsUtils;
 import org.wso2.msf4j.analytics.httpmonitoring.config.model.DasConfig;
+import org.wso2.msf4j.analytics.httpmonitoring.config.model.PublisherConfig;
 import org.wso2.msf4j.util.SystemVariableUtil;
 
 import java.net.Inet4Address;
@@ -55,6 +56,7 @@ public final class HTTPMonitoringDataPublisher {
 
     private DataPublisher dataPublisher;
     private Map<String, String> arbitraryAttributes;
+    private final HTTPMonitoringEventQueue eventQueue;
 
     static {
         HTTP_MONITORING_STREAM_ID = DataBridgeCommonsUtils.generateStreamId(HTTP_MONITORING_STREAM, VERSION);
@@ -68,7 +70,12 @@ public final class HTTPMonitoringDataPublisher {
     }
 
     public HTTPMonitoringDataPublisher(DasConfig dasConfig) {
+        this(dasConfig, new PublisherConfig());
+    }
+
+    public HTTPMonitoringDataPublisher(DasConfig dasConfig, PublisherConfig publisherConfig) {
         init(dasConfig);
+        eventQueue = new HTTPMonitoringEventQueue(publisherConfig, this::publishEvent);
         // Destroy data publisher at shutdown
         Thread thread = new Thread(this::destroy);
         Runtime.getRuntime().addShutdownHook(thread);
@@ -130,6 +137,8 @@ public final class HTTPMonitoringDataPublisher {
     }
 
     private void destroy() {
+        // Publish the queued events before shutting down the data publisher
+        eventQueue.shutdown();
         if (dataPublisher != null) {
             try {
                 dataPublisher.shutdownWithAgent();
@@ -141,6 +150,18 @@ public final class HTTPMonitoringDataPublisher {
         }
     }
 
+    /**
+     * @return queue through which the events are published asynchronously
+     */
+    public HTTPMonitoringEventQueue getEventQueue() {
+        return eventQueue;
+    }
+
+    /**
+     * Publish an event on the calling thread. The event is copied, hence it can be reused once this returns.
+     *
+     * @param httpMonitoringEvent event to be published
+     */
     public void publishEvent(HTTPMonitoringEvent httpMonitoringEvent) {
         Object[] meta = new Object[4];
         meta[0] = httpMonitoringEvent.getTimestamp();
@@ -37,6 +37,7 @@ public class HTTPMonitoringEvent {
     private long requestSizeBytes;
     private String activityId;
     private String parentRequest;
+    private boolean skipped;
 
     public long getTimestamp() {
         return timestamp;
@@ -174,4 +175,15 @@ public class HTTPMonitoringEvent {
         this.parentRequest = parentRequest;
     }
 
+    /**
+     * @return true if the event could not be filled and should not be published
+     */
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    public void setSkipped(boolean skipped) {
+        this.skipped = skipped;
+    }
+
 }
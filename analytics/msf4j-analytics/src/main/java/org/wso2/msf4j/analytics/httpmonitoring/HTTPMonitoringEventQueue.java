@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.analytics.httpmonitoring;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.msf4j.analytics.httpmonitoring.config.model.PublisherConfig;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free ring buffer which hands the HTTP monitoring events over from the request threads to a background
+ * thread, which publishes them in batches.
+ * <p>
+ * The events are preallocated and reused. A request thread claims a slot with {@link #next()}, fills the event
+ * returned by {@link #get(long)} and makes it visible to the publisher with {@link #publish(long)}, or hands the
+ * slot back with {@link #discard(long)} if the event could not be filled. Request threads
+ * never wait for the publisher; events which do not fit in the queue are dropped according to the
+ * {@link PublisherConfig.OverflowPolicy}.
+ */
+public class HTTPMonitoringEventQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(HTTPMonitoringEventQueue.class);
+
+    private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final HTTPMonitoringEvent[] events;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final int batchSize;
+    private final PublisherConfig.OverflowPolicy overflowPolicy;
+    private final int sampleRate;
+    private final Consumer<HTTPMonitoringEvent> publisher;
+    private final Thread publisherThread;
+
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong sampled = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder publishedEvents = new LongAdder();
+    private volatile long consumed;
+    private volatile boolean waiting;
+    private volatile boolean running = true;
+
+    /**
+     * @param config    size and overflow policy of the queue
+     * @param publisher invoked on the background thread for each event, should not keep the event after returning
+     */
+    public HTTPMonitoringEventQueue(PublisherConfig config, Consumer<HTTPMonitoringEvent> publisher) {
+        if (config.getQueueSize() <= 0 || config.getBatchSize() <= 0 || config.getSampleRate() <= 0) {
+            throw new IllegalArgumentException("Queue size, batch size and sample rate should be positive values");
+        }
+        int capacity = Math.max(1, Integer.highestOneBit(Math.min(config.getQueueSize(), 1 << 30) - 1) << 1);
+        events = new HTTPMonitoringEvent[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            events[i] = new HTTPMonitoringEvent();
+            published.set(i, -1);
+        }
+        mask = capacity - 1;
+        batchSize = Math.min(config.getBatchSize(), capacity);
+        overflowPolicy = config.getOverflowPolicy();
+        sampleRate = config.getSampleRate();
+        this.publisher = publisher;
+        publisherThread = new Thread(this::run, "HTTPMonitoringPublisher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+    }
+
+    /**
+     * Claim the next slot of the queue.
+     *
+     * @return sequence of the claimed slot, or -1 if the event should be dropped
+     */
+    public long next() {
+        while (true) {
+            long current = claimed.get();
+            long depth = current - consumed;
+            if (!running || depth >= events.length) {
+                dropped.increment();
+                return -1;
+            }
+            if (overflowPolicy == PublisherConfig.OverflowPolicy.SAMPLE && depth >= events.length / 2 &&
+                    sampled.incrementAndGet() % sampleRate != 0) {
+                dropped.increment();
+                return -1;
+            }
+            if (claimed.compareAndSet(current, current + 1)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * @param sequence sequence returned by {@link #next()}
+     * @return event of the claimed slot, which still holds the values of an earlier event
+     */
+    public HTTPMonitoringEvent get(long sequence) {
+        return events[(int) sequence & mask];
+    }
+
+    /**
+     * Hand the event of a claimed slot over to the publisher. Every claimed slot should be published, since the
+     * publisher waits for the slots in order.
+     *
+     * @param sequence sequence returned by {@link #next()}
+     */
+    public void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+        // The publisher only waits for the slot after the last one it has published
+        if (waiting && sequence == consumed) {
+            LockSupport.unpark(publisherThread);
+        }
+    }
+
+    /**
+     * Hand a claimed slot back without publishing its event, which still holds the values of an earlier event.
+     *
+     * @param sequence sequence returned by {@link #next()}
+     */
+    public void discard(long sequence) {
+        get(sequence).setSkipped(true);
+        dropped.increment();
+        publish(sequence);
+    }
+
+    /**
+     * Stop accepting events and wait for the queued events to be published.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(publisherThread);
+        try {
+            publisherThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return number of events waiting to be published
+     */
+    public long getQueueDepth() {
+        return Math.max(0, claimed.get() - consumed);
+    }
+
+    public int getCapacity() {
+        return events.length;
+    }
+
+    /**
+     * @return number of events dropped since the queue was full, left out by sampling, or discarded
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return number of events handed over to the publisher
+     */
+    public long getPublishedCount() {
+        return publishedEvents.sum();
+    }
+
+    private void run() {
+        while (true) {
+            long next = consumed;
+            int count = 0;
+            while (count < batchSize && published.get((int) (next + count) & mask) == next + count) {
+                count++;
+            }
+            if (count == 0) {
+                if (!running && claimed.get() == next) {
+                    return;
+                }
+                waiting = true;
+                // Check again after announcing the wait, a producer may have published in between
+                if (published.get((int) next & mask) != next) {
+                    LockSupport.parkNanos(this, IDLE_WAIT);
+                }
+                waiting = false;
+                continue;
+            }
+            int publishedCount = 0;
+            for (int i = 0; i < count; i++) {
+                HTTPMonitoringEvent event = events[(int) (next + i) & mask];
+                if (event.isSkipped()) {
+                    event.setSkipped(false);
+                    continue;
+                }
+                try {
+                    publisher.accept(event);
+                } catch (RuntimeException e) {
+                    logger.error("Error when publishing the HTTP monitoring event", e);
+                }
+                publishedCount++;
+            }
+            publishedEvents.add(publishedCount);
+            // Hand the slots back to the request threads only after the batch has been published
+            consumed = next + count;
+        }
+    }
+}
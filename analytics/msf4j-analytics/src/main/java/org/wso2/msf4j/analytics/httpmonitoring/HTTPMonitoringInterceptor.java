@@ -59,8 +59,22 @@ public class HTTPMonitoringInterceptor implements Interceptor {
         }
         HTTPMonitoringConfig httpMonitoringConfig = HTTPMonitoringConfigBuilder.build();
         enabled = httpMonitoringConfig.isEnabled();
-        httpMonitoringDataPublisher = enabled ? new HTTPMonitoringDataPublisher(httpMonitoringConfig.getDas()) :
-                null;
+        httpMonitoringDataPublisher = enabled ? new HTTPMonitoringDataPublisher(httpMonitoringConfig.getDas(),
+                httpMonitoringConfig.getPublisher()) : null;
+    }
+
+    /**
+     * @return number of events waiting to be published
+     */
+    public long getQueuedEventCount() {
+        return enabled ? httpMonitoringDataPublisher.getEventQueue().getQueueDepth() : 0;
+    }
+
+    /**
+     * @return number of events dropped since the publishing queue was full
+     */
+    public long getDroppedEventCount() {
+        return enabled ? httpMonitoringDataPublisher.getEventQueue().getDroppedCount() : 0;
     }
 
     /**
@@ -144,7 +158,7 @@ public class HTTPMonitoringInterceptor implements Interceptor {
 
         private static final String DEFAULT_PARENT_REQUEST = "DEFAULT";
 
-        private static final String MONITORING_EVENT = "MONITORING_EVENT";
+        private static final String START_NANO_TIME = "MONITORING_START_NANO_TIME";
 
         private static final String ACTIVITY_ID = "activity-id";
 
@@ -187,9 +201,7 @@ public class HTTPMonitoringInterceptor implements Interceptor {
 
         @Override
         public boolean preCall(Request request, Response responder, ServiceMethodInfo serviceMethodInfo) {
-            HTTPMonitoringEvent httpMonitoringEvent = new HTTPMonitoringEvent();
-            httpMonitoringEvent.setTimestamp(System.currentTimeMillis());
-            httpMonitoringEvent.setStartNanoTime(System.nanoTime());
+            serviceMethodInfo.setAttribute(START_NANO_TIME, System.nanoTime());
             if (serviceClass == null) {
                 Method method = serviceMethodInfo.getMethod();
                 Class<?> serviceClass = method.getDeclaringClass();
@@ -201,6 +213,41 @@ public class HTTPMonitoringInterceptor implements Interceptor {
                     servicePath = path.value();
                 }
             }
+            return true;
+        }
+
+        @Override
+        public void postCall(Request request, int status, ServiceMethodInfo serviceMethodInfo) {
+            Object startNanoTime = serviceMethodInfo.getAttribute(START_NANO_TIME);
+            if (startNanoTime == null) {
+                return;
+            }
+            long responseTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - (Long) startNanoTime);
+            HTTPMonitoringEventQueue eventQueue = httpMonitoringDataPublisher.getEventQueue();
+            long sequence = eventQueue.next();
+            if (sequence < 0) {
+                return;
+            }
+            // The event is reused, hence every field has to be set
+            HTTPMonitoringEvent httpMonitoringEvent = eventQueue.get(sequence);
+            boolean filled = false;
+            try {
+                fillEvent(httpMonitoringEvent, request, status, (Long) startNanoTime, responseTime);
+                filled = true;
+            } finally {
+                // The slot is handed back either way, since the publisher waits for the slots in order
+                if (filled) {
+                    eventQueue.publish(sequence);
+                } else {
+                    eventQueue.discard(sequence);
+                }
+            }
+        }
+
+        private void fillEvent(HTTPMonitoringEvent httpMonitoringEvent, Request request, int status,
+                               long startNanoTime, long responseTime) {
+            httpMonitoringEvent.setTimestamp(System.currentTimeMillis() - responseTime);
+            httpMonitoringEvent.setStartNanoTime(startNanoTime);
             httpMonitoringEvent.setServiceClass(serviceClass);
             httpMonitoringEvent.setServiceName(serviceName);
             httpMonitoringEvent.setServiceMethod(serviceMethod);
@@ -212,26 +259,13 @@ public class HTTPMonitoringInterceptor implements Interceptor {
             httpMonitoringEvent.setHttpMethod(request.getHttpMethod());
             httpMonitoringEvent.setContentType(httpHeaders.get(HttpHeaders.CONTENT_TYPE));
             String contentLength = httpHeaders.get(HttpHeaders.CONTENT_LENGTH);
-            if (contentLength != null) {
-                httpMonitoringEvent.setRequestSizeBytes(Long.parseLong(contentLength));
-            }
+            httpMonitoringEvent.setRequestSizeBytes(contentLength != null ? Long.parseLong(contentLength) : 0);
             httpMonitoringEvent.setReferrer(httpHeaders.get(REFERER));
 
             this.handleTracing(request, httpMonitoringEvent);
 
-            serviceMethodInfo.setAttribute(MONITORING_EVENT, httpMonitoringEvent);
-
-            return true;
-        }
-
-        @Override
-        public void postCall(Request request, int status, ServiceMethodInfo serviceMethodInfo) {
-            HTTPMonitoringEvent httpMonitoringEvent =
-                    (HTTPMonitoringEvent) serviceMethodInfo.getAttribute(MONITORING_EVENT);
-            httpMonitoringEvent.setResponseTime(
-                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - httpMonitoringEvent.getStartNanoTime()));
+            httpMonitoringEvent.setResponseTime(responseTime);
             httpMonitoringEvent.setResponseHttpStatusCode(status);
-            httpMonitoringDataPublisher.publishEvent(httpMonitoringEvent);
         }
     }
 }
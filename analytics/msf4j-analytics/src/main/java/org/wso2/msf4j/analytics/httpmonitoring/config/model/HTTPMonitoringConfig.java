@@ -24,6 +24,8 @@ public class HTTPMonitoringConfig {
 
     private DasConfig das = new DasConfig();
 
+    private PublisherConfig publisher = new PublisherConfig();
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -39,4 +41,12 @@ public class HTTPMonitoringConfig {
     public void setDas(DasConfig das) {
         this.das = das;
     }
+
+    public PublisherConfig getPublisher() {
+        return publisher;
+    }
+
+    public void setPublisher(PublisherConfig publisher) {
+        this.publisher = publisher;
+    }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.analytics.httpmonitoring.config.model;
+
+/**
+ * Configuration for the queue between the HTTP Monitoring Interceptor and the Data Publisher
+ */
+public class PublisherConfig {
+
+    /**
+     * What to do with the events of requests served while the queue is filling up.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Drop the events which do not fit in the queue.
+         */
+        DROP,
+        /**
+         * Keep only one in {@link #getSampleRate()} events once the queue is half full, and drop the events which
+         * do not fit in the queue.
+         */
+        SAMPLE
+    }
+
+    private int queueSize = 8192;
+
+    private int batchSize = 200;
+
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+    private int sampleRate = 10;
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+}
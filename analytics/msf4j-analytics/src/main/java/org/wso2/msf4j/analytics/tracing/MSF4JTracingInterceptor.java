@@ -21,11 +21,13 @@ import org.wso2.msf4j.Request;
 import org.wso2.msf4j.Response;
 import org.wso2.msf4j.ServiceMethodInfo;
 import org.wso2.msf4j.analytics.common.tracing.TraceEvent;
+import org.wso2.msf4j.analytics.common.tracing.TraceSampler;
 import org.wso2.msf4j.analytics.common.tracing.TracingConstants;
 import org.wso2.msf4j.analytics.common.tracing.TracingEventTracker;
 import org.wso2.msf4j.analytics.common.tracing.TracingUtil;
 
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Interceptor for tracing server side request/response flows.
@@ -33,11 +35,12 @@ import java.util.Date;
 // TODO: Write tests and add the OSGi mode support
 public class MSF4JTracingInterceptor implements Interceptor {
 
-    private static final String RESPONDER_ATTRIBUTE = "responder-attribute";
     private static final String TRACE_EVENT_ATTRIBUTE = "trace-event-attribute";
+    private static final String START_TIME_ATTRIBUTE = "trace-start-time-attribute";
     private String instanceId;
     private String instanceName;
     private String dasUrl;
+    private TraceSampler sampler;
 
     /**
      * Constructor of the MSF4JTracingInterceptor.
@@ -55,9 +58,21 @@ public class MSF4JTracingInterceptor implements Interceptor {
      * @param dasUrl           URL of the receiver of DAS server
      */
     public MSF4JTracingInterceptor(String microServiceName, String dasUrl) {
+        this(microServiceName, dasUrl, TraceSampler.always());
+    }
+
+    /**
+     * Constructor of the MSF4JTracingInterceptor.
+     *
+     * @param microServiceName Name of the Microservice
+     * @param dasUrl           URL of the receiver of DAS server
+     * @param sampler          Sampler deciding which of the requests starting a trace are traced
+     */
+    public MSF4JTracingInterceptor(String microServiceName, String dasUrl, TraceSampler sampler) {
         this.instanceId = TracingUtil.generateUniqueId();
         this.instanceName = microServiceName;
         this.dasUrl = dasUrl;
+        this.sampler = sampler;
     }
 
     /**
@@ -66,28 +81,23 @@ public class MSF4JTracingInterceptor implements Interceptor {
      */
     @Override
     public boolean preCall(Request request, Response responder, ServiceMethodInfo serviceMethodInfo) throws Exception {
-        long time = new Date().getTime();
-        serviceMethodInfo.setAttribute(RESPONDER_ATTRIBUTE, responder);
-        String traceOriginId = request.getHeader(TracingConstants.TRACE_ORIGIN_ID_HEADER);
-        String serverTraceId;
-        if (traceOriginId == null) {
-            traceOriginId = TracingUtil.generateUniqueId();
-            serverTraceId = traceOriginId;
-        } else {
-            serverTraceId = TracingUtil.generateUniqueId();
+        String sampledHeader = request.getHeader(TracingConstants.TRACE_SAMPLED_HEADER);
+        // Only the requests starting a trace are sampled late, the decision of the caller is followed otherwise
+        boolean lateSampling = sampledHeader == null && sampler.isLateSamplingEnabled();
+        if (sampledHeader == null && request.getHeader(TracingConstants.TRACE_ORIGIN_ID_HEADER) != null) {
+            // Callers which do not sample trace every request
+            sampledHeader = TracingConstants.SAMPLED;
         }
-        String traceParentId = request.getHeader(TracingConstants.TRACE_ID_HEADER);
-        TraceEvent serverTraceEvent = new TraceEvent(
-                TracingConstants.SERVER_TRACE_START,
-                serverTraceId,
-                traceOriginId,
-                time
-        );
-        serverTraceEvent.setInstanceId(instanceId);
-        serverTraceEvent.setInstanceName(instanceName);
-        serverTraceEvent.setParentId(traceParentId);
-        serverTraceEvent.setHttpMethod(request.getHttpMethod());
-        serverTraceEvent.setUrl(request.getUri());
+        boolean sampled = sampler.sample(sampledHeader);
+        TracingEventTracker.setSampled(sampled);
+        if (!sampled) {
+            TracingEventTracker.setTraceEvent(null);
+            if (lateSampling) {
+                serviceMethodInfo.setAttribute(START_TIME_ATTRIBUTE, System.nanoTime());
+            }
+            return true;
+        }
+        TraceEvent serverTraceEvent = createStartEvent(request, new Date().getTime());
         TracingEventTracker.setTraceEvent(serverTraceEvent);
         serviceMethodInfo.setAttribute(TRACE_EVENT_ATTRIBUTE, serverTraceEvent);
         TracingUtil.pushToDAS(serverTraceEvent, dasUrl);
@@ -101,7 +111,17 @@ public class MSF4JTracingInterceptor implements Interceptor {
     @Override
     public void postCall(Request request, int status, ServiceMethodInfo serviceMethodInfo) throws Exception {
         long time = new Date().getTime();
+        TracingEventTracker.clear();
         TraceEvent traceEvent = (TraceEvent) serviceMethodInfo.getAttribute(TRACE_EVENT_ATTRIBUTE);
+        Object startTime = serviceMethodInfo.getAttribute(START_TIME_ATTRIBUTE);
+        if (traceEvent == null && startTime != null) {
+            // Record the failed or slow requests which were not sampled, now that they have completed
+            long responseTime = System.nanoTime() - (Long) startTime;
+            if (sampler.sampleCompleted(status, responseTime)) {
+                traceEvent = createStartEvent(request, time - TimeUnit.NANOSECONDS.toMillis(responseTime));
+                TracingUtil.pushToDAS(traceEvent, dasUrl);
+            }
+        }
         if (traceEvent != null) {
             TraceEvent endTraceEvent = new TraceEvent(
                     TracingConstants.SERVER_TRACE_END,
@@ -109,9 +129,32 @@ public class MSF4JTracingInterceptor implements Interceptor {
                     traceEvent.getOriginId(),
                     time
             );
-            Response responder = (Response) serviceMethodInfo.getAttribute(RESPONDER_ATTRIBUTE);
-            endTraceEvent.setStatusCode(responder.getStatusCode());
+            endTraceEvent.setStatusCode(status);
             TracingUtil.pushToDAS(endTraceEvent, dasUrl);
         }
     }
+
+    private TraceEvent createStartEvent(Request request, long time) {
+        String traceOriginId = request.getHeader(TracingConstants.TRACE_ORIGIN_ID_HEADER);
+        String serverTraceId;
+        if (traceOriginId == null) {
+            traceOriginId = TracingUtil.generateUniqueId();
+            serverTraceId = traceOriginId;
+        } else {
+            serverTraceId = TracingUtil.generateUniqueId();
+        }
+        String traceParentId = request.getHeader(TracingConstants.TRACE_ID_HEADER);
+        TraceEvent serverTraceEvent = new TraceEvent(
+                TracingConstants.SERVER_TRACE_START,
+                serverTraceId,
+                traceOriginId,
+                time
+        );
+        serverTraceEvent.setInstanceId(instanceId);
+        serverTraceEvent.setInstanceName(instanceName);
+        serverTraceEvent.setParentId(traceParentId);
+        serverTraceEvent.setHttpMethod(request.getHttpMethod());
+        serverTraceEvent.setUrl(request.getUri());
+        return serverTraceEvent;
+    }
 }
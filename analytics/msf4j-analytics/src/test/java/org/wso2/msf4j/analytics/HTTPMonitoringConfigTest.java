@@ -21,6 +21,7 @@ import org.testng.annotations.Test;
 import org.wso2.msf4j.analytics.httpmonitoring.config.HTTPMonitoringConfigBuilder;
 import org.wso2.msf4j.analytics.httpmonitoring.config.model.DasConfig;
 import org.wso2.msf4j.analytics.httpmonitoring.config.model.HTTPMonitoringConfig;
+import org.wso2.msf4j.analytics.httpmonitoring.config.model.PublisherConfig;
 
 /**
  * Test Cases for {@link HTTPMonitoringConfig}
@@ -49,4 +50,13 @@ public class HTTPMonitoringConfigTest {
         Assert.assertEquals(config.getPassword(), "admin");
         Assert.assertEquals(config.getDataAgentConfigPath(), "data-agent-config.xml");
     }
+
+    @Test
+    public void testPublisherConfigLoad() {
+        PublisherConfig config = httpMonitoringConfig.getPublisher();
+        Assert.assertEquals(config.getQueueSize(), 8192);
+        Assert.assertEquals(config.getBatchSize(), 200);
+        Assert.assertEquals(config.getOverflowPolicy(), PublisherConfig.OverflowPolicy.DROP);
+        Assert.assertEquals(config.getSampleRate(), 10);
+    }
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 WSO2 Inc. (http://wso2.org)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.analytics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.msf4j.analytics.httpmonitoring.HTTPMonitoringEvent;
+import org.wso2.msf4j.analytics.httpmonitoring.HTTPMonitoringEventQueue;
+import org.wso2.msf4j.analytics.httpmonitoring.config.model.PublisherConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test Cases for {@link HTTPMonitoringEventQueue}
+ */
+public class HTTPMonitoringEventQueueTest {
+
+    private static PublisherConfig config(int queueSize, PublisherConfig.OverflowPolicy overflowPolicy) {
+        PublisherConfig config = new PublisherConfig();
+        config.setQueueSize(queueSize);
+        config.setBatchSize(4);
+        config.setOverflowPolicy(overflowPolicy);
+        config.setSampleRate(2);
+        return config;
+    }
+
+    private static void offer(HTTPMonitoringEventQueue queue, int status) {
+        long sequence = queue.next();
+        if (sequence >= 0) {
+            queue.get(sequence).setResponseHttpStatusCode(status);
+            queue.publish(sequence);
+        }
+    }
+
+    @Test
+    public void testPublishInOrder() throws Exception {
+        List<Integer> statuses = Collections.synchronizedList(new ArrayList<>());
+        HTTPMonitoringEventQueue queue = new HTTPMonitoringEventQueue(config(10, PublisherConfig.OverflowPolicy.DROP),
+                event -> statuses.add(event.getResponseHttpStatusCode()));
+        Assert.assertEquals(queue.getCapacity(), 16);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            while (queue.getQueueDepth() == queue.getCapacity()) {
+                Thread.yield();
+            }
+            offer(queue, i);
+            expected.add(i);
+        }
+        queue.shutdown();
+        Assert.assertEquals(statuses, expected);
+        Assert.assertEquals(queue.getPublishedCount(), 100);
+        Assert.assertEquals(queue.getDroppedCount(), 0);
+        Assert.assertEquals(queue.getQueueDepth(), 0);
+    }
+
+    @Test
+    public void testDiscardedEventIsSkipped() throws Exception {
+        List<Integer> statuses = Collections.synchronizedList(new ArrayList<>());
+        HTTPMonitoringEventQueue queue = new HTTPMonitoringEventQueue(config(4, PublisherConfig.OverflowPolicy.DROP),
+                event -> statuses.add(event.getResponseHttpStatusCode()));
+        // Every slot holds an event once published, so that a discarded slot holds stale values
+        for (int i = 0; i < 4; i++) {
+            offer(queue, 200);
+        }
+        while (queue.getQueueDepth() > 0) {
+            Thread.yield();
+        }
+        queue.discard(queue.next());
+        offer(queue, 201);
+        queue.shutdown();
+        Assert.assertEquals(statuses, Arrays.asList(200, 200, 200, 200, 201));
+        Assert.assertEquals(queue.getPublishedCount(), 5);
+        Assert.assertEquals(queue.getDroppedCount(), 1);
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        CountDownLatch publishing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<HTTPMonitoringEvent> events = new ArrayList<>();
+        HTTPMonitoringEventQueue queue = new HTTPMonitoringEventQueue(
+                config(8, PublisherConfig.OverflowPolicy.DROP), event -> {
+            publishing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(event);
+        });
+        offer(queue, 200);
+        Assert.assertTrue(publishing.await(5, TimeUnit.SECONDS));
+        // The first event is held by the publisher, the rest fill the queue
+        for (int i = 0; i < 12; i++) {
+            offer(queue, 200);
+        }
+        Assert.assertEquals(queue.getQueueDepth(), 8);
+        Assert.assertEquals(queue.getDroppedCount(), 5);
+        release.countDown();
+        queue.shutdown();
+        Assert.assertEquals(queue.getPublishedCount(), 8);
+        Assert.assertEquals(events.size(), 8);
+    }
+
+    @Test
+    public void testSampleWhenHalfFull() throws Exception {
+        CountDownLatch publishing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        HTTPMonitoringEventQueue queue = new HTTPMonitoringEventQueue(
+                config(8, PublisherConfig.OverflowPolicy.SAMPLE), event -> {
+            publishing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        offer(queue, 200);
+        Assert.assertTrue(publishing.await(5, TimeUnit.SECONDS));
+        // Up to half of the queue every event is kept, then one in two until the queue is full
+        for (int i = 0; i < 3; i++) {
+            offer(queue, 200);
+        }
+        Assert.assertEquals(queue.getDroppedCount(), 0);
+        for (int i = 0; i < 8; i++) {
+            offer(queue, 200);
+        }
+        Assert.assertEquals(queue.getQueueDepth(), 8);
+        Assert.assertEquals(queue.getDroppedCount(), 4);
+        release.countDown();
+        queue.shutdown();
+        Assert.assertEquals(queue.getPublishedCount(), 8);
+    }
+}
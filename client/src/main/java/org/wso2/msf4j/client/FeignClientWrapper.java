@@ -18,11 +18,21 @@ package org.wso2.msf4j.client;
 import feign.Client;
 import feign.Request;
 import feign.Response;
+import org.wso2.msf4j.Deadline;
+import org.wso2.msf4j.DeadlineExceededException;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Wrapper for #Feign.Client
+ * <p>
+ * When the calling thread serves a request with a {@link Deadline}, the timeouts of the call are capped to the time
+ * left and the time left is passed on to the downstream service in the {@link Deadline#HEADER} header.
  */
 public class FeignClientWrapper implements Client {
 
@@ -34,6 +44,19 @@ public class FeignClientWrapper implements Client {
 
     @Override
     public Response execute(Request request, Request.Options options) throws IOException {
-        return clientDelegate.execute(request, options);
+        Deadline deadline = Deadline.current();
+        if (!deadline.isBounded()) {
+            return clientDelegate.execute(request, options);
+        }
+        long remaining = deadline.timeRemaining(TimeUnit.MILLISECONDS);
+        if (remaining == 0) {
+            throw new DeadlineExceededException("Deadline exceeded before calling " + request.url());
+        }
+        Map<String, Collection<String>> headers = new LinkedHashMap<>(request.headers());
+        headers.put(Deadline.HEADER, Collections.singletonList(String.valueOf(remaining)));
+        return clientDelegate.execute(
+                Request.create(request.method(), request.url(), headers, request.body(), request.charset()),
+                new Request.Options((int) Math.min(options.connectTimeoutMillis(), remaining),
+                        (int) Math.min(options.readTimeoutMillis(), remaining)));
     }
 }
@@ -21,6 +21,7 @@ import feign.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.msf4j.analytics.common.tracing.TraceEvent;
+import org.wso2.msf4j.analytics.common.tracing.TraceSampler;
 import org.wso2.msf4j.analytics.common.tracing.TracingConstants;
 import org.wso2.msf4j.analytics.common.tracing.TracingEventTracker;
 import org.wso2.msf4j.analytics.common.tracing.TracingUtil;
@@ -31,6 +32,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Supports tracing capabilities with WSO2DAS
@@ -40,6 +42,7 @@ class FeignTracingClient implements Client {
     private final String instanceId;
     private final String instanceName;
     private final String dasUrl;
+    private final TraceSampler sampler;
     private final Client clientDelegate;
 
     /**
@@ -55,27 +58,60 @@ class FeignTracingClient implements Client {
      * @param dasReceiverUrl URL of the receiver of DAS server
      */
     public FeignTracingClient(Client client, String instanceName, String dasReceiverUrl) {
+        this(client, instanceName, dasReceiverUrl, TraceSampler.always());
+    }
+
+    /**
+     * Constructor of FeignTracingClient with sampling
+     *
+     * @param dasReceiverUrl URL of the receiver of DAS server
+     * @param sampler        Sampler deciding which of the requests starting a trace are traced
+     */
+    public FeignTracingClient(Client client, String instanceName, String dasReceiverUrl, TraceSampler sampler) {
         this.instanceName = instanceName;
         this.dasUrl = dasReceiverUrl;
         this.instanceId = TracingUtil.generateUniqueId();
         this.clientDelegate = client;
+        this.sampler = sampler;
     }
 
     @Override
     public Response execute(Request request, Request.Options options) throws IOException {
-        TraceEvent clientStartTraceEvent = generateClientStartTraceEvent(request);
+        TraceEvent parentEvent = TracingEventTracker.getTraceEvent();
+        Boolean parentSampled = TracingEventTracker.getSampled();
+        boolean sampled = parentEvent != null || (parentSampled != null ? parentSampled : sampler.sample(null));
+        if (!sampled) {
+            return executeNotSampled(request, options, parentEvent);
+        }
+        TraceEvent clientStartTraceEvent = generateClientStartTraceEvent(request, parentEvent, new Date().getTime());
         Request traceableRequest = tracePreRequest(request, clientStartTraceEvent);
         Response response = clientDelegate.execute(traceableRequest, options);
         tracePostRequest(response, clientStartTraceEvent);
         return response;
     }
 
-    private TraceEvent generateClientStartTraceEvent(Request request) {
-        long time = new Date().getTime();
+    private Response executeNotSampled(Request request, Request.Options options, TraceEvent parentEvent)
+            throws IOException {
+        Map<String, Collection<String>> headers = new HashMap<>(request.headers());
+        headers.put(TracingConstants.TRACE_SAMPLED_HEADER, Collections.singletonList(TracingConstants.NOT_SAMPLED));
+        long startTime = System.nanoTime();
+        Response response = clientDelegate.execute(
+                Request.create(request.method(), request.url(), headers, request.body(), request.charset()), options);
+        long responseTime = System.nanoTime() - startTime;
+        if (sampler.isLateSamplingEnabled() && sampler.sampleCompleted(response.status(), responseTime)) {
+            // Record the failed or slow calls which were not sampled, now that they have completed
+            TraceEvent clientStartTraceEvent = generateClientStartTraceEvent(request, parentEvent,
+                    new Date().getTime() - TimeUnit.NANOSECONDS.toMillis(responseTime));
+            TracingUtil.pushToDAS(clientStartTraceEvent, dasUrl);
+            tracePostRequest(response, clientStartTraceEvent);
+        }
+        return response;
+    }
+
+    private TraceEvent generateClientStartTraceEvent(Request request, TraceEvent parentEvent, long time) {
         String clientTraceId;
         String traceOriginId;
         String traceParentId = null;
-        TraceEvent parentEvent = TracingEventTracker.getTraceEvent();
         if (parentEvent == null) {
             traceOriginId = TracingUtil.generateUniqueId();
             clientTraceId = traceOriginId;
@@ -107,6 +143,7 @@ class FeignTracingClient implements Client {
         traceHeaders.putAll(request.headers());
         traceHeaders.put(TracingConstants.TRACE_ID_HEADER, Collections.singletonList(traceEvent.getTraceId()));
         traceHeaders.put(TracingConstants.TRACE_ORIGIN_ID_HEADER, Collections.singletonList(traceEvent.getOriginId()));
+        traceHeaders.put(TracingConstants.TRACE_SAMPLED_HEADER, Collections.singletonList(TracingConstants.SAMPLED));
 
         // publish event to DAS
         TracingUtil.pushToDAS(traceEvent, dasUrl);
@@ -31,6 +31,7 @@ import org.apache.http.impl.client.HttpClientBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.kernel.utils.StringUtils;
+import org.wso2.msf4j.analytics.common.tracing.TraceSampler;
 import org.wso2.msf4j.client.codec.DefaultErrorDecoder;
 import org.wso2.msf4j.client.codec.RestErrorResponseMapper;
 import org.wso2.msf4j.client.exception.RestServiceException;
@@ -74,6 +75,7 @@ public class MSF4JClient<T> {
         private boolean enableTracing;
         private String instanceName;
         private String analyticsEndpoint;
+        private TraceSampler traceSampler = TraceSampler.always();
         private String serviceEndpoint;
         private SSLContext sslContext;
         private HostnameVerifier hostnameVerifier;
@@ -141,6 +143,15 @@ public class MSF4JClient<T> {
             return this;
         }
 
+        /**
+         * Sets the sampler deciding which of the calls starting a trace are traced. Calls made while serving a
+         * traced request follow the decision of the request.
+         */
+        public MSF4JClient.Builder<T> traceSampler(TraceSampler traceSampler) {
+            this.traceSampler = traceSampler;
+            return this;
+        }
+
         public MSF4JClient.Builder<T> serviceEndpoint(String serviceEndpoint) {
             this.serviceEndpoint = serviceEndpoint;
             return this;
@@ -203,12 +214,13 @@ public class MSF4JClient<T> {
 
             if (enableTracing) {
                 client = new FeignClientWrapper(new FeignTracingClient(new ApacheHttpClient(apacheHttpClient),
-                        instanceName, analyticsEndpoint));
+                        instanceName, analyticsEndpoint, traceSampler));
             } else {
                 client = new FeignClientWrapper(new ApacheHttpClient(apacheHttpClient));
             }
 
             if (enableCircuitBreaker) {
+                TraceContextConcurrencyStrategy.register();
                 HystrixFeign.Builder builder = newHystrixFeignClientBuilder();
                 builder.client(client);
                 builder.requestInterceptors(requestInterceptors);
@@ -0,0 +1,119 @@
+/*
+* Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.msf4j.client;
+
+import com.netflix.hystrix.HystrixThreadPoolKey;
+import com.netflix.hystrix.strategy.HystrixPlugins;
+import com.netflix.hystrix.strategy.concurrency.HystrixConcurrencyStrategy;
+import com.netflix.hystrix.strategy.concurrency.HystrixRequestVariable;
+import com.netflix.hystrix.strategy.concurrency.HystrixRequestVariableLifecycle;
+import com.netflix.hystrix.strategy.eventnotifier.HystrixEventNotifier;
+import com.netflix.hystrix.strategy.executionhook.HystrixCommandExecutionHook;
+import com.netflix.hystrix.strategy.metrics.HystrixMetricsPublisher;
+import com.netflix.hystrix.strategy.properties.HystrixPropertiesStrategy;
+import com.netflix.hystrix.strategy.properties.HystrixProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.msf4j.analytics.common.tracing.TraceContext;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hystrix concurrency strategy which runs the commands with the {@link TraceContext} of the thread which executes
+ * them, so that the requests sent from the Hystrix thread pools are traced as children of the request being served
+ * and are bounded by its deadline. Anything else is left to the strategy which was registered before.
+ */
+class TraceContextConcurrencyStrategy extends HystrixConcurrencyStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(TraceContextConcurrencyStrategy.class);
+
+    private static volatile boolean registered;
+
+    private final HystrixConcurrencyStrategy delegate;
+
+    private TraceContextConcurrencyStrategy(HystrixConcurrencyStrategy delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Register the strategy with Hystrix unless it has already been registered. Hystrix allows a strategy to be
+     * registered only once, hence the plugins are reset and the other plugins registered so far are registered
+     * again along with it. A command executed by another thread right after the reset registers the default
+     * plugins, in which case those are kept.
+     */
+    static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        HystrixPlugins plugins = HystrixPlugins.getInstance();
+        HystrixConcurrencyStrategy concurrencyStrategy = plugins.getConcurrencyStrategy();
+        if (concurrencyStrategy instanceof TraceContextConcurrencyStrategy) {
+            registered = true;
+            return;
+        }
+        HystrixEventNotifier eventNotifier = plugins.getEventNotifier();
+        HystrixMetricsPublisher metricsPublisher = plugins.getMetricsPublisher();
+        HystrixPropertiesStrategy propertiesStrategy = plugins.getPropertiesStrategy();
+        HystrixCommandExecutionHook commandExecutionHook = plugins.getCommandExecutionHook();
+        HystrixPlugins.reset();
+        HystrixPlugins resetPlugins = HystrixPlugins.getInstance();
+        registerPlugin(() -> resetPlugins.registerConcurrencyStrategy(
+                new TraceContextConcurrencyStrategy(concurrencyStrategy)), "concurrency strategy");
+        registerPlugin(() -> resetPlugins.registerEventNotifier(eventNotifier), "event notifier");
+        registerPlugin(() -> resetPlugins.registerMetricsPublisher(metricsPublisher), "metrics publisher");
+        registerPlugin(() -> resetPlugins.registerPropertiesStrategy(propertiesStrategy), "properties strategy");
+        registerPlugin(() -> resetPlugins.registerCommandExecutionHook(commandExecutionHook),
+                "command execution hook");
+        // Not retried, since resetting the plugins again would race with the running commands once more
+        registered = true;
+    }
+
+    private static void registerPlugin(Runnable registration, String plugin) {
+        try {
+            registration.run();
+        } catch (IllegalStateException e) {
+            // Looked up, hence registered with the default, by a command executed since the plugins were reset
+            log.warn("Hystrix " + plugin + " was registered concurrently, the default " + plugin + " is used", e);
+        }
+    }
+
+    @Override
+    public <T> Callable<T> wrapCallable(Callable<T> callable) {
+        // Invoked on the thread which executes the command, before the callable is handed to the thread pool
+        return TraceContext.wrap(delegate.wrapCallable(callable));
+    }
+
+    @Override
+    public ThreadPoolExecutor getThreadPool(HystrixThreadPoolKey threadPoolKey, HystrixProperty<Integer> corePoolSize,
+                                            HystrixProperty<Integer> maximumPoolSize,
+                                            HystrixProperty<Integer> keepAliveTime, TimeUnit unit,
+                                            BlockingQueue<Runnable> workQueue) {
+        return delegate.getThreadPool(threadPoolKey, corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue);
+    }
+
+    @Override
+    public BlockingQueue<Runnable> getBlockingQueue(int maxQueueSize) {
+        return delegate.getBlockingQueue(maxQueueSize);
+    }
+
+    @Override
+    public <T> HystrixRequestVariable<T> getRequestVariable(HystrixRequestVariableLifecycle<T> rv) {
+        return delegate.getRequestVariable(rv);
+    }
+}
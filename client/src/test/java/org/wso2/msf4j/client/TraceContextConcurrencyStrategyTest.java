@@ -0,0 +1,63 @@
+/*
+* Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.wso2.msf4j.client;
+
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.strategy.HystrixPlugins;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.msf4j.Deadline;
+import org.wso2.msf4j.analytics.common.tracing.TraceEvent;
+import org.wso2.msf4j.analytics.common.tracing.TracingConstants;
+import org.wso2.msf4j.analytics.common.tracing.TracingEventTracker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests carrying the trace context of the calling thread over to the Hystrix threads.
+ */
+public class TraceContextConcurrencyStrategyTest {
+
+    @Test
+    public void testCommandRunsWithTraceContext() {
+        TraceContextConcurrencyStrategy.register();
+        Assert.assertTrue(HystrixPlugins.getInstance().getConcurrencyStrategy()
+                instanceof TraceContextConcurrencyStrategy);
+
+        TraceEvent traceEvent = new TraceEvent(TracingConstants.SERVER_TRACE_START, "trace", "origin", 0);
+        TracingEventTracker.setTraceEvent(traceEvent);
+        TracingEventTracker.setSampled(true);
+        Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+        Deadline.attach(deadline);
+        try {
+            Object[] seen = new HystrixCommand<Object[]>(HystrixCommandGroupKey.Factory.asKey("trace-context")) {
+                @Override
+                protected Object[] run() {
+                    // The spans of the requests sent from here take the trace event of the thread as their parent
+                    return new Object[]{Thread.currentThread().getName(), TracingEventTracker.getTraceEvent(),
+                            Deadline.current()};
+                }
+            }.execute();
+            Assert.assertTrue(((String) seen[0]).startsWith("hystrix-"));
+            Assert.assertSame(seen[1], traceEvent);
+            Assert.assertSame(seen[2], deadline);
+        } finally {
+            TracingEventTracker.clear();
+            Deadline.detach(null);
+        }
+    }
+}
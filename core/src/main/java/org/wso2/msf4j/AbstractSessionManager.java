@@ -18,20 +18,55 @@
  */
 package org.wso2.msf4j;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.wso2.msf4j.internal.session.SessionIdGenerator;
+import org.wso2.msf4j.internal.session.TimingWheel;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Abstract SessionManager implementation which leave the sessions persistence related method to be implemented.
  */
 public abstract class AbstractSessionManager implements SessionManager {
+    private static final Logger log = LoggerFactory.getLogger(AbstractSessionManager.class);
     private boolean isStopped;
 
+    /**
+     * How the changes of session attributes are written to persistent storage.
+     */
+    public enum Durability {
+        /**
+         * Every change is written right away.
+         */
+        SYNC,
+        /**
+         * Changes are coalesced and written once the request which made them has been served, and periodically
+         * for the changes made outside of requests.
+         */
+        BATCHED,
+        /**
+         * Changes are coalesced and written periodically by a background thread. Changes made since the last
+         * flush are lost if the process crashes.
+         */
+        ASYNC
+    }
+
+    /**
+     * The default interval, in milliseconds, at which deferred session changes are flushed.
+     */
+    private static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
     /**
      * The default maximum inactive interval, in minutes, for Sessions created by
      * this Manager.
@@ -43,29 +78,314 @@ public abstract class AbstractSessionManager implements SessionManager {
      */
     private static final int DEFAULT_MAX_ACTIVE_SESSIONS = 100_000;
 
+    /**
+     * Value of the session memory limit which leaves the memory unbounded.
+     */
+    public static final long UNLIMITED = -1;
+
+    /**
+     * Fraction of the limits down to which the sessions are evicted once a limit is exceeded, so that the
+     * sessions are not scanned again for each new session.
+     */
+    static final double EVICTION_TARGET = 0.9;
+
+    /**
+     * Estimated footprint, in bytes, of a session without its attributes.
+     */
+    private static final int SESSION_OVERHEAD = 256;
+
     /**
      * The session id length of Sessions created by this Manager.
      */
     private static final int SESSION_ID_LENGTH = 16;
 
+    /**
+     * Resolution, in milliseconds, of the session expiry. Sessions expire at most this late.
+     */
+    private static final long EXPIRY_TICK_DURATION = 1000;
+
+    /**
+     * Number of ticks in the expiry wheel, covering an hour so that most sessions are placed without wrapping.
+     */
+    private static final int EXPIRY_WHEEL_SIZE = 4096;
+
     private Map<String, Session> sessions = new ConcurrentHashMap<>();
     private SessionIdGenerator sessionIdGenerator = new SessionIdGenerator();
 
     private ScheduledExecutorService sessionExpiryChecker;
+    private final Map<String, Session> dirtySessions = new ConcurrentHashMap<>();
+    private volatile Durability durability = Durability.SYNC;
+    private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+    private String jvmRoute = "";
+    private volatile int maxActiveSessions = DEFAULT_MAX_ACTIVE_SESSIONS;
+    private volatile long maxSessionMemory = UNLIMITED;
+    private volatile int maxInactiveInterval = DEFAULT_MAX_INACTIVE_INTERVAL;
+    private volatile boolean spillEvictedSessions;
+    private volatile boolean lazySessionCreation;
+    private final AtomicLong estimatedMemory = new AtomicLong();
+    private final LongAdder evictedSessions = new LongAdder();
+    private final Object evictionLock = new Object();
+    private final List<SessionExpiryListener> expiryListeners = new CopyOnWriteArrayList<>();
+    private final TimingWheel<Session> expiryWheel = new TimingWheel<>(EXPIRY_TICK_DURATION, EXPIRY_WHEEL_SIZE,
+            System.currentTimeMillis(),
+            session -> session.getLastAccessedTime() + session.getMaxInactiveInterval() * 60L * 1000,
+            this::expire);
 
     public final void init() {
         sessionIdGenerator.setSessionIdLength(SESSION_ID_LENGTH);
         loadSessions(sessions);
+        sessions.values().forEach(session -> {
+            session.setEstimatedSize(estimateSize(session));
+            estimatedMemory.addAndGet(session.getEstimatedSize());
+            session.setExpiryTimeout(expiryWheel.schedule(session));
+        });
 
-        // Session expiry scheduled task
+        // Session expiry scheduled task, which only visits the sessions whose expiry tick has come up
         sessionExpiryChecker = Executors.newScheduledThreadPool(1);
-        sessionExpiryChecker.scheduleAtFixedRate(() ->
-                        sessions.values().parallelStream()
-                                .filter(session ->
-                                        (System.currentTimeMillis() - session.getLastAccessedTime() >=
-                                                session.getMaxInactiveInterval() * 60 * 1000))
-                                .forEach(Session::invalidate),
-                30, 30, TimeUnit.SECONDS);
+        sessionExpiryChecker.scheduleAtFixedRate(this::advanceExpiryWheel, EXPIRY_TICK_DURATION,
+                EXPIRY_TICK_DURATION, TimeUnit.MILLISECONDS);
+        if (durability != Durability.SYNC) {
+            sessionExpiryChecker.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Set how the changes of session attributes are written to persistent storage. Should be set before
+     * this SessionManager is initialized.
+     *
+     * @param durability durability of the session changes, {@link Durability#SYNC} by default
+     */
+    public void setDurability(Durability durability) {
+        if (sessionExpiryChecker != null) {
+            throw new IllegalStateException("SessionManager has already been initialized");
+        }
+        this.durability = durability;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Set the route of this node which is appended to the IDs of the sessions it creates, so that a load
+     * balancer can route the requests of a session to the node which created it. Should be set before
+     * this SessionManager is initialized.
+     *
+     * @param jvmRoute route of this node, empty by default
+     */
+    public void setJvmRoute(String jvmRoute) {
+        if (sessionExpiryChecker != null) {
+            throw new IllegalStateException("SessionManager has already been initialized");
+        }
+        this.jvmRoute = (jvmRoute == null) ? "" : jvmRoute;
+        sessionIdGenerator.setJvmRoute(this.jvmRoute);
+    }
+
+    public String getJvmRoute() {
+        return jvmRoute;
+    }
+
+    /**
+     * Set the interval at which the deferred session changes are flushed by the background thread. Should be
+     * set before this SessionManager is initialized.
+     *
+     * @param flushInterval interval in milliseconds
+     */
+    public void setFlushInterval(long flushInterval) {
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("Flush interval should be a positive value");
+        }
+        if (sessionExpiryChecker != null) {
+            throw new IllegalStateException("SessionManager has already been initialized");
+        }
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Set the maximum number of sessions held in memory. Once exceeded, the least recently accessed sessions are
+     * evicted, starting with the sessions which were never used again after being created.
+     *
+     * @param maxActiveSessions maximum number of sessions, 100000 by default
+     */
+    public void setMaxActiveSessions(int maxActiveSessions) {
+        if (maxActiveSessions <= 0) {
+            throw new IllegalArgumentException("Max active sessions should be a positive value");
+        }
+        this.maxActiveSessions = maxActiveSessions;
+    }
+
+    /**
+     * Set the maximum estimated memory of the sessions held in memory. Once exceeded, the least recently accessed
+     * sessions are evicted as with the session count. Estimates count the attribute values of well known types
+     * by their size and any other value as a small object, so the limit is a rough one.
+     *
+     * @param maxSessionMemory maximum memory in bytes, or {@link #UNLIMITED} which is the default
+     */
+    public void setMaxSessionMemory(long maxSessionMemory) {
+        if (maxSessionMemory <= 0 && maxSessionMemory != UNLIMITED) {
+            throw new IllegalArgumentException("Invalid max session memory: " + maxSessionMemory);
+        }
+        this.maxSessionMemory = maxSessionMemory;
+    }
+
+    /**
+     * @return maximum estimated memory, in bytes, of the sessions held in memory, or {@link #UNLIMITED}
+     */
+    public long getMaxSessionMemory() {
+        return maxSessionMemory;
+    }
+
+    /**
+     * @param maxInactiveInterval max inactive interval, in minutes, of the sessions created from now on
+     */
+    public void setDefaultMaxInactiveInterval(int maxInactiveInterval) {
+        if (maxInactiveInterval <= 0) {
+            throw new IllegalArgumentException("Max inactive interval should be a positive value");
+        }
+        this.maxInactiveInterval = maxInactiveInterval;
+    }
+
+    /**
+     * Set whether evicted sessions are written to persistent storage, to be read again when requested. Otherwise an
+     * evicted session is only dropped from memory, along with its changes which are yet to be written, while a copy
+     * held in persistent storage or by the other nodes of a cluster is left in place. Only meaningful for
+     * SessionManagers which persist the sessions.
+     *
+     * @param spillEvictedSessions true to keep the evicted sessions in persistent storage, false by default
+     */
+    public void setSpillEvictedSessions(boolean spillEvictedSessions) {
+        this.spillEvictedSessions = spillEvictedSessions;
+    }
+
+    /**
+     * Set whether a new session is only stored, and its cookie sent, once an attribute is set. Otherwise every
+     * request which asks for a session without a session cookie, as those of clients which do not keep cookies,
+     * occupies a session until it expires.
+     *
+     * @param lazySessionCreation true to store the sessions only once an attribute is set, false by default
+     */
+    public void setLazySessionCreation(boolean lazySessionCreation) {
+        this.lazySessionCreation = lazySessionCreation;
+    }
+
+    /**
+     * @return number of sessions held in memory
+     */
+    public int getActiveSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * @return estimated memory, in bytes, of the sessions held in memory
+     */
+    public long getEstimatedSessionMemory() {
+        return estimatedMemory.get();
+    }
+
+    /**
+     * @return number of sessions evicted to stay within the limits
+     */
+    public long getEvictedSessionCount() {
+        return evictedSessions.sum();
+    }
+
+    /**
+     * Register a listener which is notified when a session expires, before the session is invalidated.
+     *
+     * @param listener listener to be notified
+     */
+    public void addSessionExpiryListener(SessionExpiryListener listener) {
+        expiryListeners.add(listener);
+    }
+
+    public void removeSessionExpiryListener(SessionExpiryListener listener) {
+        expiryListeners.remove(listener);
+    }
+
+    @Override
+    public final void sessionChanged(Session session) {
+        if (sessions.get(session.getId()) != session) {
+            // Created lazily, or evicted while in use, hence stored as a whole
+            register(session);
+            return;
+        }
+        updateEstimatedSize(session);
+        if (durability == Durability.SYNC) {
+            updateSession(session);
+        } else {
+            dirtySessions.put(session.getId(), session);
+        }
+    }
+
+    @Override
+    public final void flushSession(Session session) {
+        if (durability == Durability.BATCHED) {
+            write(session);
+        }
+    }
+
+    /**
+     * Write all the deferred session changes to persistent storage.
+     */
+    public final void flush() {
+        dirtySessions.values().forEach(session -> {
+            try {
+                write(session);
+            } catch (RuntimeException e) {
+                log.warn("Couldn't persist session " + session.getId(), e);
+            }
+        });
+    }
+
+    /**
+     * @return number of sessions with changes which are yet to be written to persistent storage
+     */
+    public int getDirtySessionCount() {
+        return dirtySessions.size();
+    }
+
+    private void advanceExpiryWheel() {
+        // An exception escaping a periodic task would cancel it, and no session would expire from then on
+        try {
+            expiryWheel.advance(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            log.error("Error occurred while expiring sessions", e);
+        }
+    }
+
+    private void expire(Session session) {
+        // Sessions which have been invalidated, or replaced by a session read again from storage, are dropped
+        if (!session.isValid() || sessions.get(session.getId()) != session) {
+            return;
+        }
+        for (SessionExpiryListener listener : expiryListeners) {
+            try {
+                listener.sessionExpired(session);
+            } catch (RuntimeException e) {
+                log.warn("Session expiry listener threw an exception", e);
+            }
+        }
+        try {
+            session.invalidate();
+        } catch (RuntimeException e) {
+            log.error("Couldn't invalidate expired session " + session.getId(), e);
+        }
+    }
+
+    private void write(Session session) {
+        // Locked against invalidation so that a deleted session is not written back
+        synchronized (session) {
+            if (dirtySessions.remove(session.getId(), session)) {
+                try {
+                    updateSession(session);
+                } catch (RuntimeException e) {
+                    // Marked again so that the change is written at the next flush, unless marked anew meanwhile
+                    dirtySessions.putIfAbsent(session.getId(), session);
+                    throw e;
+                }
+            }
+        }
     }
 
     public final Session getSession(String sessionId) {
@@ -73,9 +393,11 @@ public abstract class AbstractSessionManager implements SessionManager {
         Session session = sessions.get(sessionId);
         if (session == null) {
             session = readSession(sessionId);
+            if (session != null) {
+                session = add(session);
+            }
         }
         if (session != null) {
-            sessions.put(session.getId(), session);
             session.setNew(false);
         }
         return session;
@@ -83,30 +405,189 @@ public abstract class AbstractSessionManager implements SessionManager {
 
     public final Session createSession() {
         checkValidity();
-        if (sessions.size() >= DEFAULT_MAX_ACTIVE_SESSIONS) {
-            throw new IllegalStateException("Too many active sessions");
-        }
-        Session session = new Session(sessionIdGenerator.generateSessionId(""), DEFAULT_MAX_INACTIVE_INTERVAL);
+        Session session = new Session(sessionIdGenerator.generateSessionId(""), maxInactiveInterval);
         session.setManager(this);
-        sessions.put(session.getId(), session);
-        saveSession(session);
+        if (!lazySessionCreation) {
+            register(session);
+        }
         return session;
     }
 
     public final void invalidateSession(Session session) {
         checkValidity();
-        sessions.remove(session.getId());
-        deleteSession(session);
+        synchronized (session) {
+            dirtySessions.remove(session.getId(), session);
+            remove(session);
+            deleteSession(session);
+        }
+    }
+
+    /**
+     * The session cookie is only set once the session has been stored, which is deferred until an attribute is
+     * set with lazy session creation.
+     */
+    @Override
+    public String getSessionCookie(Session session) {
+        return (sessions.get(session.getId()) == session) ? SessionManager.super.getSessionCookie(session) : null;
+    }
+
+    private void register(Session session) {
+        if (add(session) == session) {
+            saveSession(session);
+        }
+    }
+
+    /**
+     * Hold a session in memory, evicting other sessions if a limit is exceeded.
+     *
+     * @return the session held in memory, which is a different one if the session was added concurrently
+     */
+    private Session add(Session session) {
+        session.setEstimatedSize(estimateSize(session));
+        Session existing = sessions.putIfAbsent(session.getId(), session);
+        if (existing != null) {
+            return existing;
+        }
+        estimatedMemory.addAndGet(session.getEstimatedSize());
+        session.setExpiryTimeout(expiryWheel.schedule(session));
+        if (sessions.size() > maxActiveSessions || exceedsMemory(estimatedMemory.get(), maxSessionMemory)) {
+            evictSessions(session);
+        }
+        return session;
+    }
+
+    private void remove(Session session) {
+        if (sessions.remove(session.getId(), session)) {
+            estimatedMemory.addAndGet(-session.getEstimatedSize());
+            // Only the sessions held in memory are expired, so the wheel releases a spilled or invalidated session
+            TimingWheel.Timeout<Session> expiryTimeout = session.getExpiryTimeout();
+            if (expiryTimeout != null) {
+                expiryTimeout.cancel();
+            }
+        }
+    }
+
+    private static boolean exceedsMemory(long memory, long limit) {
+        return limit != UNLIMITED && memory > limit;
+    }
+
+    /**
+     * Evict sessions down to a fraction of the limits, other than the given session which is being added.
+     */
+    private void evictSessions(Session added) {
+        synchronized (evictionLock) {
+            int targetCount = (int) (maxActiveSessions * EVICTION_TARGET);
+            long memoryLimit = maxSessionMemory;
+            long targetMemory = (memoryLimit == UNLIMITED) ? UNLIMITED : (long) (memoryLimit * EVICTION_TARGET);
+            if (sessions.size() <= maxActiveSessions && !exceedsMemory(estimatedMemory.get(), memoryLimit)) {
+                // Evicted by a concurrent caller
+                return;
+            }
+            // The ordering keys are captured since the sessions may be accessed while being sorted
+            List<EvictionCandidate> candidates = new ArrayList<>(sessions.size());
+            sessions.values().forEach(session -> {
+                if (session != added) {
+                    candidates.add(new EvictionCandidate(session));
+                }
+            });
+            candidates.sort(EvictionCandidate.ORDER);
+            int evicted = 0;
+            for (EvictionCandidate candidate : candidates) {
+                if (sessions.size() <= targetCount && !exceedsMemory(estimatedMemory.get(), targetMemory)) {
+                    break;
+                }
+                if (evict(candidate.session)) {
+                    evicted++;
+                }
+            }
+            evictedSessions.add(evicted);
+            log.debug("Evicted {} sessions, {} sessions remain", evicted, sessions.size());
+        }
+    }
+
+    private boolean evict(Session session) {
+        synchronized (session) {
+            if (!session.isValid() || sessions.get(session.getId()) != session) {
+                return false;
+            }
+            if (!spillEvictedSessions) {
+                // Not invalidated, which would delete the session from the storage and the other nodes as well
+                dirtySessions.remove(session.getId(), session);
+                remove(session);
+                sessionEvicted(session);
+                return true;
+            }
+            try {
+                dirtySessions.remove(session.getId(), session);
+                updateSession(session);
+            } catch (RuntimeException e) {
+                log.warn("Couldn't spill session " + session.getId(), e);
+                return false;
+            }
+            remove(session);
+            return true;
+        }
+    }
+
+    private static final class EvictionCandidate {
+
+        // Sessions which were never used again after being created go first, then the least recently accessed
+        private static final Comparator<EvictionCandidate> ORDER = Comparator
+                .comparing((EvictionCandidate candidate) -> !candidate.isNew)
+                .thenComparingLong(candidate -> candidate.lastAccessedTime);
+
+        private final Session session;
+        private final boolean isNew;
+        private final long lastAccessedTime;
+
+        private EvictionCandidate(Session session) {
+            this.session = session;
+            this.isNew = session.isNew();
+            this.lastAccessedTime = session.getLastAccessedTime();
+        }
+    }
+
+    private void updateEstimatedSize(Session session) {
+        synchronized (session) {
+            long size = estimateSize(session);
+            long previous = session.getEstimatedSize();
+            session.setEstimatedSize(size);
+            if (sessions.get(session.getId()) == session) {
+                estimatedMemory.addAndGet(size - previous);
+            }
+        }
+        if (exceedsMemory(estimatedMemory.get(), maxSessionMemory)) {
+            evictSessions(session);
+        }
+    }
+
+    static long estimateSize(Session session) {
+        long size = SESSION_OVERHEAD + 2L * session.getId().length();
+        for (Map.Entry<String, Object> attribute : session.getAttributes().entrySet()) {
+            size += 64 + 2L * attribute.getKey().length() + estimateSize(attribute.getValue());
+        }
+        return size;
+    }
+
+    private static long estimateSize(Object value) {
+        if (value instanceof CharSequence) {
+            return 40 + 2L * ((CharSequence) value).length();
+        } else if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        } else if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return 24;
+        }
+        return 64;
     }
 
     @Override
     public final int getDefaultMaxInactiveInterval() {
-        return DEFAULT_MAX_INACTIVE_INTERVAL;
+        return maxInactiveInterval;
     }
 
     @Override
     public final int getDefaultMaxActiveSessions() {
-        return DEFAULT_MAX_ACTIVE_SESSIONS;
+        return maxActiveSessions;
     }
 
     @Override
@@ -117,7 +598,40 @@ public abstract class AbstractSessionManager implements SessionManager {
     @Override
     public final void stop() {
         sessionExpiryChecker.shutdown();
+        flush();
         isStopped = true;
+        destroy();
+    }
+
+    /**
+     * Called when a session is evicted from memory without being spilled. The session is only dropped by this
+     * SessionManager, hence it must not be deleted from persistent storage, nor from the other nodes of a cluster.
+     * A request which still holds the session stores it again if it changes the session. Does nothing by default.
+     *
+     * @param session evicted session
+     */
+    protected void sessionEvicted(Session session) {
+    }
+
+    /**
+     * @return true if the given session is held in memory by this SessionManager
+     */
+    final boolean isActive(Session session) {
+        return sessions.get(session.getId()) == session;
+    }
+
+    /**
+     * @return true if a session with the given ID is held in memory by this SessionManager
+     */
+    final boolean isActive(String sessionId) {
+        return sessions.containsKey(sessionId);
+    }
+
+    /**
+     * Release the resources held by this SessionManager once it has been stopped and the deferred changes
+     * have been flushed.
+     */
+    protected void destroy() {
     }
 
     protected final void checkValidity() {
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Isolates a resource method, or all the resource methods of a class, in a bulkhead which bounds the number of
+ * requests served concurrently, so that a slow service can not take up all the threads of the runner. Requests
+ * which find the bulkhead full wait in a bounded queue, and are rejected once the queue is full or the wait times
+ * out.
+ * <p>
+ * A bulkhead on a class is shared by all the resource methods of the class, and bulkheads with the same name
+ * are shared across classes.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Bulkhead {
+
+    /**
+     * @return name of the bulkhead, or empty to name it after the annotated class or method
+     */
+    String name() default "";
+
+    /**
+     * @return maximum number of requests served concurrently
+     */
+    int maxConcurrent();
+
+    /**
+     * @return maximum number of requests waiting for the bulkhead
+     */
+    int maxQueued() default 0;
+
+    /**
+     * @return maximum time in milliseconds a request waits for the bulkhead
+     */
+    long maxWait() default 1000;
+
+    /**
+     * @return status of the responses to the rejected requests
+     */
+    int rejectionStatus() default 503;
+
+}
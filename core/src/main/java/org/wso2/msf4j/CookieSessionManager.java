@@ -0,0 +1,394 @@
+/*
+ *  Copyright (c) 2016 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.msf4j;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.msf4j.internal.MSF4JConstants;
+import org.wso2.msf4j.internal.session.SessionIdGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * SessionManager which keeps the sessions in the session cookie itself, encrypted and authenticated with
+ * AES-GCM, so that no session state is held by the server. Any node holding the keys can serve any request,
+ * without a session store or sticky routing.
+ * <p>
+ * The cookie is re-issued whenever the attributes of the session change, and periodically to move the
+ * inactivity deadline forward. Since the whole session travels with every request, it is meant for small
+ * sessions, and an attribute which would make the cookie exceed the size limit is rejected by
+ * {@link Session#setAttribute(String, Object)}. An invalidated session can not be revoked on the server,
+ * the client is only asked to drop the cookie.
+ * <p>
+ * Keys are identified in the cookie by a fingerprint. {@link #rotateKey(SecretKey)} switches to a new key
+ * while the cookies encrypted with the previous keys can still be read, until those keys are retired.
+ */
+public class CookieSessionManager implements SessionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(CookieSessionManager.class);
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final byte FORMAT_VERSION = 1;
+    private static final int FINGERPRINT_LENGTH = 4;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH = 128;
+    private static final int HEADER_LENGTH = 1 + FINGERPRINT_LENGTH + IV_LENGTH;
+    private static final String COOKIE_ATTRIBUTES = "; Path=/; HttpOnly";
+    private static final String EXPIRED_COOKIE = MSF4JConstants.SESSION_ID + COOKIE_ATTRIBUTES + "; Max-Age=0";
+
+    /**
+     * The default maximum inactive interval, in minutes.
+     */
+    private static final int DEFAULT_MAX_INACTIVE_INTERVAL = 15;
+
+    /**
+     * The default maximum length of the <tt>Set-Cookie</tt> value, within the limit browsers are required to support.
+     */
+    public static final int DEFAULT_MAX_COOKIE_SIZE = 4096;
+
+    /**
+     * Time, in milliseconds, after which the cookie of an unchanged session is re-issued to extend its lifetime.
+     */
+    private static final long REFRESH_INTERVAL = 60 * 1000;
+
+    private static final int SESSION_ID_LENGTH = 16;
+
+    private final SessionAttributeCodec codec;
+    private final SessionIdGenerator sessionIdGenerator = new SessionIdGenerator();
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(CIPHER);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM is not supported", e);
+        }
+    });
+    // First key encrypts, all of them decrypt
+    private volatile List<Key> keys;
+    private volatile int maxCookieSize = DEFAULT_MAX_COOKIE_SIZE;
+    private volatile int maxInactiveInterval = DEFAULT_MAX_INACTIVE_INTERVAL;
+
+    public CookieSessionManager(SecretKey key) {
+        this(key, new DefaultSessionAttributeCodec());
+    }
+
+    /**
+     * @param key   AES key used to encrypt the session cookies
+     * @param codec codec used to encode the attribute values
+     */
+    public CookieSessionManager(SecretKey key, SessionAttributeCodec codec) {
+        this.codec = codec;
+        this.keys = Collections.singletonList(new Key(key));
+        sessionIdGenerator.setSessionIdLength(SESSION_ID_LENGTH);
+    }
+
+    private static final class Key {
+
+        private final SecretKey secretKey;
+        private final byte[] fingerprint;
+
+        private Key(SecretKey secretKey) {
+            if (!"AES".equalsIgnoreCase(secretKey.getAlgorithm())) {
+                throw new IllegalArgumentException("Session cookies are encrypted with AES keys");
+            }
+            this.secretKey = secretKey;
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(secretKey.getEncoded());
+                fingerprint = new byte[FINGERPRINT_LENGTH];
+                System.arraycopy(digest, 0, fingerprint, 0, FINGERPRINT_LENGTH);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not supported", e);
+            }
+        }
+
+        private boolean matches(byte[] cookie) {
+            for (int i = 0; i < FINGERPRINT_LENGTH; i++) {
+                if (cookie[1 + i] != fingerprint[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Encrypt new cookies with the given key. The previous keys are still used to read cookies.
+     *
+     * @param key new AES key
+     */
+    public synchronized void rotateKey(SecretKey key) {
+        List<Key> newKeys = new ArrayList<>();
+        newKeys.add(new Key(key));
+        newKeys.addAll(keys);
+        keys = Collections.unmodifiableList(newKeys);
+    }
+
+    /**
+     * Accept cookies encrypted with the given key, for example by a node which has already rotated its key,
+     * without encrypting new cookies with it.
+     *
+     * @param key AES key
+     */
+    public synchronized void addKey(SecretKey key) {
+        List<Key> newKeys = new ArrayList<>(keys);
+        newKeys.add(new Key(key));
+        keys = Collections.unmodifiableList(newKeys);
+    }
+
+    /**
+     * Stop accepting cookies encrypted with the given key. The sessions held in those cookies are lost.
+     *
+     * @param key AES key to be retired
+     */
+    public synchronized void retireKey(SecretKey key) {
+        List<Key> newKeys = new ArrayList<>(keys);
+        newKeys.removeIf(existing -> MessageDigest.isEqual(existing.secretKey.getEncoded(), key.getEncoded()));
+        if (newKeys.isEmpty() || newKeys.get(0) != keys.get(0)) {
+            throw new IllegalArgumentException("The key used to encrypt new cookies can not be retired");
+        }
+        keys = Collections.unmodifiableList(newKeys);
+    }
+
+    /**
+     * @param maxCookieSize maximum length of the <tt>Set-Cookie</tt> value of a session
+     */
+    public void setMaxCookieSize(int maxCookieSize) {
+        if (maxCookieSize <= EXPIRED_COOKIE.length()) {
+            throw new IllegalArgumentException("Invalid maximum cookie size: " + maxCookieSize);
+        }
+        this.maxCookieSize = maxCookieSize;
+    }
+
+    public int getMaxCookieSize() {
+        return maxCookieSize;
+    }
+
+    /**
+     * @param maxInactiveInterval max inactive interval, in minutes, of the sessions created from now on
+     */
+    public void setDefaultMaxInactiveInterval(int maxInactiveInterval) {
+        if (maxInactiveInterval <= 0) {
+            throw new IllegalArgumentException("Max inactive interval should be a positive value");
+        }
+        this.maxInactiveInterval = maxInactiveInterval;
+    }
+
+    @Override
+    public void init() {
+        // Nothing to do since no session state is held
+    }
+
+    /**
+     * Read the session carried by a session cookie.
+     *
+     * @param cookieValue value of the session cookie
+     * @return the session, or null if the cookie has been tampered with, was encrypted with an unknown key
+     * or holds an expired session
+     */
+    @Override
+    public Session getSession(String cookieValue) {
+        byte[] cookie;
+        try {
+            cookie = Base64.getUrlDecoder().decode(cookieValue);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (cookie.length <= HEADER_LENGTH || cookie[0] != FORMAT_VERSION) {
+            return null;
+        }
+        Key key = null;
+        for (Key candidate : keys) {
+            if (candidate.matches(cookie)) {
+                key = candidate;
+                break;
+            }
+        }
+        if (key == null) {
+            return null;
+        }
+        byte[] plainText;
+        try {
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.DECRYPT_MODE, key.secretKey,
+                    new GCMParameterSpec(TAG_LENGTH, cookie, 1 + FINGERPRINT_LENGTH, IV_LENGTH));
+            cipher.updateAAD(cookie, 0, 1 + FINGERPRINT_LENGTH);
+            plainText = cipher.doFinal(cookie, HEADER_LENGTH, cookie.length - HEADER_LENGTH);
+        } catch (GeneralSecurityException e) {
+            log.debug("Rejected a session cookie which failed authentication");
+            return null;
+        }
+        try {
+            Session session = decode(plainText);
+            long now = System.currentTimeMillis();
+            if (now - session.getLastAccessedTime() >= session.getMaxInactiveInterval() * 60L * 1000) {
+                return null;
+            }
+            session.setManager(this);
+            // Re-issued so that the client does not keep presenting a cookie which is about to expire
+            session.setChanged(now - session.getLastAccessedTime() >= REFRESH_INTERVAL);
+            return session;
+        } catch (IOException e) {
+            log.warn("Couldn't decode the session held by a session cookie", e);
+            return null;
+        }
+    }
+
+    @Override
+    public Session createSession() {
+        Session session = new Session(sessionIdGenerator.generateSessionId(""), maxInactiveInterval);
+        session.setManager(this);
+        return session;
+    }
+
+    @Override
+    public void invalidateSession(Session session) {
+        // Nothing to do, the cookie is dropped by the client once the response has been sent
+    }
+
+    @Override
+    public int getDefaultMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    @Override
+    public int getDefaultMaxActiveSessions() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int getSessionIdLength() {
+        return SESSION_ID_LENGTH;
+    }
+
+    @Override
+    public void loadSessions(Map<String, Session> sessions) {
+        // Nothing to do since no session state is held
+    }
+
+    @Override
+    public Session readSession(String sessionId) {
+        // Sessions can only be read from their cookies
+        return null;
+    }
+
+    @Override
+    public void saveSession(Session session) {
+        // Nothing to do, the session is saved in its cookie
+    }
+
+    @Override
+    public void deleteSession(Session session) {
+        // Nothing to do, the session is deleted with its cookie
+    }
+
+    /**
+     * Check that the session still fits into a cookie.
+     *
+     * @param session Session which has been updated
+     * @throws IllegalStateException if the session exceeds the cookie size limit
+     */
+    @Override
+    public void updateSession(Session session) {
+        createCookie(session);
+    }
+
+    @Override
+    public String getSessionCookie(Session session) {
+        if (!session.isValid()) {
+            // A session which was never sent to the client need not be dropped
+            return session.isNew() ? null : EXPIRED_COOKIE;
+        }
+        return (session.isNew() || session.isChanged()) ? createCookie(session) : null;
+    }
+
+    @Override
+    public void stop() {
+        // Nothing to do since no session state is held
+    }
+
+    private String createCookie(Session session) {
+        Key key = keys.get(0);
+        byte[] cookie;
+        try {
+            byte[] plainText = encode(session);
+            cookie = new byte[HEADER_LENGTH + plainText.length + TAG_LENGTH / 8];
+            cookie[0] = FORMAT_VERSION;
+            System.arraycopy(key.fingerprint, 0, cookie, 1, FINGERPRINT_LENGTH);
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            System.arraycopy(iv, 0, cookie, 1 + FINGERPRINT_LENGTH, IV_LENGTH);
+
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.ENCRYPT_MODE, key.secretKey, new GCMParameterSpec(TAG_LENGTH, iv));
+            cipher.updateAAD(cookie, 0, 1 + FINGERPRINT_LENGTH);
+            cipher.doFinal(plainText, 0, plainText.length, cookie, HEADER_LENGTH);
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot encrypt session " + session.getId(), e);
+        }
+        String setCookie = MSF4JConstants.SESSION_ID + Base64.getUrlEncoder().withoutPadding().encodeToString(cookie) +
+                COOKIE_ATTRIBUTES;
+        if (setCookie.length() > maxCookieSize) {
+            throw new IllegalStateException("Session " + session.getId() + " exceeds the maximum cookie size of " +
+                    maxCookieSize);
+        }
+        return setCookie;
+    }
+
+    private byte[] encode(Session session) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            byte[] id = session.getId().getBytes(StandardCharsets.UTF_8);
+            out.writeShort(id.length);
+            out.write(id);
+            out.writeLong(session.getCreationTime());
+            out.writeLong(session.getLastAccessedTime());
+            out.writeInt(session.getMaxInactiveInterval());
+            SessionEncoding.writeAttributes(session.getAttributes(), codec, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Session decode(byte[] plainText) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(plainText))) {
+            byte[] id = new byte[in.readUnsignedShort()];
+            in.readFully(id);
+            long creationTime = in.readLong();
+            long lastAccessedTime = in.readLong();
+            int maxInactiveInterval = in.readInt();
+            return new Session(new String(id, StandardCharsets.UTF_8), creationTime, lastAccessedTime,
+                    maxInactiveInterval, SessionEncoding.readAttributes(in, codec));
+        }
+    }
+}
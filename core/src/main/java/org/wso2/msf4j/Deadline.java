@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time after which nobody is waiting for the response to a request.
+ * <p>
+ * The deadline of a request is the earlier of the timeout of the resource method, set with
+ * {@link RequestTimeout} or for the whole runner, and the timeout sent by the caller in the {@link #HEADER} header.
+ * The timeout is sent as the number of milliseconds left rather than as a point in time, so that the deadline does
+ * not depend on the clocks of the caller and the service being in sync.
+ * <p>
+ * Requests which have run out of time before the resource method is invoked are rejected with
+ * <tt>504 Gateway Timeout</tt>. Resource methods can get the deadline with {@link javax.ws.rs.core.Context} to
+ * give up on long running work with {@link #checkExpired()}, and the deadline is attached to the thread which
+ * serves the request so that the MSF4J client caps the timeouts of downstream calls to the time left.
+ */
+public final class Deadline {
+
+    public static final String HEADER = "X-Request-Timeout";
+
+    /**
+     * Deadline of the requests which do not have one.
+     */
+    public static final Deadline NONE = new Deadline(0, false);
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadline;
+    private final boolean bounded;
+
+    private Deadline(long deadline, boolean bounded) {
+        this.deadline = deadline;
+        this.bounded = bounded;
+    }
+
+    /**
+     * @param timeout time until the deadline
+     * @param unit    time unit of the timeout
+     * @return deadline after the given timeout from now
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(Math.max(0, timeout)), true);
+    }
+
+    /**
+     * @param value value of the {@link #HEADER} header, in milliseconds
+     * @return deadline given by the header, or {@link #NONE} if the header is missing or not valid
+     */
+    public static Deadline fromHeader(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        try {
+            return after(Long.parseLong(value.trim()), TimeUnit.MILLISECONDS);
+        } catch (NumberFormatException e) {
+            return NONE;
+        }
+    }
+
+    /**
+     * @return deadline of the request being served by the current thread, or {@link #NONE} if there is none
+     */
+    public static Deadline current() {
+        Deadline current = CURRENT.get();
+        return current != null ? current : NONE;
+    }
+
+    /**
+     * Attach a deadline to the current thread.
+     *
+     * @param deadline deadline of the request served by the current thread
+     * @return deadline which was attached to the thread before, to be restored with {@link #detach(Deadline)}
+     */
+    public static Deadline attach(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(deadline);
+        return previous;
+    }
+
+    /**
+     * Restore the deadline which was attached to the current thread before {@link #attach(Deadline)}.
+     *
+     * @param previous deadline returned by {@link #attach(Deadline)}
+     */
+    public static void detach(Deadline previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * @return false if this is {@link #NONE}
+     */
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    /**
+     * @param unit time unit of the result
+     * @return time left until the deadline, 0 if the deadline has passed, or {@link Long#MAX_VALUE} if there is no
+     * deadline
+     */
+    public long timeRemaining(TimeUnit unit) {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isExpired() {
+        return bounded && deadline - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Give up on the request if the deadline has passed.
+     *
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    public void checkExpired() {
+        if (isExpired()) {
+            throw new DeadlineExceededException("Deadline exceeded by " +
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - deadline) + " ms");
+        }
+    }
+
+    /**
+     * @param other another deadline
+     * @return the earlier of this and the other deadline
+     */
+    public Deadline min(Deadline other) {
+        if (!other.bounded) {
+            return this;
+        }
+        if (!bounded) {
+            return other;
+        }
+        return deadline - other.deadline <= 0 ? this : other;
+    }
+
+    /**
+     * @return value of the {@link #HEADER} header which passes the time left on to a downstream service
+     */
+    public String toHeaderValue() {
+        return String.valueOf(timeRemaining(TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public String toString() {
+        return bounded ? "Deadline in " + timeRemaining(TimeUnit.MILLISECONDS) + " ms" : "No deadline";
+    }
+}
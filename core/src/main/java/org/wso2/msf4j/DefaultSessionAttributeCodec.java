@@ -0,0 +1,254 @@
+/*
+ *  Copyright (c) 2016 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.msf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Default {@link SessionAttributeCodec} which writes strings, primitive wrappers and byte arrays in a compact
+ * binary form, and falls back to Java serialization for other {@link Serializable} values.
+ * <p>
+ * Deserializing untrusted data can run arbitrary code, hence the values received from other processes should be
+ * decoded by a codec created with the classes it may deserialize. Such a codec refuses to deserialize, and to
+ * serialize, the values of any other class.
+ */
+public class DefaultSessionAttributeCodec implements SessionAttributeCodec {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte SHORT = 7;
+    private static final byte BYTE = 8;
+    private static final byte CHARACTER = 9;
+    private static final byte BYTES = 10;
+    private static final byte SERIALIZED = 11;
+
+    /**
+     * Maximum length of a string, byte array or serialized value.
+     */
+    private static final int MAX_LENGTH = 64 * 1024 * 1024;
+
+    // Resolved while deserializing the primitive wrappers and enums
+    private static final Set<String> VALUE_CLASSES = new HashSet<>(Arrays.asList(String.class.getName(),
+            Number.class.getName(), Integer.class.getName(), Long.class.getName(), Boolean.class.getName(),
+            Double.class.getName(), Float.class.getName(), Short.class.getName(), Byte.class.getName(),
+            Character.class.getName(), Enum.class.getName()));
+
+    // Null if any class can be deserialized
+    private final Set<String> allowedClasses;
+    private final Set<String> allowedPackages;
+
+    /**
+     * Create a codec which deserializes any class, for values which are only read back by this process.
+     */
+    public DefaultSessionAttributeCodec() {
+        this.allowedClasses = null;
+        this.allowedPackages = null;
+    }
+
+    /**
+     * Create a codec which only deserializes the given classes. The classes of the fields of a value have to be
+     * allowed as well, while the primitive wrappers, <tt>String</tt> and <tt>Enum</tt> are always allowed.
+     *
+     * @param allowedClasses names of the classes which can be deserialized, a name ending with <tt>.*</tt> allows
+     *                       the classes of a package, an empty collection refuses all the serialized values
+     */
+    public DefaultSessionAttributeCodec(Collection<String> allowedClasses) {
+        this.allowedClasses = new HashSet<>();
+        this.allowedPackages = new HashSet<>();
+        for (String name : allowedClasses) {
+            if (name.endsWith(".*")) {
+                allowedPackages.add(name.substring(0, name.length() - 1));
+            } else {
+                this.allowedClasses.add(name);
+            }
+        }
+    }
+
+    @Override
+    public void encode(Object value, DataOutput out) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeBytes(((String) value).getBytes(StandardCharsets.UTF_8), out);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            out.writeByte(CHARACTER);
+            out.writeChar((Character) value);
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes((byte[]) value, out);
+        } else if (value instanceof Serializable) {
+            if (!isAllowed(value.getClass().getName())) {
+                throw new NotSerializableException(value.getClass().getName());
+            }
+            out.writeByte(SERIALIZED);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                oos.writeObject(value);
+            }
+            writeBytes(bytes.toByteArray(), out);
+        } else {
+            throw new NotSerializableException(value.getClass().getName());
+        }
+    }
+
+    @Override
+    public Object decode(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return new String(readBytes(in), StandardCharsets.UTF_8);
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case BOOLEAN:
+                return in.readBoolean();
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case SHORT:
+                return in.readShort();
+            case BYTE:
+                return in.readByte();
+            case CHARACTER:
+                return in.readChar();
+            case BYTES:
+                return readBytes(in);
+            case SERIALIZED:
+                try (ObjectInputStream ois = new AllowListObjectInputStream(new ByteArrayInputStream(readBytes(in)))) {
+                    return ois.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new InvalidClassException(e.getMessage());
+                }
+            default:
+                throw new StreamCorruptedException("Unknown attribute type " + type);
+        }
+    }
+
+    private static void writeBytes(byte[] bytes, DataOutput out) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new StreamCorruptedException("Invalid attribute length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private boolean isAllowed(String className) {
+        if (allowedClasses == null) {
+            return true;
+        }
+        String name = className;
+        int dimensions = 0;
+        while (name.startsWith("[", dimensions)) {
+            dimensions++;
+        }
+        if (dimensions > 0) {
+            // Arrays of primitives are encoded as a single letter, arrays of objects as Lname;
+            if (name.length() == dimensions + 1) {
+                return true;
+            }
+            name = name.substring(dimensions + 1, name.length() - 1);
+        }
+        if (VALUE_CLASSES.contains(name) || allowedClasses.contains(name)) {
+            return true;
+        }
+        int packageEnd = name.lastIndexOf('.');
+        return packageEnd >= 0 && allowedPackages.contains(name.substring(0, packageEnd + 1));
+    }
+
+    /**
+     * Refuses to resolve the classes which are not allowed, before any of their instances are created.
+     */
+    private final class AllowListObjectInputStream extends ObjectInputStream {
+
+        private AllowListObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!isAllowed(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "Class is not allowed to be deserialized");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+            if (allowedClasses != null) {
+                throw new InvalidClassException("Proxy classes are not allowed to be deserialized");
+            }
+            return super.resolveProxyClass(interfaces);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.msf4j;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Demand driven consumer of a streamed request body. Unlike {@link HttpStreamHandler}, chunks are only
+ * delivered to {@link #onNext(ByteBuffer)} after they have been requested through the
+ * {@link HttpStreamSubscription} given to {@link #onSubscribe(HttpStreamSubscription)}, which allows
+ * the body to be piped to a slow sink without buffering it.
+ */
+public interface HttpStreamSubscriber {
+
+    /**
+     * Initialize the subscriber. Invoked before {@link #onSubscribe(HttpStreamSubscription)}.
+     *
+     * @param response response object that should be used to send response
+     */
+    void init(Response response);
+
+    /**
+     * Invoked before any chunk is delivered. No chunks will be delivered until
+     * {@link HttpStreamSubscription#request(long)} is called.
+     *
+     * @param subscription subscription used to request chunks or to cancel the stream
+     */
+    void onSubscribe(HttpStreamSubscription subscription);
+
+    /**
+     * Invoked with the next chunk of the request body, once for each requested chunk.
+     *
+     * @param content content of the chunk
+     * @throws Exception if error occurs while consuming the chunk
+     */
+    void onNext(ByteBuffer content) throws Exception;
+
+    /**
+     * Invoked when the stream has failed. No further signals are sent after this.
+     *
+     * @param cause cause of the failure
+     */
+    void onError(Throwable cause);
+
+    /**
+     * Invoked when the complete request body has been delivered. No further signals are sent after this.
+     *
+     * @throws Exception if error occurs while completing the stream
+     */
+    void onComplete() throws Exception;
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.msf4j;
+
+/**
+ * Link between a streamed request body and its {@link HttpStreamSubscriber}. The methods of this
+ * interface can be called from any thread.
+ */
+public interface HttpStreamSubscription {
+
+    /**
+     * Request more chunks of the request body. Demand is cumulative.
+     *
+     * @param n number of chunks to be delivered, should be a positive value
+     */
+    void request(long n);
+
+    /**
+     * Stop delivering chunks. The remaining request body is discarded.
+     */
+    void cancel();
+}
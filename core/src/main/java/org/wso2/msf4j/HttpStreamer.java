@@ -23,17 +23,35 @@ package org.wso2.msf4j;
 public class HttpStreamer {
 
     private HttpStreamHandler httpStreamHandler;
+    private HttpStreamSubscriber httpStreamSubscriber;
 
     /**
-     * Register a streaming callback to handle body chunks.
+     * Register a streaming callback to handle body chunks. Chunks are pushed to the
+     * handler as soon as they are available.
      *
      * @param httpStreamHandler handler object
      */
     public void callback(HttpStreamHandler httpStreamHandler) {
         this.httpStreamHandler = httpStreamHandler;
+        this.httpStreamSubscriber = null;
+    }
+
+    /**
+     * Register a subscriber to consume body chunks on demand. Chunks are read from the request
+     * only when the subscriber has requested them.
+     *
+     * @param httpStreamSubscriber subscriber object
+     */
+    public void subscribe(HttpStreamSubscriber httpStreamSubscriber) {
+        this.httpStreamSubscriber = httpStreamSubscriber;
+        this.httpStreamHandler = null;
     }
 
     public HttpStreamHandler getHttpStreamHandler() {
         return httpStreamHandler;
     }
+
+    public HttpStreamSubscriber getHttpStreamSubscriber() {
+        return httpStreamSubscriber;
+    }
 }
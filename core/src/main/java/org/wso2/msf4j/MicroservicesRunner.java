@@ -24,13 +24,19 @@ import org.wso2.carbon.transport.http.netty.config.TransportsConfiguration;
 import org.wso2.carbon.transport.http.netty.config.YAMLTransportConfigurationBuilder;
 import org.wso2.carbon.transport.http.netty.internal.NettyTransportContextHolder;
 import org.wso2.carbon.transport.http.netty.listener.NettyListener;
+import org.wso2.msf4j.concurrency.BulkheadRegistry;
+import org.wso2.msf4j.concurrency.ConcurrencyLimiter;
+import org.wso2.msf4j.formparam.MultipartConfig;
 import org.wso2.msf4j.internal.MSF4JMessageProcessor;
 import org.wso2.msf4j.internal.MicroservicesRegistryImpl;
+import org.wso2.msf4j.io.OutboundBufferMonitor;
+import org.wso2.msf4j.io.RequestBodyLimits;
 import org.wso2.msf4j.util.RuntimeAnnotations;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import javax.ws.rs.Path;
 import javax.ws.rs.ext.ExceptionMapper;
 
@@ -106,6 +112,141 @@ public class MicroservicesRunner {
         return this;
     }
 
+    /**
+     * Set the water marks of the per connection outbound buffer used when streaming responses.
+     * Streaming writers are suspended once the buffered bytes of a connection exceed the high water mark
+     * and are resumed when they drop to the low water mark.
+     *
+     * @param lowWaterMark  number of buffered bytes at which suspended writers are resumed
+     * @param highWaterMark number of buffered bytes at which writers are suspended
+     * @return this MicroservicesRunner object
+     */
+    public MicroservicesRunner setOutboundBufferWaterMarks(int lowWaterMark, int highWaterMark) {
+        msRegistry.getOutboundBufferMonitor().setWaterMarks(lowWaterMark, highWaterMark);
+        return this;
+    }
+
+    /**
+     * Get the monitor which exposes the buffered response bytes per connection of this runner.
+     *
+     * @return OutboundBufferMonitor instance of this runner
+     */
+    public OutboundBufferMonitor getOutboundBufferMonitor() {
+        return msRegistry.getOutboundBufferMonitor();
+    }
+
+    /**
+     * Set the maximum size of the request bodies accepted by this runner. Requests with larger bodies are
+     * rejected with <tt>413 Request Entity Too Large</tt>. Resource methods can override the limit
+     * with {@link MaxRequestBodySize}.
+     *
+     * @param maxBodySize maximum number of body bytes, or {@link RequestBodyLimits#UNLIMITED}
+     * @return this MicroservicesRunner object
+     */
+    public MicroservicesRunner setMaxRequestBodySize(long maxBodySize) {
+        msRegistry.getRequestBodyLimits().setMaxBodySize(maxBodySize);
+        return this;
+    }
+
+    /**
+     * Set the maximum size of the request bodies accepted by one of the listeners of this runner, overriding
+     * the limit of the runner.
+     *
+     * @param listenerId  id of the listener, <code>netty-&lt;port&gt;</code> for the listeners created for ports
+     * @param maxBodySize maximum number of body bytes, or {@link RequestBodyLimits#UNLIMITED}
+     * @return this MicroservicesRunner object
+     */
+    public MicroservicesRunner setMaxRequestBodySize(String listenerId, long maxBodySize) {
+        msRegistry.getRequestBodyLimits().setMaxBodySize(listenerId, maxBodySize);
+        return this;
+    }
+
+    /**
+     * Get the request body size limits of this runner, which also expose the number of rejected requests and bytes.
+     *
+     * @return RequestBodyLimits instance of this runner
+     */
+    public RequestBodyLimits getRequestBodyLimits() {
+        return msRegistry.getRequestBodyLimits();
+    }
+
+    /**
+     * Limit the number of requests served concurrently by this runner, adapting the limit to the latency of the
+     * requests. Requests over the limit are rejected with <tt>503 Service Unavailable</tt> before the request body
+     * is read. Resource methods can set the priority with which they are shed with {@link RequestPriority}.
+     *
+     * @param minLimit lower bound of the limit, which is also the initial limit
+     * @param maxLimit upper bound of the limit
+     * @return this MicroservicesRunner object
+     */
+    public MicroservicesRunner setAdaptiveConcurrencyLimit(int minLimit, int maxLimit) {
+        msRegistry.getConcurrencyLimiter().enable(minLimit, maxLimit);
+        return this;
+    }
+
+    /**
+     * Get the concurrency limiter of this runner, which exposes the current limit and the number of rejected
+     * requests.
+     *
+     * @return ConcurrencyLimiter instance of this runner
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return msRegistry.getConcurrencyLimiter();
+    }
+
+    /**
+     * Set the time within which the requests to this runner should be served. Requests which have run out of time
+     * before the resource method is invoked are rejected with <tt>504 Gateway Timeout</tt>. Resource methods can
+     * override the timeout with {@link RequestTimeout}, and callers can shorten it with the {@link Deadline#HEADER}
+     * header.
+     *
+     * @param timeout timeout of the requests, or 0 for no timeout
+     * @param unit    time unit of the timeout
+     * @return this MicroservicesRunner object
+     */
+    public MicroservicesRunner setRequestTimeout(long timeout, TimeUnit unit) {
+        msRegistry.setRequestTimeout(unit.toNanos(timeout));
+        return this;
+    }
+
+    /**
+     * Isolate the resource methods of a service class in a bulkhead, which bounds the number of requests served
+     * concurrently by the service. Requests which find the bulkhead full wait in a bounded queue, and are rejected
+     * with <tt>503 Service Unavailable</tt> once the queue is full or the wait times out. Resource methods and
+     * classes can also declare bulkheads with {@link Bulkhead}.
+     *
+     * @param serviceClass  class of the service
+     * @param maxConcurrent maximum number of requests served concurrently
+     * @param maxQueued     maximum number of requests waiting for the bulkhead
+     * @param maxWait       maximum time in milliseconds a request waits for the bulkhead
+     * @return this MicroservicesRunner object
+     */
+    public MicroservicesRunner setBulkhead(Class<?> serviceClass, int maxConcurrent, int maxQueued, long maxWait) {
+        msRegistry.getBulkheadRegistry().setBulkhead(serviceClass, maxConcurrent, maxQueued, maxWait);
+        return this;
+    }
+
+    /**
+     * Get the bulkheads of this runner, which expose the utilization and the number of rejected requests of each
+     * bulkhead.
+     *
+     * @return BulkheadRegistry instance of this runner
+     */
+    public BulkheadRegistry getBulkheadRegistry() {
+        return msRegistry.getBulkheadRegistry();
+    }
+
+    /**
+     * Set the size limits and temporary file settings used when binding multipart form parts.
+     *
+     * @param multipartConfig multipart configuration
+     * @return this MicroservicesRunner object
+     */
+    public MicroservicesRunner setMultipartConfig(MultipartConfig multipartConfig) {
+        msRegistry.setMultipartConfig(multipartConfig);
+        return this;
+    }
+
     /**
      * Add an interceptor which will get called before &amp; after the deployed microservices are invoked. Multiple
      * interceptors can be added.
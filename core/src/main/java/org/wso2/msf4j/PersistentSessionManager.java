@@ -20,74 +20,135 @@ package org.wso2.msf4j;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wso2.msf4j.internal.session.SessionLog;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This session manager persists sessions in the local file system.
+ * <p>
+ * Sessions are kept in a memory mapped, append only log in which each update of a session appends a record.
+ * Attribute values are encoded with a {@link SessionAttributeCodec}. At startup only the index of the log is
+ * rebuilt, and sessions are decoded when they are first requested. The log is opened when this SessionManager
+ * is initialized and is forced to the disk and closed when it is stopped.
+ * <p>
+ * Sessions which are only held by the log, as the spilled sessions and those not requested since a restart, are
+ * not expired in memory. The expired ones are removed from the log periodically instead.
  */
 public class PersistentSessionManager extends AbstractSessionManager {
     private static final Logger log = LoggerFactory.getLogger(PersistentSessionManager.class);
     private static final String SESSION_DIR = ".sessions";
 
+    /**
+     * The default interval, in milliseconds, at which the expired sessions are removed from the session log.
+     */
+    private static final long DEFAULT_SWEEP_INTERVAL = 60 * 1000;
+
+    private final Path sessionDir;
+    private final SessionAttributeCodec codec;
+    private volatile SessionLog sessionLog;
+    private long sweepInterval = DEFAULT_SWEEP_INTERVAL;
+    private ScheduledExecutorService sweeper;
+
     public PersistentSessionManager() {
-        File dir = new File(SESSION_DIR);
-        if (!dir.exists() && !dir.mkdirs()) {
-            throw new IllegalStateException("Cannot create .tmp directory");
-        }
+        this(Paths.get(SESSION_DIR), new DefaultSessionAttributeCodec());
     }
 
-    @Override
-    public void loadSessions(Map<String, Session> sessions) {
-        File dir = new File(SESSION_DIR);
-        if (!dir.exists()) {
-            return;
+    /**
+     * @param sessionDir directory in which the sessions are persisted
+     * @param codec      codec used to encode the attribute values
+     */
+    public PersistentSessionManager(Path sessionDir, SessionAttributeCodec codec) {
+        this.sessionDir = sessionDir;
+        this.codec = codec;
+    }
+
+    /**
+     * Set the interval at which the expired sessions are removed from the session log. Should be set before
+     * this SessionManager is initialized.
+     *
+     * @param sweepInterval interval in milliseconds
+     */
+    public synchronized void setSweepInterval(long sweepInterval) {
+        if (sweepInterval <= 0) {
+            throw new IllegalArgumentException("Sweep interval should be a positive value");
+        }
+        if (sessionLog != null) {
+            throw new IllegalStateException("SessionManager has already been initialized");
         }
-        String path = Paths.get(SESSION_DIR).toString();
+        this.sweepInterval = sweepInterval;
+    }
 
-        Arrays.stream(new File(path).listFiles()).parallel().forEach(file -> {
-            Session session = readSession(file.getName());
+    /**
+     * @return number of sessions held by the session log, including the ones held in memory
+     */
+    public int getStoredSessionCount() {
+        SessionLog current = sessionLog;
+        return (current == null) ? 0 : current.size();
+    }
 
-            // Delete expired session files
-            if (System.currentTimeMillis() - session.getLastAccessedTime() >=
-                    session.getMaxInactiveInterval() * 60 * 1000 && !file.delete()) {
-                log.warn("Couldn't delete expired session file " + file.getAbsolutePath());
-            } else {
-                sessions.put(session.getId(), session);
-            }
+    @Override
+    public synchronized void loadSessions(Map<String, Session> sessions) {
+        try {
+            sessionLog = new SessionLog(sessionDir);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open the session log in " + sessionDir, e);
+        }
+        migrateSessionFiles();
+        try {
+            int expired = sessionLog.removeExpired(System.currentTimeMillis());
+            log.debug("Removed {} expired sessions, {} sessions remain in the session log", expired,
+                    sessionLog.size());
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot remove expired sessions", e);
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "msf4j-session-log-sweeper");
+            thread.setDaemon(true);
+            return thread;
         });
+        sweeper.scheduleWithFixedDelay(this::removeExpiredSessions, sweepInterval, sweepInterval,
+                TimeUnit.MILLISECONDS);
     }
 
     @Override
     public Session readSession(String sessionId) {
-        String path = Paths.get(SESSION_DIR, sessionId).toString();
-        if (!new File(path).exists()) {
+        SessionLog.Entry entry = sessionLog.get(sessionId);
+        if (entry == null) {
             return null;
         }
-        try (FileInputStream fis = new FileInputStream(path);
-             ObjectInputStream ois = new ObjectInputStream(fis);) {
-
-            Session session = (Session) ois.readObject();
+        try {
+            if (entry.isExpired(System.currentTimeMillis())) {
+                sessionLog.remove(sessionId);
+                return null;
+            }
+            Session session = decode(sessionId, entry);
             session.setManager(this);
             return session;
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             throw new RuntimeException("Cannot read session " + sessionId, e);
         }
     }
 
     @Override
     public void saveSession(Session session) {
-        try (FileOutputStream fout = new FileOutputStream(Paths.get(SESSION_DIR, session.getId()).toString());
-             ObjectOutputStream oos = new ObjectOutputStream(fout)) {
-            oos.writeObject(session);
+        try {
+            sessionLog.put(session.getId(), session.getLastAccessedTime(), session.getMaxInactiveInterval(),
+                    encode(session));
         } catch (IOException e) {
             throw new RuntimeException("Cannot save session " + session.getId(), e);
         }
@@ -95,9 +156,10 @@ public class PersistentSessionManager extends AbstractSessionManager {
 
     @Override
     public void deleteSession(Session session) {
-        String pathname = Paths.get(SESSION_DIR, session.getId()).toString();
-        if (!new File(pathname).delete()) {
-            throw new IllegalStateException("File " + pathname + " deletion failed");
+        try {
+            sessionLog.remove(session.getId());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot delete session " + session.getId(), e);
         }
     }
 
@@ -105,4 +167,73 @@ public class PersistentSessionManager extends AbstractSessionManager {
     public void updateSession(Session session) {
         saveSession(session);
     }
+
+    @Override
+    protected synchronized void destroy() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        SessionLog current = sessionLog;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.flush();
+            current.close();
+        } catch (IOException e) {
+            log.error("Error occurred while closing the session log in " + sessionDir, e);
+        }
+    }
+
+    private void removeExpiredSessions() {
+        try {
+            // The records of the sessions held in memory may not carry their latest access, those are expired in memory
+            int expired = sessionLog.removeExpired(System.currentTimeMillis(), this::isActive);
+            log.debug("Removed {} expired sessions from the session log", expired);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Couldn't remove the expired sessions from the session log", e);
+        }
+    }
+
+    private byte[] encode(Session session) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(session.getCreationTime());
+            SessionEncoding.writeAttributes(session.getAttributes(), codec, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Session decode(String sessionId, SessionLog.Entry entry) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry.getPayload()))) {
+            long creationTime = in.readLong();
+            return new Session(sessionId, creationTime, entry.getLastAccessedTime(), entry.getMaxInactiveInterval(),
+                    SessionEncoding.readAttributes(in, codec));
+        }
+    }
+
+    /**
+     * Move the sessions persisted one file per session by earlier versions into the session log.
+     */
+    private void migrateSessionFiles() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(sessionDir,
+                file -> Files.isRegularFile(file) && !file.getFileName().toString().startsWith("sessions.log"))) {
+            for (Path file : files) {
+                try (InputStream fis = Files.newInputStream(file);
+                     ObjectInputStream ois = new ObjectInputStream(fis)) {
+                    Session session = (Session) ois.readObject();
+                    if (System.currentTimeMillis() - session.getLastAccessedTime() <
+                            session.getMaxInactiveInterval() * 60 * 1000) {
+                        saveSession(session);
+                    }
+                } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                    log.warn("Couldn't migrate session file " + file, e);
+                    continue;
+                }
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            log.warn("Couldn't migrate the session files in " + sessionDir, e);
+        }
+    }
 }
@@ -0,0 +1,618 @@
+/*
+ *  Copyright (c) 2016 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.msf4j;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.msf4j.internal.session.ReplicationTransport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.crypto.SecretKey;
+
+/**
+ * SessionManager which replicates the sessions to the other nodes of a cluster, so that the sessions survive the
+ * failure of a node and the requests of a session can be served by any node.
+ * <p>
+ * Every node keeps the sessions of the whole cluster in memory, hence reading a session never leaves the process.
+ * Changes are replicated asynchronously over TCP, carrying only the attributes which have changed, and the last
+ * accessed times are replicated in batches. The changes of a request are coalesced into a single message with the
+ * {@link Durability#BATCHED} durability.
+ * <p>
+ * The route of the node which created a session, the suffix of the session ID, identifies the owner of the
+ * session. A node which joins the cluster is brought up to date by the owners of the sessions, while the sessions
+ * of an owner which is not connected are adopted by the remaining nodes. Replication is eventually consistent,
+ * concurrent changes of the same attribute on two nodes are applied in the order they arrive.
+ * <p>
+ * The sessions of the cluster held by a node count against the limits of {@link #setMaxActiveSessions(int)} and
+ * {@link #setMaxSessionMemory(long)}. Beyond them, the least recently accessed sessions which are not in use by
+ * the node are dropped by that node only, and a session evicted from use is never removed from the other nodes.
+ * <p>
+ * The nodes authenticate each other, and every message, with a secret key shared by the cluster. Messages are not
+ * encrypted, hence the bind address should be that of a private network, and the replication port must not be
+ * exposed to clients. Attribute values which need Java serialization are only replicated if their classes are
+ * allowed by the codec, see {@link DefaultSessionAttributeCodec#DefaultSessionAttributeCodec(java.util.Collection)}.
+ */
+public class ReplicatedSessionManager extends AbstractSessionManager {
+    private static final Logger log = LoggerFactory.getLogger(ReplicatedSessionManager.class);
+
+    private static final byte FULL = 1;
+    private static final byte DELTA = 2;
+    private static final byte REMOVE = 3;
+    private static final byte TOUCH = 4;
+
+    /**
+     * The default interval, in milliseconds, at which the last accessed times are replicated.
+     */
+    private static final long DEFAULT_REPLICATION_INTERVAL = 1000;
+
+    /**
+     * The default number of messages which can be queued for a peer before it is considered to be lagging behind.
+     */
+    private static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+    private static final int MAX_TOUCHES_PER_MESSAGE = 1000;
+
+    /**
+     * Time, in milliseconds, for which an expired session is kept to let the node which holds it in use expire it.
+     */
+    private static final long EXPIRED_SESSION_GRACE_PERIOD = 60 * 1000;
+
+    private final InetSocketAddress bindAddress;
+    private final SecretKey key;
+    private final SessionAttributeCodec codec;
+    private final List<InetSocketAddress> peers = new ArrayList<>();
+    // Sessions of the cluster, the sessions in use are also held by the AbstractSessionManager
+    private final Map<String, Session> replicas = new ConcurrentHashMap<>();
+    private final Map<String, Session> accessedSessions = new ConcurrentHashMap<>();
+    private final LongAdder missedDeltas = new LongAdder();
+    private final LongAdder droppedReplicas = new LongAdder();
+    private final Object trimLock = new Object();
+    private long replicationInterval = DEFAULT_REPLICATION_INTERVAL;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private volatile ReplicationTransport transport;
+    private ScheduledExecutorService replicator;
+
+    /**
+     * Create a SessionManager which does not replicate the attribute values which need Java serialization.
+     *
+     * @param jvmRoute    route of this node, unique within the cluster
+     * @param bindAddress address of a private interface on which the other nodes connect to this node
+     * @param key         secret key shared by the nodes of the cluster, of at least 128 bits
+     */
+    public ReplicatedSessionManager(String jvmRoute, InetSocketAddress bindAddress, SecretKey key) {
+        this(jvmRoute, bindAddress, key, new DefaultSessionAttributeCodec(Collections.emptySet()));
+    }
+
+    /**
+     * @param jvmRoute    route of this node, unique within the cluster
+     * @param bindAddress address of a private interface on which the other nodes connect to this node
+     * @param key         secret key shared by the nodes of the cluster, of at least 128 bits
+     * @param codec       codec used to encode the attribute values, which should not deserialize arbitrary classes
+     */
+    public ReplicatedSessionManager(String jvmRoute, InetSocketAddress bindAddress, SecretKey key,
+                                    SessionAttributeCodec codec) {
+        if (bindAddress.isUnresolved() || bindAddress.getAddress().isAnyLocalAddress()) {
+            throw new IllegalArgumentException("Session replication should be bound to the address of a private "
+                    + "interface: " + bindAddress);
+        }
+        this.bindAddress = bindAddress;
+        this.key = key;
+        this.codec = codec;
+        setJvmRoute(jvmRoute);
+    }
+
+    @Override
+    public void setJvmRoute(String jvmRoute) {
+        if (jvmRoute == null || jvmRoute.isEmpty() || jvmRoute.indexOf('.') >= 0) {
+            throw new IllegalArgumentException("Invalid route: " + jvmRoute);
+        }
+        super.setJvmRoute(jvmRoute);
+    }
+
+    /**
+     * Add a node to which the sessions are replicated. Nodes can be added before or after this SessionManager
+     * is initialized.
+     *
+     * @param address address on which the node accepts the connections of the other nodes
+     */
+    public synchronized void addPeer(InetSocketAddress address) {
+        peers.add(address);
+        if (transport != null) {
+            transport.addPeer(address);
+        }
+    }
+
+    /**
+     * Set the interval at which the last accessed times of the sessions are replicated. Should be set before
+     * this SessionManager is initialized.
+     *
+     * @param replicationInterval interval in milliseconds
+     */
+    public synchronized void setReplicationInterval(long replicationInterval) {
+        if (replicationInterval <= 0) {
+            throw new IllegalArgumentException("Replication interval should be a positive value");
+        }
+        checkNotStarted();
+        this.replicationInterval = replicationInterval;
+    }
+
+    /**
+     * Set the number of messages which can be queued for a node. A node which falls further behind is disconnected
+     * and brought up to date once it connects again. Should be set before this SessionManager is initialized.
+     *
+     * @param queueCapacity number of messages
+     */
+    public synchronized void setReplicationQueueCapacity(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity should be a positive value");
+        }
+        checkNotStarted();
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @return address on which this node accepts the connections of the other nodes
+     */
+    public InetSocketAddress getLocalAddress() {
+        return getTransport().getLocalAddress();
+    }
+
+    /**
+     * @return routes of the nodes which are connected to this node
+     */
+    public Set<String> getConnectedRoutes() {
+        return getTransport().getConnectedRoutes();
+    }
+
+    /**
+     * @return number of sessions of the cluster held by this node
+     */
+    public int getReplicatedSessionCount() {
+        return replicas.size();
+    }
+
+    public long getSentMessageCount() {
+        return getTransport().getSentFrameCount();
+    }
+
+    public long getSentBytes() {
+        return getTransport().getSentBytes();
+    }
+
+    public long getReceivedMessageCount() {
+        return getTransport().getReceivedFrameCount();
+    }
+
+    public long getReceivedBytes() {
+        return getTransport().getReceivedBytes();
+    }
+
+    /**
+     * @return number of messages which could not be delivered to a node, which was then brought up to date
+     */
+    public long getDroppedMessageCount() {
+        return getTransport().getDroppedFrameCount();
+    }
+
+    /**
+     * @return number of messages queued to the other nodes which are yet to be sent
+     */
+    public int getPendingMessageCount() {
+        return getTransport().getPendingFrameCount();
+    }
+
+    /**
+     * @return number of sessions of the cluster dropped by this node to stay within the session limits
+     */
+    public long getDroppedReplicaCount() {
+        return droppedReplicas.sum();
+    }
+
+    /**
+     * @return number of received changes which were ignored since the session was not known to this node
+     */
+    public long getMissedDeltaCount() {
+        return missedDeltas.sum();
+    }
+
+    /**
+     * Get the time between a change being queued on a node and being received by this node, for the last received
+     * change. The clocks of the nodes are assumed to be in sync.
+     *
+     * @return replication lag in milliseconds
+     */
+    public long getLastReplicationLag() {
+        return getTransport().getLastReplicationLag();
+    }
+
+    public long getMaxReplicationLag() {
+        return getTransport().getMaxReplicationLag();
+    }
+
+    /**
+     * Join the cluster. The sessions of the other nodes are received once the connections are established.
+     */
+    @Override
+    public synchronized void loadSessions(Map<String, Session> sessions) {
+        checkNotStarted();
+        ReplicationTransport transport = new ReplicationTransport(getJvmRoute(), bindAddress, key, queueCapacity,
+                new TransportListener());
+        peers.forEach(transport::addPeer);
+        try {
+            transport.start();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot bind the session replication address " + bindAddress, e);
+        }
+        this.transport = transport;
+        replicator = Executors.newSingleThreadScheduledExecutor();
+        replicator.scheduleWithFixedDelay(() -> {
+            try {
+                replicateAccessedSessions();
+                removeExpiredReplicas();
+                trimReplicas();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Couldn't replicate the session access times", e);
+            }
+        }, replicationInterval, replicationInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Session readSession(String sessionId) {
+        checkValidity();
+        Session session = replicas.get(sessionId);
+        if (session == null || !session.isValid() || isExpired(session, System.currentTimeMillis())) {
+            return null;
+        }
+        return session;
+    }
+
+    @Override
+    public void saveSession(Session session) {
+        checkValidity();
+        replicas.put(session.getId(), session);
+        // Sent as a whole, hence the changes made so far need not be sent again
+        session.drainChangedAttributes();
+        try {
+            getTransport().broadcast(encodeSession(session));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot replicate session " + session.getId(), e);
+        }
+    }
+
+    @Override
+    public void updateSession(Session session) {
+        checkValidity();
+        Set<String> changedAttributes = session.drainChangedAttributes();
+        if (changedAttributes.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(DELTA);
+            out.writeUTF(session.getId());
+            out.writeLong(session.getLastAccessedTime());
+            out.writeInt(changedAttributes.size());
+            for (String name : changedAttributes) {
+                Object value = session.getAttributes().get(name);
+                out.writeUTF(name);
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    codec.encode(value, out);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot replicate session " + session.getId(), e);
+        }
+        getTransport().broadcast(bytes.toByteArray());
+    }
+
+    @Override
+    public void deleteSession(Session session) {
+        checkValidity();
+        accessedSessions.remove(session.getId());
+        // Sessions removed by another node are no longer replicated, hence the removal is not sent back
+        if (replicas.remove(session.getId(), session)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeByte(REMOVE);
+                out.writeUTF(session.getId());
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot replicate the removal of session " + session.getId(), e);
+            }
+            getTransport().broadcast(bytes.toByteArray());
+        }
+    }
+
+    @Override
+    public void sessionAccessed(Session session) {
+        accessedSessions.put(session.getId(), session);
+    }
+
+    @Override
+    protected void sessionEvicted(Session session) {
+        // Dropped by this node only, the other nodes keep the session
+        accessedSessions.remove(session.getId());
+        replicas.remove(session.getId(), session);
+    }
+
+    @Override
+    protected synchronized void destroy() {
+        if (replicator != null) {
+            replicator.shutdownNow();
+        }
+        if (transport != null) {
+            transport.stop();
+        }
+    }
+
+    private ReplicationTransport getTransport() {
+        ReplicationTransport transport = this.transport;
+        if (transport == null) {
+            throw new IllegalStateException("SessionManager has not been initialized");
+        }
+        return transport;
+    }
+
+    private void checkNotStarted() {
+        if (transport != null) {
+            throw new IllegalStateException("SessionManager has already been initialized");
+        }
+    }
+
+    /**
+     * A session is owned by the node whose route is the suffix of the session ID, or adopted by every node while
+     * its owner is not connected.
+     */
+    private boolean isOwned(Session session) {
+        String sessionId = session.getId();
+        String route = sessionId.substring(sessionId.lastIndexOf('.') + 1);
+        return route.equals(getJvmRoute()) || !transport.isConnected(route);
+    }
+
+    private static boolean isExpired(Session session, long now) {
+        return now - session.getLastAccessedTime() >= session.getMaxInactiveInterval() * 60L * 1000;
+    }
+
+    private void replicateAccessedSessions() throws IOException {
+        Iterator<Session> sessions = accessedSessions.values().iterator();
+        while (sessions.hasNext()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                List<Session> batch = new ArrayList<>();
+                while (sessions.hasNext() && batch.size() < MAX_TOUCHES_PER_MESSAGE) {
+                    batch.add(sessions.next());
+                    sessions.remove();
+                }
+                out.writeByte(TOUCH);
+                out.writeInt(batch.size());
+                for (Session session : batch) {
+                    out.writeUTF(session.getId());
+                    out.writeLong(session.getLastAccessedTime());
+                }
+            }
+            transport.broadcast(bytes.toByteArray());
+        }
+    }
+
+    private void removeExpiredReplicas() {
+        long now = System.currentTimeMillis() - EXPIRED_SESSION_GRACE_PERIOD;
+        // Every node removes the sessions which have expired without being used, hence the removal is not sent
+        replicas.values().removeIf(session -> isExpired(session, now));
+    }
+
+    /**
+     * Drop the least recently accessed sessions which are not in use by this node, down to a fraction of the
+     * limits, once the sessions of the cluster exceed them. The removal is not sent, since the other nodes keep
+     * their copies.
+     */
+    private void trimReplicas() {
+        synchronized (trimLock) {
+            int maxCount = getDefaultMaxActiveSessions();
+            long maxMemory = getMaxSessionMemory();
+            long memory = (maxMemory == UNLIMITED) ? 0 : estimateReplicaMemory();
+            if (replicas.size() <= maxCount && (maxMemory == UNLIMITED || memory <= maxMemory)) {
+                return;
+            }
+            int targetCount = (int) (maxCount * EVICTION_TARGET);
+            long targetMemory = (long) (maxMemory * EVICTION_TARGET);
+            // The access times are captured since the sessions may be accessed while being sorted
+            List<Map.Entry<Long, Session>> candidates = new ArrayList<>();
+            for (Session session : replicas.values()) {
+                if (!isActive(session)) {
+                    candidates.add(new AbstractMap.SimpleImmutableEntry<>(session.getLastAccessedTime(), session));
+                }
+            }
+            candidates.sort(Map.Entry.comparingByKey());
+            int dropped = 0;
+            for (Map.Entry<Long, Session> candidate : candidates) {
+                if (replicas.size() <= targetCount && (maxMemory == UNLIMITED || memory <= targetMemory)) {
+                    break;
+                }
+                Session session = candidate.getValue();
+                if (replicas.remove(session.getId(), session)) {
+                    accessedSessions.remove(session.getId());
+                    memory -= estimateSize(session);
+                    dropped++;
+                }
+            }
+            droppedReplicas.add(dropped);
+            log.debug("Dropped {} replicated sessions, {} sessions remain", dropped, replicas.size());
+        }
+    }
+
+    private long estimateReplicaMemory() {
+        long memory = 0;
+        for (Session session : replicas.values()) {
+            memory += estimateSize(session);
+        }
+        return memory;
+    }
+
+    private byte[] encodeSession(Session session) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FULL);
+            out.writeUTF(session.getId());
+            out.writeLong(session.getCreationTime());
+            out.writeLong(session.getLastAccessedTime());
+            out.writeInt(session.getMaxInactiveInterval());
+            SessionEncoding.writeAttributes(session.getAttributes(), codec, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void applySession(DataInputStream in) throws IOException {
+        String sessionId = in.readUTF();
+        long creationTime = in.readLong();
+        long lastAccessedTime = in.readLong();
+        int maxInactiveInterval = in.readInt();
+        Map<String, Object> attributes = SessionEncoding.readAttributes(in, codec);
+        Session session = replicas.get(sessionId);
+        if (session == null) {
+            session = new Session(sessionId, creationTime, lastAccessedTime, maxInactiveInterval, attributes);
+            session.setManager(this);
+            if (replicas.putIfAbsent(sessionId, session) == null) {
+                if (replicas.size() > getDefaultMaxActiveSessions()) {
+                    trimReplicas();
+                }
+                return;
+            }
+            session = replicas.get(sessionId);
+            if (session == null) {
+                return;
+            }
+        }
+        // Updated in place since the session may be in use
+        session.getAttributes().keySet().retainAll(attributes.keySet());
+        session.getAttributes().putAll(attributes);
+        session.setMaxInactiveInterval(maxInactiveInterval);
+        accessed(session, lastAccessedTime);
+    }
+
+    private void applyDelta(DataInputStream in) throws IOException {
+        String sessionId = in.readUTF();
+        Session session = replicas.get(sessionId);
+        if (session == null) {
+            // The owner sends the whole session once the connection is re-established
+            missedDeltas.increment();
+            return;
+        }
+        accessed(session, in.readLong());
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            String name = in.readUTF();
+            Object value = in.readBoolean() ? codec.decode(in) : null;
+            if (value == null) {
+                session.getAttributes().remove(name);
+            } else {
+                session.getAttributes().put(name, value);
+            }
+        }
+    }
+
+    private void applyRemove(DataInputStream in) throws IOException {
+        String sessionId = in.readUTF();
+        accessedSessions.remove(sessionId);
+        Session session = replicas.remove(sessionId);
+        if (session != null && session.isValid()) {
+            session.invalidate();
+        }
+    }
+
+    private void applyAccessTimes(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            Session session = replicas.get(in.readUTF());
+            long lastAccessedTime = in.readLong();
+            if (session != null) {
+                accessed(session, lastAccessedTime);
+            }
+        }
+    }
+
+    private static void accessed(Session session, long lastAccessedTime) {
+        if (lastAccessedTime > session.getLastAccessedTime()) {
+            session.setLastAccessedTime(lastAccessedTime);
+        }
+    }
+
+    private class TransportListener implements ReplicationTransport.Listener {
+
+        @Override
+        public void peerConnected(InetSocketAddress address, ReplicationTransport.FrameSink sink)
+                throws IOException {
+            int sent = 0;
+            for (Session session : replicas.values()) {
+                if (!session.isValid() || !isOwned(session)) {
+                    continue;
+                }
+                byte[] message;
+                try {
+                    message = encodeSession(session);
+                } catch (IOException e) {
+                    log.warn("Couldn't replicate session " + session.getId() + " to " + address, e);
+                    continue;
+                }
+                sink.write(message);
+                sent++;
+            }
+            log.debug("Replicated {} sessions to {}", sent, address);
+        }
+
+        @Override
+        public void frameReceived(String route, byte[] frame) throws IOException {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame))) {
+                byte type = in.readByte();
+                switch (type) {
+                    case FULL:
+                        applySession(in);
+                        break;
+                    case DELTA:
+                        applyDelta(in);
+                        break;
+                    case REMOVE:
+                        applyRemove(in);
+                        break;
+                    case TOUCH:
+                        applyAccessTimes(in);
+                        break;
+                    default:
+                        throw new IOException("Unknown session replication message type " + type + " from " + route);
+                }
+            }
+        }
+    }
+}
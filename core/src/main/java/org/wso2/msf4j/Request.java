@@ -4,13 +4,20 @@ import org.wso2.carbon.messaging.CarbonMessage;
 import org.wso2.carbon.messaging.Constants;
 import org.wso2.carbon.messaging.Headers;
 import org.wso2.msf4j.internal.MSF4JConstants;
+import org.wso2.msf4j.internal.formparam.RequestFormData;
+import org.wso2.msf4j.io.RequestBodyLimits;
+import org.wso2.msf4j.io.RequestEntityTooLargeException;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.security.Principal;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
 
 /**
  * Class that represents an HTTP request in MSF4J level.
@@ -22,6 +29,11 @@ public class Request {
     private String contentType = null;
     private SessionManager sessionManager;
     private Session session;
+    private RequestBodyLimits bodyLimits;
+    private long maxBodySize = RequestBodyLimits.UNLIMITED;
+    private long receivedBytes;
+    private Principal userPrincipal;
+    private Deadline deadline = Deadline.NONE;
 
     public Request(CarbonMessage carbonMessage) {
         this.carbonMessage = carbonMessage;
@@ -59,16 +71,68 @@ public class Request {
 
     /**
      * @return next available message body chunk
+     * @throws RequestEntityTooLargeException if the body exceeds the maximum body size of the request
      */
     public ByteBuffer getMessageBody() {
-        return carbonMessage.getMessageBody();
+        ByteBuffer chunk = carbonMessage.getMessageBody();
+        if (maxBodySize != RequestBodyLimits.UNLIMITED && chunk != null) {
+            receivedBytes += chunk.remaining();
+            if (receivedBytes > maxBodySize) {
+                throw bodyLimits.reject(maxBodySize, receivedBytes);
+            }
+        }
+        return chunk;
     }
 
     /**
      * @return full message body of the Request
+     * @throws RequestEntityTooLargeException if the body exceeds the maximum body size of the request
      */
     public List<ByteBuffer> getFullMessageBody() {
-        return carbonMessage.getFullMessageBody();
+        if (maxBodySize == RequestBodyLimits.UNLIMITED) {
+            return carbonMessage.getFullMessageBody();
+        }
+        // Take the chunks one by one so that the request is aborted as soon as the limit is crossed
+        List<ByteBuffer> body = new ArrayList<>();
+        while (!(carbonMessage.isEndOfMsgAdded() && carbonMessage.isEmpty())) {
+            body.add(getMessageBody());
+        }
+        return body;
+    }
+
+    /**
+     * Limit the size of the request body. A request which declares a larger <tt>Content-Length</tt> is rejected
+     * right away, before any of its body is read. Otherwise the request is aborted once the body chunks read
+     * through this request cross the limit.
+     *
+     * @param maxBodySize maximum number of body bytes, or {@link RequestBodyLimits#UNLIMITED}
+     * @param bodyLimits  limits which record the rejected requests
+     * @throws RequestEntityTooLargeException if the declared content length exceeds the limit
+     */
+    public void setMaxBodySize(long maxBodySize, RequestBodyLimits bodyLimits) {
+        this.maxBodySize = maxBodySize;
+        this.bodyLimits = bodyLimits;
+        if (maxBodySize == RequestBodyLimits.UNLIMITED) {
+            return;
+        }
+        String contentLength = carbonMessage.getHeader(HttpHeaders.CONTENT_LENGTH);
+        if (contentLength != null) {
+            try {
+                long length = Long.parseLong(contentLength.trim());
+                if (length > maxBodySize) {
+                    throw bodyLimits.reject(maxBodySize, length);
+                }
+            } catch (NumberFormatException ignored) {
+                // The transport rejects malformed content lengths, the body is still limited while it is read
+            }
+        }
+    }
+
+    /**
+     * @return maximum number of body bytes accepted for this request, or {@link RequestBodyLimits#UNLIMITED}
+     */
+    public long getMaxBodySize() {
+        return maxBodySize;
     }
 
     /**
@@ -152,6 +216,45 @@ public class Request {
         return contentType;
     }
 
+    /**
+     * Returns the parameters of an <tt>application/x-www-form-urlencoded</tt> or <tt>multipart/form-data</tt>
+     * request body. The body is parsed once per request and shared with the form parameters of the resource method.
+     *
+     * @return form parameters, with the file parts given as {@link java.io.File}s
+     * @throws IOException if the request body can not be read
+     */
+    public MultivaluedMap<String, Object> getFormParameters() throws IOException {
+        return RequestFormData.get(this).toMultivaluedMap();
+    }
+
+    /**
+     * @return deadline of the request, or {@link Deadline#NONE} if the request does not have one
+     */
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return user authenticated by a security interceptor, or null if the request has not been authenticated
+     */
+    public Principal getUserPrincipal() {
+        return userPrincipal;
+    }
+
+    /**
+     * Set the user authenticated by a security interceptor, so that the interceptors which follow it can
+     * identify the user.
+     *
+     * @param userPrincipal authenticated user
+     */
+    public void setUserPrincipal(Principal userPrincipal) {
+        this.userPrincipal = userPrincipal;
+    }
+
     /**
      * Returns the current session associated with this request, or if the request does not have a session,
      * creates one.
@@ -159,22 +262,7 @@ public class Request {
      * @return Session
      */
     public Session getSession() {
-        if (sessionManager == null) {
-            throw new IllegalStateException("SessionManager has not been set");
-        }
-        if (session != null) {
-            return session.setAccessed();
-        }
-        String cookieHeader = getHeader("Cookie");
-        if (cookieHeader != null) {
-            session = Arrays.stream(cookieHeader.split(";"))
-                    .filter(cookie -> cookie.startsWith(MSF4JConstants.SESSION_ID))
-                    .findFirst()
-                    .map(jsession -> sessionManager.getSession(jsession.substring(MSF4JConstants.SESSION_ID.length())))
-                    .orElseGet(sessionManager::createSession);
-            return session.setAccessed();
-        }
-        return session = sessionManager.createSession();
+        return getSession(true);
     }
 
     /**
@@ -191,18 +279,8 @@ public class Request {
         if (session != null) {
             return session.setAccessed();
         }
-        String cookieHeader = getHeader("Cookie");
-        if (cookieHeader != null) {
-            session = Arrays.stream(cookieHeader.split(";"))
-                    .filter(cookie -> cookie.startsWith(MSF4JConstants.SESSION_ID))
-                    .findFirst()
-                    .map(jsession -> sessionManager.getSession(jsession.substring(MSF4JConstants.SESSION_ID.length())))
-                    .orElseGet(() -> {
-                        if (create) {
-                            return sessionManager.createSession();
-                        }
-                        return null;
-                    });
+        session = findSession();
+        if (session != null) {
             return session.setAccessed();
         } else if (create) {
             return session = sessionManager.createSession();
@@ -210,7 +288,34 @@ public class Request {
         return null;
     }
 
+    private Session findSession() {
+        String cookieHeader = getHeader("Cookie");
+        if (cookieHeader == null) {
+            return null;
+        }
+        for (String cookie : cookieHeader.split(";")) {
+            cookie = cookie.trim();
+            if (cookie.startsWith(MSF4JConstants.SESSION_ID)) {
+                return sessionManager.getSession(cookie.substring(MSF4JConstants.SESSION_ID.length()));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Persist the session changes deferred by the {@link SessionManager} while serving this request.
+     */
+    public void flushSession() {
+        if (session != null && sessionManager != null) {
+            sessionManager.flushSession(session);
+        }
+    }
+
     Session getSessionInternal() {
         return session;
     }
+
+    SessionManager getSessionManager() {
+        return sessionManager;
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Sets the priority of the requests to a resource method, or to all the resource methods of a class, when the
+ * runner sheds load with a {@link org.wso2.msf4j.concurrency.ConcurrencyLimiter}. Requests of lower priority are
+ * shed first. Resource methods without a priority are of {@link Level#NORMAL} priority.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RequestPriority {
+
+    /**
+     * Priority classes, in the order they are shed.
+     */
+    enum Level {
+        /**
+         * Requests which are shed before the concurrency limit is reached, such as batch or prefetch requests.
+         */
+        LOW,
+        /**
+         * Requests which are shed once the concurrency limit is reached.
+         */
+        NORMAL,
+        /**
+         * Requests which are admitted beyond the concurrency limit, such as health checks.
+         */
+        CRITICAL
+    }
+
+    /**
+     * @return priority of the requests
+     */
+    Level value();
+
+}
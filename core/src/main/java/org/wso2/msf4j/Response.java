@@ -18,13 +18,12 @@ package org.wso2.msf4j;
 
 import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
-import org.wso2.carbon.messaging.DefaultCarbonMessage;
 import org.wso2.carbon.messaging.Header;
 import org.wso2.carbon.messaging.Headers;
 import org.wso2.carbon.transport.http.netty.common.Constants;
-import org.wso2.msf4j.internal.MSF4JConstants;
 import org.wso2.msf4j.internal.entitywriter.EntityWriter;
 import org.wso2.msf4j.internal.entitywriter.EntityWriterRegistry;
+import org.wso2.msf4j.io.FlowControlledCarbonMessage;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -53,7 +52,7 @@ public class Response {
     private javax.ws.rs.core.Response jaxrsResponse;
 
     public Response(CarbonCallback carbonCallback) {
-        carbonMessage = new DefaultCarbonMessage();
+        carbonMessage = new FlowControlledCarbonMessage();
         this.carbonCallback = carbonCallback;
     }
 
@@ -278,8 +277,11 @@ public class Response {
 
         //Set-Cookie: session
         Session session = request.getSessionInternal();
-        if (session != null && session.isValid() && session.isNew()) {
-            cookiesHeader.add(new Header("Set-Cookie", MSF4JConstants.SESSION_ID + session.getId()));
+        if (session != null) {
+            String sessionCookie = request.getSessionManager().getSessionCookie(session);
+            if (sessionCookie != null) {
+                cookiesHeader.add(new Header("Set-Cookie", sessionCookie));
+            }
         }
         carbonMessage.getHeaders().set(cookiesHeader);
         processEntity();
@@ -18,7 +18,11 @@
  */
 package org.wso2.msf4j;
 
+import org.wso2.msf4j.internal.session.TimingWheel;
+
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -33,11 +37,15 @@ public class Session implements Serializable {
 
     private String id;
     private long creationTime;
-    private long lastAccessedTime;
-    private int maxInactiveInterval;
-    private boolean isValid = true;
+    private volatile long lastAccessedTime;
+    private volatile int maxInactiveInterval;
+    private volatile boolean isValid = true;
     private boolean isNew = true;
     private Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private transient volatile boolean isChanged;
+    private transient Set<String> changedAttributes;
+    private transient volatile long estimatedSize;
+    private transient volatile TimingWheel.Timeout<Session> expiryTimeout;
 
     public Session() {
     }
@@ -49,6 +57,16 @@ public class Session implements Serializable {
         lastAccessedTime = creationTime;
     }
 
+    Session(String id, long creationTime, long lastAccessedTime, int maxInactiveInterval,
+            Map<String, Object> attributes) {
+        this.id = id;
+        this.creationTime = creationTime;
+        this.lastAccessedTime = lastAccessedTime;
+        this.maxInactiveInterval = maxInactiveInterval;
+        this.attributes.putAll(attributes);
+        this.isNew = false;
+    }
+
     long getCreationTime() {
         return creationTime;
     }
@@ -77,14 +95,72 @@ public class Session implements Serializable {
 
     public void setAttribute(String name, Object value) {
         checkValidity();
-        attributes.put(name, value);
-        sessionManager.updateSession(this);
+        Object previous = attributes.put(name, value);
+        changed(name, previous);
     }
 
     public void removeAttribute(String name) {
         checkValidity();
-        sessionManager.updateSession(this);
-        attributes.remove(name);
+        Object previous = attributes.remove(name);
+        changed(name, previous);
+    }
+
+    private void changed(String name, Object previous) {
+        isChanged = true;
+        synchronized (this) {
+            if (changedAttributes == null) {
+                changedAttributes = new HashSet<>();
+            }
+            changedAttributes.add(name);
+        }
+        try {
+            sessionManager.sessionChanged(this);
+        } catch (RuntimeException e) {
+            // The change could not be stored, hence it is not kept either
+            if (previous == null) {
+                attributes.remove(name);
+            } else {
+                attributes.put(name, previous);
+            }
+            throw e;
+        }
+    }
+
+    boolean isChanged() {
+        return isChanged;
+    }
+
+    void setChanged(boolean isChanged) {
+        this.isChanged = isChanged;
+    }
+
+    /**
+     * @return names of the attributes set or removed since the last call
+     */
+    synchronized Set<String> drainChangedAttributes() {
+        Set<String> names = changedAttributes;
+        changedAttributes = null;
+        return (names == null) ? Collections.emptySet() : names;
+    }
+
+    long getEstimatedSize() {
+        return estimatedSize;
+    }
+
+    void setEstimatedSize(long estimatedSize) {
+        this.estimatedSize = estimatedSize;
+    }
+
+    TimingWheel.Timeout<Session> getExpiryTimeout() {
+        return expiryTimeout;
+    }
+
+    void setExpiryTimeout(TimingWheel.Timeout<Session> expiryTimeout) {
+        this.expiryTimeout = expiryTimeout;
+    }
+
+    Map<String, Object> getAttributes() {
+        return attributes;
     }
 
     private void checkValidity() {
@@ -118,6 +194,7 @@ public class Session implements Serializable {
     Session setAccessed() {
         checkValidity();
         lastAccessedTime = System.currentTimeMillis();
+        sessionManager.sessionAccessed(this);
         return this;
     }
 
@@ -125,6 +202,10 @@ public class Session implements Serializable {
         return lastAccessedTime;
     }
 
+    void setLastAccessedTime(long lastAccessedTime) {
+        this.lastAccessedTime = lastAccessedTime;
+    }
+
     public void setManager(SessionManager sessionManager) {
         this.sessionManager = sessionManager;
     }
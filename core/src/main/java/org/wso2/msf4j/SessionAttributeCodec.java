@@ -0,0 +1,47 @@
+/*
+ *  Copyright (c) 2016 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.msf4j;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Encodes the attribute values of sessions persisted by {@link PersistentSessionManager}.
+ */
+public interface SessionAttributeCodec {
+
+    /**
+     * Encode an attribute value.
+     *
+     * @param value attribute value
+     * @param out   output to which the value is written
+     * @throws IOException if the value can not be encoded
+     */
+    void encode(Object value, DataOutput out) throws IOException;
+
+    /**
+     * Decode an attribute value written by {@link #encode(Object, DataOutput)}.
+     *
+     * @param in input from which the value is read
+     * @return attribute value
+     * @throws IOException if the value can not be decoded
+     */
+    Object decode(DataInput in) throws IOException;
+}
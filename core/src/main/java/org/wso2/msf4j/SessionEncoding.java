@@ -0,0 +1,63 @@
+/*
+ *  Copyright (c) 2016 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.msf4j;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary form of session attributes shared by the session managers which serialize sessions.
+ */
+final class SessionEncoding {
+
+    private SessionEncoding() {
+    }
+
+    static void writeAttributes(Map<String, Object> attributes, SessionAttributeCodec codec, DataOutput out)
+            throws IOException {
+        // Copied since the attributes may change while being written
+        Map<String, Object> snapshot = new HashMap<>(attributes);
+        out.writeInt(snapshot.size());
+        for (Map.Entry<String, Object> attribute : snapshot.entrySet()) {
+            out.writeUTF(attribute.getKey());
+            codec.encode(attribute.getValue(), out);
+        }
+    }
+
+    static Map<String, Object> readAttributes(DataInput in, SessionAttributeCodec codec) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            throw new StreamCorruptedException("Invalid attribute count " + size);
+        }
+        // Not sized up front, since the count is only trusted once the attributes have been read
+        Map<String, Object> attributes = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String name = in.readUTF();
+            Object value = codec.decode(in);
+            if (value != null) {
+                attributes.put(name, value);
+            }
+        }
+        return attributes;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ *  Copyright (c) 2016 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.msf4j;
+
+/**
+ * Listener which is notified when a session managed by an {@link AbstractSessionManager} expires.
+ */
+@FunctionalInterface
+public interface SessionExpiryListener {
+
+    /**
+     * Called when a session has been inactive for longer than its max inactive interval, before the
+     * session is invalidated. The attributes of the session can still be read.
+     *
+     * @param session Session which has expired
+     */
+    void sessionExpired(Session session);
+}
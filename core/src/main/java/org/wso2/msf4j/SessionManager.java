@@ -18,6 +18,8 @@
  */
 package org.wso2.msf4j;
 
+import org.wso2.msf4j.internal.MSF4JConstants;
+
 import java.util.Map;
 
 /**
@@ -108,6 +110,45 @@ public interface SessionManager {
      */
     void updateSession(Session session);
 
+    /**
+     * Called when the attributes of a session change. The session is updated in persistent storage right away
+     * unless the SessionManager defers the writes.
+     *
+     * @param session Session which has changed
+     */
+    default void sessionChanged(Session session) {
+        updateSession(session);
+    }
+
+    /**
+     * Called once a request which used the session has been served, to persist the changes deferred
+     * while serving the request.
+     *
+     * @param session Session used by the request
+     */
+    default void flushSession(Session session) {
+    }
+
+    /**
+     * Notify that a session has been accessed by a request. The new last accessed time need not be stored,
+     * this is meant for managers which share sessions between nodes.
+     *
+     * @param session Session which has been accessed
+     */
+    default void sessionAccessed(Session session) {
+    }
+
+    /**
+     * Get the session cookie to be set on the response of a request which used the session. By default the
+     * cookie carries the session ID and is set only when the session has been created by the request.
+     *
+     * @param session Session used by the request
+     * @return value of the <tt>Set-Cookie</tt> header, or null if the cookie need not be set
+     */
+    default String getSessionCookie(Session session) {
+        return (session.isValid() && session.isNew()) ? MSF4JConstants.SESSION_ID + session.getId() : null;
+    }
+
     /**
      * Stop this SessionManager.
      */
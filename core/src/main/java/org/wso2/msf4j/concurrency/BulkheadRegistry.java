@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.concurrency;
+
+import org.wso2.msf4j.Bulkhead;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the bulkheads of a runner, which are declared with {@link Bulkhead} or configured for a service class
+ * with {@link #setBulkhead(Class, int, int, long)}. A bulkhead on a method takes precedence over the bulkhead of
+ * its class, and a bulkhead configured for a class takes precedence over the annotation of the class.
+ */
+public class BulkheadRegistry {
+
+    public static final int DEFAULT_REJECTION_STATUS = 503;
+
+    private final Map<String, BulkheadSemaphore> bulkheads = new ConcurrentHashMap<>();
+    private final Map<Class<?>, BulkheadSemaphore> serviceBulkheads = new ConcurrentHashMap<>();
+    private final Map<Method, Optional<BulkheadSemaphore>> routeBulkheads = new ConcurrentHashMap<>();
+
+    /**
+     * Isolate the resource methods of a service class in a bulkhead named after the class.
+     *
+     * @param serviceClass  class of the service
+     * @param maxConcurrent maximum number of requests served concurrently
+     * @param maxQueued     maximum number of requests waiting for the bulkhead
+     * @param maxWait       maximum time in milliseconds a request waits for the bulkhead
+     */
+    public void setBulkhead(Class<?> serviceClass, int maxConcurrent, int maxQueued, long maxWait) {
+        BulkheadSemaphore bulkhead = new BulkheadSemaphore(serviceClass.getName(), maxConcurrent, maxQueued,
+                maxWait, DEFAULT_REJECTION_STATUS);
+        bulkheads.put(bulkhead.getName(), bulkhead);
+        serviceBulkheads.put(serviceClass, bulkhead);
+        routeBulkheads.clear();
+    }
+
+    /**
+     * @return bulkheads of the resource methods which have been invoked
+     */
+    public Collection<BulkheadSemaphore> getBulkheads() {
+        return Collections.unmodifiableCollection(bulkheads.values());
+    }
+
+    /**
+     * @param name name of the bulkhead
+     * @return bulkhead with the given name, or null if no request has used it yet
+     */
+    public BulkheadSemaphore getBulkhead(String name) {
+        return bulkheads.get(name);
+    }
+
+    /**
+     * Get the bulkhead of a resource method.
+     *
+     * @param method       resource method
+     * @param serviceClass class of the service which serves the method
+     * @return bulkhead of the method, or null if the method is not isolated
+     */
+    public BulkheadSemaphore getBulkhead(Method method, Class<?> serviceClass) {
+        return routeBulkheads.computeIfAbsent(method, key -> resolve(method, serviceClass)).orElse(null);
+    }
+
+    private Optional<BulkheadSemaphore> resolve(Method method, Class<?> serviceClass) {
+        Bulkhead bulkhead = method.getAnnotation(Bulkhead.class);
+        if (bulkhead != null) {
+            return Optional.of(getOrCreate(bulkhead, serviceClass.getName() + "#" + method.getName()));
+        }
+        BulkheadSemaphore configured = serviceBulkheads.get(serviceClass);
+        if (configured != null) {
+            return Optional.of(configured);
+        }
+        bulkhead = serviceClass.getAnnotation(Bulkhead.class);
+        if (bulkhead != null) {
+            return Optional.of(getOrCreate(bulkhead, serviceClass.getName()));
+        }
+        return Optional.empty();
+    }
+
+    private BulkheadSemaphore getOrCreate(Bulkhead bulkhead, String defaultName) {
+        String name = bulkhead.name().isEmpty() ? defaultName : bulkhead.name();
+        return bulkheads.computeIfAbsent(name, key -> new BulkheadSemaphore(name, bulkhead.maxConcurrent(),
+                bulkhead.maxQueued(), bulkhead.maxWait(), bulkhead.rejectionStatus()));
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.concurrency;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the number of requests served concurrently by a bulkhead and keeps its utilization metrics.
+ */
+public class BulkheadSemaphore {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWait;
+    private final int rejectionStatus;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param name            name of the bulkhead
+     * @param maxConcurrent   maximum number of requests served concurrently
+     * @param maxQueued       maximum number of requests waiting for the bulkhead
+     * @param maxWait         maximum time in milliseconds a request waits for the bulkhead
+     * @param rejectionStatus status of the responses to the rejected requests
+     */
+    public BulkheadSemaphore(String name, int maxConcurrent, int maxQueued, long maxWait, int rejectionStatus) {
+        if (maxConcurrent <= 0 || maxQueued < 0 || (maxQueued > 0 && maxWait <= 0)) {
+            throw new IllegalArgumentException("Invalid bulkhead " + name + ", max concurrent: " + maxConcurrent +
+                    " max queued: " + maxQueued + " max wait: " + maxWait);
+        }
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWait = maxWait;
+        this.rejectionStatus = rejectionStatus;
+        permits = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * Enter the bulkhead, waiting in the queue if the bulkhead is full. A request which entered the bulkhead
+     * should leave it with {@link #release()} once it has been served.
+     *
+     * @return true if the request entered the bulkhead, false if it was rejected
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(maxWait);
+    }
+
+    /**
+     * Enter the bulkhead, waiting in the queue for up to the lesser of the given time and the maximum wait of the
+     * bulkhead if the bulkhead is full.
+     *
+     * @param timeout maximum time in milliseconds the request can wait, such as the time left until its deadline
+     * @return true if the request entered the bulkhead, false if it was rejected
+     */
+    public boolean tryAcquire(long timeout) {
+        if (!permits.tryAcquire() && !awaitPermit(Math.min(timeout, maxWait))) {
+            rejected.increment();
+            return false;
+        }
+        accepted.increment();
+        peakInFlight.accumulateAndGet(getInFlight(), Math::max);
+        return true;
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    private boolean awaitPermit(long timeout) {
+        if (maxQueued == 0 || timeout <= 0) {
+            return false;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            return false;
+        }
+        try {
+            return permits.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public int getRejectionStatus() {
+        return rejectionStatus;
+    }
+
+    /**
+     * @return number of requests being served
+     */
+    public int getInFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * @return highest number of requests served concurrently
+     */
+    public int getPeakInFlight() {
+        return peakInFlight.get();
+    }
+
+    /**
+     * @return number of requests waiting for the bulkhead
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * @return share of the bulkhead in use, from 0 to 1
+     */
+    public double getUtilization() {
+        return (double) getInFlight() / maxConcurrent;
+    }
+
+    /**
+     * @return number of requests which entered the bulkhead
+     */
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    /**
+     * @return number of requests rejected since the bulkhead and its queue were full
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
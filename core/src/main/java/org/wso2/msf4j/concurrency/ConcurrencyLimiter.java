@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.concurrency;
+
+import org.wso2.msf4j.RequestPriority;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive limit on the number of requests a runner serves concurrently. Requests over the limit are rejected
+ * with <tt>503 Service Unavailable</tt> right after they are routed, before the body is read or bound, so that an
+ * overloaded service keeps its latency instead of queuing requests until the clients time out.
+ * <p>
+ * The limit follows the gradient of the latency. The latency of the requests is averaged over short windows and
+ * compared with a long term average. While the short term latency stays within a tolerance of the long term one,
+ * the limit grows by the square root of the limit each window. When the latency rises, requests are queuing in
+ * the service and the limit is reduced in proportion, by up to half each window. The limit only grows while at
+ * least half of it is in use, so that it does not drift away while the service is lightly loaded.
+ * <p>
+ * {@link RequestPriority.Level#LOW} requests are admitted up to {@value #LOW_PRIORITY_SHARE} of the limit and
+ * {@link RequestPriority.Level#CRITICAL} requests up to {@value #CRITICAL_PRIORITY_SHARE} times the limit, so that
+ * the low priority requests are shed first and the critical ones last.
+ */
+public class ConcurrencyLimiter {
+
+    public static final int DEFAULT_MIN_LIMIT = 20;
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+    public static final double LOW_PRIORITY_SHARE = 0.8;
+    public static final double CRITICAL_PRIORITY_SHARE = 1.5;
+
+    static final int MIN_WINDOW_SAMPLES = 10;
+    static final long MIN_WINDOW_TIME = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int LONG_WINDOWS = 100;
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder[] rejected = new LongAdder[RequestPriority.Level.values().length];
+    private final LongAdder windowLatency = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private volatile boolean enabled;
+    private volatile int minLimit = DEFAULT_MIN_LIMIT;
+    private volatile int maxLimit = DEFAULT_MAX_LIMIT;
+    private volatile double limit = DEFAULT_MIN_LIMIT;
+    private double longLatency;
+
+    public ConcurrencyLimiter() {
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Enable the limit, starting from the minimum limit.
+     *
+     * @param minLimit lower bound of the limit
+     * @param maxLimit upper bound of the limit
+     */
+    public synchronized void enable(int minLimit, int maxLimit) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid concurrency limits, min: " + minLimit + " max: " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        limit = minLimit;
+        longLatency = 0;
+        enabled = true;
+    }
+
+    public void disable() {
+        enabled = false;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return current limit on the number of concurrent requests
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @param level priority of the requests
+     * @return number of concurrent requests up to which requests of the given priority are admitted
+     */
+    public int getLimit(RequestPriority.Level level) {
+        double current = limit;
+        switch (level) {
+            case LOW:
+                return (int) Math.max(1, current * LOW_PRIORITY_SHARE);
+            case CRITICAL:
+                return (int) Math.max(current + 1, current * CRITICAL_PRIORITY_SHARE);
+            default:
+                return (int) current;
+        }
+    }
+
+    /**
+     * @return number of requests being served
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return number of requests rejected since the limit was reached
+     */
+    public long getRejectedCount() {
+        long count = 0;
+        for (LongAdder adder : rejected) {
+            count += adder.sum();
+        }
+        return count;
+    }
+
+    /**
+     * @param level priority of the requests
+     * @return number of requests of the given priority rejected since the limit was reached
+     */
+    public long getRejectedCount(RequestPriority.Level level) {
+        return rejected[level.ordinal()].sum();
+    }
+
+    /**
+     * Admit a request if the number of requests being served is below the limit for its priority. An admitted
+     * request should be released with {@link #release(long)} once it has been served.
+     *
+     * @param level priority of the request
+     * @return true if the request was admitted
+     */
+    public boolean tryAcquire(RequestPriority.Level level) {
+        int max = getLimit(level);
+        while (true) {
+            int count = inFlight.get();
+            if (count >= max) {
+                rejected[level.ordinal()].increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Release an admitted request.
+     *
+     * @param latency time in nanoseconds taken to serve the request
+     */
+    public void release(long latency) {
+        int count = inFlight.getAndDecrement();
+        sample(latency, count, System.nanoTime());
+    }
+
+    void sample(long latency, int count, long now) {
+        windowLatency.add(latency);
+        windowSamples.increment();
+        long start = windowStart.get();
+        if (now - start >= MIN_WINDOW_TIME && windowSamples.sum() >= MIN_WINDOW_SAMPLES &&
+                windowStart.compareAndSet(start, now)) {
+            long samples = windowSamples.sumThenReset();
+            long total = windowLatency.sumThenReset();
+            if (samples > 0) {
+                update((double) total / samples, count);
+            }
+        }
+    }
+
+    private synchronized void update(double shortLatency, int count) {
+        if (longLatency == 0) {
+            longLatency = shortLatency;
+        } else {
+            longLatency += (shortLatency - longLatency) / LONG_WINDOWS;
+            if (longLatency > 2 * shortLatency) {
+                // The latency has dropped, let the long term average catch up faster
+                longLatency *= 0.95;
+            }
+        }
+        double current = limit;
+        if (count < current / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / shortLatency));
+        double target = current * gradient + Math.sqrt(current);
+        double next = current * (1 - SMOOTHING) + target * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.formparam;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Size limits and storage settings used when binding multipart form parts to resource method parameters.
+ * <p>
+ * File parts up to the file size threshold are kept in memory and larger parts are written to a temporary
+ * file, which is deleted once the request has been served.
+ */
+public class MultipartConfig {
+
+    public static final long UNLIMITED = -1;
+    public static final int DEFAULT_FILE_SIZE_THRESHOLD = 64 * 1024;
+
+    private long maxPartSize = UNLIMITED;
+    private long maxRequestSize = UNLIMITED;
+    private int fileSizeThreshold = DEFAULT_FILE_SIZE_THRESHOLD;
+    private Path tempDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "msf4jtemp");
+
+    /**
+     * @param maxPartSize maximum size of a single form part in bytes, or {@link #UNLIMITED}
+     * @return this MultipartConfig object
+     */
+    public MultipartConfig setMaxPartSize(long maxPartSize) {
+        this.maxPartSize = checkLimit(maxPartSize);
+        return this;
+    }
+
+    /**
+     * @param maxRequestSize maximum total size of the form parts of a request in bytes, or {@link #UNLIMITED}
+     * @return this MultipartConfig object
+     */
+    public MultipartConfig setMaxRequestSize(long maxRequestSize) {
+        this.maxRequestSize = checkLimit(maxRequestSize);
+        return this;
+    }
+
+    /**
+     * @param fileSizeThreshold size in bytes up to which a file part is kept in memory
+     * @return this MultipartConfig object
+     */
+    public MultipartConfig setFileSizeThreshold(int fileSizeThreshold) {
+        if (fileSizeThreshold < 0) {
+            throw new IllegalArgumentException("File size threshold should not be negative");
+        }
+        this.fileSizeThreshold = fileSizeThreshold;
+        return this;
+    }
+
+    /**
+     * @param tempDirectory directory under which the temporary files of the requests are created
+     * @return this MultipartConfig object
+     */
+    public MultipartConfig setTempDirectory(Path tempDirectory) {
+        this.tempDirectory = tempDirectory;
+        return this;
+    }
+
+    public long getMaxPartSize() {
+        return maxPartSize;
+    }
+
+    public long getMaxRequestSize() {
+        return maxRequestSize;
+    }
+
+    public int getFileSizeThreshold() {
+        return fileSizeThreshold;
+    }
+
+    public Path getTempDirectory() {
+        return tempDirectory;
+    }
+
+    private static long checkLimit(long limit) {
+        if (limit <= 0 && limit != UNLIMITED) {
+            throw new IllegalArgumentException("Size limit should be a positive value or UNLIMITED");
+        }
+        return limit;
+    }
+}
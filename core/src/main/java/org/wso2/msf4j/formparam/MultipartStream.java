@@ -27,6 +27,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 import static java.lang.String.format;
 
@@ -161,6 +162,12 @@ public class MultipartStream {
      */
     private final byte[] boundary;
 
+    /**
+     * Shift applied to the search position for each byte value when the
+     * <code>boundary</code> does not match, as in the Boyer-Moore-Horspool algorithm.
+     */
+    private final int[] boundaryShifts = new int[256];
+
     /**
      * The length of the buffer used for processing the request.
      */
@@ -228,6 +235,7 @@ public class MultipartStream {
 
         System.arraycopy(BOUNDARY_PREFIX, 0, this.boundary, 0, BOUNDARY_PREFIX.length);
         System.arraycopy(boundary, 0, this.boundary, BOUNDARY_PREFIX.length, boundary.length);
+        computeBoundaryShifts();
 
         head = 0;
         tail = 0;
@@ -348,6 +356,7 @@ public class MultipartStream {
             throw new IllegalBoundaryException("The length of a boundary token can not be changed");
         }
         System.arraycopy(boundary, 0, this.boundary, BOUNDARY_PREFIX.length, boundary.length);
+        computeBoundaryShifts();
     }
 
     /**
@@ -462,6 +471,7 @@ public class MultipartStream {
         // First delimiter may be not preceeded with a CRLF.
         System.arraycopy(boundary, 2, boundary, 0, boundary.length - 2);
         boundaryLength = boundary.length - 2;
+        computeBoundaryShifts();
         try {
             // Discard all data up to the delimiter.
             discardBodyData();
@@ -477,6 +487,7 @@ public class MultipartStream {
             boundaryLength = boundary.length;
             boundary[0] = CR;
             boundary[1] = LF;
+            computeBoundaryShifts();
         }
     }
 
@@ -527,26 +538,33 @@ public class MultipartStream {
      * not found.
      */
     protected int findSeparator() {
-        int first;
-        int match = 0;
+        int last = boundaryLength - 1;
         int maxpos = tail - boundaryLength;
-        for (first = head; first <= maxpos && match != boundaryLength; first++) {
-            first = findByte(boundary[0], first);
-            if (first == -1 || first > maxpos) {
-                return -1;
-            }
-            for (match = 1; match < boundaryLength; match++) {
-                if (buffer[first + match] != boundary[match]) {
-                    break;
+        int first = head;
+        while (first <= maxpos) {
+            int match = last;
+            while (buffer[first + match] == boundary[match]) {
+                if (match == 0) {
+                    return first;
                 }
+                match--;
             }
-        }
-        if (match == boundaryLength) {
-            return first - 1;
+            first += boundaryShifts[buffer[first + last] & 0xFF];
         }
         return -1;
     }
 
+    /**
+     * Computes the shift table of the current <code>boundary</code>. Needs to be called
+     * whenever the boundary or its length changes.
+     */
+    private void computeBoundaryShifts() {
+        Arrays.fill(boundaryShifts, boundaryLength);
+        for (int i = 0; i < boundaryLength - 1; i++) {
+            boundaryShifts[boundary[i] & 0xFF] = boundaryLength - 1 - i;
+        }
+    }
+
     /**
      * Thrown to indicate that the input stream fails to follow the
      * required syntax.
@@ -731,6 +749,39 @@ public class MultipartStream {
             return res;
         }
 
+        /**
+         * Returns, whether the rest of the item is already in the buffer.
+         *
+         * @return True, if the end of the item has been found, otherwise false.
+         */
+        public boolean isBuffered() {
+            return pos != -1;
+        }
+
+        /**
+         * Reads the remaining content of the item as a string and closes the stream. When the whole
+         * item is already in the buffer it is decoded in place instead of being copied out first.
+         *
+         * @param charset The character encoding of the content.
+         * @return The remaining content of the item.
+         * @throws IOException An I/O error occurred.
+         */
+        public String readAsString(Charset charset) throws IOException {
+            if (closed) {
+                throw new FormItem.ItemSkippedException();
+            }
+            if (pos == -1) {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                StreamUtil.copy(this, baos, true);
+                return new String(baos.toByteArray(), charset);
+            }
+            String value = new String(buffer, head, pos - head, charset);
+            total += pos - head;
+            head = pos;
+            close();
+            return value;
+        }
+
         /**
          * Closes the input stream.
          *
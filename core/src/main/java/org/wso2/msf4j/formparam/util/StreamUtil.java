@@ -16,6 +16,7 @@ package org.wso2.msf4j.formparam.util;
 */
 
 import org.apache.commons.io.IOUtils;
+import org.wso2.msf4j.formparam.MultipartStream;
 import org.wso2.msf4j.formparam.exception.FormUploadException;
 import org.wso2.msf4j.formparam.exception.InvalidFileNameException;
 
@@ -23,6 +24,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 
 /**
@@ -129,9 +131,7 @@ public final class StreamUtil {
      * @see #asString(InputStream, String)
      */
     public static String asString(InputStream inputStream) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        copy(inputStream, baos, true);
-        return baos.toString(Charset.defaultCharset().name());
+        return asString(inputStream, Charset.defaultCharset().name());
     }
 
     /**
@@ -146,6 +146,15 @@ public final class StreamUtil {
      * @see #asString(InputStream)
      */
     public static String asString(InputStream inputStream, String encoding) throws IOException {
+        if (inputStream instanceof MultipartStream.ItemInputStream) {
+            Charset charset;
+            try {
+                charset = Charset.forName(encoding);
+            } catch (IllegalArgumentException e) {
+                throw new UnsupportedEncodingException(encoding);
+            }
+            return ((MultipartStream.ItemInputStream) inputStream).readAsString(charset);
+        }
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         copy(inputStream, baos, true);
         return baos.toString(encoding);
@@ -22,4 +22,7 @@ public class MSF4JConstants {
 
     public static final String SESSION_ID = "JSESSIONID=";
     public static final String CHANNEL_ID = "CHANNEL_ID";
+    public static final String OUTBOUND_BUFFER_MONITOR = "OUTBOUND_BUFFER_MONITOR";
+    public static final String MULTIPART_CONFIG = "MULTIPART_CONFIG";
+    public static final String REQUEST_FORM_DATA = "REQUEST_FORM_DATA";
 }
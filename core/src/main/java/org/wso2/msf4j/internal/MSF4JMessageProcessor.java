@@ -22,13 +22,21 @@ import org.slf4j.LoggerFactory;
 import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
 import org.wso2.carbon.messaging.CarbonMessageProcessor;
+import org.wso2.carbon.messaging.Constants;
 import org.wso2.carbon.messaging.TransportSender;
 import org.wso2.carbon.messaging.websocket.BinaryWebSocketCarbonMessage;
 import org.wso2.carbon.messaging.websocket.CloseWebSocketCarbonMessage;
 import org.wso2.carbon.messaging.websocket.TextWebSocketCarbonMessage;
 import org.wso2.carbon.messaging.websocket.WebSocketCarbonMessage;
+import org.wso2.msf4j.Deadline;
+import org.wso2.msf4j.DeadlineExceededException;
+import org.wso2.msf4j.MaxRequestBodySize;
 import org.wso2.msf4j.Request;
+import org.wso2.msf4j.RequestTimeout;
 import org.wso2.msf4j.Response;
+import org.wso2.msf4j.concurrency.BulkheadSemaphore;
+import org.wso2.msf4j.concurrency.ConcurrencyLimiter;
+import org.wso2.msf4j.internal.formparam.RequestFormData;
 import org.wso2.msf4j.internal.router.HandlerException;
 import org.wso2.msf4j.internal.router.HttpMethodInfo;
 import org.wso2.msf4j.internal.router.HttpMethodInfoBuilder;
@@ -38,6 +46,8 @@ import org.wso2.msf4j.internal.router.Util;
 import org.wso2.msf4j.internal.websocket.DispatchedEndpoint;
 import org.wso2.msf4j.internal.websocket.EndpointsRegistryImpl;
 import org.wso2.msf4j.internal.websocket.SessionManager;
+import org.wso2.msf4j.io.RequestBodyLimits;
+import org.wso2.msf4j.io.RequestEntityTooLargeException;
 import org.wso2.msf4j.util.HttpUtil;
 
 import java.io.IOException;
@@ -47,7 +57,9 @@ import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import javax.websocket.Session;
 import javax.ws.rs.ext.ExceptionMapper;
 
@@ -92,25 +104,54 @@ public class MSF4JMessageProcessor implements CarbonMessageProcessor {
             Request request = new Request(carbonMessage);
             request.setSessionManager(currentMicroservicesRegistry.getSessionManager());
             Response response = new Response(carbonCallback, request);
+            response.setProperty(MSF4JConstants.OUTBOUND_BUFFER_MONITOR,
+                    currentMicroservicesRegistry.getOutboundBufferMonitor());
+            request.setProperty(MSF4JConstants.MULTIPART_CONFIG, currentMicroservicesRegistry.getMultipartConfig());
             try {
                 dispatchMethod(currentMicroservicesRegistry, request, response);
             } catch (HandlerException e) {
                 handleHandlerException(e, carbonCallback);
+            } catch (DeadlineExceededException e) {
+                handleDeadlineExceeded(e, carbonCallback);
+            } catch (RequestEntityTooLargeException e) {
+                handleRequestEntityTooLarge(e, carbonCallback);
             } catch (InvocationTargetException e) {
                 Throwable targetException = e.getTargetException();
                 if (targetException instanceof HandlerException) {
                     handleHandlerException((HandlerException) targetException, carbonCallback);
+                } else if (targetException instanceof RequestEntityTooLargeException) {
+                    handleRequestEntityTooLarge((RequestEntityTooLargeException) targetException, carbonCallback);
+                } else if (targetException instanceof DeadlineExceededException &&
+                        !currentMicroservicesRegistry.getExceptionMapper(targetException).isPresent()) {
+                    handleDeadlineExceeded((DeadlineExceededException) targetException, carbonCallback);
                 } else {
                     handleThrowable(currentMicroservicesRegistry, targetException, carbonCallback, request);
                 }
             } catch (InterceptorException e) {
-                log.warn("Interceptors threw an exception", e);
-                // TODO: improve the response
-                carbonCallback.done(HttpUtil.createTextResponse(
-                        javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), HttpUtil.EMPTY_BODY));
+                if (e.getCause() instanceof RequestEntityTooLargeException) {
+                    handleRequestEntityTooLarge((RequestEntityTooLargeException) e.getCause(), carbonCallback);
+                } else if (e.getCause() instanceof DeadlineExceededException) {
+                    handleDeadlineExceeded((DeadlineExceededException) e.getCause(), carbonCallback);
+                } else {
+                    log.warn("Interceptors threw an exception", e);
+                    // TODO: improve the response
+                    carbonCallback.done(HttpUtil.createTextResponse(
+                            javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
+                            HttpUtil.EMPTY_BODY));
+                }
             } catch (Throwable t) {
                 handleThrowable(currentMicroservicesRegistry, t, carbonCallback, request);
             } finally {
+                try {
+                    request.flushSession();
+                } catch (RuntimeException e) {
+                    log.warn("Couldn't persist the session of the request", e);
+                }
+                // Temporary files of the uploaded form parts are not needed once the response has been written
+                Object formData = request.getProperty(MSF4JConstants.REQUEST_FORM_DATA);
+                if (formData instanceof RequestFormData) {
+                    ((RequestFormData) formData).close();
+                }
                 // Calling the release method to make sure that there won't be any memory leaks from netty
                 carbonMessage.release();
             }
@@ -210,12 +251,89 @@ public class MSF4JMessageProcessor implements CarbonMessageProcessor {
                         getDestinationMethod(request.getUri(), request.getHttpMethod(), request.getContentType(),
                                 request.getAcceptTypes());
         HttpResourceModel resourceModel = destination.getDestination();
+        Deadline deadline = getDeadline(currentMicroservicesRegistry, request, resourceModel);
+        request.setDeadline(deadline);
+        deadline.checkExpired();
+        // Downstream calls made while serving the request are bounded by the same deadline
+        Deadline previous = Deadline.attach(deadline);
+        try {
+            // Reject the requests to a full bulkhead before any of the body is read
+            BulkheadSemaphore bulkhead = currentMicroservicesRegistry.getBulkheadRegistry()
+                    .getBulkhead(resourceModel.getMethod(), resourceModel.getHttpHandler().getClass());
+            if (bulkhead == null) {
+                limitConcurrency(currentMicroservicesRegistry, request, response, destination);
+                return;
+            }
+            if (!bulkhead.tryAcquire(deadline.timeRemaining(TimeUnit.MILLISECONDS))) {
+                // A request which ran out of time while queued is timed out rather than rejected
+                deadline.checkExpired();
+                response.setStatus(bulkhead.getRejectionStatus());
+                response.send();
+                return;
+            }
+            try {
+                limitConcurrency(currentMicroservicesRegistry, request, response, destination);
+            } finally {
+                bulkhead.release();
+            }
+        } finally {
+            Deadline.detach(previous);
+        }
+    }
+
+    private Deadline getDeadline(MicroservicesRegistryImpl currentMicroservicesRegistry, Request request,
+                                 HttpResourceModel resourceModel) {
+        Deadline deadline = Deadline.fromHeader(request.getHeader(Deadline.HEADER));
+        RequestTimeout routeTimeout = resourceModel.getRequestTimeout();
+        if (routeTimeout != null) {
+            return deadline.min(Deadline.after(routeTimeout.value(), routeTimeout.unit()));
+        }
+        long timeout = currentMicroservicesRegistry.getRequestTimeout();
+        return (timeout > 0) ? deadline.min(Deadline.after(timeout, TimeUnit.NANOSECONDS)) : deadline;
+    }
+
+    private void limitConcurrency(MicroservicesRegistryImpl currentMicroservicesRegistry, Request request,
+                                  Response response,
+                                  PatternPathRouter.RoutableDestination<HttpResourceModel> destination)
+            throws Exception {
+        // Shed the requests over the concurrency limit before any of the body is read
+        ConcurrencyLimiter concurrencyLimiter = currentMicroservicesRegistry.getConcurrencyLimiter();
+        if (!concurrencyLimiter.isEnabled()) {
+            dispatchMethod(currentMicroservicesRegistry, request, response, destination);
+            return;
+        }
+        if (!concurrencyLimiter.tryAcquire(destination.getDestination().getRequestPriority())) {
+            response.setStatus(javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE.getStatusCode());
+            response.send();
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            dispatchMethod(currentMicroservicesRegistry, request, response, destination);
+        } finally {
+            concurrencyLimiter.release(System.nanoTime() - start);
+        }
+    }
+
+    private void dispatchMethod(MicroservicesRegistryImpl currentMicroservicesRegistry, Request request,
+                                Response response,
+                                PatternPathRouter.RoutableDestination<HttpResourceModel> destination)
+            throws Exception {
+        HttpResourceModel resourceModel = destination.getDestination();
+        // Reject requests declaring a body larger than the limit before any of the body is read
+        RequestBodyLimits bodyLimits = currentMicroservicesRegistry.getRequestBodyLimits();
+        MaxRequestBodySize routeLimit = resourceModel.getMaxRequestBodySize();
+        request.setMaxBodySize((routeLimit != null) ? routeLimit.value() :
+                bodyLimits.getMaxBodySize(Objects.toString(request.getProperty(MSF4JConstants.CHANNEL_ID), null)),
+                bodyLimits);
         response.setMediaType(Util.getResponseType(request.getAcceptTypes(),
                 resourceModel.getProducesMediaTypes()));
         InterceptorExecutor interceptorExecutor = new InterceptorExecutor(resourceModel, request, response,
                                                                           currentMicroservicesRegistry
                                                                                   .getInterceptors());
         if (interceptorExecutor.execPreCalls()) { // preCalls can throw exceptions
+            // Do not start on a request which ran out of time in the interceptors
+            request.getDeadline().checkExpired();
 
             HttpMethodInfoBuilder httpMethodInfoBuilder =
                     new HttpMethodInfoBuilder().
@@ -226,10 +344,7 @@ public class MSF4JMessageProcessor implements CarbonMessageProcessor {
 
             HttpMethodInfo httpMethodInfo = httpMethodInfoBuilder.build();
             if (httpMethodInfo.isStreamingSupported()) {
-                while (!(request.isEmpty() && request.isEomAdded())) {
-                    httpMethodInfo.chunk(request.getMessageBody());
-                }
-                httpMethodInfo.end();
+                httpMethodInfo.stream(request);
             } else {
                 httpMethodInfo.invoke(request, destination);
             }
@@ -243,6 +358,8 @@ public class MSF4JMessageProcessor implements CarbonMessageProcessor {
         if (exceptionMapper.isPresent()) {
             org.wso2.msf4j.Response msf4jResponse =
                     new org.wso2.msf4j.Response(carbonCallback, request);
+            msf4jResponse.setProperty(MSF4JConstants.OUTBOUND_BUFFER_MONITOR,
+                    currentMicroservicesRegistry.getOutboundBufferMonitor());
             msf4jResponse.setEntity(exceptionMapper.get().toResponse(throwable));
             msf4jResponse.send();
         } else {
@@ -257,6 +374,19 @@ public class MSF4JMessageProcessor implements CarbonMessageProcessor {
         carbonCallback.done(e.getFailureResponse());
     }
 
+    private void handleDeadlineExceeded(DeadlineExceededException e, CarbonCallback carbonCallback) {
+        carbonCallback.done(HttpUtil.createTextResponse(
+                javax.ws.rs.core.Response.Status.GATEWAY_TIMEOUT.getStatusCode(), e.getMessage()));
+    }
+
+    private void handleRequestEntityTooLarge(RequestEntityTooLargeException e, CarbonCallback carbonCallback) {
+        CarbonMessage failureResponse = HttpUtil.createTextResponse(
+                javax.ws.rs.core.Response.Status.REQUEST_ENTITY_TOO_LARGE.getStatusCode(), e.getMessage());
+        // The rest of the body is left unread, hence the connection can not be reused
+        failureResponse.setHeader(Constants.HTTP_CONNECTION, HttpUtil.CLOSE);
+        carbonCallback.done(failureResponse);
+    }
+
 
     @Override
     public void setTransportSender(TransportSender transportSender) {
@@ -22,7 +22,12 @@ import org.wso2.msf4j.Interceptor;
 import org.wso2.msf4j.MicroservicesRegistry;
 import org.wso2.msf4j.SessionManager;
 import org.wso2.msf4j.SwaggerService;
+import org.wso2.msf4j.formparam.MultipartConfig;
 import org.wso2.msf4j.internal.router.MicroserviceMetadata;
+import org.wso2.msf4j.concurrency.BulkheadRegistry;
+import org.wso2.msf4j.concurrency.ConcurrencyLimiter;
+import org.wso2.msf4j.io.OutboundBufferMonitor;
+import org.wso2.msf4j.io.RequestBodyLimits;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -56,6 +61,12 @@ public class MicroservicesRegistryImpl implements MicroservicesRegistry {
     private volatile MicroserviceMetadata metadata = new MicroserviceMetadata(Collections.emptyList());
     private Map<Class, ExceptionMapper> exceptionMappers = new TreeMap<>(new ClassComparator());
     private SessionManager sessionManager = new DefaultSessionManager();
+    private final OutboundBufferMonitor outboundBufferMonitor = new OutboundBufferMonitor();
+    private final RequestBodyLimits requestBodyLimits = new RequestBodyLimits();
+    private final ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter();
+    private final BulkheadRegistry bulkheadRegistry = new BulkheadRegistry();
+    private volatile long requestTimeout;
+    private MultipartConfig multipartConfig = new MultipartConfig();
 
     public MicroservicesRegistryImpl() {
         /* In non OSGi mode, if we can find the SwaggerDefinitionService, Deploy the Swagger definition service which
@@ -191,6 +202,44 @@ public class MicroservicesRegistryImpl implements MicroservicesRegistry {
         return sessionManager;
     }
 
+    public OutboundBufferMonitor getOutboundBufferMonitor() {
+        return outboundBufferMonitor;
+    }
+
+    public RequestBodyLimits getRequestBodyLimits() {
+        return requestBodyLimits;
+    }
+
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    public BulkheadRegistry getBulkheadRegistry() {
+        return bulkheadRegistry;
+    }
+
+    /**
+     * @return timeout in nanoseconds of the resource methods which do not set one, or 0 if there is none
+     */
+    public long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public void setRequestTimeout(long requestTimeout) {
+        if (requestTimeout < 0) {
+            throw new IllegalArgumentException("Request timeout should not be negative");
+        }
+        this.requestTimeout = requestTimeout;
+    }
+
+    public MultipartConfig getMultipartConfig() {
+        return multipartConfig;
+    }
+
+    public void setMultipartConfig(MultipartConfig multipartConfig) {
+        this.multipartConfig = multipartConfig;
+    }
+
     private void invokeLifecycleMethods(Class lcAnnotation) {
         services.values().stream().forEach(httpService -> invokeLifecycleMethod(httpService, lcAnnotation));
     }
@@ -34,6 +34,7 @@ public class EntityWriterRegistry {
         registerEntityWriter(new FileEntityWriter());
         registerEntityWriter(new InputStreamEntityWriter());
         registerEntityWriter(new StreamingOutputEntityWriter());
+        registerEntityWriter(new SseEventSinkEntityWriter());
     }
 
     private EntityWriterRegistry() {
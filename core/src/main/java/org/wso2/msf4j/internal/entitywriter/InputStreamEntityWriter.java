@@ -20,10 +20,11 @@ import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
 import org.wso2.carbon.transport.http.netty.common.Constants;
 import org.wso2.msf4j.Response;
+import org.wso2.msf4j.io.FlowControlledCarbonMessage;
+import org.wso2.msf4j.io.FlowControlledOutputStream;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.ByteBuffer;
 
 /**
  * EntityWriter for entity of type InputStream.
@@ -52,17 +53,18 @@ public class InputStreamEntityWriter implements EntityWriter<InputStream> {
             }
             carbonMessage.setHeader(Constants.HTTP_TRANSFER_ENCODING, CHUNKED);
             carbonMessage.setHeader(Constants.HTTP_CONTENT_TYPE, mediaType);
-            carbonMessage.setBufferContent(false);
-            cb.done(carbonMessage);
+            FlowControlledCarbonMessage.stream(carbonMessage, cb);
 
-            byte[] data = new byte[chunkSize];
-            int len;
-            while ((len = ipStream.read(data)) != -1) {
-                carbonMessage.addMessageBody(ByteBuffer.wrap(data, 0, len));
+            try (FlowControlledOutputStream outputStream = FlowControlledOutputStream.create(carbonMessage,
+                    chunkSize)) {
+                byte[] data = new byte[chunkSize];
+                int len;
+                while ((len = ipStream.read(data)) != -1) {
+                    outputStream.write(data, 0, len);
+                }
+            } finally {
+                ipStream.close();
             }
-
-            ipStream.close();
-            carbonMessage.setEndOfMsgAdded(true);
         } catch (IOException e) {
             throw new RuntimeException("Error occurred while reading from InputStream", e);
         }
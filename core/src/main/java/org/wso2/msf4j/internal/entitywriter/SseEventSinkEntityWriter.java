@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.internal.entitywriter;
+
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.msf4j.internal.sse.SseEventSinkImpl;
+import org.wso2.msf4j.io.FlowControlledCarbonMessage;
+import org.wso2.msf4j.sse.SseEventSink;
+
+import javax.ws.rs.core.HttpHeaders;
+
+/**
+ * EntityWriter for entity of type {@link SseEventSink}. Sends the response headers of the event stream
+ * and hands the chunked response message over to the sink.
+ */
+public class SseEventSinkEntityWriter implements EntityWriter<SseEventSink> {
+
+    public static final String TEXT_EVENT_STREAM = "text/event-stream";
+
+    /**
+     * Supported entity type.
+     */
+    @Override
+    public Class<SseEventSink> getType() {
+        return SseEventSink.class;
+    }
+
+    /**
+     * Write the entity to the carbon message.
+     */
+    @Override
+    public void writeData(CarbonMessage carbonMessage, SseEventSink sink,
+                          String mediaType, int chunkSize, CarbonCallback cb) {
+        if (!(sink instanceof SseEventSinkImpl)) {
+            throw new IllegalArgumentException("Unsupported SSE sink " + sink.getClass().getName());
+        }
+        carbonMessage.setHeader(Constants.HTTP_CONTENT_TYPE, TEXT_EVENT_STREAM);
+        carbonMessage.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        carbonMessage.setHeader(Constants.HTTP_TRANSFER_ENCODING, CHUNKED);
+        FlowControlledCarbonMessage.stream(carbonMessage, cb);
+        ((SseEventSinkImpl) sink).open(carbonMessage);
+    }
+}
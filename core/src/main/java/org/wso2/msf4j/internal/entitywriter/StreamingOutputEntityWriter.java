@@ -19,6 +19,9 @@ package org.wso2.msf4j.internal.entitywriter;
 import org.wso2.carbon.messaging.CarbonCallback;
 import org.wso2.carbon.messaging.CarbonMessage;
 import org.wso2.carbon.transport.http.netty.common.Constants;
+import org.wso2.msf4j.Response;
+import org.wso2.msf4j.io.FlowControlledCarbonMessage;
+import org.wso2.msf4j.io.FlowControlledOutputStream;
 
 import java.io.IOException;
 import javax.ws.rs.core.StreamingOutput;
@@ -28,6 +31,8 @@ import javax.ws.rs.core.StreamingOutput;
  */
 public class StreamingOutputEntityWriter implements EntityWriter<StreamingOutput> {
 
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
     /**
      * Supported entity type.
      */
@@ -43,12 +48,16 @@ public class StreamingOutputEntityWriter implements EntityWriter<StreamingOutput
     public void writeData(CarbonMessage carbonMessage, StreamingOutput output,
                           String mediaType, int chunkSize, CarbonCallback cb) {
         try {
+            if (chunkSize == Response.NO_CHUNK || chunkSize == Response.DEFAULT_CHUNK_SIZE) {
+                chunkSize = DEFAULT_CHUNK_SIZE;
+            }
             carbonMessage.setHeader(Constants.HTTP_CONTENT_TYPE, mediaType);
             carbonMessage.setHeader(Constants.HTTP_TRANSFER_ENCODING, CHUNKED);
-            carbonMessage.setBufferContent(false);
-            cb.done(carbonMessage);
-            output.write(carbonMessage.getOutputStream());
-            carbonMessage.setEndOfMsgAdded(true);
+            FlowControlledCarbonMessage.stream(carbonMessage, cb);
+            try (FlowControlledOutputStream outputStream = FlowControlledOutputStream.create(carbonMessage,
+                    chunkSize)) {
+                output.write(outputStream);
+            }
         } catch (IOException e) {
             throw new RuntimeException("Error occurred while streaming output", e);
         }
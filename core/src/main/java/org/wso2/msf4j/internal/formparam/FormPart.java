@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.internal.formparam;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * File part of a multipart request, held in memory or in a temporary file of the {@link FormPartStore}.
+ */
+public class FormPart {
+
+    private final FormPartStore store;
+    private final String fileName;
+    private final String contentType;
+    private final long size;
+    private byte[] content;
+    private Path path;
+
+    FormPart(FormPartStore store, String fileName, String contentType, byte[] content) {
+        this.store = store;
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.content = content;
+        this.size = content.length;
+    }
+
+    FormPart(FormPartStore store, String fileName, String contentType, Path path, long size) {
+        this.store = store;
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.path = path;
+        this.size = size;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isInMemory() {
+        return path == null;
+    }
+
+    /**
+     * @return stream to read the content of the part
+     * @throws IOException if the temporary file can not be opened
+     */
+    public InputStream openStream() throws IOException {
+        return isInMemory() ? new ByteArrayInputStream(content) : Files.newInputStream(path);
+    }
+
+    /**
+     * @param charset character encoding of the content
+     * @return content of the part as a string
+     * @throws IOException if the temporary file can not be read
+     */
+    public String getString(Charset charset) throws IOException {
+        return new String(isInMemory() ? content : Files.readAllBytes(path), charset);
+    }
+
+    /**
+     * Get the part as a file. A part held in memory is written to a temporary file on the first call.
+     *
+     * @return temporary file holding the content of the part
+     * @throws IOException if the temporary file can not be created
+     */
+    public synchronized File getFile() throws IOException {
+        if (isInMemory()) {
+            Path file = store.createFile(fileName);
+            Files.write(file, content);
+            path = file;
+            content = null;
+        }
+        return path.toFile();
+    }
+}
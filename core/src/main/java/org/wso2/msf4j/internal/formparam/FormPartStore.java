@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.internal.formparam;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.msf4j.formparam.FormItem;
+import org.wso2.msf4j.formparam.MultipartConfig;
+import org.wso2.msf4j.formparam.MultipartStream;
+import org.wso2.msf4j.formparam.exception.FormSizeLimitExceededException;
+import org.wso2.msf4j.formparam.util.StreamUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Reads the form parts of a multipart request while enforcing the limits of a {@link MultipartConfig}.
+ * File parts up to the file size threshold are kept in memory, larger parts are written to a temporary
+ * file with an {@link AsynchronousFileChannel} so that reading the next block overlaps writing the previous one.
+ * All temporary files of the request are deleted when the store is closed.
+ */
+public class FormPartStore implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(FormPartStore.class);
+    private static final int TRANSFER_BUFFER_SIZE = 8192;
+    private static final int MAX_POOLED_BUFFERS = 64;
+    private static final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+
+    private final MultipartConfig config;
+    private Path requestDirectory;
+    private long requestSize;
+
+    public FormPartStore(MultipartConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Read a text part into a string.
+     *
+     * @param item form item to be read
+     * @return content of the part
+     * @throws IOException if the part can not be read
+     */
+    public String readTextPart(FormItem item) throws IOException {
+        InputStream inputStream = item.openStream();
+        if (inputStream instanceof MultipartStream.ItemInputStream &&
+                ((MultipartStream.ItemInputStream) inputStream).isBuffered()) {
+            checkSize(inputStream.available(), inputStream.available());
+            return StreamUtil.asString(inputStream);
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            long partSize = 0;
+            int read;
+            while ((read = inputStream.read(buffer.array())) != -1) {
+                partSize += read;
+                checkSize(partSize, read);
+                outputStream.write(buffer.array(), 0, read);
+            }
+        } finally {
+            releaseBuffer(buffer);
+            inputStream.close();
+        }
+        return new String(outputStream.toByteArray(), Charset.defaultCharset());
+    }
+
+    /**
+     * Read a file part, keeping it in memory if it does not exceed the file size threshold.
+     *
+     * @param item form item to be read
+     * @return part held in memory or in a temporary file
+     * @throws IOException if the part can not be read or written to disk
+     */
+    public FormPart readFilePart(FormItem item) throws IOException {
+        InputStream inputStream = item.openStream();
+        ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            long partSize = 0;
+            int read;
+            while ((read = inputStream.read(buffer.array())) != -1) {
+                partSize += read;
+                checkSize(partSize, read);
+                memory.write(buffer.array(), 0, read);
+                if (partSize > config.getFileSizeThreshold()) {
+                    return spill(item, memory.toByteArray(), inputStream, partSize);
+                }
+            }
+        } finally {
+            releaseBuffer(buffer);
+            inputStream.close();
+        }
+        return new FormPart(this, item.getName(), item.getContentType(), memory.toByteArray());
+    }
+
+    /**
+     * Create a temporary file for an uploaded file. The uploaded file name is kept, without any
+     * path elements, so that the resource method sees the same name as the client.
+     *
+     * @param fileName file name sent by the client
+     * @return path of the new file
+     * @throws IOException if the file can not be created
+     */
+    Path createFile(String fileName) throws IOException {
+        if (requestDirectory == null) {
+            Files.createDirectories(config.getTempDirectory());
+            requestDirectory = Files.createTempDirectory(config.getTempDirectory(), "tmp");
+        }
+        String name = sanitize(fileName);
+        Path path = requestDirectory.resolve(name);
+        if (Files.exists(path)) {
+            // Another part of the request has the same file name
+            path = Files.createTempDirectory(requestDirectory, "part").resolve(name);
+        }
+        return Files.createFile(path);
+    }
+
+    /**
+     * Delete all the temporary files of the request.
+     */
+    @Override
+    public void close() {
+        if (requestDirectory == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(requestDirectory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("Could not delete temporary file " + path, e);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Could not delete temporary directory " + requestDirectory, e);
+        }
+        requestDirectory = null;
+    }
+
+    private FormPart spill(FormItem item, byte[] head, InputStream inputStream, long partSize) throws IOException {
+        Path path = createFile(item.getName());
+        ByteBuffer[] buffers = {acquireBuffer(), acquireBuffer()};
+        int current = 0;
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.WRITE)) {
+            ByteBuffer inFlight = ByteBuffer.wrap(head);
+            long inFlightPosition = 0;
+            Future<Integer> write = channel.write(inFlight, inFlightPosition);
+            long position = head.length;
+            while (true) {
+                ByteBuffer buffer = buffers[current];
+                int read = inputStream.read(buffer.array());
+                if (read > 0) {
+                    partSize += read;
+                    checkSize(partSize, read);
+                }
+                awaitWrite(channel, write, inFlight, inFlightPosition);
+                if (read == -1) {
+                    break;
+                }
+                buffer.clear();
+                buffer.limit(read);
+                inFlight = buffer;
+                inFlightPosition = position;
+                position += read;
+                write = channel.write(inFlight, inFlightPosition);
+                current ^= 1;
+            }
+        }
+        // Buffers are returned to the pool only when no write can still be using them
+        releaseBuffer(buffers[0]);
+        releaseBuffer(buffers[1]);
+        return new FormPart(this, item.getName(), item.getContentType(), path, partSize);
+    }
+
+    private static void awaitWrite(AsynchronousFileChannel channel, Future<Integer> write, ByteBuffer buffer,
+                                   long position) throws IOException {
+        try {
+            int written = write.get();
+            while (buffer.hasRemaining()) {
+                position += written;
+                written = channel.write(buffer, position).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing form part to disk");
+        } catch (ExecutionException e) {
+            throw new IOException("Error while writing form part to disk", e.getCause());
+        }
+    }
+
+    private void checkSize(long partSize, int read) {
+        requestSize += read;
+        if (config.getMaxPartSize() != MultipartConfig.UNLIMITED && partSize > config.getMaxPartSize()) {
+            throw new FormSizeLimitExceededException("Form part exceeds the maximum size of " +
+                    config.getMaxPartSize() + " bytes", config.getMaxPartSize());
+        }
+        if (config.getMaxRequestSize() != MultipartConfig.UNLIMITED && requestSize > config.getMaxRequestSize()) {
+            throw new FormSizeLimitExceededException("Form data exceeds the maximum size of " +
+                    config.getMaxRequestSize() + " bytes", config.getMaxRequestSize());
+        }
+    }
+
+    private static String sanitize(String fileName) {
+        String name = (fileName == null) ? "" : fileName;
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        return (name.isEmpty() || ".".equals(name) || "..".equals(name)) ? "part" : name;
+    }
+
+    private static ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        return (buffer == null) ? ByteBuffer.allocate(TRANSFER_BUFFER_SIZE) : buffer;
+    }
+
+    private static void releaseBuffer(ByteBuffer buffer) {
+        if (bufferPool.size() < MAX_POOLED_BUFFERS) {
+            buffer.clear();
+            bufferPool.offer(buffer);
+        }
+    }
+}
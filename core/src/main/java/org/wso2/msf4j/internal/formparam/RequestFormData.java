@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.internal.formparam;
+
+import org.wso2.msf4j.Request;
+import org.wso2.msf4j.formparam.FileInfo;
+import org.wso2.msf4j.formparam.FormItem;
+import org.wso2.msf4j.formparam.FormParamIterator;
+import org.wso2.msf4j.formparam.MultipartConfig;
+import org.wso2.msf4j.internal.MSF4JConstants;
+import org.wso2.msf4j.util.QueryStringDecoderUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+/**
+ * Form parameters of a request, parsed once from the body of an <tt>application/x-www-form-urlencoded</tt> or
+ * <tt>multipart/form-data</tt> request and shared by all the parameter binders and interceptors of the request.
+ * Values are strings, or {@link FormPart}s for the file parts of a multipart request.
+ */
+public class RequestFormData implements Closeable {
+
+    private static final String CONTENT_DISPOSITION = "content-disposition";
+    private static final String CONTENT_TYPE = "content-type";
+
+    private final Map<String, List<Object>> parameters = new LinkedHashMap<>();
+    private final Map<String, String> contentTypes = new HashMap<>();
+    private final Map<String, FileInfo> fileInfos = new HashMap<>();
+    private FormPartStore formPartStore;
+
+    private RequestFormData() {
+    }
+
+    /**
+     * Get the form parameters of the request, parsing the body on the first call.
+     *
+     * @param request request carrying the form
+     * @return form parameters, empty if the request does not carry a form
+     * @throws IOException if the form can not be read
+     */
+    public static RequestFormData get(Request request) throws IOException {
+        Object formData = request.getProperty(MSF4JConstants.REQUEST_FORM_DATA);
+        if (formData instanceof RequestFormData) {
+            return (RequestFormData) formData;
+        }
+        RequestFormData requestFormData = new RequestFormData();
+        // Set before parsing so that the temporary files are cleaned up even if parsing fails half way
+        request.setProperty(MSF4JConstants.REQUEST_FORM_DATA, requestFormData);
+        if (MediaType.MULTIPART_FORM_DATA.equals(request.getContentType())) {
+            Object config = request.getProperty(MSF4JConstants.MULTIPART_CONFIG);
+            requestFormData.formPartStore = new FormPartStore((config instanceof MultipartConfig) ?
+                    (MultipartConfig) config : new MultipartConfig());
+            requestFormData.parseMultipart(request);
+        } else if (MediaType.APPLICATION_FORM_URLENCODED.equals(request.getContentType())) {
+            QueryStringDecoderUtil.decodeParams(request.getFullMessageBody(), Charset.defaultCharset())
+                    .forEach((name, values) -> requestFormData.parameters.put(name, new ArrayList<>(values)));
+        }
+        return requestFormData;
+    }
+
+    /**
+     * @param name parameter name
+     * @return values of the parameter, or null if the form does not have the parameter
+     */
+    public List<Object> get(String name) {
+        List<Object> values = parameters.get(name);
+        return (values == null) ? null : Collections.unmodifiableList(values);
+    }
+
+    /**
+     * @param name parameter name
+     * @return media type of the first part with the given name, or null if not a multipart form
+     */
+    public String getContentType(String name) {
+        return contentTypes.get(name);
+    }
+
+    /**
+     * @param name parameter name
+     * @return file name and content type of the first file part with the given name, or null
+     */
+    public FileInfo getFileInfo(String name) {
+        return fileInfos.get(name);
+    }
+
+    /**
+     * Get a copy of the form parameters in which the file parts are given as {@link java.io.File}s.
+     *
+     * @return form parameters
+     * @throws IOException if a file part can not be written to a temporary file
+     */
+    public MultivaluedMap<String, Object> toMultivaluedMap() throws IOException {
+        MultivaluedMap<String, Object> map = new MultivaluedHashMap<>();
+        for (Map.Entry<String, List<Object>> entry : parameters.entrySet()) {
+            List<Object> values = new ArrayList<>(entry.getValue().size());
+            for (Object value : entry.getValue()) {
+                values.add((value instanceof FormPart) ? ((FormPart) value).getFile() : value);
+            }
+            map.put(entry.getKey(), values);
+        }
+        return map;
+    }
+
+    /**
+     * Delete the temporary files of the file parts.
+     */
+    @Override
+    public void close() {
+        if (formPartStore != null) {
+            formPartStore.close();
+        }
+    }
+
+    private void parseMultipart(Request request) throws IOException {
+        FormParamIterator formParamIterator = new FormParamIterator(request);
+        while (formParamIterator.hasNext()) {
+            FormItem item = formParamIterator.next();
+            String contentType = item.getContentType();
+            if (contentType != null && contentType.indexOf(';') >= 0) {
+                contentType = contentType.substring(0, contentType.indexOf(';'));
+            }
+            contentTypes.putIfAbsent(item.getFieldName(), (contentType == null) ? MediaType.TEXT_PLAIN : contentType);
+
+            String disposition = item.getHeaders().getHeader(CONTENT_DISPOSITION);
+            boolean isFile = (disposition != null && disposition.contains("filename")) ||
+                    MediaType.APPLICATION_OCTET_STREAM.equals(item.getHeaders().getHeader(CONTENT_TYPE));
+            Object value;
+            if (isFile) {
+                value = formPartStore.readFilePart(item);
+                FileInfo fileInfo = new FileInfo();
+                fileInfo.setFileName(item.getName());
+                fileInfo.setContentType(item.getContentType());
+                fileInfos.putIfAbsent(item.getFieldName(), fileInfo);
+            } else {
+                value = formPartStore.readTextPart(item);
+            }
+            parameters.computeIfAbsent(item.getFieldName(), name -> new ArrayList<>()).add(value);
+        }
+    }
+}
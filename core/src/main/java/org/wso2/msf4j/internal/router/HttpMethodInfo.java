@@ -19,9 +19,11 @@ package org.wso2.msf4j.internal.router;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.msf4j.HttpStreamHandler;
+import org.wso2.msf4j.HttpStreamSubscriber;
 import org.wso2.msf4j.HttpStreamer;
 import org.wso2.msf4j.Request;
 import org.wso2.msf4j.Response;
+import org.wso2.msf4j.sse.SseEventSink;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -38,7 +40,6 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.ws.rs.Path;
-import javax.ws.rs.core.MultivaluedMap;
 
 import static org.wso2.msf4j.internal.router.Util.GROUP_PATTERN;
 import static org.wso2.msf4j.internal.router.Util.GROUP_PATTERN_REGEX;
@@ -54,9 +55,10 @@ public class HttpMethodInfo {
     private final Method method;
     private final Object handler;
     private final Object[] args;
-    private MultivaluedMap<String, Object> formParameters = null;
     private Response responder;
     private HttpStreamHandler httpStreamHandler;
+    private HttpStreamSubscriber httpStreamSubscriber;
+    private SseEventSink sseEventSink;
     private static final Logger log = LoggerFactory.getLogger(HttpMethodInfo.class);
 
     /**
@@ -71,12 +73,10 @@ public class HttpMethodInfo {
     public HttpMethodInfo(Method method,
                           Object handler,
                           Object[] args,
-                          MultivaluedMap<String, Object> formParameters,
                           Response responder) {
         this.method = method;
         this.handler = handler;
         this.args = Arrays.copyOf(args, args.length);
-        this.formParameters = formParameters;
         this.responder = responder;
     }
 
@@ -94,10 +94,9 @@ public class HttpMethodInfo {
     public HttpMethodInfo(Method method,
                           Object handler,
                           Object[] args,
-                          MultivaluedMap<String, Object> formParameters,
                           Response responder,
                           HttpStreamer httpStreamer) throws HandlerException {
-        this(method, handler, args, formParameters, responder);
+        this(method, handler, args, responder);
 
         if (!method.getReturnType().equals(Void.TYPE)) {
             throw new HandlerException(javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR,
@@ -113,11 +112,26 @@ public class HttpMethodInfo {
                     "Resource method invocation access failed", e);
         }
         httpStreamHandler = httpStreamer.getHttpStreamHandler();
-        if (httpStreamHandler == null) {
+        httpStreamSubscriber = httpStreamer.getHttpStreamSubscriber();
+        if (httpStreamHandler == null && httpStreamSubscriber == null) {
             throw new HandlerException(javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR,
                     "Streaming unsupported");
         }
-        httpStreamHandler.init(this.responder);
+        if (httpStreamHandler != null) {
+            httpStreamHandler.init(this.responder);
+        } else {
+            httpStreamSubscriber.init(this.responder);
+        }
+    }
+
+    /**
+     * Set the event sink injected to the resource method, which is used as the response
+     * entity if the method does not return one.
+     *
+     * @param sseEventSink event sink of the request
+     */
+    public void setSseEventSink(SseEventSink sseEventSink) {
+        this.sseEventSink = sseEventSink;
     }
 
     /**
@@ -131,6 +145,10 @@ public class HttpMethodInfo {
             throws Exception {
         Object returnVal = method.invoke(handler, args);
         returnVal = invokeSubResource(request, destination, returnVal);
+        if (returnVal == null && sseEventSink != null) {
+            // Event stream stays open after the resource method returns
+            returnVal = sseEventSink;
+        }
         responder.setEntity(returnVal);
         responder.send();
     }
@@ -270,7 +288,6 @@ public class HttpMethodInfo {
             }
             // Invoke the sub-resource method
             HttpResourceModelProcessor httpSubResourceModelProcessor = new HttpResourceModelProcessor(resourceModel);
-            httpSubResourceModelProcessor.setFormParameters(formParameters);
             responder.setMediaType(
                     Util.getResponseType(request.getAcceptTypes(), resourceModel.getProducesMediaTypes()));
             HttpMethodInfo httpMethodInfo = httpSubResourceModelProcessor
@@ -284,6 +301,28 @@ public class HttpMethodInfo {
         return returnVal;
     }
 
+    /**
+     * Stream the request body to the registered stream handler or subscriber.
+     *
+     * @param request request whose body should be streamed
+     * @throws Exception if error occurs while invoking streaming handlers
+     */
+    public void stream(Request request) throws Exception {
+        if (httpStreamSubscriber != null) {
+            try {
+                new RequestBodyPublisher(request, httpStreamSubscriber).publish();
+            } catch (Throwable e) {
+                log.error("Exception while invoking streaming subscriber", e);
+                throw e;
+            }
+        } else {
+            while (!(request.isEmpty() && request.isEomAdded())) {
+                chunk(request.getMessageBody());
+            }
+            end();
+        }
+    }
+
     /**
      * If chunk handling is supported provide chunks directly.
      *
@@ -321,6 +360,6 @@ public class HttpMethodInfo {
      * @return boolean true if streaming is supported
      */
     public boolean isStreamingSupported() {
-        return httpStreamHandler != null;
+        return httpStreamHandler != null || httpStreamSubscriber != null;
     }
 }
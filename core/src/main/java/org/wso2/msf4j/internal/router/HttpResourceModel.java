@@ -17,6 +17,9 @@
 package org.wso2.msf4j.internal.router;
 
 import org.wso2.msf4j.HttpStreamer;
+import org.wso2.msf4j.MaxRequestBodySize;
+import org.wso2.msf4j.RequestPriority;
+import org.wso2.msf4j.RequestTimeout;
 import org.wso2.msf4j.formparam.FormDataParam;
 import org.wso2.msf4j.util.Utils;
 
@@ -82,6 +85,9 @@ public final class HttpResourceModel {
     private final List<ParameterInfo<?>> paramInfoList;
     private List<String> consumesMediaTypes;
     private List<String> producesMediaTypes;
+    private final MaxRequestBodySize maxRequestBodySize;
+    private final RequestPriority.Level requestPriority;
+    private final RequestTimeout requestTimeout;
     private int isStreamingReqSupported = STREAMING_REQ_UNKNOWN;
     private Map<SubresourceKey, HttpResourceModel> subResources = new HashMap<>();
     private boolean isSubResourceLocator;
@@ -159,6 +165,16 @@ public final class HttpResourceModel {
         this.paramInfoList = makeParamInfoList(method);
         consumesMediaTypes = parseConsumesMediaTypes();
         producesMediaTypes = parseProducesMediaTypes();
+        maxRequestBodySize = method.isAnnotationPresent(MaxRequestBodySize.class) ?
+                method.getAnnotation(MaxRequestBodySize.class) :
+                handler.getClass().getAnnotation(MaxRequestBodySize.class);
+        RequestPriority priority = method.isAnnotationPresent(RequestPriority.class) ?
+                method.getAnnotation(RequestPriority.class) :
+                handler.getClass().getAnnotation(RequestPriority.class);
+        requestPriority = (priority != null) ? priority.value() : RequestPriority.Level.NORMAL;
+        requestTimeout = method.isAnnotationPresent(RequestTimeout.class) ?
+                method.getAnnotation(RequestTimeout.class) :
+                handler.getClass().getAnnotation(RequestTimeout.class);
     }
 
     private List<String> parseConsumesMediaTypes() {
@@ -390,6 +406,29 @@ public final class HttpResourceModel {
         return producesMediaTypes;
     }
 
+    /**
+     * @return request body size limit of the resource method, or null if the method does not set a limit
+     */
+    @Nullable
+    public MaxRequestBodySize getMaxRequestBodySize() {
+        return maxRequestBodySize;
+    }
+
+    /**
+     * @return priority of the requests to the resource method when shedding load
+     */
+    public RequestPriority.Level getRequestPriority() {
+        return requestPriority;
+    }
+
+    /**
+     * @return timeout of the resource method, or null if the method does not set a timeout
+     */
+    @Nullable
+    public RequestTimeout getRequestTimeout() {
+        return requestTimeout;
+    }
+
     /**
      * A container class to hold information about a handler method parameters.
      * @param <T> type of parameter
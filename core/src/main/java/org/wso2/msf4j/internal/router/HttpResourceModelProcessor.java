@@ -16,8 +16,7 @@
 
 package org.wso2.msf4j.internal.router;
 
-import org.apache.commons.io.FileCleaningTracker;
-import org.apache.commons.io.FileDeleteStrategy;
+import org.wso2.msf4j.Deadline;
 import org.wso2.msf4j.HttpStreamer;
 import org.wso2.msf4j.Request;
 import org.wso2.msf4j.Response;
@@ -25,17 +24,19 @@ import org.wso2.msf4j.beanconversion.BeanConversionException;
 import org.wso2.msf4j.beanconversion.MediaTypeConverter;
 import org.wso2.msf4j.formparam.FileInfo;
 import org.wso2.msf4j.formparam.FormDataParam;
-import org.wso2.msf4j.formparam.FormItem;
 import org.wso2.msf4j.formparam.FormParamIterator;
+import org.wso2.msf4j.formparam.exception.FormSizeLimitExceededException;
 import org.wso2.msf4j.formparam.exception.FormUploadException;
-import org.wso2.msf4j.formparam.util.StreamUtil;
 import org.wso2.msf4j.internal.beanconversion.BeanConverter;
+import org.wso2.msf4j.internal.formparam.FormPart;
+import org.wso2.msf4j.internal.formparam.RequestFormData;
+import org.wso2.msf4j.internal.sse.SseEventSinkImpl;
+import org.wso2.msf4j.io.RequestEntityTooLargeException;
+import org.wso2.msf4j.sse.SseEventSink;
 import org.wso2.msf4j.util.BufferUtil;
 import org.wso2.msf4j.util.QueryStringDecoderUtil;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
@@ -43,13 +44,9 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -60,7 +57,6 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.MultivaluedHashMap;
 import javax.ws.rs.core.MultivaluedMap;
 
 /**
@@ -71,13 +67,7 @@ public class HttpResourceModelProcessor {
 
     private final HttpResourceModel httpResourceModel;
     private HttpStreamer httpStreamer;
-    private MultivaluedMap<String, Object> formParameters = null;
-    private Map<String, String> formParamContentType = new HashMap<>();
-    private static Path tempRepoPath = Paths.get(System.getProperty("java.io.tmpdir"), "msf4jtemp");
-    private Path tmpPathForRequest;
-    // Temp File cleaning thread
-    private static FileCleaningTracker fileCleaningTracker = new FileCleaningTracker();
-    private static final String FILEINFO_POSTFIX = "file.info";
+    private SseEventSink sseEventSink;
 
     public HttpResourceModelProcessor(HttpResourceModel httpResourceModel) {
         this.httpResourceModel = httpResourceModel;
@@ -138,17 +128,24 @@ public class HttpResourceModelProcessor {
             }
 
             if (httpStreamer == null) {
-                return new HttpMethodInfo(httpResourceModel.getMethod(),
+                HttpMethodInfo httpMethodInfo = new HttpMethodInfo(httpResourceModel.getMethod(),
                         httpResourceModel.getHttpHandler(),
-                        args, formParameters,
+                        args,
                         responder);
+                httpMethodInfo.setSseEventSink(sseEventSink);
+                return httpMethodInfo;
             } else {
                 return new HttpMethodInfo(httpResourceModel.getMethod(),
                         httpResourceModel.getHttpHandler(),
-                        args, formParameters,
+                        args,
                         responder,
                         httpStreamer);
             }
+        } catch (FormSizeLimitExceededException e) {
+            throw new HandlerException(javax.ws.rs.core.Response.Status.REQUEST_ENTITY_TOO_LARGE, e.getMessage());
+        } catch (RequestEntityTooLargeException e) {
+            // Handled by the message processor, which also closes the connection with the unread body
+            throw e;
         } catch (Throwable e) {
             throw new HandlerException(javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR,
                     String.format("Error in executing request: %s %s", request.getHttpMethod(),
@@ -168,155 +165,65 @@ public class HttpResourceModelProcessor {
             throws FormUploadException, IOException {
         Type paramType = paramInfo.getParameterType();
         FormDataParam formDataParam = paramInfo.getAnnotation();
-        if (getFormParameters() == null) {
-            setFormParameters(extractRequestFormParams(request, paramInfo, true));
-        }
+        RequestFormData formData = RequestFormData.get(request);
+        String contentType = formData.getContentType(formDataParam.value());
 
-        List<Object> parameter = getParameter(formDataParam.value());
+        List<Object> parameter = formData.get(formDataParam.value());
         boolean isNotNull = (parameter != null);
         if (paramInfo.getConverter() != null) {
             // We need to skip the conversion for java.io.File types and handle special cases
-            if (paramType instanceof ParameterizedType && isNotNull &&
-                    parameter.get(0).getClass().isAssignableFrom(File.class)) {
-                return parameter;
-            } else if (isNotNull && parameter.get(0).getClass().isAssignableFrom(File.class)) {
-                return parameter.get(0);
-            } else if (MediaType.TEXT_PLAIN.equalsIgnoreCase(formParamContentType.get(formDataParam.value()))) {
+            if (paramType instanceof ParameterizedType && isNotNull && parameter.get(0) instanceof FormPart) {
+                List<File> files = new ArrayList<>(parameter.size());
+                for (Object part : parameter) {
+                    files.add(((FormPart) part).getFile());
+                }
+                return files;
+            } else if (isNotNull && parameter.get(0) instanceof FormPart) {
+                return ((FormPart) parameter.get(0)).getFile();
+            } else if (MediaType.TEXT_PLAIN.equalsIgnoreCase(contentType)) {
                 return paramInfo.convert(parameter);
             } else if (MediaType.APPLICATION_FORM_URLENCODED.equals(request.getContentType())) {
                 return paramInfo.convert(parameter);
             }
             // Beans with string constructor
-            return createBean(parameter, formDataParam, paramType, isNotNull);
+            return createBean(parameter, contentType, paramType, isNotNull);
         }
         // We only support InputStream for a single file. Therefore only get first element from the list
-        if (paramType == InputStream.class && isNotNull && parameter.get(0).getClass().isAssignableFrom(File.class)) {
-            return new FileInputStream((File) parameter.get(0));
+        if (paramType == InputStream.class && isNotNull && parameter.get(0) instanceof FormPart) {
+            return ((FormPart) parameter.get(0)).openStream();
         } else if (paramType == FileInfo.class) {
-            List<Object> fileInfo = getParameter(formDataParam.value() + FILEINFO_POSTFIX);
-            return fileInfo == null ? null : fileInfo.get(0);
+            return formData.getFileInfo(formDataParam.value());
         }
         // These are beans without having string constructor. Convert using existing BeanConverter
-        return createBean(parameter, formDataParam, paramType, isNotNull);
+        return createBean(parameter, contentType, paramType, isNotNull);
     }
 
-    /**
-     * Extract the form items in the request.
-     *
-     * @param request     Request which need to be processed
-     * @param paramInfo   of the method
-     * @param addFileInfo if FileInfo object needed to be added to params. In a case of InputStream this should be true
-     * @return MultivaluedMap of form items
-     * @throws IOException if error occurs while processing the multipart/form-data request
-     */
-    private MultivaluedMap<String, Object> extractRequestFormParams(Request request,
-                                                                    HttpResourceModel.ParameterInfo paramInfo,
-                                                                    boolean addFileInfo) throws IOException {
-        MultivaluedMap<String, Object> parameters = new MultivaluedHashMap<>();
-        if (MediaType.MULTIPART_FORM_DATA.equals(request.getContentType())) {
-            FormParamIterator formParamIterator = new FormParamIterator(request);
-            while (formParamIterator.hasNext()) {
-                FormItem item = formParamIterator.next();
-
-                String cType = item.getContentType();
-                if (cType != null && cType.contains(";")) {
-                    cType = cType.split(";")[0];
-                }
-                if (cType == null) {
-                    cType = MediaType.TEXT_PLAIN;
-                }
-                boolean isFile = item.getHeaders().getHeader("content-disposition").contains("filename") ||
-                        MediaType.APPLICATION_OCTET_STREAM.equals(item.getHeaders().getHeader("content-type"));
-                formParamContentType.putIfAbsent(item.getFieldName(), cType);
-
-                List<Object> existingValues = parameters.get(item.getFieldName());
-                if (existingValues == null) {
-                    parameters.put(item.getFieldName(),
-                            isFile ? new ArrayList<>(Collections.singletonList(createAndTrackTempFile(item))) :
-                                    new ArrayList<>(Collections.singletonList(StreamUtil.asString(item.openStream()))));
-                } else {
-                    existingValues.add(isFile ? createAndTrackTempFile(item) : StreamUtil.asString(item.openStream()));
-                }
-
-                if (addFileInfo && isFile) {
-                    //Create FileInfo bean to handle InputStream
-                    FileInfo fileInfo = new FileInfo();
-                    fileInfo.setFileName(item.getName());
-                    fileInfo.setContentType(item.getContentType());
-                    parameters.putSingle(item.getFieldName() + FILEINFO_POSTFIX, fileInfo);
-                }
-            }
-        } else if (MediaType.APPLICATION_FORM_URLENCODED.equals(request.getContentType())) {
-            ByteBuffer fullContent = BufferUtil.merge(request.getFullMessageBody());
-            String bodyStr = BeanConverter
-                    .getConverter((request.getContentType() != null) ? request.getContentType() : MediaType.WILDCARD)
-                    .convertToObject(fullContent, paramInfo.getParameterType()).toString();
-            QueryStringDecoderUtil queryStringDecoderUtil = new QueryStringDecoderUtil(bodyStr, false);
-            queryStringDecoderUtil.parameters().entrySet().
-                    forEach(entry -> parameters.put(entry.getKey(), new ArrayList<>(entry.getValue())));
-        }
-        return parameters;
-    }
-
-    private Object createBean(List<Object> parameter, FormDataParam formDataParam, Type paramType, boolean isNotNull) {
+    private Object createBean(List<Object> parameter, String contentType, Type paramType, boolean isNotNull) {
         if (isNotNull) {
-            MediaTypeConverter converter = BeanConverter.getConverter(formParamContentType.get(formDataParam.value()));
+            MediaTypeConverter converter = BeanConverter.getConverter(contentType);
             ByteBuffer value = ByteBuffer.wrap(parameter.get(0).toString().getBytes(Charset.defaultCharset()));
             return converter.convertToObject(value, paramType);
         }
         throw new BeanConversionException("Content cannot be null");
     }
 
-    private File createAndTrackTempFile(FormItem item) throws IOException {
-        if (tmpPathForRequest == null) {
-            if (Files.notExists(tempRepoPath)) {
-                Files.createDirectory(tempRepoPath);
-            }
-            tmpPathForRequest = Files.createTempDirectory(tempRepoPath, "tmp");
-        }
-        Path path = Paths.get(tmpPathForRequest.toString(), item.getName());
-        File file = path.toFile();
-        StreamUtil.copy(item.openStream(), new FileOutputStream(file), true);
-        fileCleaningTracker.track(file, file);
-        fileCleaningTracker.track(tmpPathForRequest.toFile(), file, FileDeleteStrategy.FORCE);
-        return file;
-    }
-
     private Object getFormParamValue(HttpResourceModel.ParameterInfo<List<Object>> paramInfo, Request request)
             throws FormUploadException, IOException {
         FormParam formParam = paramInfo.getAnnotation();
-        if (getFormParameters() == null) {
-            MultivaluedMap<String, Object> parameters = new MultivaluedHashMap<>();
-            if (MediaType.MULTIPART_FORM_DATA.equals(request.getContentType())) {
-                FormParamIterator formParamIterator = new FormParamIterator(request);
-                while (formParamIterator.hasNext()) {
-                    FormItem item = formParamIterator.next();
-                    List<Object> existingValues = parameters.get(item.getFieldName());
-                    if (existingValues == null) {
-                        parameters.put(item.getFieldName(), new ArrayList<>(
-                                Collections.singletonList(StreamUtil.asString(item.openStream()))));
-                    } else {
-                        existingValues.add(StreamUtil.asString(item.openStream()));
-                    }
-                }
-            } else if (MediaType.APPLICATION_FORM_URLENCODED.equals(request.getContentType())) {
-                ByteBuffer fullContent = BufferUtil.merge(request.getFullMessageBody());
-                String bodyStr = BeanConverter.getConverter(
-                        (request.getContentType() != null) ? request.getContentType() : MediaType.WILDCARD)
-                        .convertToObject(fullContent, paramInfo.getParameterType()).toString();
-                QueryStringDecoderUtil queryStringDecoderUtil = new QueryStringDecoderUtil(bodyStr, false);
-                queryStringDecoderUtil.parameters().entrySet().
-                        forEach(entry -> parameters.put(entry.getKey(), new ArrayList<>(entry.getValue())));
-            }
-            setFormParameters(parameters);
-        }
-
-        List<Object> paramValue = getParameter(formParam.value());
+        List<Object> paramValue = RequestFormData.get(request).get(formParam.value());
         if (paramValue == null) {
             String defaultVal = paramInfo.getDefaultVal();
             if (defaultVal != null) {
                 paramValue = Collections.singletonList(defaultVal);
             }
+        } else {
+            // Form parameters are bound as strings, including the parts sent as files
+            List<Object> values = new ArrayList<>(paramValue.size());
+            for (Object value : paramValue) {
+                values.add((value instanceof FormPart) ?
+                        ((FormPart) value).getString(Charset.defaultCharset()) : value);
+            }
+            paramValue = values;
         }
         return paramInfo.convert(paramValue);
     }
@@ -337,21 +244,15 @@ public class HttpResourceModelProcessor {
             value = httpStreamer;
         } else if (((Class) paramType).isAssignableFrom(FormParamIterator.class)) {
             value = new FormParamIterator(request);
-        } else if (((Class) paramType).isAssignableFrom(MultivaluedMap.class)) {
-            MultivaluedMap<String, Object> listMultivaluedMap = new MultivaluedHashMap<>();
-            if (MediaType.MULTIPART_FORM_DATA.equals(request.getContentType())) {
-                listMultivaluedMap = extractRequestFormParams(request, paramInfo, false);
-            } else if (MediaType.APPLICATION_FORM_URLENCODED.equals(request.getContentType())) {
-                ByteBuffer fullContent = BufferUtil.merge(request.getFullMessageBody());
-                String bodyStr = BeanConverter.getConverter(
-                        (request.getContentType() != null) ? request.getContentType() : MediaType.WILDCARD)
-                        .convertToObject(fullContent, paramInfo.getParameterType()).toString();
-                QueryStringDecoderUtil queryStringDecoderUtil = new QueryStringDecoderUtil(bodyStr, false);
-                MultivaluedMap<String, Object> finalListMultivaluedMap = listMultivaluedMap;
-                queryStringDecoderUtil.parameters().entrySet().
-                        forEach(entry -> finalListMultivaluedMap.put(entry.getKey(), new ArrayList(entry.getValue())));
+        } else if (((Class) paramType).isAssignableFrom(SseEventSink.class)) {
+            if (sseEventSink == null) {
+                sseEventSink = new SseEventSinkImpl(request.getHeader(SseEventSinkImpl.LAST_EVENT_ID_HEADER));
             }
-            value = listMultivaluedMap;
+            value = sseEventSink;
+        } else if (((Class) paramType).isAssignableFrom(Deadline.class)) {
+            value = request.getDeadline();
+        } else if (((Class) paramType).isAssignableFrom(MultivaluedMap.class)) {
+            value = RequestFormData.get(request).toMultivaluedMap();
         }
         Objects.requireNonNull(value, String.format("Could not resolve parameter %s", paramType.getTypeName()));
         return value;
@@ -413,28 +314,4 @@ public class HttpResourceModelProcessor {
         }
         return null;
     }
-
-    /**
-     * @param key parameter name.
-     * @return parameter value of the given key.
-     */
-    private List<Object> getParameter(String key) {
-        return formParameters.get(key);
-    }
-
-    /**
-     * @return Map of request formParameters
-     */
-    public Map<String, List<Object>> getFormParameters() {
-        return formParameters;
-    }
-
-    /**
-     * Set the request formParameters.
-     *
-     * @param parameters request formParameters
-     */
-    public void setFormParameters(MultivaluedMap<String, Object> parameters) {
-        this.formParameters = parameters;
-    }
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.internal.router;
+
+import org.wso2.msf4j.Deadline;
+import org.wso2.msf4j.HttpStreamSubscriber;
+import org.wso2.msf4j.HttpStreamSubscription;
+import org.wso2.msf4j.Request;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Delivers the body of a request to an {@link HttpStreamSubscriber} according to the demand it signals.
+ * The publishing thread parks while there is no outstanding demand instead of reading further chunks
+ * from the request.
+ * <p>
+ * The publishing thread waits for demand for at most the demand timeout, or until the deadline of the request
+ * if that is earlier, and then fails the subscription with a {@link TimeoutException}. Signals are delivered
+ * to the subscriber without holding the lock of the subscription, so the subscriber can call back into
+ * {@link #request(long)} and {@link #cancel()} from them. The chunks of the body which have already been
+ * received are discarded once the subscription is cancelled or failed.
+ */
+public class RequestBodyPublisher implements HttpStreamSubscription {
+
+    public static final long DEFAULT_DEMAND_TIMEOUT = 30 * 1000;
+
+    private final Request request;
+    private final HttpStreamSubscriber subscriber;
+    private final long demandTimeout;
+    private final Object lock = new Object();
+    private long demand;
+    private boolean cancelled;
+    private Throwable pendingError;
+
+    public RequestBodyPublisher(Request request, HttpStreamSubscriber subscriber) {
+        this(request, subscriber, DEFAULT_DEMAND_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param request       request whose body is published
+     * @param subscriber    subscriber of the request body
+     * @param demandTimeout how long to wait for the subscriber to signal demand
+     * @param unit          time unit of the demand timeout
+     */
+    public RequestBodyPublisher(Request request, HttpStreamSubscriber subscriber, long demandTimeout,
+                                TimeUnit unit) {
+        if (demandTimeout <= 0) {
+            throw new IllegalArgumentException("Demand timeout should be a positive value");
+        }
+        this.request = request;
+        this.subscriber = subscriber;
+        this.demandTimeout = unit.toMillis(demandTimeout);
+    }
+
+    @Override
+    public void request(long n) {
+        synchronized (lock) {
+            if (n <= 0) {
+                pendingError = new IllegalArgumentException("Requested number of chunks should be positive: " + n);
+            } else {
+                demand += n;
+                if (demand < 0) {
+                    // Overflowed, treat as unbounded demand
+                    demand = Long.MAX_VALUE;
+                }
+            }
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        synchronized (lock) {
+            cancelled = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Publish the request body to the subscriber. Returns once the body has been consumed,
+     * the subscription has been cancelled or failed, or the subscriber has failed.
+     *
+     * @throws Exception if the subscriber fails to consume the body
+     */
+    public void publish() throws Exception {
+        Throwable error;
+        try {
+            subscriber.onSubscribe(this);
+            error = deliver();
+        } catch (Throwable e) {
+            discardBody();
+            subscriber.onError(e);
+            throw e;
+        }
+        if (error != null) {
+            discardBody();
+            subscriber.onError(error);
+        }
+    }
+
+    /**
+     * @return error to fail the subscription with, or null if the body has been delivered or the subscription
+     * has been cancelled
+     */
+    private Throwable deliver() throws Exception {
+        while (!(request.isEmpty() && request.isEomAdded())) {
+            Throwable error = awaitDemand();
+            if (error != null) {
+                return error;
+            }
+            if (isCancelled()) {
+                discardBody();
+                return null;
+            }
+            ByteBuffer chunk = request.getMessageBody();
+            if (chunk != null) {
+                subscriber.onNext(chunk);
+            }
+        }
+        if (!isCancelled()) {
+            subscriber.onComplete();
+        }
+        return null;
+    }
+
+    /**
+     * Wait until the subscriber has signalled demand for a chunk, and take one chunk off the demand.
+     *
+     * @return error to fail the subscription with, or null if a chunk can be delivered or the subscription
+     * has been cancelled
+     */
+    private Throwable awaitDemand() throws InterruptedException {
+        long start = System.nanoTime();
+        Deadline deadline = Deadline.after(demandTimeout, TimeUnit.MILLISECONDS).min(Deadline.current());
+        synchronized (lock) {
+            while (demand == 0 && !cancelled && pendingError == null) {
+                long remaining = deadline.timeRemaining(TimeUnit.NANOSECONDS);
+                if (remaining <= 0) {
+                    cancelled = true;
+                    return new TimeoutException("No demand signalled by the subscriber in " +
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+                }
+                TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            }
+            if (pendingError != null) {
+                cancelled = true;
+                Throwable error = pendingError;
+                pendingError = null;
+                return error;
+            }
+            if (!cancelled && demand != Long.MAX_VALUE) {
+                demand--;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Drop the chunks which have been received but not delivered. Chunks received later are dropped along
+     * with the request.
+     */
+    private void discardBody() {
+        while (!request.isEmpty()) {
+            request.getMessageBody();
+        }
+    }
+
+    private boolean isCancelled() {
+        synchronized (lock) {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.internal.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Bounded cache of values which expire at a given time, used to cache the outcome of verifying credentials.
+ * <p>
+ * When the cache is full, the expired entries are removed along with the entries which expire soonest, down to a
+ * fraction of the maximum size, so that the entries are scanned once per batch of insertions rather than on each.
+ *
+ * @param <V> type of the cached values
+ */
+public class ExpiringCache<V> {
+
+    /**
+     * Fraction of the maximum size down to which the cache is evicted when full.
+     */
+    static final double EVICTION_TARGET = 0.9;
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    });
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long expiryTime;
+
+        private Entry(V value, long expiryTime) {
+            this.value = value;
+            this.expiryTime = expiryTime;
+        }
+    }
+
+    private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final Object evictionLock = new Object();
+    private volatile int maxEntries;
+
+    /**
+     * @param maxEntries maximum number of cached values, 0 to disable the cache
+     */
+    public ExpiringCache(int maxEntries) {
+        setMaxEntries(maxEntries);
+    }
+
+    /**
+     * Set the maximum number of cached values. The cache is cleared when disabled with 0.
+     *
+     * @param maxEntries maximum number of cached values
+     */
+    public void setMaxEntries(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Max entries should not be negative");
+        }
+        this.maxEntries = maxEntries;
+        if (maxEntries == 0) {
+            entries.clear();
+        }
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Get a value which has not expired, counting a hit or a miss.
+     *
+     * @param key key of the value
+     * @param now current time in milliseconds
+     * @return cached value, or null if there is none or it has expired
+     */
+    public V get(String key, long now) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            if (entry.expiryTime > now) {
+                hits.increment();
+                return entry.value;
+            }
+            entries.remove(key, entry);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Cache a value, evicting a batch of entries if the cache is full.
+     *
+     * @param key        key of the value
+     * @param value      value to be cached
+     * @param expiryTime time in milliseconds at which the value expires
+     * @param now        current time in milliseconds
+     */
+    public void put(String key, V value, long expiryTime, long now) {
+        int limit = maxEntries;
+        if (limit == 0 || expiryTime <= now) {
+            return;
+        }
+        if (entries.size() >= limit) {
+            evict(limit, now);
+        }
+        entries.put(key, new Entry<>(value, expiryTime));
+    }
+
+    /**
+     * Remove the values which match a condition.
+     *
+     * @param filter condition of the values to be removed
+     */
+    public void removeIf(Predicate<V> filter) {
+        entries.values().removeIf(entry -> filter.test(entry.value));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of lookups which found a value
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of lookups which did not find a value
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Hash a token with SHA-256, so that the token itself need not be kept as a key.
+     *
+     * @param token token to be hashed
+     * @return Base64 encoded hash
+     */
+    public static String hash(String token) {
+        MessageDigest digest = DIGESTS.get();
+        digest.reset();
+        return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void evict(int limit, long now) {
+        synchronized (evictionLock) {
+            if (entries.size() < limit) {
+                // Evicted by a concurrent caller
+                return;
+            }
+            int target = (int) (limit * EVICTION_TARGET);
+            entries.values().removeIf(entry -> entry.expiryTime <= now);
+            if (entries.size() <= target) {
+                return;
+            }
+            List<Map.Entry<String, Entry<V>>> candidates = new ArrayList<>(entries.entrySet());
+            candidates.sort(Comparator.comparingLong(candidate -> candidate.getValue().expiryTime));
+            int excess = entries.size() - target;
+            for (int i = 0; i < candidates.size() && excess > 0; i++) {
+                Map.Entry<String, Entry<V>> candidate = candidates.get(i);
+                if (entries.remove(candidate.getKey(), candidate.getValue())) {
+                    excess--;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,564 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.internal.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * TCP transport which replicates session frames to the other nodes of a cluster.
+ * <p>
+ * Each node accepts connections from its peers and opens a connection to each of them, so that frames are only
+ * written on outbound connections and only read on inbound ones. Frames are queued per peer and written by a
+ * sender thread, coalescing the frames queued meanwhile into a single write. A peer which is down, or whose
+ * queue overflows, is disconnected and its queued frames are dropped. The listener is notified each time a
+ * connection is established, so that the peer can be brought up to date.
+ * <p>
+ * The nodes share a secret key. When connecting, both ends exchange a nonce and prove that they hold the key with
+ * an HMAC-SHA256 over the route of the connecting node and both nonces, from which a key for the connection is
+ * derived. Every frame then carries an HMAC, with that key, over its sequence number on the connection and its
+ * content, so that frames can not be forged, replayed or reordered. Frames are not encrypted, hence the transport
+ * must be bound to an interface of a private network and its port must not be exposed to untrusted clients.
+ */
+public class ReplicationTransport {
+    private static final Logger log = LoggerFactory.getLogger(ReplicationTransport.class);
+    private static final int MAGIC = 0x4D534652;
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final long RECONNECT_DELAY = 1000;
+    private static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MIN_KEY_LENGTH = 16;
+    private static final int NONCE_LENGTH = 16;
+    private static final int MAC_LENGTH = 32;
+    private static final byte SERVER_PROOF = 1;
+    private static final byte CLIENT_PROOF = 2;
+    // Length, timestamp and MAC
+    private static final int FRAME_OVERHEAD = 12 + MAC_LENGTH;
+
+    /**
+     * Receives the events of a ReplicationTransport.
+     */
+    public interface Listener {
+
+        /**
+         * Called by the sender thread of a peer once it has connected, before any queued frame is written.
+         * Frames written to the given sink are sent ahead of the queued frames, regardless of the queue capacity.
+         *
+         * @param address address of the peer which has connected
+         * @param sink    sink to which the frames which bring the peer up to date are written
+         * @throws IOException if writing to the sink fails
+         */
+        void peerConnected(InetSocketAddress address, FrameSink sink) throws IOException;
+
+        /**
+         * Called by the receiver thread of a connection with each frame it reads.
+         *
+         * @param route route of the node which sent the frame
+         * @param frame content of the frame
+         * @throws IOException if the frame is malformed
+         */
+        void frameReceived(String route, byte[] frame) throws IOException;
+    }
+
+    /**
+     * Writes frames to a peer.
+     */
+    @FunctionalInterface
+    public interface FrameSink {
+
+        void write(byte[] frame) throws IOException;
+    }
+
+    private final String localRoute;
+    private final InetSocketAddress bindAddress;
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+    private final int queueCapacity;
+    private final Listener listener;
+    private final List<Peer> peers = new CopyOnWriteArrayList<>();
+    private final Set<Socket> inboundSockets = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> connectedRoutes = new ConcurrentHashMap<>();
+    private final LongAdder sentFrames = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final LongAdder receivedFrames = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final AtomicLong maxLag = new AtomicLong();
+    private volatile long lastLag;
+    private volatile boolean running;
+    private ServerSocket serverSocket;
+
+    /**
+     * @param localRoute    route of this node, sent to the peers when connecting
+     * @param bindAddress   address on which the connections of the peers are accepted
+     * @param key           secret key shared by the nodes of the cluster, of at least 128 bits
+     * @param queueCapacity number of frames which can be queued for a peer
+     * @param listener      listener notified of the connections and the received frames
+     */
+    public ReplicationTransport(String localRoute, InetSocketAddress bindAddress, SecretKey key, int queueCapacity,
+                                Listener listener) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity should be a positive value");
+        }
+        byte[] encodedKey = key.getEncoded();
+        if (encodedKey == null || encodedKey.length < MIN_KEY_LENGTH) {
+            throw new IllegalArgumentException("Session replication key should be at least 128 bits long");
+        }
+        this.localRoute = localRoute;
+        this.bindAddress = bindAddress;
+        this.key = new SecretKeySpec(encodedKey, MAC_ALGORITHM);
+        this.queueCapacity = queueCapacity;
+        this.listener = listener;
+    }
+
+    /**
+     * Start accepting connections and connect to the peers added so far.
+     *
+     * @throws IOException if the bind address can not be bound
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(bindAddress);
+        running = true;
+        startThread("acceptor", this::accept);
+        peers.forEach(Peer::start);
+    }
+
+    /**
+     * Stop the transport, closing all the connections. Queued frames are dropped.
+     */
+    public synchronized void stop() {
+        running = false;
+        closeQuietly(serverSocket);
+        peers.forEach(Peer::stop);
+        inboundSockets.forEach(ReplicationTransport::closeQuietly);
+    }
+
+    /**
+     * Add a peer to which frames are replicated. The peer is connected right away if the transport has been
+     * started.
+     *
+     * @param address address on which the peer accepts connections
+     */
+    public synchronized void addPeer(InetSocketAddress address) {
+        Peer peer = new Peer(address);
+        peers.add(peer);
+        if (running) {
+            peer.start();
+        }
+    }
+
+    /**
+     * Queue a frame to all the connected peers.
+     *
+     * @param frame content of the frame
+     */
+    public void broadcast(byte[] frame) {
+        for (Peer peer : peers) {
+            peer.send(frame);
+        }
+    }
+
+    /**
+     * @return address on which the connections of the peers are accepted, once started
+     */
+    public InetSocketAddress getLocalAddress() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    /**
+     * @return routes of the peers which are connected to this node
+     */
+    public Set<String> getConnectedRoutes() {
+        return Collections.unmodifiableSet(connectedRoutes.keySet());
+    }
+
+    public boolean isConnected(String route) {
+        return connectedRoutes.containsKey(route);
+    }
+
+    public long getSentFrameCount() {
+        return sentFrames.sum();
+    }
+
+    public long getSentBytes() {
+        return sentBytes.sum();
+    }
+
+    public long getReceivedFrameCount() {
+        return receivedFrames.sum();
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes.sum();
+    }
+
+    /**
+     * @return number of frames which were queued but could not be delivered to a peer
+     */
+    public long getDroppedFrameCount() {
+        return droppedFrames.sum();
+    }
+
+    /**
+     * @return number of frames queued to the peers which are yet to be written
+     */
+    public int getPendingFrameCount() {
+        int pending = 0;
+        for (Peer peer : peers) {
+            pending += peer.queue.size();
+        }
+        return pending;
+    }
+
+    /**
+     * @return time in milliseconds between queuing and receiving the last received frame
+     */
+    public long getLastReplicationLag() {
+        return lastLag;
+    }
+
+    public long getMaxReplicationLag() {
+        return maxLag.get();
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                inboundSockets.add(socket);
+                startThread("receiver-" + socket.getRemoteSocketAddress(), () -> receive(socket));
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Couldn't accept a session replication connection", e);
+                }
+            }
+        }
+    }
+
+    private void receive(Socket socket) {
+        String route = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(),
+                BUFFER_SIZE))) {
+            // A peer which does not complete the handshake in time is dropped
+            socket.setSoTimeout(CONNECT_TIMEOUT);
+            if (in.readInt() != MAGIC) {
+                log.warn("Rejected a session replication connection from {}", socket.getRemoteSocketAddress());
+                return;
+            }
+            String claimedRoute = in.readUTF();
+            byte[] clientNonce = new byte[NONCE_LENGTH];
+            in.readFully(clientNonce);
+            byte[] serverNonce = newNonce();
+            byte[] connectionKey = deriveConnectionKey(claimedRoute, clientNonce, serverNonce);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.write(serverNonce);
+            out.write(proof(connectionKey, SERVER_PROOF));
+            out.flush();
+            byte[] clientProof = new byte[MAC_LENGTH];
+            in.readFully(clientProof);
+            if (!MessageDigest.isEqual(clientProof, proof(connectionKey, CLIENT_PROOF))) {
+                log.warn("Rejected an unauthenticated session replication connection from {} as {}",
+                        socket.getRemoteSocketAddress(), claimedRoute);
+                return;
+            }
+            socket.setSoTimeout(0);
+            route = claimedRoute;
+            connectedRoutes.merge(route, 1, Integer::sum);
+            FrameAuthenticator authenticator = new FrameAuthenticator(connectionKey);
+            byte[] mac = new byte[MAC_LENGTH];
+            while (running) {
+                int length = in.readInt();
+                if (length < 0 || length > MAX_FRAME_SIZE) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                long queuedTime = in.readLong();
+                byte[] frame = new byte[length];
+                in.readFully(frame);
+                in.readFully(mac);
+                if (!MessageDigest.isEqual(mac, authenticator.sign(queuedTime, frame))) {
+                    throw new IOException("Session replication frame from " + route + " failed authentication");
+                }
+                received(length, queuedTime);
+                try {
+                    listener.frameReceived(route, frame);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Couldn't apply a session replication frame from " + route, e);
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            log.debug("Session replication connection from {} closed", route);
+        } catch (IOException e) {
+            if (running) {
+                log.warn("Session replication connection from " + route + " failed", e);
+            }
+        } finally {
+            inboundSockets.remove(socket);
+            closeQuietly(socket);
+            if (route != null) {
+                connectedRoutes.computeIfPresent(route, (key, count) -> (count == 1) ? null : count - 1);
+            }
+        }
+    }
+
+    private void received(int length, long queuedTime) {
+        receivedFrames.increment();
+        receivedBytes.add(length + FRAME_OVERHEAD);
+        // Includes the clock skew between the nodes
+        long lag = Math.max(0, System.currentTimeMillis() - queuedTime);
+        lastLag = lag;
+        maxLag.accumulateAndGet(lag, Math::max);
+    }
+
+    private byte[] newNonce() {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        return nonce;
+    }
+
+    /**
+     * Derive the key of a connection, which binds the frames to the route of the connecting node and to the
+     * nonces of both ends.
+     */
+    private byte[] deriveConnectionKey(String route, byte[] clientNonce, byte[] serverNonce) throws IOException {
+        Mac mac = newMac(key);
+        mac.update(ByteBuffer.allocate(4).putInt(MAGIC).array());
+        mac.update(route.getBytes(StandardCharsets.UTF_8));
+        // The nonces have a fixed length, hence the route can not be shifted into them
+        mac.update(clientNonce);
+        mac.update(serverNonce);
+        return mac.doFinal();
+    }
+
+    private static byte[] proof(byte[] connectionKey, byte role) throws IOException {
+        Mac mac = newMac(new SecretKeySpec(connectionKey, MAC_ALGORITHM));
+        return mac.doFinal(new byte[]{role});
+    }
+
+    private static Mac newMac(SecretKeySpec key) throws IOException {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (InvalidKeyException e) {
+            throw new IOException("Invalid session replication key", e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(MAC_ALGORITHM + " is not supported", e);
+        }
+    }
+
+    private void startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, "msf4j-session-replication-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.debug("Couldn't close a session replication socket", e);
+        }
+    }
+
+    /**
+     * Computes the MACs of the frames of a connection, in the order they are written.
+     */
+    private static final class FrameAuthenticator {
+
+        private final Mac mac;
+        private final ByteBuffer header = ByteBuffer.allocate(16);
+        private long sequence;
+
+        private FrameAuthenticator(byte[] connectionKey) throws IOException {
+            this.mac = newMac(new SecretKeySpec(connectionKey, MAC_ALGORITHM));
+        }
+
+        private byte[] sign(long queuedTime, byte[] content) {
+            header.clear();
+            header.putLong(sequence++).putLong(queuedTime);
+            mac.update(header.array());
+            return mac.doFinal(content);
+        }
+    }
+
+    private static final class Frame {
+
+        private final byte[] content;
+        private final long queuedTime;
+
+        private Frame(byte[] content, long queuedTime) {
+            this.content = content;
+            this.queuedTime = queuedTime;
+        }
+    }
+
+    /**
+     * Outbound connection to a node of the cluster.
+     */
+    private final class Peer {
+
+        private final InetSocketAddress address;
+        private final BlockingQueue<Frame> queue = new LinkedBlockingQueue<>(queueCapacity);
+        private volatile boolean connected;
+        private volatile Socket socket;
+        private Thread sender;
+
+        private Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        /**
+         * Queue a frame to this peer. Frames are not queued while the peer is disconnected, since the peer is
+         * brought up to date when it connects again.
+         */
+        private void send(byte[] frame) {
+            if (!connected) {
+                return;
+            }
+            if (!queue.offer(new Frame(frame, System.currentTimeMillis()))) {
+                // Catching up would need the dropped frame, so the peer is brought up to date on reconnection
+                droppedFrames.increment();
+                log.warn("Session replication queue of {} overflowed, reconnecting", address);
+                closeQuietly(socket);
+            }
+        }
+
+        private void start() {
+            sender = new Thread(this::run, "msf4j-session-replication-sender-" + address);
+            sender.setDaemon(true);
+            sender.start();
+        }
+
+        private void stop() {
+            if (sender != null) {
+                sender.interrupt();
+            }
+            closeQuietly(socket);
+        }
+
+        private void run() {
+            while (running) {
+                try (Socket socket = new Socket()) {
+                    this.socket = socket;
+                    socket.setTcpNoDelay(true);
+                    socket.connect(address, CONNECT_TIMEOUT);
+                    socket.setSoTimeout(CONNECT_TIMEOUT);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(),
+                            BUFFER_SIZE));
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    byte[] clientNonce = newNonce();
+                    out.writeInt(MAGIC);
+                    out.writeUTF(localRoute);
+                    out.write(clientNonce);
+                    out.flush();
+                    byte[] serverNonce = new byte[NONCE_LENGTH];
+                    in.readFully(serverNonce);
+                    byte[] serverProof = new byte[MAC_LENGTH];
+                    in.readFully(serverProof);
+                    byte[] connectionKey = deriveConnectionKey(localRoute, clientNonce, serverNonce);
+                    // No session is sent to a node which does not hold the key
+                    if (!MessageDigest.isEqual(serverProof, proof(connectionKey, SERVER_PROOF))) {
+                        log.warn("Session replication peer {} failed authentication", address);
+                        throw new IOException("Session replication peer " + address + " failed authentication");
+                    }
+                    out.write(proof(connectionKey, CLIENT_PROOF));
+                    socket.setSoTimeout(0);
+                    FrameAuthenticator authenticator = new FrameAuthenticator(connectionKey);
+                    // Frames queued from now on follow the frames written by the listener
+                    connected = true;
+                    log.info("Replicating sessions to {}", address);
+                    long connectedTime = System.currentTimeMillis();
+                    listener.peerConnected(address,
+                            frame -> write(out, authenticator, new Frame(frame, connectedTime)));
+                    out.flush();
+                    while (running) {
+                        Frame frame = queue.take();
+                        do {
+                            write(out, authenticator, frame);
+                        } while ((frame = queue.poll()) != null);
+                        out.flush();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (IOException | RuntimeException e) {
+                    if (running && connected) {
+                        log.warn("Session replication connection to " + address + " failed", e);
+                    }
+                } finally {
+                    connected = false;
+                    droppedFrames.add(queue.size());
+                    queue.clear();
+                }
+                try {
+                    Thread.sleep(RECONNECT_DELAY);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private void write(DataOutputStream out, FrameAuthenticator authenticator, Frame frame) throws IOException {
+            out.writeInt(frame.content.length);
+            out.writeLong(frame.queuedTime);
+            out.write(frame.content);
+            out.write(authenticator.sign(frame.queuedTime, frame.content));
+            sentFrames.increment();
+            sentBytes.add(frame.content.length + FRAME_OVERHEAD);
+        }
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.internal.session;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Append only session log kept in a memory mapped file.
+ * <p>
+ * Every update of a session appends a record holding the encoded session, and every removal appends a
+ * tombstone. An in-memory index maps each session id to its latest record, and is rebuilt at startup by
+ * scanning the record headers, without decoding any session. Records which have been superseded are
+ * reclaimed by compacting the log into a new file once they outweigh the live records.
+ * <p>
+ * Record layout: <code>length(4) type(1) lastAccessedTime(8) maxInactiveInterval(4) idLength(2) id payload
+ * crc(4)</code>, where the length covers everything after itself and the CRC covers everything between the
+ * length and itself. A zero length marks the end of the log, and the log is truncated at the first record
+ * which fails the CRC, which drops a record torn by a crash.
+ * <p>
+ * Writes reach the page cache of the OS right away and survive a crash of the process. They are forced
+ * to the disk on {@link #flush()}, on compaction and on {@link #close()}.
+ */
+public class SessionLog implements Closeable {
+
+    static final String LOG_FILE = "sessions.log";
+    private static final String COMPACTION_FILE = "sessions.log.compact";
+    private static final int INITIAL_SIZE = 1024 * 1024;
+    private static final int MIN_COMPACTION_SIZE = 4 * 1024 * 1024;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    // type, lastAccessedTime, maxInactiveInterval and idLength
+    private static final int HEADER_LENGTH = 1 + 8 + 4 + 2;
+    private static final int MAX_ID_LENGTH = Short.MAX_VALUE;
+
+    private final Path directory;
+    private final Path logFile;
+    // Session id to the offset of its latest record
+    private final Map<String, Integer> index = new HashMap<>();
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+    private long garbageBytes;
+
+    /**
+     * Open the session log in the given directory and rebuild the index from it.
+     *
+     * @param directory directory holding the log file
+     * @throws IOException if the log can not be opened
+     */
+    public SessionLog(Path directory) throws IOException {
+        this.directory = directory;
+        this.logFile = directory.resolve(LOG_FILE);
+        Files.createDirectories(directory);
+        // Left over by a compaction which did not complete, the log itself is still intact
+        Files.deleteIfExists(directory.resolve(COMPACTION_FILE));
+        channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), INITIAL_SIZE));
+        scan();
+    }
+
+    /**
+     * A record read from the log.
+     */
+    public static final class Entry {
+
+        private final long lastAccessedTime;
+        private final int maxInactiveInterval;
+        private final byte[] payload;
+
+        Entry(long lastAccessedTime, int maxInactiveInterval, byte[] payload) {
+            this.lastAccessedTime = lastAccessedTime;
+            this.maxInactiveInterval = maxInactiveInterval;
+            this.payload = payload;
+        }
+
+        public long getLastAccessedTime() {
+            return lastAccessedTime;
+        }
+
+        /**
+         * @return max inactive interval in minutes
+         */
+        public int getMaxInactiveInterval() {
+            return maxInactiveInterval;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        /**
+         * @param now current time in milliseconds
+         * @return true if the session has been inactive for longer than its max inactive interval
+         */
+        public boolean isExpired(long now) {
+            return now - lastAccessedTime >= maxInactiveInterval * 60L * 1000;
+        }
+    }
+
+    /**
+     * Append the latest state of a session.
+     *
+     * @param id                  session id
+     * @param lastAccessedTime    last accessed time of the session
+     * @param maxInactiveInterval max inactive interval of the session in minutes
+     * @param payload             encoded session
+     * @throws IOException if the log can not be extended
+     */
+    public synchronized void put(String id, long lastAccessedTime, int maxInactiveInterval, byte[] payload)
+            throws IOException {
+        int offset = append(PUT, id, lastAccessedTime, maxInactiveInterval, payload);
+        Integer previous = index.put(id, offset);
+        if (previous != null) {
+            garbageBytes += recordSize(previous);
+        }
+        compactIfRequired();
+    }
+
+    /**
+     * Append a tombstone for a session.
+     *
+     * @param id session id
+     * @throws IOException if the log can not be extended
+     */
+    public synchronized void remove(String id) throws IOException {
+        Integer previous = index.remove(id);
+        if (previous == null) {
+            return;
+        }
+        int offset = append(DELETE, id, 0, 0, new byte[0]);
+        garbageBytes += recordSize(previous) + recordSize(offset);
+        compactIfRequired();
+    }
+
+    /**
+     * @param id session id
+     * @return latest record of the session, or null if the log does not hold the session
+     */
+    public synchronized Entry get(String id) {
+        Integer offset = index.get(id);
+        return (offset == null) ? null : readEntry(offset);
+    }
+
+    /**
+     * @return number of sessions held in the log
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Remove the sessions which have expired, using only the record headers.
+     *
+     * @param now current time in milliseconds
+     * @return number of sessions removed
+     * @throws IOException if the log can not be extended
+     */
+    public synchronized int removeExpired(long now) throws IOException {
+        return removeExpired(now, id -> false);
+    }
+
+    /**
+     * Remove the sessions which have expired, other than the excluded ones, using only the record headers.
+     *
+     * @param now      current time in milliseconds
+     * @param excluded tells the ids of the sessions to be kept, such as those whose latest access is not recorded
+     * @return number of sessions removed
+     * @throws IOException if the log can not be extended
+     */
+    public synchronized int removeExpired(long now, Predicate<String> excluded) throws IOException {
+        List<String> expired = new ArrayList<>();
+        index.forEach((id, offset) -> {
+            if (now - buffer.getLong(offset + 5) >= buffer.getInt(offset + 13) * 60L * 1000 && !excluded.test(id)) {
+                expired.add(id);
+            }
+        });
+        for (String id : expired) {
+            remove(id);
+        }
+        return expired.size();
+    }
+
+    /**
+     * @return number of bytes taken by the records in the log
+     */
+    public synchronized long getLogSize() {
+        return position;
+    }
+
+    /**
+     * @return number of bytes taken by superseded records and tombstones
+     */
+    public synchronized long getGarbageBytes() {
+        return garbageBytes;
+    }
+
+    /**
+     * Rewrite the log with only the latest record of each session.
+     *
+     * @throws IOException if the compacted log can not be written
+     */
+    public synchronized void compact() throws IOException {
+        Path compactionFile = directory.resolve(COMPACTION_FILE);
+        long liveBytes = position - garbageBytes;
+        FileChannel newChannel = FileChannel.open(compactionFile, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer newBuffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    Math.max(INITIAL_SIZE, Math.min(Integer.MAX_VALUE, liveBytes * 2)));
+            Map<String, Integer> newIndex = new HashMap<>(index.size());
+            int newPosition = 0;
+            for (Map.Entry<String, Integer> entry : index.entrySet()) {
+                int size = recordSize(entry.getValue());
+                ByteBuffer record = buffer.duplicate();
+                record.limit(entry.getValue() + size).position(entry.getValue());
+                newBuffer.position(newPosition);
+                newBuffer.put(record);
+                newIndex.put(entry.getKey(), newPosition);
+                newPosition += size;
+            }
+            newBuffer.force();
+            Files.move(compactionFile, logFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            channel.close();
+            channel = newChannel;
+            buffer = newBuffer;
+            position = newPosition;
+            garbageBytes = 0;
+            index.clear();
+            index.putAll(newIndex);
+        } catch (IOException | RuntimeException e) {
+            newChannel.close();
+            Files.deleteIfExists(compactionFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Force the appended records to the disk.
+     */
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    private void scan() {
+        int offset = 0;
+        while (offset + 4 <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length < HEADER_LENGTH + 4 || length > buffer.capacity() - offset - 4 || !isIntact(offset, length)) {
+                break;
+            }
+            byte type = buffer.get(offset + 4);
+            String id = readId(offset);
+            Integer previous = (type == PUT) ? index.put(id, offset) : index.remove(id);
+            if (previous != null) {
+                garbageBytes += recordSize(previous);
+            }
+            if (type == DELETE) {
+                garbageBytes += length + 4;
+            }
+            offset += length + 4;
+        }
+        position = offset;
+        terminate();
+    }
+
+    private int append(byte type, String id, long lastAccessedTime, int maxInactiveInterval, byte[] payload)
+            throws IOException {
+        if (!channel.isOpen()) {
+            throw new IOException("Session log has been closed");
+        }
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        if (idBytes.length > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException("Session id is too long");
+        }
+        int length = HEADER_LENGTH + idBytes.length + payload.length + 4;
+        ensureCapacity(length + 4);
+
+        int offset = position;
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset + 4);
+        record.put(type).putLong(lastAccessedTime).putInt(maxInactiveInterval).putShort((short) idBytes.length)
+                .put(idBytes).put(payload);
+        record.putInt((int) checksum(offset, length));
+        position = offset + length + 4;
+        terminate();
+        // The length is written last so that a scan never sees a partially written record
+        buffer.putInt(offset, length);
+        return offset;
+    }
+
+    private void ensureCapacity(int required) throws IOException {
+        // Space for the terminating zero length is kept after the last record
+        long capacity = (long) position + required + 4;
+        if (capacity <= buffer.capacity()) {
+            return;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("Session log is full");
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.min(Integer.MAX_VALUE, Math.max(capacity, (long) buffer.capacity() * 2)));
+    }
+
+    private void compactIfRequired() throws IOException {
+        if (position >= MIN_COMPACTION_SIZE && garbageBytes > position - garbageBytes) {
+            compact();
+        }
+    }
+
+    private void terminate() {
+        if (position + 4 <= buffer.capacity()) {
+            buffer.putInt(position, 0);
+        }
+    }
+
+    private boolean isIntact(int offset, int length) {
+        return buffer.getInt(offset + length) == (int) checksum(offset, length);
+    }
+
+    private long checksum(int offset, int length) {
+        ByteBuffer content = buffer.duplicate();
+        content.limit(offset + length).position(offset + 4);
+        crc.reset();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    private int recordSize(int offset) {
+        return buffer.getInt(offset) + 4;
+    }
+
+    private String readId(int offset) {
+        byte[] idBytes = new byte[buffer.getShort(offset + 4 + HEADER_LENGTH - 2)];
+        ByteBuffer content = buffer.duplicate();
+        content.position(offset + 4 + HEADER_LENGTH);
+        content.get(idBytes);
+        return new String(idBytes, StandardCharsets.UTF_8);
+    }
+
+    private Entry readEntry(int offset) {
+        int length = buffer.getInt(offset);
+        int idLength = buffer.getShort(offset + 4 + HEADER_LENGTH - 2);
+        byte[] payload = new byte[length - HEADER_LENGTH - idLength - 4];
+        ByteBuffer content = buffer.duplicate();
+        content.position(offset + 4 + HEADER_LENGTH + idLength);
+        content.get(payload);
+        return new Entry(buffer.getLong(offset + 5), buffer.getInt(offset + 13), payload);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.internal.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Hashed timing wheel which hands over items to an expiry handler once their deadline has passed.
+ * <p>
+ * Items are scheduled from any thread, while the wheel is advanced by a single thread. Deadlines are read
+ * from the items when their bucket comes up, so an item whose deadline was pushed back after it was
+ * scheduled, as a session which was accessed again, is simply placed into a later bucket instead of expiring.
+ * Advancing the wheel therefore only touches the items of the elapsed buckets, and moving a deadline costs
+ * nothing more than updating the item. An item whose expiry handler fails is dropped, and the remaining items
+ * are still handed over. A cancelled timeout releases its item right away, while the timeout itself is dropped
+ * once its bucket comes up.
+ *
+ * @param <T> type of the items
+ */
+public class TimingWheel<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(TimingWheel.class);
+
+    private final long tickDuration;
+    private final long startTime;
+    private final int mask;
+    private final Queue<Timeout<T>>[] buckets;
+    private final Queue<Timeout<T>> pending = new ConcurrentLinkedQueue<>();
+    private final ToLongFunction<T> deadlineFunction;
+    private final Consumer<T> expiryHandler;
+    private long currentTick;
+
+    /**
+     * @param tickDuration     duration of a tick in milliseconds, items expire at most this late
+     * @param wheelSize        number of buckets, rounded up to a power of two
+     * @param startTime        time in milliseconds at which the first tick starts
+     * @param deadlineFunction gives the deadline of an item in milliseconds
+     * @param expiryHandler    invoked with the items whose deadline has passed
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickDuration, int wheelSize, long startTime, ToLongFunction<T> deadlineFunction,
+                       Consumer<T> expiryHandler) {
+        if (tickDuration <= 0 || wheelSize <= 0 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException("Invalid timing wheel, tick duration: " + tickDuration +
+                    " wheel size: " + wheelSize);
+        }
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        size = (wheelSize == 1) ? 1 : size;
+        this.tickDuration = tickDuration;
+        this.startTime = startTime;
+        this.mask = size - 1;
+        this.deadlineFunction = deadlineFunction;
+        this.expiryHandler = expiryHandler;
+        buckets = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Handle of a scheduled item.
+     *
+     * @param <T> type of the item
+     */
+    public static final class Timeout<T> {
+
+        private volatile T item;
+        // Only accessed by the thread which advances the wheel
+        private long tick;
+
+        private Timeout(T item) {
+            this.item = item;
+        }
+
+        /**
+         * Remove the item from the wheel, so that it is not handed over and is no longer referenced by the wheel.
+         * May be called from any thread.
+         */
+        public void cancel() {
+            item = null;
+        }
+
+        public boolean isCancelled() {
+            return item == null;
+        }
+    }
+
+    /**
+     * Schedule an item for expiry. May be called from any thread.
+     *
+     * @param item item to be scheduled
+     * @return timeout which cancels the expiry of the item
+     */
+    public Timeout<T> schedule(T item) {
+        Timeout<T> timeout = new Timeout<>(item);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Advance the wheel up to the given time, expiring the items whose deadline has passed.
+     * Must only be called from a single thread.
+     *
+     * @param now current time in milliseconds
+     */
+    public void advance(long now) {
+        Timeout<T> timeout;
+        while ((timeout = pending.poll()) != null) {
+            place(timeout, now);
+        }
+        long targetTick = (now - startTime) / tickDuration;
+        while (currentTick <= targetTick) {
+            Queue<Timeout<T>> bucket = buckets[(int) (currentTick & mask)];
+            Iterator<Timeout<T>> iterator = bucket.iterator();
+            Queue<Timeout<T>> due = new ArrayDeque<>();
+            while (iterator.hasNext()) {
+                Timeout<T> entry = iterator.next();
+                // Timeouts of later rounds share the bucket
+                if (entry.tick <= currentTick) {
+                    iterator.remove();
+                    due.add(entry);
+                }
+            }
+            currentTick++;
+            while ((timeout = due.poll()) != null) {
+                place(timeout, now);
+            }
+        }
+    }
+
+    /**
+     * @return number of timeouts held by the wheel, including the ones yet to be placed and the cancelled ones
+     * whose bucket has not come up yet
+     */
+    public int size() {
+        int size = pending.size();
+        for (Queue<Timeout<T>> bucket : buckets) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    private void place(Timeout<T> timeout, long now) {
+        T item = timeout.item;
+        if (item == null) {
+            return;
+        }
+        long deadline = deadlineFunction.applyAsLong(item);
+        if (deadline <= now) {
+            try {
+                expiryHandler.accept(item);
+            } catch (RuntimeException e) {
+                log.warn("Expiry handler threw an exception", e);
+            }
+            return;
+        }
+        // Rounded up so that an item never expires before its deadline
+        timeout.tick = Math.max(currentTick, (deadline - startTime + tickDuration - 1) / tickDuration);
+        buckets[(int) (timeout.tick & mask)].add(timeout);
+    }
+}
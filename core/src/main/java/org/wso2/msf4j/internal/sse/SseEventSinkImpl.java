@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.internal.sse;
+
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.msf4j.internal.MSF4JConstants;
+import org.wso2.msf4j.io.FlowControlledCarbonMessage;
+import org.wso2.msf4j.io.OutboundBufferMonitor;
+import org.wso2.msf4j.sse.SseEvent;
+import org.wso2.msf4j.sse.SseEventSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * {@link SseEventSink} which writes events as chunks of the response carbon message. Events sent before
+ * the response is opened are kept in order and written once the response headers have been handed over.
+ * <p>
+ * The events which are not yet consumed by the transport are accounted in the {@link OutboundBufferMonitor} of
+ * the response. A sink which would buffer more than the high water mark of the monitor is closed instead, so that
+ * a client which does not keep up cannot make the events pile up in memory.
+ */
+public class SseEventSinkImpl implements SseEventSink {
+
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    private final String lastEventId;
+    private final Queue<ByteBuffer> pendingEvents = new ArrayDeque<>();
+    private final Map<ByteBuffer, Integer> unconsumedEvents = new IdentityHashMap<>();
+    private OutboundBufferMonitor monitor = new OutboundBufferMonitor();
+    private long connectionId = -1;
+    private long bufferedBytes;
+    private CarbonMessage carbonMessage;
+    private volatile boolean closed;
+
+    public SseEventSinkImpl(String lastEventId) {
+        this.lastEventId = lastEventId;
+    }
+
+    /**
+     * Start writing events to the response message.
+     *
+     * @param carbonMessage response message which is already handed over to the transport
+     */
+    public synchronized void open(CarbonMessage carbonMessage) {
+        this.carbonMessage = carbonMessage;
+        Object outboundBufferMonitor = carbonMessage.getProperty(MSF4JConstants.OUTBOUND_BUFFER_MONITOR);
+        if (outboundBufferMonitor instanceof OutboundBufferMonitor) {
+            monitor = (OutboundBufferMonitor) outboundBufferMonitor;
+        }
+        if (!closed) {
+            connectionId = monitor.register();
+            monitor.update(connectionId, bufferedBytes);
+        }
+        if (carbonMessage instanceof FlowControlledCarbonMessage) {
+            ((FlowControlledCarbonMessage) carbonMessage).setConsumptionListener(this::consumed);
+        }
+        ByteBuffer encodedEvent;
+        while ((encodedEvent = pendingEvents.poll()) != null) {
+            write(encodedEvent);
+        }
+        if (closed) {
+            carbonMessage.setEndOfMsgAdded(true);
+        }
+    }
+
+    @Override
+    public void send(SseEvent event) throws IOException {
+        send(event.encode());
+    }
+
+    @Override
+    public synchronized void send(ByteBuffer encodedEvent) throws IOException {
+        if (closed) {
+            throw new IOException("SSE sink is closed");
+        }
+        // Each sink gets its own view of the shared buffer so the position of the other sinks is not affected
+        ByteBuffer view = encodedEvent.duplicate();
+        int length = view.remaining();
+        if (bufferedBytes > 0 && bufferedBytes + length > monitor.getHighWaterMark()) {
+            long buffered = bufferedBytes;
+            monitor.overflowed();
+            // Events which were not handed over to the transport are dropped
+            pendingEvents.clear();
+            close();
+            throw new IOException("SSE sink closed since the client is not keeping up, " + buffered +
+                    " bytes are not consumed yet");
+        }
+        buffered(length);
+        if (carbonMessage == null) {
+            pendingEvents.add(view);
+        } else {
+            write(view);
+        }
+    }
+
+    @Override
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return number of bytes sent to this sink which are yet to be consumed by the transport
+     */
+    public synchronized long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (carbonMessage != null) {
+            carbonMessage.setEndOfMsgAdded(true);
+            monitor.unregister(connectionId);
+        }
+    }
+
+    private void write(ByteBuffer view) {
+        int length = view.remaining();
+        if (carbonMessage instanceof FlowControlledCarbonMessage) {
+            unconsumedEvents.put(view, length);
+            carbonMessage.addMessageBody(view);
+        } else {
+            carbonMessage.addMessageBody(view);
+            buffered(-length);
+        }
+    }
+
+    private synchronized void consumed(ByteBuffer view) {
+        Integer length = unconsumedEvents.remove(view);
+        if (length != null) {
+            buffered(-length);
+        }
+    }
+
+    private void buffered(long length) {
+        bufferedBytes += length;
+        if (connectionId != -1) {
+            monitor.update(connectionId, length);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * {@link DefaultCarbonMessage} which tells when the transport consumes a chunk of the message body, so that
+ * a {@link FlowControlledOutputStream} can keep the chunk accounted until then.
+ * <p>
+ * A chunk is consumed when the transport takes it from the message body queue. The transport gives no other
+ * signal of a chunk being written, hence a streamed response is kept buffered and handed over with
+ * {@link #stream(CarbonMessage, CarbonCallback)}, which lets the transport drain the queue as it writes the
+ * chunks. If the content is not buffered, the writer registered by the transport is called as the chunks are
+ * added, so a chunk is taken as consumed as soon as it is added.
+ */
+public class FlowControlledCarbonMessage extends DefaultCarbonMessage {
+
+    private static final Logger log = LoggerFactory.getLogger(FlowControlledCarbonMessage.class);
+
+    // Empty chunk which wakes up a transport waiting for the next chunk once the end of the message is added
+    private static final ByteBuffer END_OF_MESSAGE = ByteBuffer.allocate(0);
+
+    // The transport blocks while draining the buffered body of a response, one thread per streamed response
+    private static final ExecutorService RESPONSE_WRITERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "msf4j-response-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Consumer<ByteBuffer> consumptionListener;
+    private volatile boolean streamed;
+
+    /**
+     * Hand a response over to the transport before its body is written. The body of a FlowControlledCarbonMessage
+     * stays buffered, and the transport drains it on a separate thread, so that each chunk is accounted until the
+     * transport takes it. Other messages are switched to unbuffered content, which the transport writes as it is
+     * added.
+     *
+     * @param carbonMessage response message
+     * @param callback      callback of the transport which writes the response
+     */
+    public static void stream(CarbonMessage carbonMessage, CarbonCallback callback) {
+        if (!(carbonMessage instanceof FlowControlledCarbonMessage)) {
+            carbonMessage.setBufferContent(false);
+            callback.done(carbonMessage);
+            return;
+        }
+        FlowControlledCarbonMessage message = (FlowControlledCarbonMessage) carbonMessage;
+        message.setBufferContent(true);
+        message.streamed = true;
+        RESPONSE_WRITERS.execute(() -> {
+            try {
+                callback.done(message);
+            } catch (RuntimeException e) {
+                log.error("Error occurred while writing the streamed response", e);
+            }
+        });
+    }
+
+    /**
+     * @param consumptionListener invoked with each chunk consumed by the transport, on the consuming thread
+     */
+    public void setConsumptionListener(Consumer<ByteBuffer> consumptionListener) {
+        this.consumptionListener = consumptionListener;
+    }
+
+    @Override
+    public void addMessageBody(ByteBuffer msgBody) {
+        super.addMessageBody(msgBody);
+        if (!isBufferContent()) {
+            consumed(msgBody);
+        }
+    }
+
+    @Override
+    public void setEndOfMsgAdded(boolean endOfMsgAdded) {
+        super.setEndOfMsgAdded(endOfMsgAdded);
+        // Added after the flag, so that a transport which has taken the last chunk sees the end of the message
+        if (endOfMsgAdded && streamed) {
+            super.addMessageBody(END_OF_MESSAGE.duplicate());
+        }
+    }
+
+    @Override
+    public ByteBuffer getMessageBody() {
+        ByteBuffer msgBody = super.getMessageBody();
+        consumed(msgBody);
+        return msgBody;
+    }
+
+    @Override
+    public List<ByteBuffer> getFullMessageBody() {
+        List<ByteBuffer> msgBody = super.getFullMessageBody();
+        msgBody.forEach(this::consumed);
+        return msgBody;
+    }
+
+    private void consumed(ByteBuffer msgBody) {
+        Consumer<ByteBuffer> listener = consumptionListener;
+        if (listener != null && msgBody != null) {
+            listener.accept(msgBody);
+        }
+    }
+}
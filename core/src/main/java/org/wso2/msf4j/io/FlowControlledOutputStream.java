@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.io;
+
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.msf4j.internal.MSF4JConstants;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link OutputStream} that writes the response body to a {@link CarbonMessage} in chunks while keeping
+ * the bytes buffered for the connection between the water marks of an {@link OutboundBufferMonitor}.
+ * <p>
+ * Blocking writers are suspended in {@link #write(byte[], int, int)} once the high water mark is exceeded.
+ * Non-blocking writers should check {@link #isReady()} before writing and register a callback
+ * with {@link #onReady(Runnable)} to get notified when the buffer has drained to the low water mark.
+ * <p>
+ * A chunk handed to a {@link FlowControlledCarbonMessage} stays accounted until the transport consumes it, so
+ * a transport which takes the chunks slower than they are written suspends the writer. Other messages do not
+ * tell when a chunk is consumed, hence a chunk handed to them is taken as consumed right away and only the
+ * partially filled chunk is accounted.
+ */
+public class FlowControlledOutputStream extends OutputStream {
+
+    private final CarbonMessage carbonMessage;
+    private final OutboundBufferMonitor monitor;
+    private final long connectionId;
+    private final int chunkSize;
+    private final Object lock = new Object();
+    private final Queue<Runnable> readyListeners = new ConcurrentLinkedQueue<>();
+    private final Set<ByteBuffer> pendingChunks = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final boolean tracksConsumption;
+    private ByteBuffer chunk;
+    private long bufferedBytes;
+    private boolean closed;
+
+    public FlowControlledOutputStream(CarbonMessage carbonMessage, OutboundBufferMonitor monitor, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size should be a positive value");
+        }
+        this.carbonMessage = carbonMessage;
+        this.monitor = monitor;
+        this.chunkSize = chunkSize;
+        connectionId = monitor.register();
+        tracksConsumption = carbonMessage instanceof FlowControlledCarbonMessage;
+        if (tracksConsumption) {
+            ((FlowControlledCarbonMessage) carbonMessage).setConsumptionListener(this::consumed);
+        }
+    }
+
+    /**
+     * Create a stream for the given response message using the {@link OutboundBufferMonitor}
+     * attached to it, or the default water marks if there is none.
+     *
+     * @param carbonMessage response message
+     * @param chunkSize     size of the chunks handed to the transport
+     * @return FlowControlledOutputStream for the response message
+     */
+    public static FlowControlledOutputStream create(CarbonMessage carbonMessage, int chunkSize) {
+        Object monitor = carbonMessage.getProperty(MSF4JConstants.OUTBOUND_BUFFER_MONITOR);
+        return new FlowControlledOutputStream(carbonMessage, (monitor instanceof OutboundBufferMonitor) ?
+                (OutboundBufferMonitor) monitor : new OutboundBufferMonitor(), chunkSize);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        awaitWritable(1);
+        if (chunk == null) {
+            chunk = ByteBuffer.allocate(chunkSize);
+        }
+        chunk.put((byte) b);
+        buffered(1);
+        if (!chunk.hasRemaining()) {
+            writeChunk();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if ((off | len | (b.length - (len + off)) | (off + len)) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            awaitWritable(Math.min(len, chunkSize));
+            if (chunk == null) {
+                chunk = ByteBuffer.allocate(chunkSize);
+            }
+            int length = Math.min(len, chunk.remaining());
+            chunk.put(b, off, length);
+            buffered(length);
+            if (!chunk.hasRemaining()) {
+                writeChunk();
+            }
+            off += length;
+            len -= length;
+        }
+    }
+
+    /**
+     * Hand over the partially filled chunk, if any, to the transport.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (chunk != null && chunk.position() > 0) {
+            writeChunk();
+        }
+    }
+
+    /**
+     * Flush the remaining content and mark the end of the response body.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+            carbonMessage.setEndOfMsgAdded(true);
+        } finally {
+            closed = true;
+            // The connection is no longer accounted once the stream is closed, even if the transport still holds
+            // some of the chunks, so that a client which stopped reading does not leave it behind in the monitor
+            monitor.unregister(connectionId);
+            readyListeners.clear();
+        }
+    }
+
+    /**
+     * @return true if the outbound buffer of the connection is below the high water mark
+     */
+    public boolean isReady() {
+        synchronized (lock) {
+            return bufferedBytes < monitor.getHighWaterMark();
+        }
+    }
+
+    /**
+     * Register a callback which is invoked once the outbound buffer has drained to the low water mark.
+     * The callback is invoked immediately if the stream is already writable.
+     *
+     * @param listener callback to be invoked
+     */
+    public void onReady(Runnable listener) {
+        readyListeners.add(listener);
+        if (isReady()) {
+            notifyReadyListeners();
+        }
+    }
+
+    /**
+     * @return number of bytes written to this stream which are yet to be taken by the transport
+     */
+    public long getBufferedBytes() {
+        synchronized (lock) {
+            return bufferedBytes;
+        }
+    }
+
+    private void writeChunk() {
+        ByteBuffer content = chunk;
+        chunk = null;
+        content.flip();
+        // A new buffer is used for each chunk since the transport may still hold on to the previous one
+        if (tracksConsumption) {
+            synchronized (lock) {
+                pendingChunks.add(content);
+            }
+            carbonMessage.addMessageBody(content);
+        } else {
+            int length = content.remaining();
+            carbonMessage.addMessageBody(content);
+            drained(length);
+        }
+    }
+
+    private void consumed(ByteBuffer content) {
+        synchronized (lock) {
+            if (!pendingChunks.remove(content)) {
+                return;
+            }
+        }
+        drained(content.limit());
+    }
+
+    private void awaitWritable(int length) throws IOException {
+        ensureOpen();
+        if (exceedsHighWaterMark(length) && chunk != null && chunk.position() > 0) {
+            // Hand over the pending chunk before suspending, otherwise the writer would wait on itself
+            writeChunk();
+        }
+        synchronized (lock) {
+            if (!exceedsHighWaterMark(length)) {
+                return;
+            }
+            monitor.writeBlocked();
+            long timeout = monitor.getWriteTimeout();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            try {
+                while (bufferedBytes > monitor.getLowWaterMark()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new InterruptedIOException("Timed out after " + timeout +
+                                " ms waiting for the outbound buffer to drain");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the outbound buffer to drain");
+            }
+        }
+    }
+
+    private boolean exceedsHighWaterMark(int length) {
+        synchronized (lock) {
+            return bufferedBytes > 0 && bufferedBytes + length > monitor.getHighWaterMark();
+        }
+    }
+
+    private void buffered(int length) {
+        synchronized (lock) {
+            bufferedBytes += length;
+        }
+        monitor.update(connectionId, length);
+    }
+
+    private void drained(int length) {
+        boolean writable;
+        synchronized (lock) {
+            bufferedBytes -= length;
+            writable = bufferedBytes <= monitor.getLowWaterMark();
+            if (writable) {
+                lock.notifyAll();
+            }
+        }
+        monitor.update(connectionId, -length);
+        if (writable) {
+            notifyReadyListeners();
+        }
+    }
+
+    private void notifyReadyListeners() {
+        Runnable listener;
+        while ((listener = readyListeners.poll()) != null) {
+            listener.run();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
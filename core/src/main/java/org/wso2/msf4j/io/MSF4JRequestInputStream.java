@@ -23,28 +23,76 @@ import java.nio.ByteBuffer;
 
 /**
  * Wrapper {@link InputStream} for {@link Request}.
+ * <p>
+ * Bulk reads copy straight from the message body chunks and only block for a new chunk
+ * when nothing has been read yet.
  */
 public class MSF4JRequestInputStream extends InputStream {
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
     private Request request;
-    private ByteBuffer buffer;
+    private ByteBuffer buffer = EMPTY_BUFFER;
 
     public MSF4JRequestInputStream(Request request) {
         this.request = request;
-        buffer = request.getMessageBody();
     }
 
     @Override
     public int read() throws IOException {
-        if (request.isEomAdded() && request.isEmpty() && !buffer.hasRemaining()) {
+        if (!nextChunk()) {
             return -1;
-        } else if (!buffer.hasRemaining()) {
-            buffer = request.getMessageBody();
         }
         return buffer.get() & 0xFF;
     }
 
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        } else if (len == 0) {
+            return 0;
+        } else if (!nextChunk()) {
+            return -1;
+        }
+        int read = 0;
+        while (read < len) {
+            int length = Math.min(len - read, buffer.remaining());
+            buffer.get(b, off + read, length);
+            read += length;
+            // Move on to the next chunk only if it has already arrived
+            if (read == len || request.isEmpty() || !nextChunk()) {
+                break;
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0 || !nextChunk()) {
+            return 0;
+        }
+        int length = (int) Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + length);
+        return length;
+    }
+
     @Override
     public int available() throws IOException {
         return buffer.remaining();
     }
+
+    /**
+     * Make sure the current chunk has remaining content, waiting for the next chunk if required.
+     *
+     * @return false if the end of the message body has been reached
+     */
+    private boolean nextChunk() {
+        while (!buffer.hasRemaining()) {
+            if (request.isEomAdded() && request.isEmpty()) {
+                return false;
+            }
+            buffer = request.getMessageBody();
+        }
+        return true;
+    }
 }
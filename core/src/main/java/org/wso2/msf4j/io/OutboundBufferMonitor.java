@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.io;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the outbound buffer water marks of a runner and keeps track of the response bytes
+ * buffered for each connection.
+ */
+public class OutboundBufferMonitor {
+
+    public static final int DEFAULT_LOW_WATER_MARK = 32 * 1024;
+    public static final int DEFAULT_HIGH_WATER_MARK = 64 * 1024;
+    public static final long DEFAULT_WRITE_TIMEOUT = 60 * 1000;
+
+    private final AtomicLong connectionIds = new AtomicLong();
+    private final Map<Long, AtomicLong> bufferedBytes = new ConcurrentHashMap<>();
+    private final AtomicLong totalBufferedBytes = new AtomicLong();
+    private final AtomicLong blockedWrites = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private volatile int lowWaterMark = DEFAULT_LOW_WATER_MARK;
+    private volatile int highWaterMark = DEFAULT_HIGH_WATER_MARK;
+    private volatile long writeTimeout = DEFAULT_WRITE_TIMEOUT;
+
+    /**
+     * Set the water marks of the per connection outbound buffer. Writers are suspended once the buffered
+     * bytes of a connection exceed the high water mark and are resumed when they drop to the low water mark.
+     *
+     * @param lowWaterMark  number of buffered bytes at which suspended writers are resumed
+     * @param highWaterMark number of buffered bytes at which writers are suspended
+     */
+    public void setWaterMarks(int lowWaterMark, int highWaterMark) {
+        if (lowWaterMark < 0 || highWaterMark <= 0 || lowWaterMark > highWaterMark) {
+            throw new IllegalArgumentException("Invalid water marks, low: " + lowWaterMark +
+                    " high: " + highWaterMark);
+        }
+        this.lowWaterMark = lowWaterMark;
+        this.highWaterMark = highWaterMark;
+    }
+
+    public int getLowWaterMark() {
+        return lowWaterMark;
+    }
+
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Set how long a suspended writer waits for the outbound buffer to drain before the write fails, so that
+     * a client which stopped reading does not hold the writing thread forever.
+     *
+     * @param writeTimeout timeout in milliseconds
+     */
+    public void setWriteTimeout(long writeTimeout) {
+        if (writeTimeout <= 0) {
+            throw new IllegalArgumentException("Write timeout should be a positive value");
+        }
+        this.writeTimeout = writeTimeout;
+    }
+
+    public long getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    /**
+     * @return total number of response bytes currently buffered across all connections
+     */
+    public long getBufferedBytes() {
+        return totalBufferedBytes.get();
+    }
+
+    /**
+     * @return snapshot of the buffered response bytes keyed by connection
+     */
+    public Map<Long, Long> getBufferedBytesPerConnection() {
+        Map<Long, Long> snapshot = new HashMap<>();
+        bufferedBytes.forEach((connection, bytes) -> snapshot.put(connection, bytes.get()));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * @return number of times a writer was suspended because the high water mark was exceeded
+     */
+    public long getBlockedWriteCount() {
+        return blockedWrites.get();
+    }
+
+    /**
+     * @return number of connections closed because their client did not keep up with the response
+     */
+    public long getOverflowCount() {
+        return overflows.get();
+    }
+
+    /**
+     * Start accounting the buffered bytes of a connection.
+     *
+     * @return ID of the connection, to be passed to the other methods
+     */
+    public long register() {
+        long connectionId = connectionIds.incrementAndGet();
+        bufferedBytes.put(connectionId, new AtomicLong());
+        return connectionId;
+    }
+
+    public void unregister(long connectionId) {
+        AtomicLong remaining = bufferedBytes.remove(connectionId);
+        if (remaining != null) {
+            totalBufferedBytes.addAndGet(-remaining.get());
+        }
+    }
+
+    /**
+     * @param connectionId ID returned by {@link #register()}
+     * @param delta        number of bytes buffered, or released if negative
+     */
+    public void update(long connectionId, long delta) {
+        AtomicLong bytes = bufferedBytes.get(connectionId);
+        if (bytes != null) {
+            bytes.addAndGet(delta);
+            totalBufferedBytes.addAndGet(delta);
+        }
+    }
+
+    void writeBlocked() {
+        blockedWrites.incrementAndGet();
+    }
+
+    /**
+     * Record a connection closed because its client did not keep up with the response.
+     */
+    public void overflowed() {
+        overflows.incrementAndGet();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.io;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the request body size limits of a runner and keeps track of the requests rejected for exceeding them.
+ * <p>
+ * A limit can be set for the whole runner and overridden for individual listeners. Resource methods
+ * can override both with {@link org.wso2.msf4j.MaxRequestBodySize}.
+ */
+public class RequestBodyLimits {
+
+    public static final long UNLIMITED = -1;
+
+    private final Map<String, Long> listenerLimits = new ConcurrentHashMap<>();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+    private final AtomicLong rejectedBytes = new AtomicLong();
+    private volatile long maxBodySize = UNLIMITED;
+
+    /**
+     * Set the maximum request body size accepted by the listeners which do not have a limit of their own.
+     *
+     * @param maxBodySize maximum number of body bytes, or {@link #UNLIMITED}
+     */
+    public void setMaxBodySize(long maxBodySize) {
+        this.maxBodySize = validate(maxBodySize);
+    }
+
+    /**
+     * Set the maximum request body size accepted by a listener.
+     *
+     * @param listenerId  id of the listener
+     * @param maxBodySize maximum number of body bytes, or {@link #UNLIMITED}
+     */
+    public void setMaxBodySize(String listenerId, long maxBodySize) {
+        listenerLimits.put(listenerId, validate(maxBodySize));
+    }
+
+    /**
+     * @return maximum request body size of the listeners which do not have a limit of their own
+     */
+    public long getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    /**
+     * @param listenerId id of the listener, may be null
+     * @return maximum request body size accepted by the listener
+     */
+    public long getMaxBodySize(String listenerId) {
+        Long limit = (listenerId == null) ? null : listenerLimits.get(listenerId);
+        return (limit == null) ? maxBodySize : limit;
+    }
+
+    /**
+     * @return number of requests rejected for exceeding the body size limit
+     */
+    public long getRejectedRequestCount() {
+        return rejectedRequests.get();
+    }
+
+    /**
+     * @return number of body bytes refused, as declared by the <tt>Content-Length</tt> of the rejected requests
+     * or as received before a chunked request was aborted
+     */
+    public long getRejectedBytes() {
+        return rejectedBytes.get();
+    }
+
+    /**
+     * Record a rejected request and create the exception used to abort it.
+     *
+     * @param limit limit which was exceeded
+     * @param bytes number of body bytes refused
+     * @return exception to be thrown to abort the request
+     */
+    public RequestEntityTooLargeException reject(long limit, long bytes) {
+        rejectedRequests.incrementAndGet();
+        rejectedBytes.addAndGet(bytes);
+        return new RequestEntityTooLargeException("Request body exceeds the maximum size of " + limit + " bytes",
+                limit);
+    }
+
+    private static long validate(long maxBodySize) {
+        if (maxBodySize < 0 && maxBodySize != UNLIMITED) {
+            throw new IllegalArgumentException("Invalid maximum request body size: " + maxBodySize);
+        }
+        return maxBodySize;
+    }
+}
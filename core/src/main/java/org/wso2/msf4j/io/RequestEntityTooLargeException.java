@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.io;
+
+/**
+ * This exception is thrown when the body of a request exceeds the configured size limit. Requests which
+ * fail with this exception are answered with <tt>413 Request Entity Too Large</tt>.
+ */
+public class RequestEntityTooLargeException extends RuntimeException {
+
+    private static final long serialVersionUID = 6027443917532284581L;
+
+    private final long limit;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param message A human readable error message.
+     * @param limit   The limit which was exceeded, in bytes.
+     */
+    public RequestEntityTooLargeException(String message, long limit) {
+        super(message);
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the limit which was exceeded.
+     *
+     * @return the limit in bytes.
+     */
+    public long getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.ratelimit;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of requests accepted by a resource method, or by all the resource methods of a class, for
+ * each client. The limit is enforced by a {@link RateLimitInterceptor} registered with the runner.
+ * <p>
+ * Each client is allowed {@link #permits()} requests per {@link #period()}, and up to {@link #burst()} requests
+ * at once after being idle.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RateLimit {
+
+    /**
+     * How the client of a request is identified.
+     */
+    enum Key {
+        /**
+         * Address of the client.
+         */
+        IP,
+        /**
+         * Value of the {@link #header()} of the request, such as an API key. Requests without the header are
+         * limited by the address of the client.
+         */
+        HEADER,
+        /**
+         * User authenticated by a security interceptor which runs before the {@link RateLimitInterceptor}.
+         * Requests which are not authenticated are limited by the address of the client.
+         */
+        PRINCIPAL,
+        /**
+         * All the clients share a single limit.
+         */
+        GLOBAL
+    }
+
+    /**
+     * @return number of requests allowed per period
+     */
+    long permits();
+
+    /**
+     * @return length of the period in {@link #unit()}
+     */
+    long period() default 1;
+
+    /**
+     * @return time unit of the period
+     */
+    TimeUnit unit() default TimeUnit.SECONDS;
+
+    /**
+     * @return number of requests allowed at once, or 0 to allow as many as the permits of a period
+     */
+    long burst() default 0;
+
+    /**
+     * @return how the client of a request is identified
+     */
+    Key key() default Key.IP;
+
+    /**
+     * @return name of the header which identifies the client when the key is {@link Key#HEADER}
+     */
+    String header() default "";
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.ratelimit;
+
+import org.wso2.msf4j.Interceptor;
+import org.wso2.msf4j.Request;
+import org.wso2.msf4j.Response;
+import org.wso2.msf4j.ServiceMethodInfo;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.security.Principal;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejects the requests which exceed the {@link RateLimit} of the resource method with a 429 response and a
+ * Retry-After header. Resource methods without a rate limit, on the method or its class, are not limited.
+ * <p>
+ * A rate limit on a class is shared by all the resource methods of the class, while a rate limit on a method
+ * applies to that method alone.
+ */
+public class RateLimitInterceptor implements Interceptor {
+
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    private static final String REMOTE_ADDRESS = "REMOTE_ADDRESS";
+    private static final String X_FORWARDED_FOR = "X-Forwarded-For";
+    private static final String RETRY_AFTER = "Retry-After";
+    private static final String UNKNOWN_CLIENT = "unknown";
+
+    /**
+     * Rate limiter of a route along with how the clients are identified.
+     */
+    private static final class RouteLimit {
+
+        private final RateLimit rateLimit;
+        private final RateLimiter limiter;
+
+        private RouteLimit(RateLimit rateLimit) {
+            this.rateLimit = rateLimit;
+            this.limiter = new RateLimiter(rateLimit.permits(), rateLimit.period(), rateLimit.unit(),
+                    rateLimit.burst());
+        }
+    }
+
+    private final Map<Method, Optional<RouteLimit>> routeLimits = new ConcurrentHashMap<>();
+    private final Map<AnnotatedElement, RouteLimit> limits = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+    private volatile boolean trustForwardedFor;
+
+    /**
+     * Identify the client by the first address of the X-Forwarded-For header when there is one. This should
+     * only be enabled when the service is reached through a proxy which sets the header, since the clients can
+     * otherwise pick any key they like.
+     *
+     * @param trustForwardedFor whether the X-Forwarded-For header is trusted
+     */
+    public void setTrustForwardedFor(boolean trustForwardedFor) {
+        this.trustForwardedFor = trustForwardedFor;
+    }
+
+    /**
+     * @return number of requests rejected since the rate limit was exceeded
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public boolean preCall(Request request, Response responder, ServiceMethodInfo serviceMethodInfo)
+            throws Exception {
+        Optional<RouteLimit> routeLimit = routeLimits.computeIfAbsent(serviceMethodInfo.getMethod(), this::limitOf);
+        if (!routeLimit.isPresent()) {
+            return true;
+        }
+        RouteLimit limit = routeLimit.get();
+        long wait = limit.limiter.tryAcquire(clientKey(request, limit.rateLimit));
+        if (wait == 0) {
+            return true;
+        }
+        rejected.increment();
+        responder.setStatus(TOO_MANY_REQUESTS);
+        responder.setHeader(RETRY_AFTER, String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(
+                wait + TimeUnit.SECONDS.toNanos(1) - 1))));
+        responder.send();
+        return false;
+    }
+
+    @Override
+    public void postCall(Request request, int status, ServiceMethodInfo serviceMethodInfo) {
+        // Nothing to do
+    }
+
+    private Optional<RouteLimit> limitOf(Method method) {
+        AnnotatedElement annotated = method.isAnnotationPresent(RateLimit.class) ? method :
+                method.getDeclaringClass().isAnnotationPresent(RateLimit.class) ? method.getDeclaringClass() :
+                null;
+        if (annotated == null) {
+            return Optional.empty();
+        }
+        return Optional.of(limits.computeIfAbsent(annotated,
+                element -> new RouteLimit(element.getAnnotation(RateLimit.class))));
+    }
+
+    private String clientKey(Request request, RateLimit rateLimit) {
+        switch (rateLimit.key()) {
+            case HEADER:
+                String value = request.getHeader(rateLimit.header());
+                if (value != null) {
+                    return "header:" + value;
+                }
+                break;
+            case PRINCIPAL:
+                Principal principal = request.getUserPrincipal();
+                if (principal != null) {
+                    return "principal:" + principal.getName();
+                }
+                break;
+            case GLOBAL:
+                return "global";
+            default:
+                break;
+        }
+        return clientAddress(request);
+    }
+
+    private String clientAddress(Request request) {
+        if (trustForwardedFor) {
+            String forwardedFor = request.getHeader(X_FORWARDED_FOR);
+            if (forwardedFor != null) {
+                int end = forwardedFor.indexOf(',');
+                return (end < 0 ? forwardedFor : forwardedFor.substring(0, end)).trim();
+            }
+        }
+        Object remoteAddress = request.getProperty(REMOTE_ADDRESS);
+        if (remoteAddress instanceof InetSocketAddress) {
+            InetSocketAddress socketAddress = (InetSocketAddress) remoteAddress;
+            return socketAddress.getAddress() != null ? socketAddress.getAddress().getHostAddress() :
+                    socketAddress.getHostString();
+        }
+        return remoteAddress != null ? remoteAddress.toString() : UNKNOWN_CLIENT;
+    }
+}
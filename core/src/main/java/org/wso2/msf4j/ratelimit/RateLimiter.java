@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket rate limiter which keeps a bucket per client key.
+ * <p>
+ * A bucket is kept as the single time at which it would be full again, the theoretical arrival time of the
+ * generic cell rate algorithm, which is equivalent to a token bucket. Acquiring a permit advances that time by
+ * the interval between permits with a compare and set, so the hot path takes no locks and threads only contend
+ * when they acquire permits for the same key. The buckets are kept in a {@link ConcurrentHashMap}, whose bins
+ * stripe the updates of different keys. Buckets which have filled up are equivalent to new ones and are evicted
+ * periodically, which bounds the number of buckets by the number of recently active keys.
+ */
+public class RateLimiter {
+
+    static final long SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    private final long interval;
+    private final long tolerance;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep;
+
+    /**
+     * @param permits number of permits per period
+     * @param period  length of the period
+     * @param unit    time unit of the period
+     * @param burst   number of permits which can be acquired at once, or 0 to allow the permits of a period
+     */
+    public RateLimiter(long permits, long period, TimeUnit unit, long burst) {
+        if (permits <= 0 || period <= 0 || burst < 0) {
+            throw new IllegalArgumentException("Invalid rate limit, permits: " + permits + " period: " + period +
+                    " burst: " + burst);
+        }
+        interval = Math.max(1, unit.toNanos(period) / permits);
+        tolerance = interval * (burst > 0 ? burst : permits);
+        nextSweep = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL);
+    }
+
+    /**
+     * Acquire a permit for a client.
+     *
+     * @param key key of the client
+     * @return 0 if the permit was acquired, otherwise the time in nanoseconds after which a permit is available
+     */
+    public long tryAcquire(String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    long tryAcquire(String key, long now) {
+        long sweep = nextSweep.get();
+        if (now - sweep >= 0 && nextSweep.compareAndSet(sweep, now + SWEEP_INTERVAL)) {
+            evictIdle(now);
+        }
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            long arrival = bucket.get();
+            long next = (arrival - now > 0 ? arrival : now) + interval;
+            long wait = next - now - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return number of clients with a bucket
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    private void evictIdle(long now) {
+        buckets.entrySet().removeIf(bucket -> now - bucket.getValue().get() >= 0);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.security;
+
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Signature verifiers built from the RSA keys of a JSON Web Key Set, which is read from a file or a URL.
+ * <p>
+ * The key set is loaded on first use and reloaded periodically in the background of a request, so that only
+ * the request which triggers the reload waits for it. A token signed with a key ID that is not in the key set
+ * triggers an early reload, since the issuer may have rotated its keys, but not more than once in
+ * {@link #MIN_REFRESH_INTERVAL}.
+ */
+class JWKSVerifiers {
+
+    private static final Logger log = LoggerFactory.getLogger(JWKSVerifiers.class);
+
+    static final long DEFAULT_REFRESH_INTERVAL = 15 * 60 * 1000;
+    static final long MIN_REFRESH_INTERVAL = 10 * 1000;
+    private static final int TIMEOUT = 5000;
+
+    private static final class KeySet {
+
+        private final String source;
+        private final Map<String, JWSVerifier> byKeyId;
+        private final List<JWSVerifier> withoutKeyId;
+        private final List<JWSVerifier> all;
+
+        private KeySet(String source, Map<String, JWSVerifier> byKeyId, List<JWSVerifier> withoutKeyId) {
+            this.source = source;
+            this.byKeyId = byKeyId;
+            this.withoutKeyId = withoutKeyId;
+            List<JWSVerifier> all = new ArrayList<>(byKeyId.values());
+            all.addAll(withoutKeyId);
+            this.all = Collections.unmodifiableList(all);
+        }
+    }
+
+    private final String location;
+    private final Runnable onChange;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile KeySet keySet;
+    private volatile long lastAttempt;
+    private volatile long nextRefresh;
+    private volatile long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+
+    /**
+     * @param location file path or URL of the key set
+     * @param onChange invoked when a reload changes the key set
+     */
+    JWKSVerifiers(String location, Runnable onChange) {
+        this.location = location;
+        this.onChange = onChange;
+    }
+
+    void setRefreshInterval(long refreshInterval) {
+        if (refreshInterval < 0) {
+            throw new IllegalArgumentException("Refresh interval should not be negative");
+        }
+        this.refreshInterval = refreshInterval;
+        nextRefresh = Math.min(nextRefresh, lastAttempt + refreshInterval);
+    }
+
+    /**
+     * Get the verifiers to try for a token signed with the given key.
+     *
+     * @param keyId key ID in the header of the token, or null if there is none
+     * @return verifiers of the matching keys, or of all the keys if the token does not name its key
+     */
+    List<JWSVerifier> getVerifiers(String keyId) {
+        if (keySet == null || System.currentTimeMillis() >= nextRefresh) {
+            // Only the first load makes the other requests wait, later ones keep using the current keys
+            refresh(keySet == null, false);
+        }
+        KeySet current = keySet;
+        if (current == null) {
+            return Collections.emptyList();
+        }
+        if (keyId == null) {
+            return current.all;
+        }
+        JWSVerifier verifier = current.byKeyId.get(keyId);
+        if (verifier == null && System.currentTimeMillis() - lastAttempt >= MIN_REFRESH_INTERVAL) {
+            refresh(true, true);
+            current = keySet;
+            verifier = current.byKeyId.get(keyId);
+        }
+        return verifier != null ? Collections.singletonList(verifier) : current.withoutKeyId;
+    }
+
+    private void refresh(boolean wait, boolean unknownKey) {
+        if (wait) {
+            refreshLock.lock();
+        } else if (!refreshLock.tryLock()) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            if (unknownKey ? now - lastAttempt < MIN_REFRESH_INTERVAL : keySet != null && now < nextRefresh) {
+                // Reloaded by another request while this one was waiting
+                return;
+            }
+            if (keySet == null && lastAttempt > 0 && now < nextRefresh) {
+                // The last attempt failed, do not make every request wait on a key set which is not available
+                return;
+            }
+            lastAttempt = now;
+            try {
+                String source = read();
+                KeySet current = keySet;
+                if (current == null || !current.source.equals(source)) {
+                    keySet = parse(source);
+                    if (current != null) {
+                        log.info("Reloaded the JSON web key set from {}", location);
+                        onChange.run();
+                    }
+                }
+                nextRefresh = now + refreshInterval;
+            } catch (IOException | ParseException e) {
+                log.error("Error occurred while loading the JSON web key set from " + location, e);
+                nextRefresh = now + Math.min(refreshInterval, MIN_REFRESH_INTERVAL);
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private String read() throws IOException {
+        if (!location.contains("://")) {
+            return new String(Files.readAllBytes(Paths.get(location)), StandardCharsets.UTF_8);
+        }
+        URLConnection connection = new URL(location).openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        if (connection instanceof HttpURLConnection &&
+                ((HttpURLConnection) connection).getResponseCode() != HttpURLConnection.HTTP_OK) {
+            throw new IOException("Unexpected response code " + ((HttpURLConnection) connection).getResponseCode());
+        }
+        try (InputStream inputStream = connection.getInputStream()) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                content.write(buffer, 0, length);
+            }
+            return new String(content.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private KeySet parse(String source) throws ParseException {
+        Map<String, JWSVerifier> byKeyId = new HashMap<>();
+        List<JWSVerifier> withoutKeyId = new ArrayList<>();
+        for (JWK key : JWKSet.parse(source).getKeys()) {
+            if (!(key instanceof RSAKey)) {
+                log.debug("Ignoring the {} key {} which is not supported", key.getKeyType(), key.getKeyID());
+                continue;
+            }
+            try {
+                JWSVerifier verifier = new RSASSAVerifier(((RSAKey) key).toRSAPublicKey());
+                if (key.getKeyID() != null) {
+                    byKeyId.put(key.getKeyID(), verifier);
+                } else {
+                    withoutKeyId.add(verifier);
+                }
+            } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+                log.warn("Ignoring the invalid RSA key " + key.getKeyID(), e);
+            }
+        }
+        return new KeySet(source, Collections.unmodifiableMap(byKeyId), Collections.unmodifiableList(withoutKeyId));
+    }
+}
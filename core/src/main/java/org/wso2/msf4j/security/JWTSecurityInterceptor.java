@@ -26,6 +26,7 @@ import org.wso2.msf4j.Interceptor;
 import org.wso2.msf4j.Request;
 import org.wso2.msf4j.Response;
 import org.wso2.msf4j.ServiceMethodInfo;
+import org.wso2.msf4j.internal.security.ExpiringCache;
 import org.wso2.msf4j.util.SystemVariableUtil;
 
 import java.io.IOException;
@@ -40,24 +41,89 @@ import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.security.interfaces.RSAPublicKey;
 import java.text.ParseException;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Verify the JWT header in request.
+ * <p>
+ * Tokens are verified with the public key in the keystore, or with the keys of a JSON Web Key Set if a location
+ * is given, in which case the key is selected by the key ID in the header of the token. Tokens with a valid
+ * signature are cached, keyed by a hash of the token, until they expire, so that a client which sends the same
+ * token on each request pays for the signature verification only once.
  */
 public class JWTSecurityInterceptor implements Interceptor {
 
     private static final Logger log = LoggerFactory.getLogger(JWTSecurityInterceptor.class);
 
+    static final int DEFAULT_MAX_CACHED_TOKENS = 10_000;
+
     private static final String JWT_HEADER = "X-JWT-Assertion";
     private static final String AUTH_TYPE_JWT = "JWT";
     private static final String KEYSTORE = SystemVariableUtil.getValue("PETSTORE_KEYSTORE", "wso2carbon.jks");
     private static final String ALIAS = SystemVariableUtil.getValue("PETSTORE_KEY_ALIAS", "wso2carbon");
     private static final String KEYSTORE_PASSWORD = SystemVariableUtil.getValue("PETSTORE_KEYSTORE_PASS", "wso2carbon");
 
+    private final JWKSVerifiers jwksVerifiers;
+    private final ExpiringCache<Boolean> verifiedTokens = new ExpiringCache<>(DEFAULT_MAX_CACHED_TOKENS);
+    private volatile JWSVerifier keyStoreVerifier;
+
+    /**
+     * Verify tokens with the public key of the keystore given by the PETSTORE_KEYSTORE, PETSTORE_KEY_ALIAS and
+     * PETSTORE_KEYSTORE_PASS variables.
+     */
+    public JWTSecurityInterceptor() {
+        jwksVerifiers = null;
+    }
+
+    /**
+     * Verify tokens with the keys of a JSON Web Key Set, which is reloaded periodically to pick up rotated keys.
+     *
+     * @param jwksLocation file path or URL of the key set
+     */
+    public JWTSecurityInterceptor(String jwksLocation) {
+        jwksVerifiers = new JWKSVerifiers(jwksLocation, verifiedTokens::clear);
+    }
+
+    /**
+     * Set how often the JSON Web Key Set is reloaded. Tokens verified with a key which is no longer in the reloaded
+     * key set are not accepted anymore.
+     *
+     * @param refreshInterval time in milliseconds between the reloads
+     */
+    public void setJwksRefreshInterval(long refreshInterval) {
+        if (jwksVerifiers == null) {
+            throw new IllegalStateException("Tokens are not verified with a JSON web key set");
+        }
+        jwksVerifiers.setRefreshInterval(refreshInterval);
+    }
+
+    /**
+     * Set the maximum number of verified tokens to be cached. Caching is disabled with 0.
+     *
+     * @param maxCachedTokens maximum number of cached tokens
+     */
+    public void setMaxCachedTokens(int maxCachedTokens) {
+        verifiedTokens.setMaxEntries(maxCachedTokens);
+    }
+
+    /**
+     * @return number of tokens which were accepted without verifying the signature
+     */
+    public long getTokenCacheHitCount() {
+        return verifiedTokens.getHitCount();
+    }
+
+    /**
+     * @return number of tokens which were not found in the cache
+     */
+    public long getTokenCacheMissCount() {
+        return verifiedTokens.getMissCount();
+    }
+
     public boolean preCall(Request request, Response responder, ServiceMethodInfo serviceMethodInfo)
             throws Exception {
-        log.info("Authentication precall");
         boolean isValidSignature;
         String jwtHeader = request.getHeader(JWT_HEADER);
         if (jwtHeader != null) {
@@ -76,15 +142,24 @@ public class JWTSecurityInterceptor implements Interceptor {
         // Nothing to do
     }
 
-    private boolean verifySignature(String jwt) {
+    boolean verifySignature(String jwt) {
+        long now = System.currentTimeMillis();
+        String key = ExpiringCache.hash(jwt);
+        if (verifiedTokens.get(key, now) != null) {
+            return true;
+        }
         try {
             SignedJWT signedJWT = SignedJWT.parse(jwt);
-            if (new Date().before(signedJWT.getJWTClaimsSet().getExpirationTime())) {
-                JWSVerifier verifier =
-                        new RSASSAVerifier((RSAPublicKey) getPublicKey(KEYSTORE, KEYSTORE_PASSWORD, ALIAS));
-                return signedJWT.verify(verifier);
-            } else {
-                log.info("Token has expired");
+            Date expirationTime = signedJWT.getJWTClaimsSet().getExpirationTime();
+            if (expirationTime == null || !new Date(now).before(expirationTime)) {
+                log.debug("Token has expired");
+                return false;
+            }
+            for (JWSVerifier verifier : getVerifiers(signedJWT.getHeader().getKeyID())) {
+                if (signedJWT.verify(verifier)) {
+                    verifiedTokens.put(key, Boolean.TRUE, expirationTime.getTime(), now);
+                    return true;
+                }
             }
         } catch (ParseException | IOException | KeyStoreException | CertificateException |
                 NoSuchAlgorithmException | UnrecoverableKeyException | JOSEException e) {
@@ -93,6 +168,28 @@ public class JWTSecurityInterceptor implements Interceptor {
         return false;
     }
 
+    private List<JWSVerifier> getVerifiers(String keyId) throws IOException, KeyStoreException,
+            CertificateException, NoSuchAlgorithmException, UnrecoverableKeyException {
+        if (jwksVerifiers != null) {
+            return jwksVerifiers.getVerifiers(keyId);
+        }
+        JWSVerifier verifier = keyStoreVerifier;
+        if (verifier == null) {
+            synchronized (this) {
+                verifier = keyStoreVerifier;
+                if (verifier == null) {
+                    PublicKey publicKey = getPublicKey(KEYSTORE, KEYSTORE_PASSWORD, ALIAS);
+                    if (publicKey == null) {
+                        throw new KeyStoreException("Key " + ALIAS + " is not found in " + KEYSTORE);
+                    }
+                    verifier = new RSASSAVerifier((RSAPublicKey) publicKey);
+                    keyStoreVerifier = verifier;
+                }
+            }
+        }
+        return Collections.singletonList(verifier);
+    }
+
     private PublicKey getPublicKey(String keyStorePath, String keyStorePassword, String alias)
             throws IOException, KeyStoreException, CertificateException,
             NoSuchAlgorithmException, UnrecoverableKeyException {
@@ -20,13 +20,26 @@ import org.wso2.msf4j.Interceptor;
 import org.wso2.msf4j.Request;
 import org.wso2.msf4j.Response;
 import org.wso2.msf4j.ServiceMethodInfo;
+import org.wso2.msf4j.internal.security.ExpiringCache;
 
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.util.Base64;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 
 /**
  * AbstractBasicAuthSecurityInterceptor hides Netty based header processing and provide authenticate() method to plug-in
  * custom authentication logic.
+ * <p>
+ * Successful authentications can be cached for a short while with {@link #setCredentialCache(long, int)}, so that
+ * a client which sends the same credentials on each request does not pay for a slow password check each time.
+ * The cache is keyed by a keyed hash of the header, with a key generated per interceptor, so that neither the
+ * credentials nor a hash which can be attacked offline are kept in memory. Cached credentials of a user should be
+ * invalidated with {@link #invalidateCredentials(String)} when the password of the user is changed.
  *
  * @since 1.1.0
  */
@@ -35,25 +48,78 @@ public abstract class AbstractBasicAuthSecurityInterceptor implements Intercepto
     private static final String AUTH_TYPE_BASIC = "Basic";
     public static final String CHARSET_UTF_8 = "UTF-8";
     private static final int AUTH_TYPE_BASIC_LENGTH = AUTH_TYPE_BASIC.length();
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final ExpiringCache<String> cachedCredentials = new ExpiringCache<>(0);
+    private final ThreadLocal<Mac> macs;
+    private volatile long credentialCacheTtl;
+
+    protected AbstractBasicAuthSecurityInterceptor() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        SecretKeySpec secretKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(secretKey);
+                return mac;
+            } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+                throw new IllegalStateException(HMAC_ALGORITHM + " is not supported", e);
+            }
+        });
+    }
+
+    /**
+     * Cache successful authentications. The cache is disabled by default.
+     *
+     * @param ttl        time in milliseconds for which an authentication is cached, or 0 to disable the cache
+     * @param maxEntries maximum number of cached authentications
+     */
+    public void setCredentialCache(long ttl, int maxEntries) {
+        if (ttl < 0 || maxEntries < 0) {
+            throw new IllegalArgumentException("Invalid credential cache TTL: " + ttl + " max entries: " + maxEntries);
+        }
+        credentialCacheTtl = ttl;
+        cachedCredentials.setMaxEntries(ttl == 0 ? 0 : maxEntries);
+    }
+
+    /**
+     * Remove the cached authentications of a user.
+     *
+     * @param username name of the user
+     */
+    public void invalidateCredentials(String username) {
+        cachedCredentials.removeIf(username::equals);
+    }
+
+    /**
+     * Remove all the cached authentications.
+     */
+    public void invalidateCredentials() {
+        cachedCredentials.clear();
+    }
+
+    /**
+     * @return number of requests which were authenticated from the cache
+     */
+    public long getCredentialCacheHitCount() {
+        return cachedCredentials.getHitCount();
+    }
+
+    /**
+     * @return number of requests which were not found in the cache while the cache was enabled
+     */
+    public long getCredentialCacheMissCount() {
+        return cachedCredentials.getMissCount();
+    }
 
     @Override
     public boolean preCall(Request request, Response responder, ServiceMethodInfo serviceMethodInfo) throws Exception {
         String authHeader = request.getHeader(javax.ws.rs.core.HttpHeaders.AUTHORIZATION);
-        if (authHeader != null) {
-            String authType = authHeader.substring(0, AUTH_TYPE_BASIC_LENGTH);
-            String authEncoded = authHeader.substring(AUTH_TYPE_BASIC_LENGTH).trim();
-            if (AUTH_TYPE_BASIC.equals(authType) && !authEncoded.isEmpty()) {
-                byte[] decodedByte = authEncoded.getBytes(Charset.forName(CHARSET_UTF_8));
-                String authDecoded = new String(Base64.getDecoder().decode(decodedByte),
-                        Charset.forName(CHARSET_UTF_8));
-                String[] authParts = authDecoded.split(":");
-                String username = authParts[0];
-                String password = authParts[1];
-                if (authenticate(username, password)) {
-                    return true;
-                }
-            }
-
+        String username = authHeader != null ? authenticatedUser(authHeader) : null;
+        if (username != null) {
+            request.setUserPrincipal(() -> username);
+            return true;
         }
         responder.setStatus(javax.ws.rs.core.Response.Status.UNAUTHORIZED.getStatusCode());
         responder.setHeader(javax.ws.rs.core.HttpHeaders.WWW_AUTHENTICATE, AUTH_TYPE_BASIC);
@@ -68,4 +134,64 @@ public abstract class AbstractBasicAuthSecurityInterceptor implements Intercepto
 
     protected abstract boolean authenticate(String username, String password);
 
+    /**
+     * @return name of the authenticated user, or null if the credentials are not valid
+     */
+    private String authenticatedUser(String authHeader) {
+        long ttl = credentialCacheTtl;
+        boolean cacheEnabled = ttl > 0 && cachedCredentials.getMaxEntries() > 0;
+        String key = null;
+        long now = 0;
+        if (cacheEnabled) {
+            key = hash(authHeader);
+            now = System.currentTimeMillis();
+            String cachedUsername = cachedCredentials.get(key, now);
+            if (cachedUsername != null) {
+                return cachedUsername;
+            }
+        }
+
+        int length = authHeader.length();
+        if (length <= AUTH_TYPE_BASIC_LENGTH ||
+                !authHeader.regionMatches(true, 0, AUTH_TYPE_BASIC, 0, AUTH_TYPE_BASIC_LENGTH) ||
+                authHeader.charAt(AUTH_TYPE_BASIC_LENGTH) != ' ') {
+            return null;
+        }
+        int start = AUTH_TYPE_BASIC_LENGTH + 1;
+        while (start < length && authHeader.charAt(start) == ' ') {
+            start++;
+        }
+        int end = length;
+        while (end > start && authHeader.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+        String authDecoded;
+        try {
+            authDecoded = new String(Base64.getDecoder().decode(authHeader.substring(start, end)),
+                    Charset.forName(CHARSET_UTF_8));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // The user-id can not contain a colon but the password can, so split at the first one
+        int separator = authDecoded.indexOf(':');
+        if (separator < 0) {
+            return null;
+        }
+        String username = authDecoded.substring(0, separator);
+        if (!authenticate(username, authDecoded.substring(separator + 1))) {
+            return null;
+        }
+        if (cacheEnabled) {
+            cachedCredentials.put(key, username, now + ttl, now);
+        }
+        return username;
+    }
+
+    private String hash(String authHeader) {
+        Mac mac = macs.get();
+        return Base64.getEncoder().encodeToString(mac.doFinal(authHeader.getBytes(StandardCharsets.UTF_8)));
+    }
 }
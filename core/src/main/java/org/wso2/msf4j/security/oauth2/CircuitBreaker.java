@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.security.oauth2;
+
+/**
+ * Circuit breaker which fails calls fast once the calls to a remote service have failed a number of times in a
+ * row, and lets a single trial call through after a while to detect that the service has recovered.
+ */
+class CircuitBreaker {
+
+    static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    static final long DEFAULT_OPEN_DURATION = 30 * 1000;
+
+    /**
+     * State of a circuit breaker.
+     */
+    enum State {
+        /**
+         * Calls are let through.
+         */
+        CLOSED,
+        /**
+         * Calls fail fast.
+         */
+        OPEN,
+        /**
+         * A trial call is in progress, other calls fail fast.
+         */
+        HALF_OPEN
+    }
+
+    private volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private volatile long openDuration = DEFAULT_OPEN_DURATION;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedTime;
+
+    void setFailureThreshold(int failureThreshold) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("Failure threshold should be a positive value");
+        }
+        this.failureThreshold = failureThreshold;
+    }
+
+    void setOpenDuration(long openDuration) {
+        if (openDuration <= 0) {
+            throw new IllegalArgumentException("Open duration should be a positive value");
+        }
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Check whether a call can be made. A caller which is allowed to make a call must report its outcome with
+     * {@link #succeeded()} or {@link #failed()}.
+     *
+     * @return true if the call can be made, false if it should fail fast
+     */
+    synchronized boolean allowCall() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedTime < openDuration) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    synchronized void succeeded() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    synchronized void failed() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedTime = System.currentTimeMillis();
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.security.oauth2;
+
+import org.wso2.msf4j.internal.security.ExpiringCache;
+import org.wso2.msf4j.security.MSF4JSecurityException;
+import org.wso2.msf4j.security.SecurityErrorCode;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of token introspection results, keyed by a hash of the token so that the tokens themselves are
+ * not kept in memory.
+ * <p>
+ * Active tokens are cached until the expiry given by the introspection response, up to a maximum time to live
+ * which bounds how long a revoked token is still accepted. Inactive tokens are cached for a short while, so that
+ * replaying an invalid token does not reach the authorization server each time. Concurrent lookups of the same
+ * token are collapsed into a single introspection call. Failed calls are not cached.
+ */
+class IntrospectionCache {
+
+    static final long DEFAULT_MAX_TTL = 5 * 60 * 1000;
+    static final long DEFAULT_NEGATIVE_TTL = 10 * 1000;
+    static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    /**
+     * Introspects a token with the authorization server.
+     */
+    @FunctionalInterface
+    interface Introspector {
+
+        Result introspect(String token) throws MSF4JSecurityException;
+    }
+
+    /**
+     * Outcome of the introspection of a token.
+     */
+    static final class Result {
+
+        private final boolean active;
+        private final long expiryTime;
+
+        /**
+         * @param active     whether the token is active
+         * @param expiryTime time in milliseconds at which the token expires, or 0 if not known
+         */
+        Result(boolean active, long expiryTime) {
+            this.active = active;
+            this.expiryTime = expiryTime;
+        }
+
+        boolean isActive() {
+            return active;
+        }
+
+        long getExpiryTime() {
+            return expiryTime;
+        }
+    }
+
+    private final ExpiringCache<Result> entries = new ExpiringCache<>(DEFAULT_MAX_ENTRIES);
+    private final Map<String, CompletableFuture<Result>> inFlight = new ConcurrentHashMap<>();
+    private volatile long maxTtl = DEFAULT_MAX_TTL;
+    private volatile long negativeTtl = DEFAULT_NEGATIVE_TTL;
+
+    void setMaxTtl(long maxTtl) {
+        if (maxTtl < 0) {
+            throw new IllegalArgumentException("Max TTL should not be negative");
+        }
+        this.maxTtl = maxTtl;
+    }
+
+    void setNegativeTtl(long negativeTtl) {
+        if (negativeTtl < 0) {
+            throw new IllegalArgumentException("Negative TTL should not be negative");
+        }
+        this.negativeTtl = negativeTtl;
+    }
+
+    void setMaxEntries(int maxEntries) {
+        entries.setMaxEntries(maxEntries);
+    }
+
+    long getHitCount() {
+        return entries.getHitCount();
+    }
+
+    long getMissCount() {
+        return entries.getMissCount();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the introspection result of a token, introspecting the token if it is not cached or being introspected.
+     *
+     * @param token        token to be introspected
+     * @param introspector introspects the token with the authorization server
+     * @return introspection result
+     * @throws MSF4JSecurityException if the token could not be introspected
+     */
+    Result get(String token, Introspector introspector) throws MSF4JSecurityException {
+        String key = ExpiringCache.hash(token);
+        Result cached = entries.get(key, System.currentTimeMillis());
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<Result> call = new CompletableFuture<>();
+        CompletableFuture<Result> existingCall = inFlight.putIfAbsent(key, call);
+        if (existingCall != null) {
+            return await(existingCall);
+        }
+        try {
+            Result result = introspector.introspect(token);
+            put(key, result, System.currentTimeMillis());
+            call.complete(result);
+            return result;
+        } catch (MSF4JSecurityException | RuntimeException e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * Get the introspection result of a token without blocking, introspecting the token if it is not cached or
+     * being introspected.
+     *
+     * @param token        token to be introspected
+     * @param introspector introspects the token with the authorization server without blocking
+     * @return introspection result, completed with an {@link MSF4JSecurityException} if the token could not be
+     * introspected
+     */
+    CompletableFuture<Result> getAsync(String token, Function<String, CompletableFuture<Result>> introspector) {
+        String key = ExpiringCache.hash(token);
+        Result cached = entries.get(key, System.currentTimeMillis());
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<Result> call = new CompletableFuture<>();
+        CompletableFuture<Result> existingCall = inFlight.putIfAbsent(key, call);
+        if (existingCall != null) {
+            return existingCall;
+        }
+        introspector.apply(token).whenComplete((result, e) -> {
+            inFlight.remove(key, call);
+            if (e == null) {
+                put(key, result, System.currentTimeMillis());
+                call.complete(result);
+            } else {
+                call.completeExceptionally(e);
+            }
+        });
+        return call;
+    }
+
+    private void put(String key, Result result, long now) {
+        long expiryTime;
+        if (result.isActive()) {
+            expiryTime = now + maxTtl;
+            if (result.getExpiryTime() > 0) {
+                expiryTime = Math.min(expiryTime, result.getExpiryTime());
+            }
+        } else {
+            expiryTime = now + negativeTtl;
+        }
+        entries.put(key, result, expiryTime, now);
+    }
+
+    private static Result await(CompletableFuture<Result> call) throws MSF4JSecurityException {
+        try {
+            return call.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MSF4JSecurityException(SecurityErrorCode.GENERIC_ERROR,
+                    "Interrupted while waiting for token introspection", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof MSF4JSecurityException) {
+                MSF4JSecurityException securityException = (MSF4JSecurityException) cause;
+                throw new MSF4JSecurityException(securityException.getErrorCode(), securityException.getMessage(),
+                        securityException);
+            }
+            throw new MSF4JSecurityException(SecurityErrorCode.GENERIC_ERROR, "Token introspection failed", cause);
+        }
+    }
+}
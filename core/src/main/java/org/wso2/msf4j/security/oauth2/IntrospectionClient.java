@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.security.oauth2;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.msf4j.security.MSF4JSecurityException;
+import org.wso2.msf4j.security.SecurityErrorCode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Client of the introspection endpoint of an authorization server.
+ * <p>
+ * Connections are kept alive and reused through the keep-alive cache of {@link HttpURLConnection}, which holds up
+ * to <tt>http.maxConnections</tt> idle connections per server, so responses are always read to the end. HTTPS
+ * connections use the {@link SSLContext} of the client rather than the JVM wide trust store. Asynchronous calls are
+ * made by a bounded pool of threads, which also bounds the number of connections they open. All calls go through a
+ * {@link CircuitBreaker} so that they fail fast while the authorization server is down.
+ */
+class IntrospectionClient {
+    private static final Logger log = LoggerFactory.getLogger(IntrospectionClient.class);
+    private static final String POST = "POST";
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String FORM_URLENCODED = "application/x-www-form-urlencoded";
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    static final int DEFAULT_READ_TIMEOUT = 10000;
+    static final int DEFAULT_MAX_CONNECTIONS = 20;
+
+    private final URL url;
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private volatile SSLSocketFactory sslSocketFactory;
+    private volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+    private volatile ExecutorService executor;
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+    IntrospectionClient(String url) {
+        try {
+            this.url = new URL(url);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid introspection endpoint URL: " + url, e);
+        }
+    }
+
+    void setSSLContext(SSLContext sslContext) {
+        this.sslSocketFactory = (sslContext == null) ? null : sslContext.getSocketFactory();
+    }
+
+    void setConnectTimeout(int connectTimeout) {
+        if (connectTimeout < 0) {
+            throw new IllegalArgumentException("Connect timeout should not be negative");
+        }
+        this.connectTimeout = connectTimeout;
+    }
+
+    void setReadTimeout(int readTimeout) {
+        if (readTimeout < 0) {
+            throw new IllegalArgumentException("Read timeout should not be negative");
+        }
+        this.readTimeout = readTimeout;
+    }
+
+    synchronized void setMaxConnections(int maxConnections) {
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("Max connections should be a positive value");
+        }
+        if (executor != null) {
+            throw new IllegalStateException("Asynchronous introspection has already been used");
+        }
+        this.maxConnections = maxConnections;
+    }
+
+    CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Introspect a token on the calling thread.
+     *
+     * @param token token to be introspected
+     * @return introspection result
+     * @throws MSF4JSecurityException if the authorization server is unavailable or gives an invalid response
+     */
+    IntrospectionCache.Result introspect(String token) throws MSF4JSecurityException {
+        if (!circuitBreaker.allowCall()) {
+            throw new MSF4JSecurityException(SecurityErrorCode.GENERIC_ERROR,
+                    "Authorization Server is unavailable, introspection calls are suspended");
+        }
+        boolean succeeded = false;
+        try {
+            IntrospectionCache.Result result = post(token);
+            succeeded = true;
+            return result;
+        } catch (IOException e) {
+            log.error("Error invoking Authorization Server", e);
+            throw new MSF4JSecurityException(SecurityErrorCode.GENERIC_ERROR, "Error invoking Authorization Server", e);
+        } finally {
+            // Reported whatever the outcome, otherwise a trial call which throws leaves the breaker half open
+            if (succeeded) {
+                circuitBreaker.succeeded();
+            } else {
+                circuitBreaker.failed();
+            }
+        }
+    }
+
+    /**
+     * Introspect a token on a thread of the client.
+     *
+     * @param token token to be introspected
+     * @return introspection result, completed with an {@link MSF4JSecurityException} if the token could not be
+     * introspected
+     */
+    CompletableFuture<IntrospectionCache.Result> introspectAsync(String token) {
+        CompletableFuture<IntrospectionCache.Result> result = new CompletableFuture<>();
+        if (!circuitBreaker.allowCall()) {
+            // Failed right away rather than queuing behind the calls which are timing out
+            result.completeExceptionally(new MSF4JSecurityException(SecurityErrorCode.GENERIC_ERROR,
+                    "Authorization Server is unavailable, introspection calls are suspended"));
+            return result;
+        }
+        try {
+            getExecutor().execute(() -> {
+                try {
+                    result.complete(post(token));
+                    circuitBreaker.succeeded();
+                } catch (IOException e) {
+                    circuitBreaker.failed();
+                    log.error("Error invoking Authorization Server", e);
+                    result.completeExceptionally(new MSF4JSecurityException(SecurityErrorCode.GENERIC_ERROR,
+                            "Error invoking Authorization Server", e));
+                } catch (MSF4JSecurityException | RuntimeException e) {
+                    circuitBreaker.failed();
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            circuitBreaker.failed();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Stop the threads used for asynchronous calls.
+     */
+    synchronized void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            ThreadPoolExecutor threadPool = new ThreadPoolExecutor(maxConnections, maxConnections, 60,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "msf4j-oauth2-introspection-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            threadPool.allowCoreThreadTimeOut(true);
+            executor = threadPool;
+        }
+        return executor;
+    }
+
+    private IntrospectionCache.Result post(String token) throws IOException, MSF4JSecurityException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        SSLSocketFactory sslSocketFactory = this.sslSocketFactory;
+        if (sslSocketFactory != null && connection instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) connection).setSSLSocketFactory(sslSocketFactory);
+        }
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setDoOutput(true);
+        connection.setRequestMethod(POST);
+        connection.setRequestProperty(CONTENT_TYPE, FORM_URLENCODED);
+        byte[] body = ("token=" + URLEncoder.encode(token, "UTF-8") + "&token_type_hint=bearer")
+                .getBytes(StandardCharsets.UTF_8);
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            // Read to the end so that the connection is kept alive
+            InputStream error = connection.getErrorStream();
+            if (error != null) {
+                readFully(error);
+            }
+            throw new IOException("Authorization Server responded with status " + status);
+        }
+        return parse(readFully(connection.getInputStream()));
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            return new String(content.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @param response introspection response returned from the key server.
+     * @return whether the token is active and when it expires
+     */
+    private static IntrospectionCache.Result parse(String response) throws MSF4JSecurityException {
+        try {
+            JsonObject json = new JsonParser().parse(response).getAsJsonObject();
+            JsonElement active = json.get(IntrospectionResponse.ACTIVE);
+            JsonElement exp = json.get(IntrospectionResponse.EXP);
+            return new IntrospectionCache.Result(active != null && active.getAsBoolean(),
+                    (exp == null || exp.isJsonNull()) ? 0 : exp.getAsLong() * 1000);
+        } catch (JsonParseException | IllegalStateException | ClassCastException | NumberFormatException e) {
+            throw new MSF4JSecurityException(SecurityErrorCode.GENERIC_ERROR,
+                    "Invalid response from Authorization Server", e);
+        }
+    }
+}
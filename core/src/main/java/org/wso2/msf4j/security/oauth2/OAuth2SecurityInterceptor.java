@@ -15,10 +15,6 @@
  */
 package org.wso2.msf4j.security.oauth2;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import org.apache.commons.io.Charsets;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.messaging.Headers;
@@ -30,17 +26,27 @@ import org.wso2.msf4j.security.MSF4JSecurityException;
 import org.wso2.msf4j.security.SecurityErrorCode;
 import org.wso2.msf4j.util.SystemVariableUtil;
 
-import java.lang.reflect.Type;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
 import java.util.Locale;
-import java.util.Map;
-import javax.ws.rs.HttpMethod;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
 
 /**
  * Act as a security gateway for resources secured with Oauth2.
  * <p>
  * Verify Oauth2 access token in Authorization Bearer HTTP header and allow access to the resource accordingly.
+ * <p>
+ * Introspection results are cached by a hash of the token, active tokens until their expiry and up to a maximum
+ * time to live, and inactive tokens briefly. Concurrent requests with the same token share a single introspection
+ * call. Introspection calls reuse kept alive connections, have connect and read timeouts, and fail fast through a
+ * circuit breaker while the authorization server is down.
  *
  * @since 1.0.0
  */
@@ -51,22 +57,128 @@ public class OAuth2SecurityInterceptor implements Interceptor {
     private static final String AUTH_TYPE_OAUTH2 = "OAuth2";
     private static final String BEARER_PREFIX = "bearer";
     private static final String AUTH_SERVER_URL_KEY = "AUTH_SERVER_URL";
-    private static final String AUTH_SERVER_URL;
     private static final String TRUST_STORE = "TRUST_STORE";
     private static final String TRUST_STORE_PASSWORD = "TRUST_STORE_PASSWORD";
 
-    static {
-        AUTH_SERVER_URL = SystemVariableUtil.getValue(AUTH_SERVER_URL_KEY, null);
-        if (AUTH_SERVER_URL == null) {
-            throw new RuntimeException(AUTH_SERVER_URL_KEY + " is not specified.");
-        }
+    private final IntrospectionClient introspectionClient;
+    private final IntrospectionCache introspectionCache = new IntrospectionCache();
+
+    /**
+     * Create an interceptor which introspects the tokens with the authorization server given by the
+     * <tt>AUTH_SERVER_URL</tt> system variable, trusting the certificates of the <tt>TRUST_STORE</tt> system
+     * variable if given.
+     */
+    public OAuth2SecurityInterceptor() {
+        this(SystemVariableUtil.getValue(AUTH_SERVER_URL_KEY, null));
         String trustStore = SystemVariableUtil.getValue(TRUST_STORE, null);
         String trustStorePassword = SystemVariableUtil.getValue(TRUST_STORE_PASSWORD, null);
         if (trustStore != null && !trustStore.isEmpty() &&
                 trustStorePassword != null && !trustStorePassword.isEmpty()) {
-            System.setProperty("javax.net.ssl.trustStore", trustStore);
-            System.setProperty("javax.net.ssl.trustStorePassword", trustStorePassword);
+            setSSLContext(createSSLContext(trustStore, trustStorePassword.toCharArray()));
+        }
+    }
+
+    /**
+     * @param authServerUrl URL of the introspection endpoint of the authorization server
+     */
+    public OAuth2SecurityInterceptor(String authServerUrl) {
+        if (authServerUrl == null) {
+            throw new RuntimeException(AUTH_SERVER_URL_KEY + " is not specified.");
         }
+        introspectionClient = new IntrospectionClient(authServerUrl);
+    }
+
+    /**
+     * Set the SSLContext used to connect to the authorization server, instead of the default one of the JVM.
+     *
+     * @param sslContext SSLContext trusting the certificate of the authorization server
+     */
+    public void setSSLContext(SSLContext sslContext) {
+        introspectionClient.setSSLContext(sslContext);
+    }
+
+    /**
+     * @param connectTimeout timeout in milliseconds to connect to the authorization server, 5 seconds by default
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        introspectionClient.setConnectTimeout(connectTimeout);
+    }
+
+    /**
+     * @param readTimeout timeout in milliseconds to read the introspection response, 10 seconds by default
+     */
+    public void setReadTimeout(int readTimeout) {
+        introspectionClient.setReadTimeout(readTimeout);
+    }
+
+    /**
+     * Set the maximum number of concurrent asynchronous introspection calls. Should be set before
+     * {@link #validateTokenAsync(String)} is first used.
+     *
+     * @param maxConnections number of connections, 20 by default
+     */
+    public void setMaxConnections(int maxConnections) {
+        introspectionClient.setMaxConnections(maxConnections);
+    }
+
+    /**
+     * Set when the introspection calls are suspended. Once the given number of calls have failed in a row, calls
+     * fail right away for the given duration, after which a single call is let through to check whether the
+     * authorization server has recovered.
+     *
+     * @param failureThreshold number of consecutive failures, 5 by default
+     * @param openDuration     time in milliseconds for which the calls are suspended, 30 seconds by default
+     */
+    public void setCircuitBreaker(int failureThreshold, long openDuration) {
+        introspectionClient.getCircuitBreaker().setFailureThreshold(failureThreshold);
+        introspectionClient.getCircuitBreaker().setOpenDuration(openDuration);
+    }
+
+    /**
+     * Stop the threads used for asynchronous introspection.
+     */
+    public void close() {
+        introspectionClient.close();
+    }
+
+    /**
+     * Set the maximum time for which an active token is cached, even if the token expires later. This bounds the
+     * time for which a revoked token is still accepted.
+     *
+     * @param maxCacheTtl time in milliseconds, 0 to not cache active tokens, 5 minutes by default
+     */
+    public void setMaxCacheTtl(long maxCacheTtl) {
+        introspectionCache.setMaxTtl(maxCacheTtl);
+    }
+
+    /**
+     * Set the time for which an inactive token is cached.
+     *
+     * @param negativeCacheTtl time in milliseconds, 0 to not cache inactive tokens, 10 seconds by default
+     */
+    public void setNegativeCacheTtl(long negativeCacheTtl) {
+        introspectionCache.setNegativeTtl(negativeCacheTtl);
+    }
+
+    /**
+     * @param maxCacheEntries maximum number of cached tokens, 10000 by default
+     */
+    public void setMaxCacheEntries(int maxCacheEntries) {
+        introspectionCache.setMaxEntries(maxCacheEntries);
+    }
+
+    /**
+     * @return number of token validations served from the cache
+     */
+    public long getCacheHitCount() {
+        return introspectionCache.getHitCount();
+    }
+
+    /**
+     * @return number of token validations which were not served from the cache
+     */
+    public long getCacheMissCount() {
+        return introspectionCache.getMissCount();
     }
 
     @Override
@@ -108,14 +220,11 @@ public class OAuth2SecurityInterceptor implements Interceptor {
         // 1. Check whether this token is bearer token, if not return false
         String accessToken = extractAccessToken(authHeader);
 
-        // 2. Send a request to key server's introspect endpoint to validate this token
-        String responseStr = getValidatedTokenResponse(accessToken);
-        Map<String, String> responseData = getResponseDataMap(responseStr);
-
-        //TODO handle NPE
+        // 2. Send a request to key server's introspect endpoint to validate this token, unless cached
+        IntrospectionCache.Result result = introspect(accessToken);
 
         // 3. Process the response and return true if the token is valid.
-        if (!Boolean.parseBoolean(responseData.get(IntrospectionResponse.ACTIVE))) {
+        if (!result.isActive()) {
             throw new MSF4JSecurityException(SecurityErrorCode.AUTHENTICATION_FAILURE,
                     "Invalid Access token.");
         }
@@ -143,45 +252,56 @@ public class OAuth2SecurityInterceptor implements Interceptor {
     }
 
     /**
-     * Validated the given accessToken with an external key server.
+     * Validate the access token of the given Authorization header without blocking the calling thread while
+     * waiting on the authorization server.
      *
-     * @param accessToken AccessToken to be validated.
-     * @return the response from the key manager server.
+     * @param authHeader Authorization Bearer header which contains the access token
+     * @return true once the token has been found valid, otherwise completed exceptionally with an
+     * {@link MSF4JSecurityException} as the cause
      */
-    private String getValidatedTokenResponse(String accessToken) throws MSF4JSecurityException {
-        URL url;
+    public CompletableFuture<Boolean> validateTokenAsync(String authHeader) {
+        String accessToken;
         try {
-            url = new URL(AUTH_SERVER_URL);
-            HttpURLConnection urlConn = (HttpURLConnection) url.openConnection();
-            urlConn.setDoOutput(true);
-            urlConn.setRequestMethod(HttpMethod.POST);
-            urlConn.getOutputStream()
-                   .write(("token=" + accessToken + "&token_type_hint=" + BEARER_PREFIX).getBytes(Charsets.UTF_8));
-            return new String(IOUtils.toByteArray(urlConn.getInputStream()), Charsets.UTF_8);
-        } catch (java.io.IOException e) {
-            log.error("Error invoking Authorization Server", e);
-            throw new MSF4JSecurityException(SecurityErrorCode.GENERIC_ERROR, "Error invoking Authorization Server", e);
+            accessToken = extractAccessToken(authHeader);
+        } catch (MSF4JSecurityException e) {
+            CompletableFuture<Boolean> result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+            return result;
         }
+        return introspectionCache.getAsync(accessToken, introspectionClient::introspectAsync).thenApply(result -> {
+            if (!result.isActive()) {
+                throw new CompletionException(new MSF4JSecurityException(SecurityErrorCode.AUTHENTICATION_FAILURE,
+                        "Invalid Access token."));
+            }
+            return true;
+        });
     }
 
     /**
-     * @param responseStr validated token response string returned from the key server.
-     * @return a Map of key, value pairs available the response String.
+     * @param accessToken access token to be introspected
+     * @return the cached introspection result of the token, or the result given by the key server
      */
-    private Map<String, String> getResponseDataMap(String responseStr) {
-        Gson gson = new Gson();
-        Type typeOfMapOfStrings = new ExtendedTypeToken<Map<String, String>>() {
-        }.getType();
-        return gson.fromJson(responseStr, typeOfMapOfStrings);
+    IntrospectionCache.Result introspect(String accessToken) throws MSF4JSecurityException {
+        return introspectionCache.get(accessToken, introspectionClient::introspect);
     }
 
-    /**
-     * This class extends the {@link TypeToken}.
-     * Created due to the findbug issue when passing anonymous inner class.
-     *
-     * @param <T> Generic type
-     */
-    private static class ExtendedTypeToken<T> extends TypeToken {
+    CircuitBreaker.State getCircuitBreakerState() {
+        return introspectionClient.getCircuitBreaker().getState();
+    }
+
+    private static SSLContext createSSLContext(String trustStore, char[] trustStorePassword) {
+        try (InputStream in = Files.newInputStream(Paths.get(trustStore))) {
+            KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            keyStore.load(in, trustStorePassword);
+            TrustManagerFactory trustManagerFactory =
+                    TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagerFactory.init(keyStore);
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+            return sslContext;
+        } catch (IOException | GeneralSecurityException e) {
+            throw new RuntimeException("Cannot load the trust store " + trustStore, e);
+        }
     }
 
     /**
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.sse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fans out events to a group of {@link SseEventSink}s. Each event is encoded once and the same read only
+ * buffer is written to every registered sink. Closed sinks are dropped on the next broadcast.
+ */
+public class SseBroadcaster implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SseBroadcaster.class);
+    private static final ByteBuffer HEARTBEAT = SseEvent.comment("heartbeat").encode();
+
+    private final Set<SseEventSink> sinks = ConcurrentHashMap.newKeySet();
+    private final AtomicLong broadcastCount = new AtomicLong();
+    private ScheduledExecutorService heartbeatScheduler;
+
+    /**
+     * Create a broadcaster which does not send heartbeats.
+     */
+    public SseBroadcaster() {
+    }
+
+    /**
+     * Create a broadcaster which sends a heartbeat comment to all sinks at the given interval so that
+     * intermediaries do not close idle connections.
+     *
+     * @param heartbeatInterval interval between heartbeats
+     * @param unit              time unit of the interval
+     */
+    public SseBroadcaster(long heartbeatInterval, TimeUnit unit) {
+        if (heartbeatInterval <= 0) {
+            throw new IllegalArgumentException("Heartbeat interval should be a positive value");
+        }
+        heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "msf4j-sse-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatScheduler.scheduleAtFixedRate(() -> broadcast(HEARTBEAT), heartbeatInterval, heartbeatInterval,
+                unit);
+    }
+
+    /**
+     * Register a sink to receive the broadcast events.
+     *
+     * @param sink sink to be registered
+     */
+    public void register(SseEventSink sink) {
+        sinks.add(sink);
+    }
+
+    public void unregister(SseEventSink sink) {
+        sinks.remove(sink);
+    }
+
+    /**
+     * @return number of sinks currently registered
+     */
+    public int getSubscriberCount() {
+        return sinks.size();
+    }
+
+    /**
+     * @return number of events broadcast so far, excluding heartbeats
+     */
+    public long getBroadcastCount() {
+        return broadcastCount.get();
+    }
+
+    /**
+     * Send an event to all registered sinks.
+     *
+     * @param event event to be sent
+     */
+    public void broadcast(SseEvent event) {
+        broadcastCount.incrementAndGet();
+        broadcast(event.encode());
+    }
+
+    /**
+     * Close all registered sinks and stop sending heartbeats.
+     */
+    @Override
+    public void close() {
+        if (heartbeatScheduler != null) {
+            heartbeatScheduler.shutdownNow();
+        }
+        sinks.forEach(SseEventSink::close);
+        sinks.clear();
+    }
+
+    private void broadcast(ByteBuffer encodedEvent) {
+        for (SseEventSink sink : sinks) {
+            if (sink.isClosed()) {
+                sinks.remove(sink);
+                continue;
+            }
+            try {
+                sink.send(encodedEvent);
+            } catch (IOException e) {
+                log.debug("Dropping SSE sink since writing to it failed", e);
+                sinks.remove(sink);
+                sink.close();
+            }
+        }
+    }
+}
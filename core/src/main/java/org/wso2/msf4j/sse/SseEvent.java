@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.sse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An event of a {@code text/event-stream} response.
+ * <p>
+ * Events are immutable and can be encoded once with {@link #encode()} and written to any number of
+ * {@link SseEventSink}s.
+ */
+public final class SseEvent {
+
+    public static final long NO_RETRY = -1;
+
+    private final String id;
+    private final String name;
+    private final String data;
+    private final String comment;
+    private final long retry;
+
+    private SseEvent(Builder builder) {
+        this.id = builder.id;
+        this.name = builder.name;
+        this.data = builder.data;
+        this.comment = builder.comment;
+        this.retry = builder.retry;
+    }
+
+    /**
+     * @return builder for a new event
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Create a comment only event. Comments are ignored by clients and are useful as heartbeats
+     * which keep idle connections open.
+     *
+     * @param comment comment text
+     * @return comment event
+     */
+    public static SseEvent comment(String comment) {
+        return new Builder().comment(comment).build();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+
+    /**
+     * @return reconnection time in milliseconds or {@link #NO_RETRY} if not specified
+     */
+    public long getRetry() {
+        return retry;
+    }
+
+    /**
+     * Encode the event in the {@code text/event-stream} format.
+     *
+     * @return read only buffer holding the encoded event
+     */
+    public ByteBuffer encode() {
+        StringBuilder sb = new StringBuilder();
+        if (comment != null) {
+            appendLines(sb, "", comment);
+        }
+        if (id != null) {
+            sb.append("id: ").append(id).append('\n');
+        }
+        if (name != null) {
+            sb.append("event: ").append(name).append('\n');
+        }
+        if (retry != NO_RETRY) {
+            sb.append("retry: ").append(retry).append('\n');
+        }
+        if (data != null) {
+            appendLines(sb, "data", data);
+        }
+        sb.append('\n');
+        return ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Append each line of the value as a separate field since a field value can not span multiple lines.
+     */
+    private static void appendLines(StringBuilder sb, String field, String value) {
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i <= length; i++) {
+            char c = (i < length) ? value.charAt(i) : '\n';
+            if (c == '\r' || c == '\n') {
+                sb.append(field).append(": ").append(value, start, i).append('\n');
+                if (c == '\r' && i + 1 < length && value.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                start = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link SseEvent}.
+     */
+    public static class Builder {
+
+        private String id;
+        private String name;
+        private String data;
+        private String comment;
+        private long retry = NO_RETRY;
+
+        private Builder() {
+        }
+
+        /**
+         * @param id event ID, sent back by clients in the {@code Last-Event-ID} header when reconnecting
+         * @return this builder
+         */
+        public Builder id(String id) {
+            this.id = checkSingleLine(id, "Event ID");
+            return this;
+        }
+
+        /**
+         * @param name event name, dispatched to the matching event listener on the client
+         * @return this builder
+         */
+        public Builder name(String name) {
+            this.name = checkSingleLine(name, "Event name");
+            return this;
+        }
+
+        public Builder data(String data) {
+            this.data = data;
+            return this;
+        }
+
+        public Builder comment(String comment) {
+            this.comment = comment;
+            return this;
+        }
+
+        /**
+         * @param retry time in milliseconds the client should wait before reconnecting
+         * @return this builder
+         */
+        public Builder retry(long retry) {
+            if (retry < 0) {
+                throw new IllegalArgumentException("Retry time should not be negative");
+            }
+            this.retry = retry;
+            return this;
+        }
+
+        public SseEvent build() {
+            return new SseEvent(this);
+        }
+
+        private static String checkSingleLine(String value, String field) {
+            if (value != null && (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0)) {
+                throw new IllegalArgumentException(field + " should not contain line breaks");
+            }
+            return value;
+        }
+    }
+}
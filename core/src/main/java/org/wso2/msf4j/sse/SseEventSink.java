@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.sse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Outbound stream of a {@code text/event-stream} response. A sink can be injected into a resource method
+ * using {@link javax.ws.rs.core.Context} and stays open after the method returns until it is closed.
+ * Events sent before the response headers are written are buffered and delivered in order.
+ * <p>
+ * A sink is closed when the events which are not yet taken by the client would exceed the high water mark of
+ * the outbound buffer, see {@link org.wso2.msf4j.MicroservicesRunner#setOutboundBufferWaterMarks(int, int)}.
+ */
+public interface SseEventSink extends Closeable {
+
+    /**
+     * Send an event to the client.
+     *
+     * @param event event to be sent
+     * @throws IOException if the sink is closed, or has been closed since the client is not keeping up
+     */
+    void send(SseEvent event) throws IOException;
+
+    /**
+     * Send an already encoded event to the client. The content of the buffer is not modified so the same
+     * buffer can be sent to many sinks.
+     *
+     * @param encodedEvent event encoded with {@link SseEvent#encode()}
+     * @throws IOException if the sink is closed, or has been closed since the client is not keeping up
+     */
+    void send(ByteBuffer encodedEvent) throws IOException;
+
+    /**
+     * @return value of the {@code Last-Event-ID} header sent by a reconnecting client, or null
+     */
+    String getLastEventId();
+
+    boolean isClosed();
+
+    /**
+     * Close the sink and complete the response.
+     */
+    @Override
+    void close();
+}
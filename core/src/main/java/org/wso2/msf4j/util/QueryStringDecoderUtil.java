@@ -17,8 +17,10 @@
 package org.wso2.msf4j.util;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -41,6 +43,7 @@ import java.util.Map;
  * {@link QueryStringDecoderUtil} decoder = new {@link QueryStringDecoderUtil}("recipient=world&x=1;y=2", false);
  * ...
  * </pre>
+ * or straight from the content chunks of the request using {@link #decodeParams(List, Charset)}.
  *
  * <h3>HashDOS vulnerability fix</h3>
  *
@@ -284,6 +287,77 @@ public class QueryStringDecoderUtil {
         }
     }
 
+    /**
+     * Decodes the content of an <tt>application/x-www-form-urlencoded</tt> request straight from its
+     * content chunks, without building a string of the whole content first.
+     *
+     * @param content content chunks of the request
+     * @param charset charset of the encoded content
+     * @return decoded parameters in the order they appear in the content
+     * @throws IllegalArgumentException if the content contains a malformed escape sequence
+     */
+    public static Map<String, List<String>> decodeParams(List<ByteBuffer> content, Charset charset) {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        ComponentBuilder component = new ComponentBuilder();
+        String name = null;
+        int nParams = 0;
+        int escape = 0; // Number of characters read of the current escape sequence
+        int high = 0;
+        for (ByteBuffer buffer : content) {
+            for (int i = buffer.position(); i < buffer.limit(); i++) {
+                byte b = buffer.get(i);
+                if (escape == 1 && b == '%') {
+                    component.append('%');  // "%%" -> "%"
+                    escape = 0;
+                } else if (escape > 0) {
+                    char nibble = decodeHexNibble((char) b);
+                    if (nibble == Character.MAX_VALUE) {
+                        throw new IllegalArgumentException("invalid escape sequence in form content");
+                    }
+                    if (escape == 1) {
+                        high = nibble;
+                        escape = 2;
+                    } else {
+                        component.append(high * 16 + nibble);
+                        escape = 0;
+                    }
+                } else if (b == '=' && name == null) {
+                    if (component.isStarted()) {
+                        name = component.decode(charset);
+                    }
+                    component.reset();
+                } else if (b == '&' || b == ';') {
+                    if (component.isStarted() || name != null) {
+                        if (nParams++ >= DEFAULT_MAX_PARAMS) {
+                            return params;
+                        }
+                        addValue(params, name == null ? component.decode(charset) : name,
+                                name == null ? "" : component.decode(charset));
+                        name = null;
+                    }
+                    component.reset();
+                } else if (b == '%') {
+                    component.start();
+                    escape = 1;
+                } else {
+                    component.append(b == '+' ? ' ' : b);
+                }
+            }
+        }
+        if (escape > 0) {
+            throw new IllegalArgumentException("unterminated escape sequence at end of form content");
+        }
+        if ((component.isStarted() || name != null) && nParams < DEFAULT_MAX_PARAMS) {
+            addValue(params, name == null ? component.decode(charset) : name,
+                    name == null ? "" : component.decode(charset));
+        }
+        return params;
+    }
+
+    private static void addValue(Map<String, List<String>> params, String name, String value) {
+        params.computeIfAbsent(name, key -> new ArrayList<>(1)).add(value);
+    }
+
     private boolean addParam(Map<String, List<String>> params, String name, String value) {
         if (nParams >= maxParams) {
             return false;
@@ -412,4 +486,39 @@ public class QueryStringDecoderUtil {
             return Character.MAX_VALUE;
         }
     }
+
+    /**
+     * Accumulates the decoded bytes of a name or a value.
+     */
+    private static final class ComponentBuilder {
+
+        private byte[] bytes = new byte[32];
+        private int length;
+        private boolean started;
+
+        void start() {
+            started = true;
+        }
+
+        void append(int b) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, length * 2);
+            }
+            bytes[length++] = (byte) b;
+            started = true;
+        }
+
+        boolean isStarted() {
+            return started;
+        }
+
+        String decode(Charset charset) {
+            return new String(bytes, 0, length, charset);
+        }
+
+        void reset() {
+            length = 0;
+            started = false;
+        }
+    }
 }
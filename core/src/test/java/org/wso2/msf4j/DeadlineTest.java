@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+/**
+ * Tests the parsing, comparison and propagation of request deadlines.
+ */
+public class DeadlineTest {
+
+    @Test
+    public void testFromHeader() {
+        assertSame(Deadline.NONE, Deadline.fromHeader(null));
+        assertSame(Deadline.NONE, Deadline.fromHeader("soon"));
+
+        Deadline deadline = Deadline.fromHeader(" 60000 ");
+        assertTrue(deadline.isBounded());
+        long remaining = deadline.timeRemaining(TimeUnit.MILLISECONDS);
+        assertTrue("Remaining time " + remaining, remaining > 50000 && remaining <= 60000);
+
+        // A caller which has already run out of time gets an expired deadline
+        assertTrue(Deadline.fromHeader("-5").isExpired());
+    }
+
+    @Test
+    public void testUnbounded() {
+        assertFalse(Deadline.NONE.isBounded());
+        assertFalse(Deadline.NONE.isExpired());
+        assertEquals(Long.MAX_VALUE, Deadline.NONE.timeRemaining(TimeUnit.MILLISECONDS));
+        Deadline.NONE.checkExpired();
+    }
+
+    @Test
+    public void testExpired() {
+        Deadline deadline = Deadline.after(0, TimeUnit.MILLISECONDS);
+        assertTrue(deadline.isExpired());
+        assertEquals(0, deadline.timeRemaining(TimeUnit.MILLISECONDS));
+        try {
+            deadline.checkExpired();
+            fail("Expired deadline was not reported");
+        } catch (DeadlineExceededException e) {
+            assertTrue(e.getMessage().startsWith("Deadline exceeded"));
+        }
+    }
+
+    @Test
+    public void testMin() {
+        Deadline early = Deadline.after(1, TimeUnit.SECONDS);
+        Deadline late = Deadline.after(1, TimeUnit.MINUTES);
+        assertSame(early, early.min(late));
+        assertSame(early, late.min(early));
+        assertSame(early, early.min(Deadline.NONE));
+        assertSame(early, Deadline.NONE.min(early));
+    }
+
+    @Test
+    public void testAttach() {
+        assertSame(Deadline.NONE, Deadline.current());
+        Deadline outer = Deadline.after(1, TimeUnit.MINUTES);
+        Deadline inner = Deadline.after(1, TimeUnit.SECONDS);
+        Deadline previous = Deadline.attach(outer);
+        assertNull(previous);
+        Deadline restored = Deadline.attach(inner);
+        assertSame(inner, Deadline.current());
+        Deadline.detach(restored);
+        assertSame(outer, Deadline.current());
+        Deadline.detach(previous);
+        assertSame(Deadline.NONE, Deadline.current());
+    }
+}
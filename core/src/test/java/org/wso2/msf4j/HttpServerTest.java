@@ -188,7 +188,16 @@ public class HttpServerTest {
         testStreamUpload(1000000, "testLargeFileUpload.txt");
     }
 
+    @Test
+    public void testSubscribedStreamUpload() throws IOException {
+        testStreamUpload("/test/v1/stream/subscribe", 1000000, "testSubscribedStreamUpload.txt");
+    }
+
     protected void testStreamUpload(int size, String filename) throws IOException {
+        testStreamUpload("/test/v1/stream/upload", size, filename);
+    }
+
+    protected void testStreamUpload(String path, int size, String filename) throws IOException {
         //create a random file to be uploaded.
         File fname = new File(tmpFolder, filename);
         fname.createNewFile();
@@ -200,7 +209,7 @@ public class HttpServerTest {
         randf.close();
 
         //test stream upload
-        HttpURLConnection urlConn = request("/test/v1/stream/upload", HttpMethod.PUT);
+        HttpURLConnection urlConn = request(path, HttpMethod.PUT);
         Files.copy(Paths.get(fname.toURI()), urlConn.getOutputStream());
         assertEquals(200, urlConn.getResponseCode());
         String contentFromServer = getContent(urlConn);
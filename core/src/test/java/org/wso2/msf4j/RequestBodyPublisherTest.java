@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.msf4j;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.msf4j.internal.router.RequestBodyPublisher;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests demand driven streaming of request bodies.
+ */
+public class RequestBodyPublisherTest {
+
+    @Test
+    public void testChunksDeliveredOnDemand() throws Exception {
+        TestSubscriber subscriber = new TestSubscriber(false);
+        new RequestBodyPublisher(createRequest(3), subscriber).publish();
+        assertEquals(3, subscriber.chunks.size());
+        assertTrue(subscriber.completed);
+        assertEquals(null, subscriber.error);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        TestSubscriber subscriber = new TestSubscriber(true);
+        Request request = createRequest(3);
+        new RequestBodyPublisher(request, subscriber).publish();
+        assertEquals(1, subscriber.chunks.size());
+        assertFalse(subscriber.completed);
+        assertTrue(request.isEmpty());
+    }
+
+    @Test
+    public void testDemandTimeout() throws Exception {
+        TestSubscriber subscriber = new TestSubscriber(false) {
+            @Override
+            public void onSubscribe(HttpStreamSubscription subscription) {
+            }
+        };
+        Request request = createRequest(3);
+        new RequestBodyPublisher(request, subscriber, 100, TimeUnit.MILLISECONDS).publish();
+        assertEquals(0, subscriber.chunks.size());
+        assertTrue(subscriber.error instanceof TimeoutException);
+        assertFalse(subscriber.completed);
+        assertTrue(request.isEmpty());
+    }
+
+    @Test
+    public void testSignalsDeliveredWithoutLock() throws Exception {
+        HttpStreamSubscription[] subscription = new HttpStreamSubscription[1];
+        Thread[] other = new Thread[1];
+        TestSubscriber subscriber = new TestSubscriber(false) {
+            @Override
+            public void onSubscribe(HttpStreamSubscription s) {
+                subscription[0] = s;
+                s.request(0);
+            }
+
+            @Override
+            public void onError(Throwable cause) {
+                super.onError(cause);
+                // Would wait on the lock of the subscription if it was held by the publishing thread
+                other[0] = new Thread(subscription[0]::cancel);
+                other[0].start();
+                try {
+                    other[0].join(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        new RequestBodyPublisher(createRequest(1), subscriber).publish();
+        assertFalse(other[0].isAlive());
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void testInvalidDemand() throws Exception {
+        TestSubscriber subscriber = new TestSubscriber(false) {
+            @Override
+            public void onSubscribe(HttpStreamSubscription subscription) {
+                subscription.request(0);
+            }
+        };
+        new RequestBodyPublisher(createRequest(1), subscriber).publish();
+        assertEquals(0, subscriber.chunks.size());
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    private Request createRequest(int chunks) {
+        CarbonMessage carbonMessage = new DefaultCarbonMessage();
+        for (int i = 0; i < chunks; i++) {
+            carbonMessage.addMessageBody(ByteBuffer.wrap(new byte[]{(byte) i}));
+        }
+        carbonMessage.setEndOfMsgAdded(true);
+        return new Request(carbonMessage);
+    }
+
+    private static class TestSubscriber implements HttpStreamSubscriber {
+
+        private final boolean cancelAfterFirst;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private HttpStreamSubscription subscription;
+        private boolean completed;
+        private Throwable error;
+
+        private TestSubscriber(boolean cancelAfterFirst) {
+            this.cancelAfterFirst = cancelAfterFirst;
+        }
+
+        @Override
+        public void init(Response response) {
+        }
+
+        @Override
+        public void onSubscribe(HttpStreamSubscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ByteBuffer content) {
+            chunks.add(content);
+            if (cancelAfterFirst) {
+                subscription.cancel();
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable cause) {
+            error = cause;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.concurrency;
+
+import org.testng.annotations.Test;
+import org.wso2.msf4j.Bulkhead;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the resolution of bulkheads and the queuing and rejection of requests by BulkheadSemaphore.
+ */
+public class BulkheadTest {
+
+    /**
+     * Service isolated in a bulkhead, with a method in a bulkhead of its own.
+     */
+    @Bulkhead(maxConcurrent = 10)
+    public static class IsolatedService {
+
+        public void shared() {
+        }
+
+        @Bulkhead(name = "reports", maxConcurrent = 2, rejectionStatus = 429)
+        public void report() {
+        }
+    }
+
+    /**
+     * Service sharing the named bulkhead of IsolatedService.
+     */
+    public static class ReportService {
+
+        @Bulkhead(name = "reports", maxConcurrent = 2)
+        public void report() {
+        }
+
+        public void unlimited() {
+        }
+    }
+
+    @Test
+    public void testResolution() throws Exception {
+        BulkheadRegistry registry = new BulkheadRegistry();
+        BulkheadSemaphore shared = registry.getBulkhead(method(IsolatedService.class, "shared"),
+                IsolatedService.class);
+        assertEquals(IsolatedService.class.getName(), shared.getName());
+        assertEquals(10, shared.getMaxConcurrent());
+
+        BulkheadSemaphore reports = registry.getBulkhead(method(IsolatedService.class, "report"),
+                IsolatedService.class);
+        assertEquals("reports", reports.getName());
+        assertEquals(429, reports.getRejectionStatus());
+        assertSame(reports, registry.getBulkhead(method(ReportService.class, "report"), ReportService.class));
+
+        assertNull(registry.getBulkhead(method(ReportService.class, "unlimited"), ReportService.class));
+        assertEquals(2, registry.getBulkheads().size());
+    }
+
+    @Test
+    public void testRunnerConfigurationOverridesClassAnnotation() throws Exception {
+        BulkheadRegistry registry = new BulkheadRegistry();
+        registry.setBulkhead(IsolatedService.class, 5, 0, 0);
+
+        BulkheadSemaphore shared = registry.getBulkhead(method(IsolatedService.class, "shared"),
+                IsolatedService.class);
+        assertEquals(5, shared.getMaxConcurrent());
+        assertEquals(BulkheadRegistry.DEFAULT_REJECTION_STATUS, shared.getRejectionStatus());
+        assertEquals("reports", registry.getBulkhead(method(IsolatedService.class, "report"),
+                IsolatedService.class).getName());
+    }
+
+    @Test
+    public void testRejectionWithoutQueue() {
+        BulkheadSemaphore bulkhead = new BulkheadSemaphore("test", 2, 0, 0, 503);
+        assertTrue(bulkhead.tryAcquire());
+        assertTrue(bulkhead.tryAcquire());
+        assertFalse(bulkhead.tryAcquire());
+        assertEquals(2, bulkhead.getInFlight());
+        assertEquals(1.0, bulkhead.getUtilization(), 0.001);
+
+        bulkhead.release();
+        assertTrue(bulkhead.tryAcquire());
+        assertEquals(3, bulkhead.getAcceptedCount());
+        assertEquals(1, bulkhead.getRejectedCount());
+        assertEquals(2, bulkhead.getPeakInFlight());
+    }
+
+    @Test
+    public void testQueuedRequests() throws Exception {
+        BulkheadSemaphore bulkhead = new BulkheadSemaphore("test", 1, 1, 5000, 503);
+        assertTrue(bulkhead.tryAcquire());
+
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(bulkhead::tryAcquire);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (bulkhead.getQueued() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, bulkhead.getQueued());
+        // The queue is full
+        assertFalse(bulkhead.tryAcquire());
+
+        bulkhead.release();
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+        assertEquals(0, bulkhead.getQueued());
+        assertEquals(1, bulkhead.getInFlight());
+    }
+
+    @Test
+    public void testQueueTimeout() {
+        BulkheadSemaphore bulkhead = new BulkheadSemaphore("test", 1, 1, 50, 503);
+        assertTrue(bulkhead.tryAcquire());
+        long start = System.nanoTime();
+        assertFalse(bulkhead.tryAcquire());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, bulkhead.getRejectedCount());
+    }
+
+    private static Method method(Class<?> serviceClass, String name) throws NoSuchMethodException {
+        return serviceClass.getMethod(name);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.concurrency;
+
+import org.testng.annotations.Test;
+import org.wso2.msf4j.RequestPriority;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the admission by priority and the latency driven limit of ConcurrencyLimiter.
+ */
+public class ConcurrencyLimiterTest {
+
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testDisabledByDefault() {
+        assertFalse(new ConcurrencyLimiter().isEnabled());
+    }
+
+    @Test
+    public void testPriorities() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        limiter.enable(10, 100);
+        assertEquals(8, limiter.getLimit(RequestPriority.Level.LOW));
+        assertEquals(10, limiter.getLimit(RequestPriority.Level.NORMAL));
+        assertEquals(15, limiter.getLimit(RequestPriority.Level.CRITICAL));
+
+        for (int i = 0; i < 8; i++) {
+            assertTrue(limiter.tryAcquire(RequestPriority.Level.LOW));
+        }
+        assertFalse(limiter.tryAcquire(RequestPriority.Level.LOW));
+        assertTrue(limiter.tryAcquire(RequestPriority.Level.NORMAL));
+        assertTrue(limiter.tryAcquire(RequestPriority.Level.NORMAL));
+        assertFalse(limiter.tryAcquire(RequestPriority.Level.NORMAL));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(RequestPriority.Level.CRITICAL));
+        }
+        assertFalse(limiter.tryAcquire(RequestPriority.Level.CRITICAL));
+
+        assertEquals(15, limiter.getInFlight());
+        assertEquals(1, limiter.getRejectedCount(RequestPriority.Level.LOW));
+        assertEquals(1, limiter.getRejectedCount(RequestPriority.Level.NORMAL));
+        assertEquals(1, limiter.getRejectedCount(RequestPriority.Level.CRITICAL));
+        assertEquals(3, limiter.getRejectedCount());
+
+        limiter.release(MILLISECOND);
+        assertEquals(14, limiter.getInFlight());
+    }
+
+    @Test
+    public void testLimitFollowsLatency() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        limiter.enable(10, 200);
+        long now = System.nanoTime();
+
+        // A steady latency while the limit is in use lets the limit grow
+        for (int window = 0; window < 50; window++) {
+            now = window(limiter, now, 10 * MILLISECOND, limiter.getLimit());
+        }
+        int grownLimit = limiter.getLimit();
+        assertTrue("Limit should grow: " + grownLimit, grownLimit > 20);
+
+        // Requests are queuing once the latency has tripled
+        for (int window = 0; window < 10; window++) {
+            now = window(limiter, now, 30 * MILLISECOND, limiter.getLimit());
+        }
+        int reducedLimit = limiter.getLimit();
+        assertTrue("Limit should be reduced: " + reducedLimit, reducedLimit < grownLimit);
+
+        // The limit does not grow while the service is lightly loaded
+        for (int window = 0; window < 50; window++) {
+            now = window(limiter, now, MILLISECOND, 1);
+        }
+        assertEquals(reducedLimit, limiter.getLimit());
+    }
+
+    @Test
+    public void testLimitIsBounded() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        limiter.enable(10, 15);
+        long now = System.nanoTime();
+        for (int window = 0; window < 100; window++) {
+            now = window(limiter, now, 10 * MILLISECOND, limiter.getLimit());
+        }
+        assertEquals(15, limiter.getLimit());
+        for (int window = 0; window < 20; window++) {
+            now = window(limiter, now, 1000 * MILLISECOND, limiter.getLimit());
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    private static long window(ConcurrencyLimiter limiter, long now, long latency, int inFlight) {
+        now += ConcurrencyLimiter.MIN_WINDOW_TIME;
+        for (int i = 0; i < ConcurrencyLimiter.MIN_WINDOW_SAMPLES; i++) {
+            limiter.sample(latency, inFlight, now);
+        }
+        return now;
+    }
+}
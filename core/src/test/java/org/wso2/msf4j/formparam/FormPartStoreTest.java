@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.formparam;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.msf4j.Request;
+import org.wso2.msf4j.formparam.exception.FormSizeLimitExceededException;
+import org.wso2.msf4j.internal.formparam.FormPart;
+import org.wso2.msf4j.internal.formparam.FormPartStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests for holding multipart form parts in memory and in temporary files.
+ */
+public class FormPartStoreTest {
+
+    private static final String BOUNDARY = "AaB03x";
+    private Path tempDirectory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        tempDirectory = Files.createTempDirectory("msf4j-form-part-store");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(tempDirectory);
+    }
+
+    @Test
+    public void testSmallPartKeptInMemory() throws IOException {
+        FormPartStore store = new FormPartStore(new MultipartConfig().setTempDirectory(tempDirectory));
+        FormPart part = store.readFilePart(fileItem("../../notes.txt", content(100)));
+        assertTrue(part.isInMemory());
+        assertEquals(100, part.getSize());
+
+        // Client supplied path elements are dropped from the file name
+        File file = part.getFile();
+        assertEquals("notes.txt", file.getName());
+        assertTrue(file.toPath().startsWith(tempDirectory));
+        store.close();
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testLargePartSpilledToDisk() throws IOException {
+        byte[] content = content(100_000);
+        FormPartStore store = new FormPartStore(new MultipartConfig().setTempDirectory(tempDirectory)
+                .setFileSizeThreshold(1024));
+        FormPart part = store.readFilePart(fileItem("large.bin", content));
+        assertFalse(part.isInMemory());
+        assertEquals(content.length, part.getSize());
+        File file = part.getFile();
+        assertTrue(Arrays.equals(content, Files.readAllBytes(file.toPath())));
+        store.close();
+        assertFalse(file.exists());
+    }
+
+    @Test(expectedExceptions = FormSizeLimitExceededException.class)
+    public void testPartSizeLimit() throws IOException {
+        try (FormPartStore store = new FormPartStore(new MultipartConfig().setTempDirectory(tempDirectory)
+                .setFileSizeThreshold(1024).setMaxPartSize(10_000))) {
+            store.readFilePart(fileItem("large.bin", content(20_000)));
+        }
+    }
+
+    private static FormItem fileItem(String fileName, byte[] content) throws IOException {
+        byte[] head = ("--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n" +
+                "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        CarbonMessage carbonMessage = new DefaultCarbonMessage();
+        carbonMessage.setHeader("Content-Type", "multipart/form-data; boundary=" + BOUNDARY);
+        carbonMessage.addMessageBody(ByteBuffer.wrap(head));
+        for (int i = 0; i < content.length; i += 4096) {
+            carbonMessage.addMessageBody(ByteBuffer.wrap(content, i, Math.min(4096, content.length - i)));
+        }
+        carbonMessage.addMessageBody(ByteBuffer.wrap(tail));
+        carbonMessage.setEndOfMsgAdded(true);
+        FormParamIterator formParamIterator = new FormParamIterator(new Request(carbonMessage));
+        assertTrue(formParamIterator.hasNext());
+        return formParamIterator.next();
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) ('a' + i % 26);
+        }
+        return content;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.formparam;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.msf4j.Request;
+import org.wso2.msf4j.io.MSF4JRequestInputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests for parsing multipart content received in message body chunks.
+ */
+public class MultipartStreamTest {
+
+    private static final String BOUNDARY = "AaB03x";
+
+    @Test
+    public void testBulkReadAcrossChunks() throws IOException {
+        byte[] content = new byte[1000];
+        Arrays.fill(content, (byte) 'a');
+        InputStream inputStream = new MSF4JRequestInputStream(new Request(chunked(content, 300)));
+        byte[] read = new byte[2000];
+        // Only the chunks which have already arrived are copied
+        assertEquals(1000, inputStream.read(read, 0, read.length));
+        assertEquals(-1, inputStream.read(read, 0, read.length));
+        assertEquals(-1, inputStream.read());
+    }
+
+    @Test
+    public void testPartsSplitAcrossChunks() throws IOException {
+        // Part content contains fragments of the boundary which should not be taken as a separator
+        String fileContent = "--AaB03 \r\n--AaB0\r\n-AaB03x";
+        String body = "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"name\"\r\n\r\n" +
+                "WSO2\r\n" +
+                "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"file.txt\"\r\n" +
+                "Content-Type: text/plain\r\n\r\n" +
+                fileContent + "\r\n" +
+                "--" + BOUNDARY + "--\r\n";
+        Request request = new Request(chunked(body.getBytes(StandardCharsets.UTF_8), 7));
+        MultipartStream multipartStream = new MultipartStream(new MSF4JRequestInputStream(request),
+                BOUNDARY.getBytes(StandardCharsets.UTF_8), 64);
+
+        assertTrue(multipartStream.skipPreamble());
+        assertTrue(multipartStream.readHeaders().contains("name=\"name\""));
+        assertEquals("WSO2", readBody(multipartStream));
+        assertTrue(multipartStream.readBoundary());
+        assertTrue(multipartStream.readHeaders().contains("filename=\"file.txt\""));
+        assertEquals(fileContent, readBody(multipartStream));
+        assertFalse(multipartStream.readBoundary());
+    }
+
+    private static String readBody(MultipartStream multipartStream) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        multipartStream.readBodyData(outputStream);
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static CarbonMessage chunked(byte[] content, int chunkSize) {
+        CarbonMessage carbonMessage = new DefaultCarbonMessage();
+        for (int i = 0; i < content.length; i += chunkSize) {
+            carbonMessage.addMessageBody(ByteBuffer.wrap(content, i, Math.min(chunkSize, content.length - i)));
+        }
+        carbonMessage.setEndOfMsgAdded(true);
+        return carbonMessage;
+    }
+}
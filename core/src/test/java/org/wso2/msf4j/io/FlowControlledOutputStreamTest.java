@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.io;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.messaging.CarbonCallback;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.msf4j.internal.MSF4JConstants;
+import org.wso2.msf4j.internal.entitywriter.InputStreamEntityWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests for FlowControlledOutputStream.
+ */
+public class FlowControlledOutputStreamTest {
+
+    @Test
+    public void testChunkedWrite() throws IOException {
+        CarbonMessage carbonMessage = new DefaultCarbonMessage();
+        OutboundBufferMonitor monitor = new OutboundBufferMonitor();
+        FlowControlledOutputStream outputStream = new FlowControlledOutputStream(carbonMessage, monitor, 1024);
+        assertEquals(1, monitor.getBufferedBytesPerConnection().size());
+
+        outputStream.write(new byte[2500]);
+        outputStream.write('a');
+        assertEquals(453, outputStream.getBufferedBytes());
+        assertEquals(453, monitor.getBufferedBytes());
+        outputStream.close();
+
+        assertTrue(carbonMessage.isEndOfMsgAdded());
+        List<ByteBuffer> chunks = carbonMessage.getFullMessageBody();
+        assertEquals(3, chunks.size());
+        assertEquals(2501, chunks.stream().mapToInt(ByteBuffer::remaining).sum());
+        assertEquals(0, monitor.getBufferedBytes());
+        assertEquals(0, monitor.getBufferedBytesPerConnection().size());
+    }
+
+    @Test
+    public void testSlowConsumerBlocksWriter() throws Exception {
+        FlowControlledCarbonMessage carbonMessage = new FlowControlledCarbonMessage();
+        OutboundBufferMonitor monitor = new OutboundBufferMonitor();
+        monitor.setWaterMarks(2048, 4096);
+        FlowControlledOutputStream outputStream = new FlowControlledOutputStream(carbonMessage, monitor, 1024);
+        AtomicReference<IOException> error = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 16; i++) {
+                    outputStream.write(new byte[1024]);
+                }
+                outputStream.close();
+            } catch (IOException e) {
+                error.set(e);
+            }
+        });
+        writer.start();
+
+        awaitBlocked(writer, monitor, 1);
+        assertEquals(4096, outputStream.getBufferedBytes());
+        assertEquals(4096, monitor.getBufferedBytes());
+        assertFalse(outputStream.isReady());
+
+        // Still above the low water mark
+        carbonMessage.getMessageBody();
+        Thread.sleep(50);
+        assertEquals(1, monitor.getBlockedWriteCount());
+        assertEquals(3072, outputStream.getBufferedBytes());
+
+        // Released at the low water mark, then suspended again once the buffer is refilled
+        carbonMessage.getMessageBody();
+        awaitBlocked(writer, monitor, 2);
+        assertEquals(4096, outputStream.getBufferedBytes());
+
+        int consumed = 2048;
+        while (!(carbonMessage.isEndOfMsgAdded() && carbonMessage.isEmpty())) {
+            consumed += carbonMessage.getMessageBody().remaining();
+        }
+        writer.join(5000);
+        assertNull(error.get());
+        assertEquals(16 * 1024, consumed);
+        assertEquals(0, outputStream.getBufferedBytes());
+        assertEquals(0, monitor.getBufferedBytes());
+        assertEquals(0, monitor.getBufferedBytesPerConnection().size());
+    }
+
+    @Test
+    public void testSlowTransportSuspendsEntityWriter() throws Exception {
+        FlowControlledCarbonMessage carbonMessage = new FlowControlledCarbonMessage();
+        OutboundBufferMonitor monitor = new OutboundBufferMonitor();
+        monitor.setWaterMarks(2048, 4096);
+        carbonMessage.setProperty(MSF4JConstants.OUTBOUND_BUFFER_MONITOR, monitor);
+        Semaphore writable = new Semaphore(0);
+        AtomicInteger written = new AtomicInteger();
+        CountDownLatch completed = new CountDownLatch(1);
+        // Drains the buffered body the way the transport does, taking a chunk each time the client can receive it
+        CarbonCallback transport = message -> {
+            while (!(message.isEndOfMsgAdded() && message.isEmpty())) {
+                writable.acquireUninterruptibly();
+                written.addAndGet(message.getMessageBody().remaining());
+            }
+            completed.countDown();
+        };
+        Thread writer = new Thread(() -> new InputStreamEntityWriter().writeData(carbonMessage,
+                new ByteArrayInputStream(new byte[16 * 1024]), "application/octet-stream", 1024, transport));
+        writer.start();
+
+        awaitBlocked(writer, monitor, 1);
+        assertTrue(carbonMessage.isBufferContent());
+        assertEquals(4096, monitor.getBufferedBytes());
+
+        writable.release(64);
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        writer.join(5000);
+        assertEquals(16 * 1024, written.get());
+        assertEquals(0, monitor.getBufferedBytes());
+        assertEquals(0, monitor.getBufferedBytesPerConnection().size());
+    }
+
+    @Test(expectedExceptions = InterruptedIOException.class)
+    public void testWriteTimeout() throws IOException {
+        OutboundBufferMonitor monitor = new OutboundBufferMonitor();
+        monitor.setWaterMarks(1024, 2048);
+        monitor.setWriteTimeout(100);
+        FlowControlledOutputStream outputStream =
+                new FlowControlledOutputStream(new FlowControlledCarbonMessage(), monitor, 1024);
+        outputStream.write(new byte[4096]);
+    }
+
+    @Test
+    public void testMessageWithoutConsumptionTracking() throws IOException {
+        CarbonMessage carbonMessage = new DefaultCarbonMessage();
+        OutboundBufferMonitor monitor = new OutboundBufferMonitor();
+        monitor.setWaterMarks(256, 512);
+        try (FlowControlledOutputStream outputStream =
+                     new FlowControlledOutputStream(carbonMessage, monitor, 1024)) {
+            outputStream.write(new byte[300]);
+            // The pending chunk is handed over, and taken as consumed, instead of exceeding the high water mark
+            outputStream.write(new byte[300]);
+            assertTrue(outputStream.isReady());
+        }
+        List<ByteBuffer> chunks = carbonMessage.getFullMessageBody();
+        assertEquals(2, chunks.size());
+        assertEquals(300, chunks.get(0).remaining());
+        assertEquals(0, monitor.getBlockedWriteCount());
+    }
+
+    @Test
+    public void testReadyListener() throws IOException {
+        OutboundBufferMonitor monitor = new OutboundBufferMonitor();
+        FlowControlledOutputStream outputStream =
+                new FlowControlledOutputStream(new DefaultCarbonMessage(), monitor, 1024);
+        boolean[] notified = new boolean[1];
+        outputStream.onReady(() -> notified[0] = true);
+        assertTrue(notified[0]);
+        outputStream.close();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidWaterMarks() {
+        new OutboundBufferMonitor().setWaterMarks(1024, 512);
+    }
+
+    private static void awaitBlocked(Thread writer, OutboundBufferMonitor monitor, long blockedWrites)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (monitor.getBlockedWriteCount() < blockedWrites || writer.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue("Writer was not suspended", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.io;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.msf4j.Request;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.fail;
+
+/**
+ * Tests for RequestBodyLimits.
+ */
+public class RequestBodyLimitsTest {
+
+    @Test
+    public void testListenerLimit() {
+        RequestBodyLimits limits = new RequestBodyLimits();
+        assertEquals(RequestBodyLimits.UNLIMITED, limits.getMaxBodySize("netty-8080"));
+        limits.setMaxBodySize(1024);
+        limits.setMaxBodySize("netty-8081", 2048);
+        assertEquals(1024, limits.getMaxBodySize("netty-8080"));
+        assertEquals(2048, limits.getMaxBodySize("netty-8081"));
+        assertEquals(1024, limits.getMaxBodySize(null));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidLimit() {
+        new RequestBodyLimits().setMaxBodySize(-2);
+    }
+
+    @Test
+    public void testRejectOnContentLength() {
+        CarbonMessage carbonMessage = new DefaultCarbonMessage();
+        carbonMessage.setHeader("Content-Length", "4096");
+        RequestBodyLimits limits = new RequestBodyLimits();
+        try {
+            new Request(carbonMessage).setMaxBodySize(1024, limits);
+            fail("Request declaring a larger body should be rejected");
+        } catch (RequestEntityTooLargeException e) {
+            assertEquals(1024, e.getLimit());
+        }
+        assertEquals(1, limits.getRejectedRequestCount());
+        assertEquals(4096, limits.getRejectedBytes());
+    }
+
+    @Test
+    public void testRejectWhileReading() {
+        CarbonMessage carbonMessage = new DefaultCarbonMessage();
+        carbonMessage.addMessageBody(ByteBuffer.allocate(600));
+        carbonMessage.addMessageBody(ByteBuffer.allocate(600));
+        carbonMessage.setEndOfMsgAdded(true);
+        RequestBodyLimits limits = new RequestBodyLimits();
+        Request request = new Request(carbonMessage);
+        request.setMaxBodySize(1024, limits);
+        try {
+            request.getFullMessageBody();
+            fail("Chunked request crossing the limit should be aborted");
+        } catch (RequestEntityTooLargeException e) {
+            assertEquals(1024, e.getLimit());
+        }
+        assertEquals(1, limits.getRejectedRequestCount());
+        assertEquals(1200, limits.getRejectedBytes());
+    }
+
+    @Test
+    public void testBodyWithinLimit() {
+        CarbonMessage carbonMessage = new DefaultCarbonMessage();
+        carbonMessage.setHeader("Content-Length", "1024");
+        carbonMessage.addMessageBody(ByteBuffer.allocate(512));
+        carbonMessage.addMessageBody(ByteBuffer.allocate(512));
+        carbonMessage.setEndOfMsgAdded(true);
+        RequestBodyLimits limits = new RequestBodyLimits();
+        Request request = new Request(carbonMessage);
+        request.setMaxBodySize(1024, limits);
+        List<ByteBuffer> body = request.getFullMessageBody();
+        assertEquals(2, body.size());
+        assertEquals(0, limits.getRejectedRequestCount());
+    }
+}
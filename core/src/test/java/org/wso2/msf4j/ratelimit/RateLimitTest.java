@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.ratelimit;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.msf4j.Request;
+import org.wso2.msf4j.Response;
+import org.wso2.msf4j.ServiceMethodInfo;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the token bucket of RateLimiter and the route limits of RateLimitInterceptor.
+ */
+public class RateLimitTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Service with rate limited resource methods.
+     */
+    @RateLimit(permits = 2, period = 1, unit = TimeUnit.MINUTES)
+    public static class LimitedService {
+
+        public void shared() {
+        }
+
+        public void alsoShared() {
+        }
+
+        @RateLimit(permits = 1, key = RateLimit.Key.HEADER, header = "X-API-Key")
+        public void perApiKey() {
+        }
+    }
+
+    /**
+     * Service without rate limits.
+     */
+    public static class UnlimitedService {
+
+        public void unlimited() {
+        }
+    }
+
+    @Test
+    public void testBurstAndRefill() {
+        RateLimiter limiter = new RateLimiter(10, 1, TimeUnit.SECONDS, 3);
+        long now = 1000 * SECOND;
+        assertEquals(0, limiter.tryAcquire("a", now));
+        assertEquals(0, limiter.tryAcquire("a", now));
+        assertEquals(0, limiter.tryAcquire("a", now));
+        assertEquals(SECOND / 10, limiter.tryAcquire("a", now));
+        // Other keys have their own buckets
+        assertEquals(0, limiter.tryAcquire("b", now));
+
+        // A permit is added every 100ms
+        assertEquals(0, limiter.tryAcquire("a", now + SECOND / 10));
+        assertTrue(limiter.tryAcquire("a", now + SECOND / 10) > 0);
+        assertEquals(0, limiter.tryAcquire("a", now + SECOND));
+        assertEquals(0, limiter.tryAcquire("a", now + SECOND));
+        assertEquals(0, limiter.tryAcquire("a", now + SECOND));
+        assertTrue(limiter.tryAcquire("a", now + SECOND) > 0);
+    }
+
+    @Test
+    public void testIdleBucketsAreEvicted() {
+        RateLimiter limiter = new RateLimiter(1, 1, TimeUnit.SECONDS, 0);
+        long now = System.nanoTime();
+        assertEquals(0, limiter.tryAcquire("a", now));
+        assertEquals(0, limiter.tryAcquire("b", now + RateLimiter.SWEEP_INTERVAL - SECOND / 10));
+        assertEquals(2, limiter.size());
+
+        // The bucket of "a" has filled up by the next sweep, while "b" is still in use
+        assertEquals(0, limiter.tryAcquire("c", now + RateLimiter.SWEEP_INTERVAL + SECOND / 2));
+        assertEquals(2, limiter.size());
+    }
+
+    @Test
+    public void testConcurrentAcquire() throws Exception {
+        RateLimiter limiter = new RateLimiter(1000, 1, TimeUnit.HOURS, 0);
+        AtomicInteger acquired = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    if (limiter.tryAcquire("key") == 0) {
+                        acquired.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(1000, acquired.get());
+    }
+
+    @Test
+    public void testClassLimitIsSharedByMethods() throws Exception {
+        RateLimitInterceptor interceptor = new RateLimitInterceptor();
+
+        assertTrue(preCall(interceptor, LimitedService.class, "shared", "10.0.0.1", null));
+        assertTrue(preCall(interceptor, LimitedService.class, "alsoShared", "10.0.0.1", null));
+        assertFalse(preCall(interceptor, LimitedService.class, "shared", "10.0.0.1", null));
+        assertTrue(preCall(interceptor, LimitedService.class, "shared", "10.0.0.2", null));
+        assertEquals(1, interceptor.getRejectedCount());
+    }
+
+    @Test
+    public void testMethodLimitByHeader() throws Exception {
+        RateLimitInterceptor interceptor = new RateLimitInterceptor();
+
+        assertTrue(preCall(interceptor, LimitedService.class, "perApiKey", "10.0.0.1", "first"));
+        assertFalse(preCall(interceptor, LimitedService.class, "perApiKey", "10.0.0.2", "first"));
+        assertTrue(preCall(interceptor, LimitedService.class, "perApiKey", "10.0.0.1", "second"));
+    }
+
+    @Test
+    public void testUnlimitedRoute() throws Exception {
+        RateLimitInterceptor interceptor = new RateLimitInterceptor();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(preCall(interceptor, UnlimitedService.class, "unlimited", "10.0.0.1", null));
+        }
+    }
+
+    private static boolean preCall(RateLimitInterceptor interceptor, Class<?> service, String method,
+                                   String address, String apiKey) throws Exception {
+        CarbonMessage carbonMessage = new DefaultCarbonMessage();
+        carbonMessage.setProperty("REMOTE_ADDRESS", new InetSocketAddress(address, 8080));
+        if (apiKey != null) {
+            carbonMessage.setHeader("X-API-Key", apiKey);
+        }
+        Request request = new Request(carbonMessage);
+        return interceptor.preCall(request, new Response(message -> { }, request),
+                new ServiceMethodInfo(method, service.getMethod(method)));
+    }
+}
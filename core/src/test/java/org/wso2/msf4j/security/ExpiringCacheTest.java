@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.security;
+
+import org.testng.annotations.Test;
+import org.wso2.msf4j.internal.security.ExpiringCache;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+
+/**
+ * Tests ExpiringCache.
+ */
+public class ExpiringCacheTest {
+
+    @Test
+    public void testExpiry() {
+        ExpiringCache<String> cache = new ExpiringCache<>(10);
+        cache.put("key", "value", 1000, 0);
+        assertEquals("value", cache.get("key", 999));
+        assertNull(cache.get("key", 1000));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testEvictionInBatches() {
+        ExpiringCache<Integer> cache = new ExpiringCache<>(100);
+        for (int i = 0; i < 100; i++) {
+            cache.put("key-" + i, i, 1000 + i, 0);
+        }
+        assertEquals(100, cache.size());
+
+        // Evicted down to the target, dropping the entries which expire soonest
+        cache.put("key-100", 100, 1100, 0);
+        assertEquals(91, cache.size());
+        assertNull(cache.get("key-9", 0));
+        assertEquals(Integer.valueOf(10), cache.get("key-10", 0));
+
+        // Not evicted again until the cache is full
+        for (int i = 101; i < 110; i++) {
+            cache.put("key-" + i, i, 1000 + i, 0);
+        }
+        assertEquals(100, cache.size());
+    }
+
+    @Test
+    public void testExpiredEntriesAreEvictedFirst() {
+        ExpiringCache<Integer> cache = new ExpiringCache<>(10);
+        for (int i = 0; i < 10; i++) {
+            cache.put("key-" + i, i, (i % 2 == 0) ? 100 : 1000, 0);
+        }
+        cache.put("key-10", 10, 1000, 500);
+        assertEquals(6, cache.size());
+        assertEquals(Integer.valueOf(1), cache.get("key-1", 500));
+    }
+
+    @Test
+    public void testDisabled() {
+        ExpiringCache<String> cache = new ExpiringCache<>(10);
+        cache.put("key", "value", 1000, 0);
+        cache.setMaxEntries(0);
+        assertEquals(0, cache.size());
+        cache.put("key", "value", 1000, 0);
+        assertEquals(0, cache.size());
+    }
+}
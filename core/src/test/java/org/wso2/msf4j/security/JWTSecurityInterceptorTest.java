@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the key selection and the verified token cache of JWTSecurityInterceptor with a JSON Web Key Set file.
+ */
+public class JWTSecurityInterceptorTest {
+
+    private KeyPair firstKey;
+    private KeyPair secondKey;
+    private Path jwks;
+
+    @BeforeClass
+    public void generateKeys() throws NoSuchAlgorithmException, IOException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        firstKey = generator.generateKeyPair();
+        secondKey = generator.generateKeyPair();
+        jwks = Files.createTempFile("jwks", ".json");
+    }
+
+    @AfterClass
+    public void deleteKeySet() throws IOException {
+        Files.deleteIfExists(jwks);
+    }
+
+    @Test
+    public void testVerifiedTokenIsCached() throws Exception {
+        writeKeySet("first", firstKey);
+        JWTSecurityInterceptor interceptor = new JWTSecurityInterceptor(jwks.toString());
+        String token = sign("first", firstKey, 60000);
+
+        assertTrue(interceptor.verifySignature(token));
+        assertTrue(interceptor.verifySignature(token));
+        assertEquals(1, interceptor.getTokenCacheHitCount());
+        assertEquals(1, interceptor.getTokenCacheMissCount());
+    }
+
+    @Test
+    public void testInvalidTokensAreRejected() throws Exception {
+        writeKeySet("first", firstKey);
+        JWTSecurityInterceptor interceptor = new JWTSecurityInterceptor(jwks.toString());
+
+        assertFalse(interceptor.verifySignature(sign("first", secondKey, 60000)));
+        assertFalse(interceptor.verifySignature(sign("first", firstKey, -1000)));
+        assertFalse(interceptor.verifySignature(sign("unknown", firstKey, 60000)));
+        assertFalse(interceptor.verifySignature("not-a-jwt"));
+        String token = sign("first", firstKey, 60000);
+        assertFalse(interceptor.verifySignature(token.substring(0, token.length() - 4) + "AAAA"));
+        assertEquals(0, interceptor.getTokenCacheHitCount());
+    }
+
+    @Test
+    public void testCacheCanBeDisabled() throws Exception {
+        writeKeySet("first", firstKey);
+        JWTSecurityInterceptor interceptor = new JWTSecurityInterceptor(jwks.toString());
+        interceptor.setMaxCachedTokens(0);
+        String token = sign("first", firstKey, 60000);
+
+        assertTrue(interceptor.verifySignature(token));
+        assertTrue(interceptor.verifySignature(token));
+        assertEquals(0, interceptor.getTokenCacheHitCount());
+        assertEquals(2, interceptor.getTokenCacheMissCount());
+    }
+
+    @Test
+    public void testKeyRotation() throws Exception {
+        writeKeySet("first", firstKey);
+        JWTSecurityInterceptor interceptor = new JWTSecurityInterceptor(jwks.toString());
+        interceptor.setJwksRefreshInterval(0);
+        String firstToken = sign("first", firstKey, 60000);
+        String secondToken = sign("second", secondKey, 60000);
+        assertTrue(interceptor.verifySignature(firstToken));
+        assertFalse(interceptor.verifySignature(secondToken));
+
+        // Both keys are published while the tokens signed with the old key are still valid
+        writeKeySet("first", firstKey, "second", secondKey);
+        assertTrue(interceptor.verifySignature(secondToken));
+        assertTrue(interceptor.verifySignature(firstToken));
+
+        // Tokens verified with a retired key are not accepted from the cache
+        writeKeySet("second", secondKey);
+        assertTrue(interceptor.verifySignature(secondToken));
+        assertFalse(interceptor.verifySignature(firstToken));
+    }
+
+    private String sign(String keyId, KeyPair key, long expiresIn) throws JOSEException {
+        JWSHeader header = new JWSHeader(JWSAlgorithm.RS256);
+        header.setKeyID(keyId);
+        JWTClaimsSet claims = new JWTClaimsSet();
+        claims.setSubject("admin");
+        claims.setExpirationTime(new Date(System.currentTimeMillis() + expiresIn));
+        SignedJWT jwt = new SignedJWT(header, claims);
+        jwt.sign(new RSASSASigner((RSAPrivateKey) key.getPrivate()));
+        return jwt.serialize();
+    }
+
+    private void writeKeySet(Object... keys) throws IOException {
+        StringBuilder keySet = new StringBuilder("{\"keys\":[");
+        for (int i = 0; i < keys.length; i += 2) {
+            RSAPublicKey publicKey = (RSAPublicKey) ((KeyPair) keys[i + 1]).getPublic();
+            if (i > 0) {
+                keySet.append(',');
+            }
+            keySet.append("{\"kty\":\"RSA\",\"kid\":\"").append(keys[i])
+                    .append("\",\"n\":\"").append(encode(publicKey.getModulus()))
+                    .append("\",\"e\":\"").append(encode(publicKey.getPublicExponent())).append("\"}");
+        }
+        keySet.append("]}");
+        Files.write(jwks, keySet.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String encode(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
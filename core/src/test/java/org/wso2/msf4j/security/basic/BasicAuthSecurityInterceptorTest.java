@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.security.basic;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.msf4j.Request;
+import org.wso2.msf4j.Response;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the header parsing and the credential cache of AbstractBasicAuthSecurityInterceptor.
+ */
+public class BasicAuthSecurityInterceptorTest {
+
+    /**
+     * Authenticates against an in-memory user store and counts the password checks.
+     */
+    private static class CountingInterceptor extends AbstractBasicAuthSecurityInterceptor {
+
+        private final Map<String, String> passwords = new HashMap<>();
+        private final AtomicInteger checks = new AtomicInteger();
+
+        @Override
+        protected boolean authenticate(String username, String password) {
+            checks.incrementAndGet();
+            return password.equals(passwords.get(username));
+        }
+    }
+
+    @Test
+    public void testPasswordWithColons() throws Exception {
+        CountingInterceptor interceptor = new CountingInterceptor();
+        interceptor.passwords.put("admin", "pass:word:");
+
+        assertTrue(preCall(interceptor, basic("admin:pass:word:")));
+        assertFalse(preCall(interceptor, basic("admin:pass")));
+    }
+
+    @Test
+    public void testMalformedHeaders() throws Exception {
+        CountingInterceptor interceptor = new CountingInterceptor();
+        interceptor.passwords.put("admin", "admin");
+
+        assertFalse(preCall(interceptor, "Basic"));
+        assertFalse(preCall(interceptor, "Basic   "));
+        assertFalse(preCall(interceptor, "Bearer abc"));
+        assertFalse(preCall(interceptor, "Basic not*base64"));
+        assertFalse(preCall(interceptor, basic("admin")));
+        assertEquals(0, interceptor.checks.get());
+        assertTrue(preCall(interceptor, "basic  " + encode("admin:admin") + " "));
+    }
+
+    @Test
+    public void testCacheIsDisabledByDefault() throws Exception {
+        CountingInterceptor interceptor = new CountingInterceptor();
+        interceptor.passwords.put("admin", "admin");
+
+        assertTrue(preCall(interceptor, basic("admin:admin")));
+        assertTrue(preCall(interceptor, basic("admin:admin")));
+        assertEquals(2, interceptor.checks.get());
+        assertEquals(0, interceptor.getCredentialCacheMissCount());
+    }
+
+    @Test
+    public void testSuccessfulAuthenticationIsCached() throws Exception {
+        CountingInterceptor interceptor = new CountingInterceptor();
+        interceptor.setCredentialCache(60000, 100);
+        interceptor.passwords.put("admin", "admin");
+
+        assertTrue(preCall(interceptor, basic("admin:admin")));
+        assertTrue(preCall(interceptor, basic("admin:admin")));
+        assertEquals(1, interceptor.checks.get());
+        assertEquals(1, interceptor.getCredentialCacheHitCount());
+
+        // Failed authentications are not cached
+        assertFalse(preCall(interceptor, basic("admin:wrong")));
+        assertFalse(preCall(interceptor, basic("admin:wrong")));
+        assertEquals(3, interceptor.checks.get());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        CountingInterceptor interceptor = new CountingInterceptor();
+        interceptor.setCredentialCache(60000, 100);
+        interceptor.passwords.put("admin", "admin");
+        interceptor.passwords.put("user", "user");
+        assertTrue(preCall(interceptor, basic("admin:admin")));
+        assertTrue(preCall(interceptor, basic("user:user")));
+
+        interceptor.passwords.put("admin", "changed");
+        interceptor.invalidateCredentials("admin");
+        assertFalse(preCall(interceptor, basic("admin:admin")));
+        assertTrue(preCall(interceptor, basic("user:user")));
+        assertEquals(3, interceptor.checks.get());
+
+        interceptor.invalidateCredentials();
+        assertTrue(preCall(interceptor, basic("user:user")));
+        assertEquals(4, interceptor.checks.get());
+    }
+
+    @Test
+    public void testCacheExpiryAndBound() throws Exception {
+        CountingInterceptor interceptor = new CountingInterceptor();
+        interceptor.setCredentialCache(50, 1);
+        interceptor.passwords.put("admin", "admin");
+        interceptor.passwords.put("user", "user");
+
+        assertTrue(preCall(interceptor, basic("admin:admin")));
+        Thread.sleep(100);
+        assertTrue(preCall(interceptor, basic("admin:admin")));
+        assertEquals(2, interceptor.checks.get());
+
+        interceptor.setCredentialCache(60000, 1);
+        interceptor.invalidateCredentials();
+        assertTrue(preCall(interceptor, basic("admin:admin")));
+        assertTrue(preCall(interceptor, basic("user:user")));
+        assertTrue(preCall(interceptor, basic("user:user")));
+        assertTrue(preCall(interceptor, basic("admin:admin")));
+        assertEquals(5, interceptor.checks.get());
+    }
+
+    private static boolean preCall(AbstractBasicAuthSecurityInterceptor interceptor, String authHeader)
+            throws Exception {
+        CarbonMessage carbonMessage = new DefaultCarbonMessage();
+        carbonMessage.setHeader("Authorization", authHeader);
+        Request request = new Request(carbonMessage);
+        return interceptor.preCall(request, new Response(message -> { }, request), null);
+    }
+
+    private static String basic(String credentials) {
+        return "Basic " + encode(credentials);
+    }
+
+    private static String encode(String credentials) {
+        return Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.security.oauth2;
+
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.msf4j.security.MSF4JSecurityException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the introspection cache of OAuth2SecurityInterceptor against a stub introspection endpoint.
+ */
+public class IntrospectionCacheTest {
+
+    private static final String VALID_TOKEN = "valid-token";
+    private static final String EXPIRING_TOKEN = "expiring-token";
+    private static final String SLOW_TOKEN = "slow-token";
+
+    private final Map<String, AtomicInteger> introspections = new ConcurrentHashMap<>();
+    private HttpServer authServer;
+    private String introspectionUrl;
+
+    @BeforeClass
+    public void startAuthServer() throws IOException {
+        authServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        authServer.setExecutor(Executors.newCachedThreadPool());
+        authServer.createContext("/introspect", exchange -> {
+            String token = readToken(exchange.getRequestBody());
+            introspections.computeIfAbsent(token, key -> new AtomicInteger()).incrementAndGet();
+            long now = System.currentTimeMillis() / 1000;
+            String response;
+            if (VALID_TOKEN.equals(token)) {
+                response = "{\"active\":true,\"exp\":" + (now + 3600) + "}";
+            } else if (EXPIRING_TOKEN.equals(token)) {
+                // Expired already by the time it is cached
+                response = "{\"active\":true,\"exp\":" + (now - 1) + "}";
+            } else if (SLOW_TOKEN.equals(token)) {
+                sleep(200);
+                response = "{\"active\":true}";
+            } else {
+                response = "{\"active\":false}";
+            }
+            byte[] content = response.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content);
+            }
+        });
+        authServer.start();
+        introspectionUrl = "http://localhost:" + authServer.getAddress().getPort() + "/introspect";
+    }
+
+    @AfterClass
+    public void stopAuthServer() {
+        authServer.stop(0);
+    }
+
+    @Test
+    public void testActiveTokenIsCached() throws MSF4JSecurityException {
+        OAuth2SecurityInterceptor interceptor = new OAuth2SecurityInterceptor(introspectionUrl);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(interceptor.introspect(VALID_TOKEN).isActive());
+        }
+        assertEquals(1, introspections.get(VALID_TOKEN).get());
+        assertEquals(4, interceptor.getCacheHitCount());
+    }
+
+    @Test
+    public void testExpiredTokenIsNotCached() throws MSF4JSecurityException {
+        OAuth2SecurityInterceptor interceptor = new OAuth2SecurityInterceptor(introspectionUrl);
+        interceptor.introspect(EXPIRING_TOKEN);
+        interceptor.introspect(EXPIRING_TOKEN);
+        assertEquals(2, introspections.get(EXPIRING_TOKEN).get());
+    }
+
+    @Test
+    public void testInvalidTokenIsCachedBriefly() throws Exception {
+        OAuth2SecurityInterceptor interceptor = new OAuth2SecurityInterceptor(introspectionUrl);
+        interceptor.setNegativeCacheTtl(100);
+        String token = "invalid-token";
+        assertFalse(interceptor.introspect(token).isActive());
+        assertFalse(interceptor.introspect(token).isActive());
+        assertEquals(1, introspections.get(token).get());
+        Thread.sleep(150);
+        assertFalse(interceptor.introspect(token).isActive());
+        assertEquals(2, introspections.get(token).get());
+    }
+
+    @Test
+    public void testConcurrentLookupsAreCollapsed() throws Exception {
+        OAuth2SecurityInterceptor interceptor = new OAuth2SecurityInterceptor(introspectionUrl);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return interceptor.introspect(SLOW_TOKEN).isActive();
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, introspections.get(SLOW_TOKEN).get());
+    }
+
+    @Test
+    public void testCacheIsBounded() throws MSF4JSecurityException {
+        IntrospectionCache cache = new IntrospectionCache();
+        cache.setMaxEntries(10);
+        for (int i = 0; i < 100; i++) {
+            cache.get("token-" + i, token -> new IntrospectionCache.Result(true, 0));
+        }
+        assertTrue(cache.size() <= 10);
+    }
+
+    private static String readToken(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        for (String parameter : body.toString("UTF-8").split("&")) {
+            if (parameter.startsWith("token=")) {
+                return URLDecoder.decode(parameter.substring("token=".length()), "UTF-8");
+            }
+        }
+        return "";
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
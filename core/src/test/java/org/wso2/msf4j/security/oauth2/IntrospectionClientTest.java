@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.security.oauth2;
+
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.msf4j.security.MSF4JSecurityException;
+import org.wso2.msf4j.security.SecurityErrorCode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+/**
+ * Tests the timeouts, asynchronous calls and circuit breaker of the introspection client of
+ * OAuth2SecurityInterceptor.
+ */
+public class IntrospectionClientTest {
+
+    private HttpServer authServer;
+    private String baseUrl;
+
+    @BeforeClass
+    public void startAuthServer() throws IOException {
+        authServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        authServer.setExecutor(Executors.newCachedThreadPool());
+        authServer.createContext("/introspect", exchange -> {
+            byte[] content = "{\"active\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content);
+            }
+        });
+        authServer.createContext("/malformed", exchange -> {
+            byte[] content = "{\"active\":{}}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content);
+            }
+        });
+        authServer.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        authServer.start();
+        baseUrl = "http://localhost:" + authServer.getAddress().getPort();
+    }
+
+    @AfterClass
+    public void stopAuthServer() {
+        authServer.stop(0);
+    }
+
+    @Test
+    public void testAsyncValidation() throws Exception {
+        OAuth2SecurityInterceptor interceptor = new OAuth2SecurityInterceptor(baseUrl + "/introspect");
+        try {
+            assertTrue(interceptor.validateTokenAsync("Bearer token").get(5, TimeUnit.SECONDS));
+            try {
+                interceptor.validateTokenAsync("Basic dXNlcjpwYXNz").get(5, TimeUnit.SECONDS);
+                fail("Non bearer Authorization header was accepted");
+            } catch (ExecutionException e) {
+                assertEquals(SecurityErrorCode.INVALID_AUTHORIZATION_HEADER,
+                        ((MSF4JSecurityException) e.getCause()).getErrorCode());
+            }
+        } finally {
+            interceptor.close();
+        }
+    }
+
+    @Test
+    public void testReadTimeout() {
+        OAuth2SecurityInterceptor interceptor = new OAuth2SecurityInterceptor(baseUrl + "/slow");
+        interceptor.setReadTimeout(200);
+        long start = System.currentTimeMillis();
+        try {
+            interceptor.introspect("token");
+            fail("Introspection did not time out");
+        } catch (MSF4JSecurityException e) {
+            assertEquals(SecurityErrorCode.GENERIC_ERROR, e.getErrorCode());
+        }
+        assertTrue(System.currentTimeMillis() - start < 1500);
+    }
+
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        OAuth2SecurityInterceptor interceptor = new OAuth2SecurityInterceptor("http://localhost:" + port +
+                "/introspect");
+        interceptor.setCircuitBreaker(2, 60_000);
+        for (int i = 0; i < 2; i++) {
+            try {
+                interceptor.introspect("token-" + i);
+                fail("Introspection against a closed port succeeded");
+            } catch (MSF4JSecurityException e) {
+                assertEquals(SecurityErrorCode.GENERIC_ERROR, e.getErrorCode());
+            }
+        }
+        assertEquals(CircuitBreaker.State.OPEN, interceptor.getCircuitBreakerState());
+
+        CompletableFuture<Boolean> result = interceptor.validateTokenAsync("Bearer token");
+        assertTrue(result.isCompletedExceptionally());
+        interceptor.close();
+    }
+
+    @Test
+    public void testTrialCallWhichThrowsReopensCircuit() throws Exception {
+        OAuth2SecurityInterceptor interceptor = new OAuth2SecurityInterceptor(baseUrl + "/malformed");
+        interceptor.setCircuitBreaker(1, 50);
+        for (int i = 0; i < 2; i++) {
+            try {
+                interceptor.introspect("token-" + i);
+                fail("Malformed introspection response was accepted");
+            } catch (RuntimeException e) {
+                // Reported to the circuit breaker as a failure
+            }
+            assertEquals(CircuitBreaker.State.OPEN, interceptor.getCircuitBreakerState());
+            Thread.sleep(100);
+        }
+    }
+
+    @Test
+    public void testCircuitBreakerRecovers() throws InterruptedException {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+        circuitBreaker.setFailureThreshold(1);
+        circuitBreaker.setOpenDuration(50);
+        assertTrue(circuitBreaker.allowCall());
+        circuitBreaker.failed();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertTrue(!circuitBreaker.allowCall());
+
+        Thread.sleep(100);
+        assertTrue(circuitBreaker.allowCall());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        // Only a single trial call is let through
+        assertTrue(!circuitBreaker.allowCall());
+        circuitBreaker.succeeded();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+}
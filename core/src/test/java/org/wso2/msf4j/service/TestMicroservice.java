@@ -24,6 +24,8 @@ import com.google.gson.JsonPrimitive;
 import com.google.gson.reflect.TypeToken;
 import org.apache.commons.io.IOUtils;
 import org.wso2.msf4j.HttpStreamHandler;
+import org.wso2.msf4j.HttpStreamSubscriber;
+import org.wso2.msf4j.HttpStreamSubscription;
 import org.wso2.msf4j.HttpStreamer;
 import org.wso2.msf4j.Microservice;
 import org.wso2.msf4j.Request;
@@ -397,6 +399,46 @@ public class TestMicroservice implements Microservice {
         });
     }
 
+    @Path("/stream/subscribe")
+    @PUT
+    public void streamSubscribe(@Context HttpStreamer httpStreamer) throws Exception {
+        final StringBuilder sb = new StringBuilder();
+        httpStreamer.subscribe(new HttpStreamSubscriber() {
+
+            private org.wso2.msf4j.Response response;
+            private HttpStreamSubscription subscription;
+
+            @Override
+            public void init(org.wso2.msf4j.Response response) {
+                this.response = response;
+            }
+
+            @Override
+            public void onSubscribe(HttpStreamSubscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(ByteBuffer content) throws Exception {
+                sb.append(Charset.defaultCharset().decode(content).toString());
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable cause) {
+                sb.setLength(0);
+            }
+
+            @Override
+            public void onComplete() throws Exception {
+                response.setStatus(Response.Status.OK.getStatusCode());
+                response.setEntity(sb.toString());
+                response.send();
+            }
+        });
+    }
+
     @Path("/stream/upload/fail")
     @PUT
     public HttpStreamHandler streamUploadFailure() {
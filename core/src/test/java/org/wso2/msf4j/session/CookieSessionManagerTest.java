@@ -0,0 +1,140 @@
+/*
+ *  Copyright (c) 2016 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.msf4j.session;
+
+import org.testng.annotations.Test;
+import org.wso2.msf4j.CookieSessionManager;
+import org.wso2.msf4j.Session;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+/**
+ * Tests the encrypted session cookies of CookieSessionManager.
+ */
+public class CookieSessionManagerTest {
+
+    private static final String SESSION_ID = "JSESSIONID=";
+
+    @Test
+    public void testRoundTrip() {
+        CookieSessionManager sessionManager = new CookieSessionManager(key(1));
+        Session session = sessionManager.createSession();
+        session.setAttribute("user", "alice");
+        session.setAttribute("count", 42);
+
+        Session restored = sessionManager.getSession(cookieValue(sessionManager.getSessionCookie(session)));
+        assertNotNull(restored);
+        assertEquals(session.getAttributeNames(), restored.getAttributeNames());
+        assertEquals("alice", restored.getAttribute("user"));
+        assertEquals(42, restored.getAttribute("count"));
+        // An unchanged session which has been read recently need not be re-issued
+        assertNull(sessionManager.getSessionCookie(restored));
+
+        restored.setAttribute("count", 43);
+        assertNotNull(sessionManager.getSessionCookie(restored));
+    }
+
+    @Test
+    public void testTamperedCookieIsRejected() {
+        CookieSessionManager sessionManager = new CookieSessionManager(key(1));
+        Session session = sessionManager.createSession();
+        session.setAttribute("role", "user");
+        char[] value = cookieValue(sessionManager.getSessionCookie(session)).toCharArray();
+        int last = value.length - 10;
+        value[last] = (value[last] == 'A') ? 'B' : 'A';
+
+        assertNull(sessionManager.getSession(new String(value)));
+        assertNull(sessionManager.getSession("not a session cookie"));
+        assertNull(sessionManager.getSession(""));
+    }
+
+    @Test
+    public void testKeyRotation() {
+        CookieSessionManager sessionManager = new CookieSessionManager(key(1));
+        Session session = sessionManager.createSession();
+        String oldCookie = cookieValue(sessionManager.getSessionCookie(session));
+
+        sessionManager.rotateKey(key(2));
+        String newCookie = cookieValue(sessionManager.getSessionCookie(session));
+        assertNotNull(sessionManager.getSession(oldCookie));
+        assertNotNull(sessionManager.getSession(newCookie));
+
+        sessionManager.retireKey(key(1));
+        assertNull(sessionManager.getSession(oldCookie));
+        assertNotNull(sessionManager.getSession(newCookie));
+
+        // A node which has not rotated yet reads cookies of the new key once it is added
+        CookieSessionManager otherNode = new CookieSessionManager(key(1));
+        assertNull(otherNode.getSession(newCookie));
+        otherNode.addKey(key(2));
+        assertNotNull(otherNode.getSession(newCookie));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testPrimaryKeyCannotBeRetired() {
+        CookieSessionManager sessionManager = new CookieSessionManager(key(1));
+        sessionManager.retireKey(key(1));
+    }
+
+    @Test
+    public void testCookieSizeLimit() {
+        CookieSessionManager sessionManager = new CookieSessionManager(key(1));
+        sessionManager.setMaxCookieSize(512);
+        Session session = sessionManager.createSession();
+        session.setAttribute("small", "value");
+        try {
+            session.setAttribute("large", new String(new char[1024]).replace('\0', 'x'));
+            fail("Session exceeding the cookie size limit was accepted");
+        } catch (IllegalStateException expected) {
+            // The attribute is rolled back
+        }
+        assertNull(session.getAttribute("large"));
+        assertEquals("value", session.getAttribute("small"));
+        assertTrue(sessionManager.getSessionCookie(session).length() <= 512);
+    }
+
+    @Test
+    public void testInvalidatedSessionCookieIsDropped() {
+        CookieSessionManager sessionManager = new CookieSessionManager(key(1));
+        Session session = sessionManager.createSession();
+        Session restored = sessionManager.getSession(cookieValue(sessionManager.getSessionCookie(session)));
+        restored.invalidate();
+        assertTrue(sessionManager.getSessionCookie(restored).contains("Max-Age=0"));
+    }
+
+    private static SecretKey key(int seed) {
+        byte[] key = new byte[16];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte) (seed * 31 + i);
+        }
+        return new SecretKeySpec(key, "AES");
+    }
+
+    private static String cookieValue(String setCookie) {
+        assertTrue(setCookie.startsWith(SESSION_ID));
+        return setCookie.substring(SESSION_ID.length(), setCookie.indexOf(';'));
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ *  Copyright (c) 2016 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.msf4j.session;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+import org.wso2.msf4j.DefaultSessionAttributeCodec;
+import org.wso2.msf4j.ReplicatedSessionManager;
+import org.wso2.msf4j.Session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.StreamCorruptedException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+/**
+ * Tests the replication of sessions between ReplicatedSessionManagers of the same JVM.
+ */
+public class ReplicatedSessionManagerTest {
+
+    private static final long TIMEOUT = 10_000;
+    private static final SecretKey KEY = new SecretKeySpec(new byte[32], "HmacSHA256");
+
+    private final List<ReplicatedSessionManager> nodes = new ArrayList<>();
+
+    @AfterMethod
+    public void stopNodes() {
+        nodes.forEach(ReplicatedSessionManager::stop);
+        nodes.clear();
+    }
+
+    @Test
+    public void testChangesAreReplicated() throws Exception {
+        ReplicatedSessionManager node1 = startNode("node1");
+        ReplicatedSessionManager node2 = startNode("node2");
+        connect(node1, node2);
+
+        Session session = node1.createSession();
+        session.setAttribute("user", "alice");
+        String sessionId = sessionId(node1, session);
+        assertTrue(sessionId.endsWith(".node1"));
+        await(() -> hasAttribute(node2, sessionId, "user", "alice"));
+
+        Session replica = node2.getSession(sessionId);
+        replica.setAttribute("cart", 3);
+        replica.removeAttribute("user");
+        await(() -> session.getAttribute("user") == null && Integer.valueOf(3).equals(session.getAttribute("cart")));
+
+        session.invalidate();
+        await(() -> node2.getSession(sessionId) == null);
+        assertEquals(0, node2.getReplicatedSessionCount());
+
+        assertTrue(node1.getSentMessageCount() > 0);
+        assertTrue(node1.getSentBytes() > 0);
+        assertTrue(node2.getReceivedMessageCount() > 0);
+        assertTrue(node2.getMaxReplicationLag() >= node2.getLastReplicationLag());
+        assertEquals(0, node2.getMissedDeltaCount());
+    }
+
+    @Test
+    public void testJoiningNodeReceivesSessions() throws Exception {
+        ReplicatedSessionManager node1 = startNode("node1");
+        Session session = node1.createSession();
+        session.setAttribute("user", "bob");
+        String sessionId = sessionId(node1, session);
+
+        ReplicatedSessionManager node2 = startNode("node2");
+        assertNull(node2.getSession(sessionId));
+        connect(node1, node2);
+        await(() -> hasAttribute(node2, sessionId, "user", "bob"));
+        await(() -> node2.getConnectedRoutes().contains("node1"));
+    }
+
+    @Test
+    public void testEvictionKeepsSessionOnOtherNodes() throws Exception {
+        ReplicatedSessionManager node1 = startNode("node1");
+        ReplicatedSessionManager node2 = startNode("node2");
+        node1.setMaxActiveSessions(10);
+        connect(node1, node2);
+        await(() -> node1.getConnectedRoutes().contains("node2") && node2.getConnectedRoutes().contains("node1"));
+
+        List<String> sessionIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Session session = node1.createSession();
+            session.setAttribute("visit", i);
+            sessionIds.add(sessionId(node1, session));
+        }
+        assertTrue(node1.getEvictedSessionCount() > 0);
+        assertTrue(node1.getReplicatedSessionCount() <= 10);
+        await(() -> node2.getReplicatedSessionCount() == 20);
+        // No removal is sent for the evicted sessions
+        Thread.sleep(200);
+        assertEquals(20, node2.getReplicatedSessionCount());
+        assertEquals(0, node2.getSession(sessionIds.get(0)).getAttribute("visit"));
+    }
+
+    @Test
+    public void testReplicasAreBoundedBySessionLimits() throws Exception {
+        ReplicatedSessionManager node1 = startNode("node1");
+        ReplicatedSessionManager node2 = startNode("node2");
+        node2.setMaxActiveSessions(10);
+        connect(node1, node2);
+        await(() -> node1.getConnectedRoutes().contains("node2"));
+
+        for (int i = 0; i < 30; i++) {
+            node1.createSession().setAttribute("visit", i);
+        }
+        await(() -> node2.getReplicatedSessionCount() + node2.getDroppedReplicaCount() == 30);
+        assertTrue(node2.getReplicatedSessionCount() <= 10);
+        assertEquals(30, node1.getReplicatedSessionCount());
+    }
+
+    @Test
+    public void testNodesWithDifferentKeysAreNotConnected() throws Exception {
+        ReplicatedSessionManager node1 = startNode("node1");
+        ReplicatedSessionManager node2 = startNode("node2", new SecretKeySpec(new byte[]{
+                1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16}, "HmacSHA256"));
+        Session session = node1.createSession();
+        session.setAttribute("user", "carol");
+        String sessionId = sessionId(node1, session);
+        connect(node1, node2);
+
+        Thread.sleep(500);
+        assertNull(node2.getSession(sessionId));
+        assertTrue(node1.getConnectedRoutes().isEmpty());
+        assertTrue(node2.getConnectedRoutes().isEmpty());
+        assertEquals(0, node2.getReceivedMessageCount());
+    }
+
+    @Test
+    public void testUnauthenticatedConnectionIsClosed() throws Exception {
+        ReplicatedSessionManager node = startNode("node1");
+        try (Socket socket = new Socket()) {
+            socket.connect(node.getLocalAddress());
+            socket.setSoTimeout((int) TIMEOUT);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(0x4D534652);
+            out.writeUTF("node2");
+            out.write(new byte[16]);
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            // Nonce and proof of the node
+            in.readFully(new byte[48]);
+            out.write(new byte[32]);
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+            assertEquals(-1, in.read());
+        }
+        assertTrue(node.getConnectedRoutes().isEmpty());
+        assertEquals(0, node.getReceivedMessageCount());
+    }
+
+    @Test
+    public void testSerializedValuesAreNotReplicatedByDefault() throws Exception {
+        ReplicatedSessionManager node = startNode("node1");
+        Session session = node.createSession();
+        try {
+            session.setAttribute("items", new ArrayList<>(Arrays.asList("a", "b")));
+            fail("Value which needs Java serialization was replicated");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() instanceof NotSerializableException);
+        }
+    }
+
+    @Test(expectedExceptions = InvalidClassException.class)
+    public void testCodecRefusesClassesWhichAreNotAllowed() throws IOException {
+        byte[] encoded = encode(new DefaultSessionAttributeCodec(), new ArrayList<>(Arrays.asList(1, 2)));
+        decode(new DefaultSessionAttributeCodec(Collections.singleton("java.util.HashMap")), encoded);
+    }
+
+    @Test
+    public void testCodecDeserializesAllowedClasses() throws IOException {
+        List<Object> value = new ArrayList<>(Arrays.asList(1, "two", new int[]{3}));
+        DefaultSessionAttributeCodec codec = new DefaultSessionAttributeCodec(Collections.singleton("java.util.*"));
+        List<?> decoded = (List<?>) decode(codec, encode(codec, value));
+        assertEquals(3, decoded.size());
+        assertEquals("two", decoded.get(1));
+    }
+
+    @Test(expectedExceptions = StreamCorruptedException.class)
+    public void testCodecRejectsOversizedValues() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            // String type followed by a length beyond the limit
+            out.writeByte(1);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+        decode(new DefaultSessionAttributeCodec(), bytes.toByteArray());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRouteIsRequired() {
+        new ReplicatedSessionManager("", new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), KEY);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWildcardBindAddressIsRejected() {
+        new ReplicatedSessionManager("node1", new InetSocketAddress(0), KEY);
+    }
+
+    private ReplicatedSessionManager startNode(String route) throws Exception {
+        return startNode(route, KEY);
+    }
+
+    private ReplicatedSessionManager startNode(String route, SecretKey key) throws Exception {
+        ReplicatedSessionManager node = new ReplicatedSessionManager(route,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), key);
+        node.init();
+        nodes.add(node);
+        return node;
+    }
+
+    private static void connect(ReplicatedSessionManager node1, ReplicatedSessionManager node2) {
+        node1.addPeer(node2.getLocalAddress());
+        node2.addPeer(node1.getLocalAddress());
+    }
+
+    private static String sessionId(ReplicatedSessionManager node, Session session) {
+        return node.getSessionCookie(session).substring("JSESSIONID=".length());
+    }
+
+    private static boolean hasAttribute(ReplicatedSessionManager node, String sessionId, String name, Object value) {
+        Session session = node.getSession(sessionId);
+        return session != null && value.equals(session.getAttribute(name));
+    }
+
+    private static byte[] encode(DefaultSessionAttributeCodec codec, Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            codec.encode(value, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object decode(DefaultSessionAttributeCodec codec, byte[] bytes) throws IOException {
+        return codec.decode(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out waiting for replication", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ *  Copyright (c) 2016 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.msf4j.session;
+
+import org.testng.annotations.Test;
+import org.wso2.msf4j.AbstractSessionManager;
+import org.wso2.msf4j.Session;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+/**
+ * Tests the durability modes of AbstractSessionManager.
+ */
+public class SessionDurabilityTest {
+
+    @Test
+    public void testSyncDurability() {
+        CountingSessionManager sessionManager = new CountingSessionManager();
+        Session session = newSession(sessionManager);
+        setAttributes(session);
+        assertEquals(5, sessionManager.updates.get());
+    }
+
+    @Test
+    public void testBatchedDurability() {
+        CountingSessionManager sessionManager = new CountingSessionManager();
+        sessionManager.setDurability(AbstractSessionManager.Durability.BATCHED);
+        Session session = newSession(sessionManager);
+        setAttributes(session);
+        assertEquals(0, sessionManager.updates.get());
+        assertEquals(1, sessionManager.getDirtySessionCount());
+
+        sessionManager.flushSession(session);
+        assertEquals(1, sessionManager.updates.get());
+        sessionManager.flushSession(session);
+        assertEquals(1, sessionManager.updates.get());
+    }
+
+    @Test
+    public void testAsyncDurability() throws InterruptedException {
+        CountingSessionManager sessionManager = new CountingSessionManager();
+        sessionManager.setDurability(AbstractSessionManager.Durability.ASYNC);
+        sessionManager.setFlushInterval(50);
+        sessionManager.init();
+        try {
+            Session session = newSession(sessionManager);
+            setAttributes(session);
+            sessionManager.flushSession(session);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (sessionManager.updates.get() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, sessionManager.updates.get());
+            assertEquals(0, sessionManager.getDirtySessionCount());
+        } finally {
+            sessionManager.stop();
+        }
+    }
+
+    @Test
+    public void testInvalidatedSessionNotWritten() {
+        CountingSessionManager sessionManager = new CountingSessionManager();
+        sessionManager.setDurability(AbstractSessionManager.Durability.BATCHED);
+        Session session = newSession(sessionManager);
+        setAttributes(session);
+        session.invalidate();
+        sessionManager.flush();
+        assertEquals(0, sessionManager.updates.get());
+    }
+
+    @Test
+    public void testFailedWriteIsRetried() {
+        AtomicInteger failures = new AtomicInteger(1);
+        CountingSessionManager sessionManager = new CountingSessionManager() {
+            @Override
+            public void updateSession(Session session) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new IllegalStateException("Storage failure");
+                }
+                super.updateSession(session);
+            }
+        };
+        sessionManager.setDurability(AbstractSessionManager.Durability.BATCHED);
+        Session session = newSession(sessionManager);
+        setAttributes(session);
+        sessionManager.flush();
+        assertEquals(0, sessionManager.updates.get());
+        assertEquals(1, sessionManager.getDirtySessionCount());
+
+        sessionManager.flush();
+        assertEquals(1, sessionManager.updates.get());
+        assertEquals(0, sessionManager.getDirtySessionCount());
+    }
+
+    @Test
+    public void testExpiryContinuesWhenDeleteFails() throws InterruptedException {
+        AtomicInteger deletes = new AtomicInteger();
+        CountingSessionManager sessionManager = new CountingSessionManager() {
+            @Override
+            public void loadSessions(Map<String, Session> sessions) {
+                // Already expired, so that they come up at the first tick of the expiry wheel
+                for (int i = 0; i < 3; i++) {
+                    Session session = new Session("session-" + i, 0);
+                    session.setManager(this);
+                    sessions.put("session-" + i, session);
+                }
+            }
+
+            @Override
+            public void deleteSession(Session session) {
+                deletes.incrementAndGet();
+                throw new IllegalStateException("Storage failure");
+            }
+        };
+        sessionManager.init();
+        try {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (deletes.get() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(3, deletes.get());
+            assertEquals(0, sessionManager.getActiveSessionCount());
+        } finally {
+            sessionManager.stop();
+        }
+    }
+
+    private static Session newSession(CountingSessionManager sessionManager) {
+        return sessionManager.createSession();
+    }
+
+    private static void setAttributes(Session session) {
+        for (int i = 0; i < 5; i++) {
+            session.setAttribute("attribute-" + i, i);
+        }
+    }
+
+    private static class CountingSessionManager extends AbstractSessionManager {
+
+        private final AtomicInteger updates = new AtomicInteger();
+
+        @Override
+        public void loadSessions(Map<String, Session> sessions) {
+        }
+
+        @Override
+        public Session readSession(String sessionId) {
+            return null;
+        }
+
+        @Override
+        public void saveSession(Session session) {
+        }
+
+        @Override
+        public void deleteSession(Session session) {
+        }
+
+        @Override
+        public void updateSession(Session session) {
+            updates.incrementAndGet();
+        }
+    }
+}
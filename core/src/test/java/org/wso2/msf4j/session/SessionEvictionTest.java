@@ -0,0 +1,158 @@
+/*
+ *  Copyright (c) 2016 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.msf4j.session;
+
+import org.testng.annotations.Test;
+import org.wso2.msf4j.AbstractSessionManager;
+import org.wso2.msf4j.DefaultSessionAttributeCodec;
+import org.wso2.msf4j.DefaultSessionManager;
+import org.wso2.msf4j.PersistentSessionManager;
+import org.wso2.msf4j.Session;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests the session limits, eviction and lazy session creation of AbstractSessionManager.
+ */
+public class SessionEvictionTest {
+
+    @Test
+    public void testLazySessionCreation() {
+        DefaultSessionManager sessionManager = new DefaultSessionManager();
+        sessionManager.setLazySessionCreation(true);
+        Session session = sessionManager.createSession();
+        assertEquals(0, sessionManager.getActiveSessionCount());
+        assertNull(sessionManager.getSessionCookie(session));
+
+        session.setAttribute("user", "alice");
+        assertEquals(1, sessionManager.getActiveSessionCount());
+        assertNotNull(sessionManager.getSessionCookie(session));
+        assertTrue(sessionManager.getEstimatedSessionMemory() > 0);
+
+        session.invalidate();
+        assertEquals(0, sessionManager.getActiveSessionCount());
+        assertEquals(0, sessionManager.getEstimatedSessionMemory());
+    }
+
+    @Test
+    public void testUnusedSessionsAreEvictedFirst() throws InterruptedException {
+        DefaultSessionManager sessionManager = new DefaultSessionManager();
+        sessionManager.setMaxActiveSessions(10);
+        Session returning = sessionManager.createSession();
+        returning.setAttribute("user", "alice");
+        // Used again by a later request
+        returning = sessionManager.getSession(sessionId(sessionManager, returning));
+
+        List<Session> unused = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Thread.sleep(1);
+            Session session = sessionManager.createSession();
+            session.setAttribute("visit", i);
+            unused.add(session);
+        }
+        assertTrue(sessionManager.getActiveSessionCount() <= 10);
+        assertTrue(sessionManager.getEvictedSessionCount() >= 10);
+        assertEquals("alice", returning.getAttribute("user"));
+        // The most recent session is never the one evicted to make room for itself
+        assertEquals(19, unused.get(19).getAttribute("visit"));
+    }
+
+    @Test
+    public void testMemoryLimit() {
+        DefaultSessionManager sessionManager = new DefaultSessionManager();
+        sessionManager.setMaxSessionMemory(64 * 1024);
+        String value = new String(new char[4096]).replace('\0', 'x');
+        for (int i = 0; i < 50; i++) {
+            sessionManager.createSession().setAttribute("value", value);
+        }
+        assertTrue(sessionManager.getEstimatedSessionMemory() <= 64 * 1024);
+        assertTrue(sessionManager.getEvictedSessionCount() > 0);
+    }
+
+    @Test
+    public void testEvictedSessionsAreSpilled() throws IOException {
+        Path sessionDir = Files.createTempDirectory("msf4j-sessions");
+        PersistentSessionManager sessionManager = new PersistentSessionManager(sessionDir,
+                new DefaultSessionAttributeCodec());
+        sessionManager.setMaxActiveSessions(10);
+        sessionManager.setSpillEvictedSessions(true);
+        sessionManager.init();
+        try {
+            List<String> sessionIds = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                Session session = sessionManager.createSession();
+                session.setAttribute("visit", i);
+                sessionIds.add(sessionId(sessionManager, session));
+            }
+            assertTrue(sessionManager.getActiveSessionCount() <= 10);
+
+            Session spilled = sessionManager.getSession(sessionIds.get(0));
+            assertNotNull(spilled);
+            assertEquals(0, spilled.getAttribute("visit"));
+        } finally {
+            sessionManager.stop();
+        }
+    }
+
+    @Test
+    public void testSpilledSessionsAreReleased() throws Exception {
+        Path sessionDir = Files.createTempDirectory("msf4j-sessions");
+        PersistentSessionManager sessionManager = new PersistentSessionManager(sessionDir,
+                new DefaultSessionAttributeCodec());
+        sessionManager.setMaxActiveSessions(10);
+        sessionManager.setSpillEvictedSessions(true);
+        sessionManager.init();
+        try {
+            List<WeakReference<Session>> sessions = createSessions(sessionManager, 20);
+            assertTrue(sessionManager.getActiveSessionCount() <= 10);
+            // The spilled sessions, which are not waiting for their expiry any more, can be collected
+            for (int i = 0; i < 50 && sessions.get(0).get() != null; i++) {
+                System.gc();
+                Thread.sleep(20);
+            }
+            assertNull(sessions.get(0).get());
+        } finally {
+            sessionManager.stop();
+        }
+    }
+
+    private static List<WeakReference<Session>> createSessions(AbstractSessionManager sessionManager, int count) {
+        List<WeakReference<Session>> sessions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Session session = sessionManager.createSession();
+            session.setAttribute("visit", i);
+            sessions.add(new WeakReference<>(session));
+        }
+        return sessions;
+    }
+
+    private static String sessionId(AbstractSessionManager sessionManager, Session session) {
+        return sessionManager.getSessionCookie(session).substring("JSESSIONID=".length());
+    }
+}
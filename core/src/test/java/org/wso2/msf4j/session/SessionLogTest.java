@@ -0,0 +1,155 @@
+/*
+ *  Copyright (c) 2016 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.msf4j.session;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.msf4j.DefaultSessionAttributeCodec;
+import org.wso2.msf4j.PersistentSessionManager;
+import org.wso2.msf4j.Session;
+import org.wso2.msf4j.internal.session.SessionLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests SessionLog.
+ */
+public class SessionLogTest {
+
+    private Path directory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("msf4j-sessions");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Test
+    public void testIndexRebuiltOnOpen() throws IOException {
+        long now = System.currentTimeMillis();
+        try (SessionLog sessionLog = new SessionLog(directory)) {
+            sessionLog.put("a", now, 15, new byte[]{1});
+            sessionLog.put("b", now, 15, new byte[]{2});
+            sessionLog.put("a", now, 15, new byte[]{3, 4});
+            sessionLog.remove("b");
+        }
+        try (SessionLog sessionLog = new SessionLog(directory)) {
+            assertEquals(1, sessionLog.size());
+            assertNull(sessionLog.get("b"));
+            SessionLog.Entry entry = sessionLog.get("a");
+            assertEquals(2, entry.getPayload().length);
+            assertEquals(now, entry.getLastAccessedTime());
+            assertEquals(15, entry.getMaxInactiveInterval());
+            assertTrue(sessionLog.getGarbageBytes() > 0);
+        }
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        long now = System.currentTimeMillis();
+        try (SessionLog sessionLog = new SessionLog(directory)) {
+            for (int i = 0; i < 100_000; i++) {
+                sessionLog.put("session-" + (i % 100), now, 15, new byte[64]);
+            }
+            assertEquals(100, sessionLog.size());
+            // Superseded records never outweigh the live records by much more than the compaction threshold
+            assertTrue(sessionLog.getLogSize() < 8 * 1024 * 1024);
+            sessionLog.compact();
+            assertEquals(0, sessionLog.getGarbageBytes());
+        }
+        try (SessionLog sessionLog = new SessionLog(directory)) {
+            assertEquals(100, sessionLog.size());
+            assertEquals(64, sessionLog.get("session-42").getPayload().length);
+        }
+    }
+
+    @Test
+    public void testRemoveExpired() throws IOException {
+        long now = System.currentTimeMillis();
+        try (SessionLog sessionLog = new SessionLog(directory)) {
+            sessionLog.put("expired", now - 20 * 60 * 1000, 15, new byte[0]);
+            sessionLog.put("active", now, 15, new byte[0]);
+            assertEquals(1, sessionLog.removeExpired(now));
+            assertNull(sessionLog.get("expired"));
+            assertEquals(1, sessionLog.size());
+        }
+    }
+
+    @Test
+    public void testSessionManagerClosesLogOnStop() throws IOException {
+        Path sessionDir = directory.resolve("sessions");
+        PersistentSessionManager sessionManager = new PersistentSessionManager(sessionDir,
+                new DefaultSessionAttributeCodec());
+        // Nothing is created until the SessionManager is initialized
+        assertFalse(Files.exists(sessionDir));
+        sessionManager.init();
+        Session session = sessionManager.createSession();
+        session.setAttribute("visit", 1);
+        String sessionId = sessionManager.getSessionCookie(session).substring("JSESSIONID=".length());
+        sessionManager.stop();
+
+        PersistentSessionManager restarted = new PersistentSessionManager(sessionDir,
+                new DefaultSessionAttributeCodec());
+        restarted.init();
+        try {
+            assertEquals(1, restarted.getSession(sessionId).getAttribute("visit"));
+        } finally {
+            restarted.stop();
+        }
+    }
+
+    @Test
+    public void testSessionManagerExpiresStoredSessions() throws Exception {
+        Path sessionDir = directory.resolve("sessions");
+        long now = System.currentTimeMillis();
+        try (SessionLog sessionLog = new SessionLog(sessionDir)) {
+            // Expires shortly after the SessionManager has been initialized, while held only by the log
+            sessionLog.put("expiring", now - 59_700, 1, new byte[0]);
+            sessionLog.put("stored", now, 15, new byte[0]);
+        }
+        PersistentSessionManager sessionManager = new PersistentSessionManager(sessionDir,
+                new DefaultSessionAttributeCodec());
+        sessionManager.setSweepInterval(100);
+        sessionManager.init();
+        try {
+            assertEquals(2, sessionManager.getStoredSessionCount());
+            long deadline = System.currentTimeMillis() + 5000;
+            while (sessionManager.getStoredSessionCount() != 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(1, sessionManager.getStoredSessionCount());
+            assertNull(sessionManager.getSession("expiring"));
+        } finally {
+            sessionManager.stop();
+        }
+    }
+}
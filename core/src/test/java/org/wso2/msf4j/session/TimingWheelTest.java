@@ -0,0 +1,129 @@
+/*
+ *  Copyright (c) 2016 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.msf4j.session;
+
+import org.testng.annotations.Test;
+import org.wso2.msf4j.internal.session.TimingWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests TimingWheel.
+ */
+public class TimingWheelTest {
+
+    private static final class Item {
+
+        private long deadline;
+
+        private Item(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+
+    @Test
+    public void testExpiry() {
+        List<Item> expired = new ArrayList<>();
+        TimingWheel<Item> wheel = new TimingWheel<>(100, 8, 0, item -> item.deadline, expired::add);
+        Item first = new Item(250);
+        Item second = new Item(1050);
+        wheel.schedule(first);
+        wheel.schedule(second);
+
+        wheel.advance(200);
+        assertTrue(expired.isEmpty());
+        wheel.advance(300);
+        assertEquals(1, expired.size());
+        assertTrue(expired.get(0) == first);
+
+        // Deadline beyond the span of the wheel shares a bucket with earlier ticks
+        wheel.advance(1000);
+        assertEquals(1, expired.size());
+        wheel.advance(1100);
+        assertEquals(2, expired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testDeadlinePushedBack() {
+        List<Item> expired = new ArrayList<>();
+        TimingWheel<Item> wheel = new TimingWheel<>(100, 16, 0, item -> item.deadline, expired::add);
+        Item item = new Item(500);
+        wheel.schedule(item);
+        wheel.advance(0);
+
+        item.deadline = 900;
+        wheel.advance(600);
+        assertTrue(expired.isEmpty());
+        assertEquals(1, wheel.size());
+        wheel.advance(900);
+        assertEquals(1, expired.size());
+    }
+
+    @Test
+    public void testFailingExpiryHandler() {
+        List<Item> expired = new ArrayList<>();
+        Item failing = new Item(150);
+        TimingWheel<Item> wheel = new TimingWheel<>(100, 16, 0, item -> item.deadline, item -> {
+            expired.add(item);
+            if (item == failing) {
+                throw new IllegalStateException("Storage failure");
+            }
+        });
+        wheel.schedule(failing);
+        wheel.schedule(new Item(180));
+        wheel.schedule(new Item(450));
+
+        wheel.advance(200);
+        assertEquals(2, expired.size());
+        wheel.advance(500);
+        assertEquals(3, expired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCancel() {
+        List<Item> expired = new ArrayList<>();
+        TimingWheel<Item> wheel = new TimingWheel<>(100, 16, 0, item -> item.deadline, expired::add);
+        TimingWheel.Timeout<Item> cancelled = wheel.schedule(new Item(250));
+        wheel.schedule(new Item(280));
+        wheel.advance(100);
+        cancelled.cancel();
+        assertTrue(cancelled.isCancelled());
+
+        wheel.advance(300);
+        assertEquals(1, expired.size());
+        assertEquals(280, expired.get(0).deadline);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testPastDeadlineExpiresRightAway() {
+        List<Item> expired = new ArrayList<>();
+        TimingWheel<Item> wheel = new TimingWheel<>(100, 16, 0, item -> item.deadline, expired::add);
+        wheel.advance(5000);
+        wheel.schedule(new Item(4000));
+        wheel.advance(5000);
+        assertEquals(1, expired.size());
+    }
+}
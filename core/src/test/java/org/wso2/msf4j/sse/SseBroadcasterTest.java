@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.sse;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.messaging.CarbonMessage;
+import org.wso2.carbon.messaging.DefaultCarbonMessage;
+import org.wso2.msf4j.internal.MSF4JConstants;
+import org.wso2.msf4j.internal.entitywriter.SseEventSinkEntityWriter;
+import org.wso2.msf4j.internal.sse.SseEventSinkImpl;
+import org.wso2.msf4j.io.FlowControlledCarbonMessage;
+import org.wso2.msf4j.io.OutboundBufferMonitor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests for SSE event encoding and broadcasting.
+ */
+public class SseBroadcasterTest {
+
+    @Test
+    public void testEventEncoding() {
+        SseEvent event = SseEvent.builder().id("42").name("price").retry(5000).data("line1\nline2\r\nline3").build();
+        assertEquals("id: 42\nevent: price\nretry: 5000\ndata: line1\ndata: line2\ndata: line3\n\n",
+                toString(event.encode()));
+        assertEquals(": heartbeat\n\n", toString(SseEvent.comment("heartbeat").encode()));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMultiLineEventId() {
+        SseEvent.builder().id("1\n2");
+    }
+
+    @Test
+    public void testEventsBufferedUntilOpen() throws IOException {
+        SseEventSinkImpl sink = new SseEventSinkImpl("41");
+        sink.send(SseEvent.builder().data("first").build());
+        sink.close();
+        assertTrue(sink.isClosed());
+        assertEquals("41", sink.getLastEventId());
+
+        CarbonMessage carbonMessage = new DefaultCarbonMessage();
+        sink.open(carbonMessage);
+        assertTrue(carbonMessage.isEndOfMsgAdded());
+        assertEquals("data: first\n\n", toString(carbonMessage.getFullMessageBody().get(0)));
+    }
+
+    @Test
+    public void testBroadcastSharesEncodedEvent() throws IOException {
+        CarbonMessage first = new DefaultCarbonMessage();
+        CarbonMessage second = new DefaultCarbonMessage();
+        SseEventSinkImpl firstSink = new SseEventSinkImpl(null);
+        SseEventSinkImpl secondSink = new SseEventSinkImpl(null);
+        firstSink.open(first);
+        secondSink.open(second);
+
+        SseBroadcaster broadcaster = new SseBroadcaster();
+        broadcaster.register(firstSink);
+        broadcaster.register(secondSink);
+        broadcaster.broadcast(SseEvent.builder().data("IBM 125.5").build());
+        secondSink.close();
+        broadcaster.broadcast(SseEvent.builder().data("IBM 126.0").build());
+
+        assertEquals(1, broadcaster.getSubscriberCount());
+        assertEquals(2, broadcaster.getBroadcastCount());
+        List<ByteBuffer> firstChunks = first.getFullMessageBody();
+        List<ByteBuffer> secondChunks = second.getFullMessageBody();
+        assertEquals(2, firstChunks.size());
+        assertEquals(1, secondChunks.size());
+        assertEquals("data: IBM 125.5\n\n", toString(firstChunks.get(0)));
+        assertEquals("data: IBM 125.5\n\n", toString(secondChunks.get(0)));
+        assertTrue(firstChunks.get(0).isReadOnly());
+
+        broadcaster.close();
+        assertTrue(firstSink.isClosed());
+        assertTrue(first.isEndOfMsgAdded());
+        assertFalse(broadcaster.getSubscriberCount() > 0);
+    }
+
+    @Test
+    public void testSlowClientIsClosed() throws IOException {
+        OutboundBufferMonitor monitor = new OutboundBufferMonitor();
+        monitor.setWaterMarks(64, 128);
+        FlowControlledCarbonMessage stalled = new FlowControlledCarbonMessage();
+        FlowControlledCarbonMessage reading = new FlowControlledCarbonMessage();
+        stalled.setProperty(MSF4JConstants.OUTBOUND_BUFFER_MONITOR, monitor);
+        reading.setProperty(MSF4JConstants.OUTBOUND_BUFFER_MONITOR, monitor);
+        SseEventSinkImpl stalledSink = new SseEventSinkImpl(null);
+        SseEventSinkImpl readingSink = new SseEventSinkImpl(null);
+        // Opened the way the responses are, the test takes the chunks of the reading client in place of the transport
+        SseEventSinkEntityWriter entityWriter = new SseEventSinkEntityWriter();
+        entityWriter.writeData(stalled, stalledSink, SseEventSinkEntityWriter.TEXT_EVENT_STREAM, 0, message -> {
+        });
+        entityWriter.writeData(reading, readingSink, SseEventSinkEntityWriter.TEXT_EVENT_STREAM, 0, message -> {
+        });
+        assertTrue(stalled.isBufferContent());
+
+        SseBroadcaster broadcaster = new SseBroadcaster();
+        broadcaster.register(stalledSink);
+        broadcaster.register(readingSink);
+        for (int i = 0; i < 100; i++) {
+            broadcaster.broadcast(SseEvent.builder().data("IBM " + i).build());
+            assertTrue(stalledSink.getBufferedBytes() <= 128);
+            // Only one of the clients takes the events
+            reading.getMessageBody();
+        }
+
+        assertTrue(stalledSink.isClosed());
+        assertTrue(stalled.isEndOfMsgAdded());
+        assertFalse(readingSink.isClosed());
+        assertEquals(1, broadcaster.getSubscriberCount());
+        assertEquals(1, monitor.getOverflowCount());
+        assertEquals(0, readingSink.getBufferedBytes());
+        assertEquals(0, monitor.getBufferedBytes());
+        assertEquals(1, monitor.getBufferedBytesPerConnection().size());
+        broadcaster.close();
+    }
+
+    private static String toString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
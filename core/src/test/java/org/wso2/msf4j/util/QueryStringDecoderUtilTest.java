@@ -21,7 +21,10 @@ import org.testng.annotations.Test;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -290,4 +293,37 @@ public class QueryStringDecoderUtilTest {
 
         assertFalse(entries.hasNext());
     }
+
+    @Test
+    public void testDecodeParamsAcrossBuffers() {
+        String body = "name=John+Doe&city=S%C3%A3o%20Paulo&name=Jane&empty=&flag";
+        byte[] bytes = body.getBytes(Charset.forName("UTF-8"));
+        // Split the body so that a percent encoded sequence spans two buffers
+        int split = body.indexOf("%C3") + 2;
+        List<ByteBuffer> content = Arrays.asList(ByteBuffer.wrap(bytes, 0, split),
+                ByteBuffer.wrap(bytes, split, bytes.length - split));
+
+        Map<String, List<String>> params = QueryStringDecoderUtil.decodeParams(content, Charset.forName("UTF-8"));
+        assertEquals(4, params.size());
+        assertEquals(Arrays.asList("John Doe", "Jane"), params.get("name"));
+        assertEquals("S\u00e3o Paulo", params.get("city").get(0));
+        assertEquals("", params.get("empty").get(0));
+        assertEquals("", params.get("flag").get(0));
+    }
+
+    @Test
+    public void testDecodeParamsMatchesStringDecoder() {
+        String body = "a=1;b=x%2By&c=100%%&&a=2&=v";
+        Map<String, List<String>> params = QueryStringDecoderUtil.decodeParams(
+                Collections.singletonList(ByteBuffer.wrap(body.getBytes(Charset.defaultCharset()))),
+                Charset.defaultCharset());
+        assertEquals(new QueryStringDecoderUtil(body, false).parameters(), params);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testDecodeParamsInvalidEscape() {
+        QueryStringDecoderUtil.decodeParams(
+                Collections.singletonList(ByteBuffer.wrap("a=%zz".getBytes(Charset.defaultCharset()))),
+                Charset.defaultCharset());
+    }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://wso2.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the verification of a JWT by JWTSecurityInterceptor with and without the verified token cache.
+ * The benchmark is in the package of the interceptor since it calls the signature verification directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class JWTVerificationBenchmark {
+
+    @Param({"true", "false"})
+    private boolean cached;
+
+    private Path jwks;
+    private JWTSecurityInterceptor interceptor;
+    private String token;
+
+    @Setup
+    public void setup() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair key = generator.generateKeyPair();
+        RSAPublicKey publicKey = (RSAPublicKey) key.getPublic();
+        jwks = Files.createTempFile("jwks", ".json");
+        Files.write(jwks, ("{\"keys\":[{\"kty\":\"RSA\",\"kid\":\"benchmark\",\"n\":\"" +
+                encode(publicKey.getModulus()) + "\",\"e\":\"" + encode(publicKey.getPublicExponent()) +
+                "\"}]}").getBytes(StandardCharsets.UTF_8));
+
+        interceptor = new JWTSecurityInterceptor(jwks.toString());
+        if (!cached) {
+            interceptor.setMaxCachedTokens(0);
+        }
+        token = sign(key);
+        if (!interceptor.verifySignature(token)) {
+            throw new IllegalStateException("Token is not valid");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(jwks);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return interceptor.verifySignature(token);
+    }
+
+    private static String sign(KeyPair key) throws JOSEException {
+        JWSHeader header = new JWSHeader(JWSAlgorithm.RS256);
+        header.setKeyID("benchmark");
+        JWTClaimsSet claims = new JWTClaimsSet();
+        claims.setSubject("admin");
+        claims.setExpirationTime(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)));
+        SignedJWT jwt = new SignedJWT(header, claims);
+        jwt.sign(new RSASSASigner((RSAPrivateKey) key.getPrivate()));
+        return jwt.serialize();
+    }
+
+    private static String encode(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
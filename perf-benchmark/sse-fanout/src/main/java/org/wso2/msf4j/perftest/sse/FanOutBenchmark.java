@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.perftest.sse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens the given number of event streams to the {@link FanOutService} over a single selector, broadcasts
+ * events and reports the time taken for each event to reach all the subscribers.
+ * <p>
+ * Usage: {@code FanOutBenchmark [host] [port] [connections] [rounds]}
+ */
+public class FanOutBenchmark {
+
+    private static final String DATA_PREFIX = "data: ";
+
+    private final String host;
+    private final int port;
+    private final int connections;
+    private final Selector selector;
+    private final AtomicInteger received = new AtomicInteger();
+    private volatile long[] latencies;
+    private volatile boolean running = true;
+
+    private FanOutBenchmark(String host, int port, int connections) throws IOException {
+        this.host = host;
+        this.port = port;
+        this.connections = connections;
+        this.selector = Selector.open();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        new FanOutBenchmark(host, port, connections).run(rounds);
+    }
+
+    private void run(int rounds) throws Exception {
+        byte[] subscribeRequest = ("GET /sse/subscribe HTTP/1.1\r\nHost: " + host + ":" + port +
+                "\r\nAccept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < connections; i++) {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+            channel.write(ByteBuffer.wrap(subscribeRequest));
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new StringBuilder());
+        }
+        Thread reader = new Thread(this::readEvents, "sse-fanout-reader");
+        reader.start();
+
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+        while (Integer.parseInt(request("GET", "subscribers", null)) < connections) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Subscribers did not connect in time");
+            }
+            Thread.sleep(100);
+        }
+        System.out.println("Connected subscribers: " + connections);
+
+        for (int round = 1; round <= rounds; round++) {
+            latencies = new long[connections];
+            received.set(0);
+            long start = System.nanoTime();
+            request("POST", "broadcast", String.valueOf(start));
+            while (received.get() < connections && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30)) {
+                Thread.sleep(1);
+            }
+            report(round, Arrays.copyOf(latencies, received.get()));
+        }
+        running = false;
+        selector.wakeup();
+        reader.join();
+    }
+
+    private void readEvents() {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (running) {
+            try {
+                selector.select(100);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    buffer.clear();
+                    if (((SocketChannel) key.channel()).read(buffer) < 0) {
+                        key.cancel();
+                        continue;
+                    }
+                    buffer.flip();
+                    processLines((StringBuilder) key.attachment(),
+                            StandardCharsets.UTF_8.decode(buffer).toString());
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Error while reading events", e);
+            }
+        }
+        selector.keys().forEach(key -> {
+            try {
+                key.channel().close();
+            } catch (IOException ignored) {
+                // closing the benchmark connections
+            }
+        });
+    }
+
+    private void processLines(StringBuilder pending, String content) {
+        pending.append(content);
+        int lineEnd;
+        while ((lineEnd = pending.indexOf("\n")) >= 0) {
+            String line = pending.substring(0, lineEnd);
+            pending.delete(0, lineEnd + 1);
+            if (line.startsWith(DATA_PREFIX)) {
+                long latency = System.nanoTime() - Long.parseLong(line.substring(DATA_PREFIX.length()).trim());
+                int index = received.getAndIncrement();
+                if (index < latencies.length) {
+                    latencies[index] = latency;
+                }
+            }
+        }
+    }
+
+    private String request(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://" + host + ":" + port + "/sse/" + path)
+                .openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "text/plain");
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        try (InputStream inputStream = connection.getInputStream()) {
+            byte[] response = new byte[64];
+            int length = inputStream.read(response);
+            return new String(response, 0, Math.max(length, 0), StandardCharsets.UTF_8).trim();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static void report(int round, long[] latencies) {
+        if (latencies.length == 0) {
+            System.out.println("Round " + round + ": no events received");
+            return;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("Round %d: delivered %d, p50 %.2f ms, p99 %.2f ms, all delivered in %.2f ms%n",
+                round, latencies.length,
+                toMillis(latencies[latencies.length / 2]),
+                toMillis(latencies[(int) (latencies.length * 0.99)]),
+                toMillis(latencies[latencies.length - 1]));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.msf4j.perftest.sse;
+
+import org.wso2.msf4j.sse.SseBroadcaster;
+import org.wso2.msf4j.sse.SseEvent;
+import org.wso2.msf4j.sse.SseEventSink;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+
+/**
+ * Service which broadcasts the posted payload to all the subscribed event streams.
+ */
+@Path("/sse")
+public class FanOutService {
+
+    private final SseBroadcaster broadcaster = new SseBroadcaster(15, TimeUnit.SECONDS);
+    private final AtomicLong eventIds = new AtomicLong();
+
+    @GET
+    @Path("subscribe")
+    @Produces("text/event-stream")
+    public void subscribe(@Context SseEventSink sink) {
+        broadcaster.register(sink);
+    }
+
+    @GET
+    @Path("subscribers")
+    @Produces("text/plain")
+    public String subscribers() {
+        return String.valueOf(broadcaster.getSubscriberCount());
+    }
+
+    @POST
+    @Path("broadcast")
+    @Consumes("text/plain")
+    @Produces("text/plain")
+    public String broadcast(String data) {
+        broadcaster.broadcast(SseEvent.builder()
+                .id(String.valueOf(eventIds.incrementAndGet()))
+                .name("tick")
+                .data(data)
+                .build());
+        return String.valueOf(broadcaster.getSubscriberCount());
+    }
+}